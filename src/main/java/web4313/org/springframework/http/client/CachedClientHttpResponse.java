@@ -0,0 +1,78 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * {@link ClientHttpResponse} served from the cache of a
+ * {@link CachingClientHttpRequestFactory}, with an "Age" header that reflects
+ * the time since the response was received or last revalidated.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+final class CachedClientHttpResponse extends AbstractClientHttpResponse {
+
+	private final int statusCode;
+
+	private final String statusText;
+
+	private final HttpHeaders headers;
+
+	private final byte[] body;
+
+
+	CachedClientHttpResponse(int statusCode, String statusText, HttpHeaders headers, byte[] body, long age) {
+		this.statusCode = statusCode;
+		this.statusText = statusText;
+		this.headers = new HttpHeaders();
+		this.headers.putAll(headers);
+		this.headers.set("Age", Long.toString(age / 1000));
+		this.body = body;
+	}
+
+
+	@Override
+	public int getRawStatusCode() throws IOException {
+		return this.statusCode;
+	}
+
+	@Override
+	public String getStatusText() throws IOException {
+		return this.statusText;
+	}
+
+	@Override
+	public HttpHeaders getHeaders() {
+		return this.headers;
+	}
+
+	@Override
+	public InputStream getBody() throws IOException {
+		return new ByteArrayInputStream(this.body);
+	}
+
+	@Override
+	public void close() {
+	}
+
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+/**
+ * {@link ClientHttpRequest} created by a {@link CachingClientHttpRequestFactory},
+ * which is answered from the cache where possible, and otherwise executed
+ * through the wrapped request factory.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+final class CachingClientHttpRequest extends AbstractBufferingClientHttpRequest {
+
+	private final CachingClientHttpRequestFactory cache;
+
+	private final ClientHttpRequestFactory requestFactory;
+
+	private final URI uri;
+
+	private final HttpMethod method;
+
+
+	CachingClientHttpRequest(CachingClientHttpRequestFactory cache, ClientHttpRequestFactory requestFactory,
+			URI uri, HttpMethod method) {
+
+		this.cache = cache;
+		this.requestFactory = requestFactory;
+		this.uri = uri;
+		this.method = method;
+	}
+
+
+	@Override
+	public HttpMethod getMethod() {
+		return this.method;
+	}
+
+	@Override
+	public URI getURI() {
+		return this.uri;
+	}
+
+	@Override
+	protected ClientHttpResponse executeInternal(HttpHeaders headers, byte[] bufferedOutput) throws IOException {
+		return this.cache.execute(this.uri, this.method, headers, bufferedOutput, this.requestFactory);
+	}
+
+}
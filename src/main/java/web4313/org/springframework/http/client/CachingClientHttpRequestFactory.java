@@ -0,0 +1,964 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+
+/**
+ * Wrapper for a {@link ClientHttpRequestFactory} that caches responses to
+ * GET requests in memory, as a private HTTP cache would, honoring the
+ * "Cache-Control", "Expires", "ETag", "Last-Modified" and "Vary" headers.
+ *
+ * <ul>
+ * <li>Fresh responses are served from the cache without network access.
+ * <li>Stale responses with an "ETag" or "Last-Modified" header are
+ * revalidated with "If-None-Match" or "If-Modified-Since", and served from
+ * the cache if the server answers with 304 (Not Modified).
+ * <li>Stale responses within their "stale-while-revalidate" period are
+ * served from the cache while being revalidated in the background.
+ * <li>Concurrent identical requests for the same missing or stale response
+ * are coalesced into a single request.
+ * <li>Requests with other methods invalidate the cached response for their URI.
+ * </ul>
+ *
+ * <p>The in-memory cache is bounded by the total size of the cached response
+ * bodies, and least recently used responses are evicted once it is exceeded.
+ * If a {@link #setDiskCacheDirectory disk cache directory} is configured,
+ * evicted responses are written there, and read back on demand. The disk
+ * cache is bounded by its {@link #setMaxDiskSize maximum size} as well.
+ *
+ * <p>Requests with a "Cache-Control: no-store" header, or with their own
+ * conditional headers, are passed through to the wrapped factory unchanged.
+ * Since responses are cached per URI and may be shared by several users,
+ * requests with an "Authorization" header are only served from, and their
+ * responses only stored in, the cache if the response is explicitly marked
+ * with "Cache-Control: public".
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+public class CachingClientHttpRequestFactory extends AbstractClientHttpRequestFactoryWrapper {
+
+	private static final int DISK_FORMAT_VERSION = 1;
+
+	private static final int MAX_DISK_HEADER_COUNT = 1024;
+
+	private static final Log logger = LogFactory.getLog(CachingClientHttpRequestFactory.class);
+
+
+	private long maxTotalSize = 10 * 1024 * 1024;
+
+	private int maxEntrySize = 1024 * 1024;
+
+	private File diskCacheDirectory;
+
+	private long maxDiskSize = 100 * 1024 * 1024;
+
+	/** Total size of the files in the disk cache directory, or -1 if not scanned yet */
+	private final AtomicLong diskSize = new AtomicLong(-1);
+
+	private final Object diskPruneMonitor = new Object();
+
+	private long coalescingTimeout = 10000;
+
+	private Executor revalidationExecutor = new SimpleAsyncTaskExecutor("http-cache-revalidation-");
+
+	private final Map<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(64, 0.75f, true);
+
+	private long totalSize;
+
+	private final ConcurrentMap<String, CountDownLatch> inFlight = new ConcurrentHashMap<String, CountDownLatch>();
+
+	private final AtomicLong hitCount = new AtomicLong();
+
+	private final AtomicLong missCount = new AtomicLong();
+
+	private final AtomicLong revalidationCount = new AtomicLong();
+
+
+	/**
+	 * Create a caching wrapper for the given {@link ClientHttpRequestFactory}.
+	 * @param requestFactory the target request factory to wrap
+	 */
+	public CachingClientHttpRequestFactory(ClientHttpRequestFactory requestFactory) {
+		super(requestFactory);
+	}
+
+
+	/**
+	 * Set the maximum total size of the response bodies held in memory.
+	 * <p>By default this is set to 10M.
+	 */
+	public void setMaxTotalSize(long maxTotalSize) {
+		Assert.isTrue(maxTotalSize > 0, "'maxTotalSize' must be greater than 0");
+		this.maxTotalSize = maxTotalSize;
+	}
+
+	/**
+	 * Set the maximum size of a response body to cache. Larger responses
+	 * are streamed through without being cached.
+	 * <p>By default this is set to 1M.
+	 */
+	public void setMaxEntrySize(int maxEntrySize) {
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	/**
+	 * Set a directory to write responses evicted from memory to, so that they
+	 * remain available for revalidation or, while fresh, for serving.
+	 * <p>By default this is not set, and evicted responses are discarded.
+	 */
+	public void setDiskCacheDirectory(File diskCacheDirectory) {
+		Assert.isTrue(diskCacheDirectory == null || diskCacheDirectory.isDirectory(),
+				"'diskCacheDirectory' must be an existing directory");
+		this.diskCacheDirectory = diskCacheDirectory;
+		this.diskSize.set(-1);
+	}
+
+	/**
+	 * Set the maximum total size of the files in the
+	 * {@link #setDiskCacheDirectory disk cache directory}. Least recently
+	 * used files are deleted once it is exceeded, down to 90% of it.
+	 * <p>By default this is set to 100M.
+	 */
+	public void setMaxDiskSize(long maxDiskSize) {
+		Assert.isTrue(maxDiskSize > 0, "'maxDiskSize' must be greater than 0");
+		this.maxDiskSize = maxDiskSize;
+	}
+
+	/**
+	 * Set the maximum time (in milliseconds) a request waits for a concurrent
+	 * identical request to complete before being executed on its own.
+	 * <p>By default this is set to 10000.
+	 */
+	public void setCoalescingTimeout(long coalescingTimeout) {
+		this.coalescingTimeout = coalescingTimeout;
+	}
+
+	/**
+	 * Set the executor to revalidate responses served with
+	 * "stale-while-revalidate" in the background with.
+	 * <p>By default a {@link SimpleAsyncTaskExecutor} is used.
+	 */
+	public void setRevalidationExecutor(Executor revalidationExecutor) {
+		Assert.notNull(revalidationExecutor, "Executor must not be null");
+		this.revalidationExecutor = revalidationExecutor;
+	}
+
+
+	/**
+	 * Return the number of requests served from the cache, including those
+	 * served after a successful revalidation.
+	 */
+	public long getHitCount() {
+		return this.hitCount.get();
+	}
+
+	/**
+	 * Return the number of cacheable requests that had to be fetched.
+	 */
+	public long getMissCount() {
+		return this.missCount.get();
+	}
+
+	/**
+	 * Return the number of requests served from the cache after the server
+	 * confirmed with 304 (Not Modified) that the cached response is current.
+	 */
+	public long getRevalidationCount() {
+		return this.revalidationCount.get();
+	}
+
+	/**
+	 * Return the ratio of hits to cacheable requests, or 0 if there have
+	 * been none.
+	 */
+	public double getHitRatio() {
+		long hits = this.hitCount.get();
+		long total = hits + this.missCount.get();
+		return (total > 0 ? (double) hits / total : 0);
+	}
+
+	/**
+	 * Return the total size of the response bodies held in memory.
+	 */
+	public synchronized long getTotalSize() {
+		return this.totalSize;
+	}
+
+	/**
+	 * Remove the cached response for the given URI, if any.
+	 */
+	public void evict(URI uri) {
+		String key = uri.toString();
+		synchronized (this) {
+			CacheEntry entry = this.entries.remove(key);
+			if (entry != null) {
+				this.totalSize -= entry.getBody().length;
+			}
+		}
+		File file = getDiskFile(key);
+		if (file != null && file.exists()) {
+			deleteDiskFile(file);
+		}
+	}
+
+	/**
+	 * Remove all cached responses held in memory.
+	 */
+	public synchronized void clear() {
+		this.entries.clear();
+		this.totalSize = 0;
+	}
+
+
+	@Override
+	protected ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod, ClientHttpRequestFactory requestFactory)
+			throws IOException {
+
+		if (HttpMethod.GET == httpMethod) {
+			return new CachingClientHttpRequest(this, requestFactory, uri, httpMethod);
+		}
+		if (HttpMethod.HEAD != httpMethod && HttpMethod.OPTIONS != httpMethod && HttpMethod.TRACE != httpMethod) {
+			evict(uri);
+		}
+		return requestFactory.createRequest(uri, httpMethod);
+	}
+
+	/**
+	 * Execute a GET request, through the cache where possible.
+	 */
+	ClientHttpResponse execute(URI uri, HttpMethod method, HttpHeaders headers, byte[] body,
+			ClientHttpRequestFactory requestFactory) throws IOException {
+
+		Map<String, String> requestDirectives = parseCacheControl(headers.getCacheControl());
+		if (requestDirectives.containsKey("no-store") ||
+				headers.containsKey(HttpHeaders.IF_NONE_MATCH) || headers.containsKey(HttpHeaders.IF_MODIFIED_SINCE)) {
+			return executeRequest(uri, method, headers, body, requestFactory);
+		}
+
+		String key = uri.toString();
+		CacheEntry cached = lookup(key, headers);
+		if (cached != null && headers.containsKey(HttpHeaders.AUTHORIZATION) && !cached.isPublic()) {
+			cached = null;
+		}
+		if (cached != null && !requestDirectives.containsKey("no-cache")) {
+			long now = System.currentTimeMillis();
+			if (cached.isFresh(now)) {
+				this.hitCount.incrementAndGet();
+				return cached.toResponse(now);
+			}
+			if (cached.isStaleWhileRevalidate(now)) {
+				this.hitCount.incrementAndGet();
+				revalidateInBackground(key, uri, method, headers, requestFactory, cached);
+				return cached.toResponse(now);
+			}
+		}
+
+		CountDownLatch latch = new CountDownLatch(1);
+		CountDownLatch existingLatch = this.inFlight.putIfAbsent(key, latch);
+		if (existingLatch != null) {
+			awaitQuietly(existingLatch);
+			CacheEntry current = lookup(key, headers);
+			long now = System.currentTimeMillis();
+			if (current != null && current != cached && current.isFresh(now) &&
+					(current.isPublic() || !headers.containsKey(HttpHeaders.AUTHORIZATION))) {
+				this.hitCount.incrementAndGet();
+				return current.toResponse(now);
+			}
+			return fetch(key, uri, method, headers, body, requestFactory, cached);
+		}
+		try {
+			return fetch(key, uri, method, headers, body, requestFactory, cached);
+		}
+		finally {
+			this.inFlight.remove(key, latch);
+			latch.countDown();
+		}
+	}
+
+	private void awaitQuietly(CountDownLatch latch) {
+		try {
+			latch.await(this.coalescingTimeout, TimeUnit.MILLISECONDS);
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void revalidateInBackground(final String key, final URI uri, final HttpMethod method,
+			final HttpHeaders headers, final ClientHttpRequestFactory requestFactory, final CacheEntry cached) {
+
+		final CountDownLatch latch = new CountDownLatch(1);
+		if (this.inFlight.putIfAbsent(key, latch) != null) {
+			return;
+		}
+		final HttpHeaders requestHeaders = new HttpHeaders();
+		requestHeaders.putAll(headers);
+		this.revalidationExecutor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					fetch(key, uri, method, requestHeaders, new byte[0], requestFactory, cached).close();
+				}
+				catch (IOException ex) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Background revalidation of [" + uri + "] failed", ex);
+					}
+				}
+				finally {
+					inFlight.remove(key, latch);
+					latch.countDown();
+				}
+			}
+		});
+	}
+
+	private ClientHttpResponse fetch(String key, URI uri, HttpMethod method, HttpHeaders headers, byte[] body,
+			ClientHttpRequestFactory requestFactory, CacheEntry cached) throws IOException {
+
+		HttpHeaders requestHeaders = new HttpHeaders();
+		requestHeaders.putAll(headers);
+		if (cached != null) {
+			if (cached.getHeaders().getETag() != null) {
+				requestHeaders.setIfNoneMatch(cached.getHeaders().getETag());
+			}
+			else if (cached.getHeaders().getLastModified() != -1) {
+				requestHeaders.setIfModifiedSince(cached.getHeaders().getLastModified());
+			}
+		}
+
+		long requestTime = System.currentTimeMillis();
+		ClientHttpResponse response = executeRequest(uri, method, requestHeaders, body, requestFactory);
+		long responseTime = System.currentTimeMillis();
+
+		if (cached != null && response.getRawStatusCode() == HttpStatus.NOT_MODIFIED.value()) {
+			CacheEntry revalidated = cached.revalidate(response.getHeaders(), requestTime, responseTime);
+			response.close();
+			store(key, revalidated);
+			this.hitCount.incrementAndGet();
+			this.revalidationCount.incrementAndGet();
+			return revalidated.toResponse(responseTime);
+		}
+
+		this.missCount.incrementAndGet();
+		CacheEntry entry = createEntry(response, headers, requestTime, responseTime);
+		if (entry == null) {
+			if (cached != null) {
+				evict(uri);
+			}
+			return response;
+		}
+
+		byte[] content = readBody(response);
+		if (content.length > this.maxEntrySize) {
+			return new PrefixedClientHttpResponse(response, content);
+		}
+		response.close();
+		entry = entry.withBody(content);
+		store(key, entry);
+		return entry.toResponse(responseTime);
+	}
+
+	private ClientHttpResponse executeRequest(URI uri, HttpMethod method, HttpHeaders headers, byte[] body,
+			ClientHttpRequestFactory requestFactory) throws IOException {
+
+		ClientHttpRequest request = requestFactory.createRequest(uri, method);
+		request.getHeaders().putAll(headers);
+		if (body.length > 0) {
+			StreamUtils.copy(body, request.getBody());
+		}
+		return request.execute();
+	}
+
+	/**
+	 * Read up to {@code maxEntrySize + 1} bytes of the response body, enough
+	 * to tell whether it can be cached.
+	 */
+	private byte[] readBody(ClientHttpResponse response) throws IOException {
+		long contentLength = response.getHeaders().getContentLength();
+		InputStream in = response.getBody();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(
+				contentLength >= 0 ? (int) contentLength : StreamUtils.BUFFER_SIZE);
+		byte[] buffer = new byte[StreamUtils.BUFFER_SIZE];
+		int limit = this.maxEntrySize + 1;
+		int count;
+		while (out.size() < limit &&
+				(count = in.read(buffer, 0, Math.min(buffer.length, limit - out.size()))) != -1) {
+			out.write(buffer, 0, count);
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Create a cache entry, without a body yet, or return {@code null} if the
+	 * response may not be cached.
+	 */
+	private CacheEntry createEntry(ClientHttpResponse response, HttpHeaders requestHeaders,
+			long requestTime, long responseTime) throws IOException {
+
+		if (response.getRawStatusCode() != HttpStatus.OK.value()) {
+			return null;
+		}
+		HttpHeaders headers = response.getHeaders();
+		if (headers.getContentLength() > this.maxEntrySize) {
+			return null;
+		}
+		Map<String, String> directives = parseCacheControl(headers.getCacheControl());
+		if (directives.containsKey("no-store")) {
+			return null;
+		}
+		if (requestHeaders.containsKey(HttpHeaders.AUTHORIZATION) && !directives.containsKey("public")) {
+			return null;
+		}
+		List<String> vary = headers.getVary();
+		if (vary.contains("*")) {
+			return null;
+		}
+		long maxAge = getFreshnessLifetime(headers, directives);
+		boolean hasValidator = (headers.getETag() != null || headers.getLastModified() != -1);
+		if (maxAge <= 0 && !hasValidator) {
+			return null;
+		}
+		long staleWhileRevalidate = getDirectiveMillis(directives, "stale-while-revalidate");
+		Map<String, List<String>> varyValues = new LinkedHashMap<String, List<String>>();
+		for (String headerName : vary) {
+			varyValues.put(headerName.toLowerCase(), requestHeaders.get(headerName));
+		}
+		return new CacheEntry(response.getRawStatusCode(), response.getStatusText(), headers,
+				null, requestTime, responseTime, Math.max(maxAge, 0), Math.max(staleWhileRevalidate, 0), varyValues);
+	}
+
+	private static long getFreshnessLifetime(HttpHeaders headers, Map<String, String> directives) {
+		if (directives.containsKey("no-cache")) {
+			return 0;
+		}
+		long maxAge = getDirectiveMillis(directives, "max-age");
+		if (maxAge >= 0) {
+			return maxAge;
+		}
+		try {
+			long expires = headers.getExpires();
+			if (expires != -1) {
+				long date = headers.getDate();
+				return (expires - (date != -1 ? date : System.currentTimeMillis()));
+			}
+		}
+		catch (IllegalArgumentException ex) {
+			// An invalid date means the response is already expired
+		}
+		return 0;
+	}
+
+	private static long getDirectiveMillis(Map<String, String> directives, String name) {
+		String value = directives.get(name);
+		if (value != null) {
+			try {
+				return Long.parseLong(value) * 1000;
+			}
+			catch (NumberFormatException ex) {
+				// ignore
+			}
+		}
+		return -1;
+	}
+
+	private static Map<String, String> parseCacheControl(String cacheControl) {
+		Map<String, String> directives = new LinkedHashMap<String, String>();
+		if (cacheControl != null) {
+			for (String directive : StringUtils.tokenizeToStringArray(cacheControl, ",")) {
+				int index = directive.indexOf('=');
+				if (index != -1) {
+					String value = StringUtils.trimTrailingCharacter(
+							StringUtils.trimLeadingCharacter(directive.substring(index + 1).trim(), '"'), '"');
+					directives.put(directive.substring(0, index).trim().toLowerCase(), value);
+				}
+				else {
+					directives.put(directive.toLowerCase(), null);
+				}
+			}
+		}
+		return directives;
+	}
+
+
+	private CacheEntry lookup(String key, HttpHeaders requestHeaders) {
+		CacheEntry entry;
+		synchronized (this) {
+			entry = this.entries.get(key);
+		}
+		if (entry == null && this.diskCacheDirectory != null) {
+			entry = readFromDisk(key);
+			if (entry != null) {
+				store(key, entry);
+			}
+		}
+		return (entry != null && entry.matches(requestHeaders) ? entry : null);
+	}
+
+	private void store(String key, CacheEntry entry) {
+		if (entry.getBody().length > this.maxTotalSize) {
+			return;
+		}
+		Map<String, CacheEntry> evicted = new LinkedHashMap<String, CacheEntry>();
+		synchronized (this) {
+			CacheEntry previous = this.entries.put(key, entry);
+			if (previous != null) {
+				this.totalSize -= previous.getBody().length;
+			}
+			this.totalSize += entry.getBody().length;
+			Iterator<Map.Entry<String, CacheEntry>> iterator = this.entries.entrySet().iterator();
+			while (this.totalSize > this.maxTotalSize && iterator.hasNext()) {
+				Map.Entry<String, CacheEntry> eldest = iterator.next();
+				if (eldest.getValue() != entry) {
+					iterator.remove();
+					this.totalSize -= eldest.getValue().getBody().length;
+					evicted.put(eldest.getKey(), eldest.getValue());
+				}
+			}
+		}
+		if (this.diskCacheDirectory != null) {
+			for (Map.Entry<String, CacheEntry> eldest : evicted.entrySet()) {
+				writeToDisk(eldest.getKey(), eldest.getValue());
+			}
+		}
+	}
+
+	private File getDiskFile(String key) {
+		if (this.diskCacheDirectory == null) {
+			return null;
+		}
+		return new File(this.diskCacheDirectory, DigestUtils.md5DigestAsHex(key.getBytes()) + ".cache");
+	}
+
+	private void writeToDisk(String key, CacheEntry entry) {
+		File file = getDiskFile(key);
+		long previousLength = file.length();
+		try {
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+			try {
+				out.writeInt(DISK_FORMAT_VERSION);
+				out.writeUTF(key);
+				entry.writeTo(out);
+			}
+			finally {
+				out.close();
+			}
+		}
+		catch (IOException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Could not write cached response to [" + file.getAbsolutePath() + "]", ex);
+			}
+			if (file.exists() && file.delete()) {
+				addDiskSize(-previousLength);
+			}
+			else if (file.exists()) {
+				logger.debug("Could not delete cached response file [" + file.getAbsolutePath() + "]");
+			}
+			return;
+		}
+		if (addDiskSize(file.length() - previousLength) > this.maxDiskSize) {
+			pruneDiskCache();
+		}
+	}
+
+	private void deleteDiskFile(File file) {
+		long length = file.length();
+		if (file.delete()) {
+			addDiskSize(-length);
+		}
+		else {
+			logger.debug("Could not delete cached response file [" + file.getAbsolutePath() + "]");
+		}
+	}
+
+	/**
+	 * Adjust the tracked size of the disk cache, scanning the directory once
+	 * to initialize it, and return the new size.
+	 */
+	private long addDiskSize(long delta) {
+		if (this.diskSize.get() < 0) {
+			synchronized (this.diskPruneMonitor) {
+				if (this.diskSize.get() < 0) {
+					long size = 0;
+					for (File file : listDiskFiles()) {
+						size += file.length();
+					}
+					// The scan already includes the change
+					this.diskSize.set(size);
+					return size;
+				}
+			}
+		}
+		return this.diskSize.addAndGet(delta);
+	}
+
+	private File[] listDiskFiles() {
+		File[] files = this.diskCacheDirectory.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return (file.isFile() && file.getName().endsWith(".cache"));
+			}
+		});
+		return (files != null ? files : new File[0]);
+	}
+
+	private CacheEntry readFromDisk(String key) {
+		File file = getDiskFile(key);
+		if (!file.exists()) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != DISK_FORMAT_VERSION || !key.equals(in.readUTF())) {
+					return null;
+				}
+				CacheEntry entry = CacheEntry.readFrom(in, this.maxEntrySize);
+				file.setLastModified(System.currentTimeMillis());
+				return entry;
+			}
+			finally {
+				in.close();
+			}
+		}
+		catch (IOException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Could not read cached response from [" + file.getAbsolutePath() + "]", ex);
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Delete the least recently used files in the disk cache directory until
+	 * their total size is down to 90% of the configured maximum, so that the
+	 * directory is only listed once in a while rather than on every write.
+	 */
+	private void pruneDiskCache() {
+		synchronized (this.diskPruneMonitor) {
+			if (this.diskSize.get() <= this.maxDiskSize) {
+				// Already pruned by another thread
+				return;
+			}
+			File[] files = listDiskFiles();
+			long size = 0;
+			for (File file : files) {
+				size += file.length();
+			}
+			long targetSize = this.maxDiskSize / 10 * 9;
+			if (size > targetSize) {
+				List<File> sorted = new ArrayList<File>(Arrays.asList(files));
+				Collections.sort(sorted, new Comparator<File>() {
+					@Override
+					public int compare(File file1, File file2) {
+						long lastModified1 = file1.lastModified();
+						long lastModified2 = file2.lastModified();
+						return (lastModified1 < lastModified2 ? -1 : (lastModified1 == lastModified2 ? 0 : 1));
+					}
+				});
+				for (File file : sorted) {
+					if (size <= targetSize) {
+						break;
+					}
+					long length = file.length();
+					if (file.delete()) {
+						size -= length;
+					}
+				}
+			}
+			// Re-synchronize with the actual size, e.g. after files were removed externally
+			this.diskSize.set(size);
+		}
+	}
+
+
+	/**
+	 * A cached response, along with the request header values it was selected
+	 * by according to its "Vary" header.
+	 */
+	private static final class CacheEntry {
+
+		private final int statusCode;
+
+		private final String statusText;
+
+		private final HttpHeaders headers;
+
+		private final byte[] body;
+
+		private final long requestTime;
+
+		private final long responseTime;
+
+		private final long maxAge;
+
+		private final long staleWhileRevalidate;
+
+		private final Map<String, List<String>> varyValues;
+
+		public CacheEntry(int statusCode, String statusText, HttpHeaders headers, byte[] body,
+				long requestTime, long responseTime, long maxAge, long staleWhileRevalidate,
+				Map<String, List<String>> varyValues) {
+
+			this.statusCode = statusCode;
+			this.statusText = statusText;
+			this.headers = new HttpHeaders();
+			this.headers.putAll(headers);
+			this.body = body;
+			this.requestTime = requestTime;
+			this.responseTime = responseTime;
+			this.maxAge = maxAge;
+			this.staleWhileRevalidate = staleWhileRevalidate;
+			this.varyValues = varyValues;
+		}
+
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		public byte[] getBody() {
+			return this.body;
+		}
+
+		/**
+		 * Whether the response is marked with "Cache-Control: public", and may
+		 * hence be served for requests with an "Authorization" header.
+		 */
+		public boolean isPublic() {
+			return parseCacheControl(this.headers.getCacheControl()).containsKey("public");
+		}
+
+		public boolean matches(HttpHeaders requestHeaders) {
+			for (Map.Entry<String, List<String>> entry : this.varyValues.entrySet()) {
+				List<String> values = requestHeaders.get(entry.getKey());
+				if (values == null ? entry.getValue() != null : !values.equals(entry.getValue())) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private long getAge(long now) {
+			// Conservatively count the age from when the request was sent
+			return Math.max(now - this.requestTime, 0);
+		}
+
+		public boolean isFresh(long now) {
+			return (getAge(now) < this.maxAge);
+		}
+
+		public boolean isStaleWhileRevalidate(long now) {
+			return (getAge(now) < this.maxAge + this.staleWhileRevalidate);
+		}
+
+		public CacheEntry withBody(byte[] body) {
+			return new CacheEntry(this.statusCode, this.statusText, this.headers, body, this.requestTime,
+					this.responseTime, this.maxAge, this.staleWhileRevalidate, this.varyValues);
+		}
+
+		/**
+		 * Return an entry updated with the headers of a 304 response.
+		 */
+		public CacheEntry revalidate(HttpHeaders notModifiedHeaders, long requestTime, long responseTime) {
+			HttpHeaders headers = new HttpHeaders();
+			headers.putAll(this.headers);
+			for (Map.Entry<String, List<String>> entry : notModifiedHeaders.entrySet()) {
+				if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(entry.getKey())) {
+					headers.put(entry.getKey(), entry.getValue());
+				}
+			}
+			Map<String, String> directives = parseCacheControl(headers.getCacheControl());
+			long maxAge = Math.max(getFreshnessLifetime(headers, directives), 0);
+			long staleWhileRevalidate = Math.max(getDirectiveMillis(directives, "stale-while-revalidate"), 0);
+			return new CacheEntry(this.statusCode, this.statusText, headers, this.body,
+					requestTime, responseTime, maxAge, staleWhileRevalidate, this.varyValues);
+		}
+
+		public ClientHttpResponse toResponse(long now) {
+			return new CachedClientHttpResponse(this.statusCode, this.statusText, this.headers, this.body, getAge(now));
+		}
+
+		/**
+		 * Write this entry in the explicit disk cache format: status, timing,
+		 * headers, "Vary" values and body.
+		 */
+		public void writeTo(DataOutputStream out) throws IOException {
+			out.writeInt(this.statusCode);
+			out.writeUTF(this.statusText != null ? this.statusText : "");
+			out.writeLong(this.requestTime);
+			out.writeLong(this.responseTime);
+			out.writeLong(this.maxAge);
+			out.writeLong(this.staleWhileRevalidate);
+			writeHeaderValues(out, this.headers);
+			writeHeaderValues(out, this.varyValues);
+			out.writeInt(this.body.length);
+			out.write(this.body);
+		}
+
+		private static void writeHeaderValues(DataOutputStream out, Map<String, List<String>> map)
+				throws IOException {
+
+			out.writeInt(map.size());
+			for (Map.Entry<String, List<String>> entry : map.entrySet()) {
+				out.writeUTF(entry.getKey());
+				List<String> values = entry.getValue();
+				out.writeInt(values != null ? values.size() : -1);
+				if (values != null) {
+					for (String value : values) {
+						out.writeUTF(value);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Read an entry written with {@link #writeTo}.
+		 */
+		public static CacheEntry readFrom(DataInputStream in, int maxBodySize) throws IOException {
+			int statusCode = in.readInt();
+			String statusText = in.readUTF();
+			long requestTime = in.readLong();
+			long responseTime = in.readLong();
+			long maxAge = in.readLong();
+			long staleWhileRevalidate = in.readLong();
+			HttpHeaders headers = new HttpHeaders();
+			readHeaderValues(in, headers);
+			Map<String, List<String>> varyValues = new LinkedHashMap<String, List<String>>();
+			readHeaderValues(in, varyValues);
+			int length = in.readInt();
+			if (length < 0 || length > maxBodySize) {
+				throw new IOException("Invalid cached body length: " + length);
+			}
+			byte[] body = new byte[length];
+			in.readFully(body);
+			return new CacheEntry(statusCode, statusText, headers, body,
+					requestTime, responseTime, maxAge, staleWhileRevalidate, varyValues);
+		}
+
+		private static void readHeaderValues(DataInputStream in, Map<String, List<String>> map)
+				throws IOException {
+
+			int size = in.readInt();
+			if (size < 0 || size > MAX_DISK_HEADER_COUNT) {
+				throw new IOException("Invalid cached header count: " + size);
+			}
+			for (int i = 0; i < size; i++) {
+				String name = in.readUTF();
+				int count = in.readInt();
+				if (count > MAX_DISK_HEADER_COUNT) {
+					throw new IOException("Invalid cached header value count: " + count);
+				}
+				List<String> values = null;
+				if (count >= 0) {
+					values = new ArrayList<String>(count);
+					for (int j = 0; j < count; j++) {
+						values.add(in.readUTF());
+					}
+				}
+				map.put(name, values);
+			}
+		}
+	}
+
+
+	/**
+	 * Response wrapper for a response too large to cache, of which the first
+	 * part of the body has already been read.
+	 */
+	private static final class PrefixedClientHttpResponse extends AbstractClientHttpResponse {
+
+		private final ClientHttpResponse response;
+
+		private final byte[] prefix;
+
+		private InputStream body;
+
+		public PrefixedClientHttpResponse(ClientHttpResponse response, byte[] prefix) {
+			this.response = response;
+			this.prefix = prefix;
+		}
+
+		@Override
+		public int getRawStatusCode() throws IOException {
+			return this.response.getRawStatusCode();
+		}
+
+		@Override
+		public String getStatusText() throws IOException {
+			return this.response.getStatusText();
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.response.getHeaders();
+		}
+
+		@Override
+		public InputStream getBody() throws IOException {
+			if (this.body == null) {
+				this.body = new SequenceInputStream(new ByteArrayInputStream(this.prefix), this.response.getBody());
+			}
+			return this.body;
+		}
+
+		@Override
+		public void close() {
+			this.response.close();
+		}
+	}
+
+}
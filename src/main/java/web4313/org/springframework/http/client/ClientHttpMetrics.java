@@ -0,0 +1,346 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * {@link ClientHttpRequestObserver} that aggregates request metrics per host,
+ * HTTP method and URI template: the number of requests and failures, the
+ * distribution of response status codes, the bytes sent and received, and
+ * {@link LatencyHistogram latency histograms} of the response time and of the
+ * total time, in microseconds.
+ *
+ * <p>Recording is lock-free. Metrics are exported by pulling a
+ * {@link #getSnapshot() snapshot}, e.g. from a scheduled task or a JMX bean.
+ *
+ * <pre class="code">
+ * ClientHttpMetrics metrics = new ClientHttpMetrics();
+ * RestTemplate restTemplate = new RestTemplate(
+ *         new ObservingClientHttpRequestFactory(new SimpleClientHttpRequestFactory(), metrics));
+ * </pre>
+ *
+ * <p>Requests that were not executed for a URI template are tagged with their
+ * URI path. To bound memory use, requests beyond the {@link #setMaxTagCount
+ * maximum number of tag combinations} are tagged with the URI template
+ * {@code "OTHER"}.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+public class ClientHttpMetrics implements ClientHttpRequestObserver {
+
+	/**
+	 * The URI template under which requests beyond the maximum number of tag
+	 * combinations are recorded.
+	 */
+	public static final String OTHER_URI_TEMPLATE = "OTHER";
+
+
+	private int maxTagCount = 1000;
+
+	private final ConcurrentMap<Tags, Metrics> metrics = new ConcurrentHashMap<Tags, Metrics>();
+
+
+	/**
+	 * Set the maximum number of distinct host, method and URI template
+	 * combinations to record metrics for.
+	 * <p>By default this is set to 1000.
+	 */
+	public void setMaxTagCount(int maxTagCount) {
+		Assert.isTrue(maxTagCount > 0, "'maxTagCount' must be greater than 0");
+		this.maxTagCount = maxTagCount;
+	}
+
+
+	@Override
+	public void onRequestCompleted(ClientHttpRequestObservation observation) {
+		String host = getHost(observation.getUri());
+		String method = observation.getMethod().name();
+		String uriTemplate = observation.getUriTemplate();
+		if (uriTemplate == null) {
+			uriTemplate = observation.getUri().getRawPath();
+		}
+		Metrics metrics = getMetrics(new Tags(host, method, uriTemplate));
+		if (metrics == null) {
+			metrics = getMetrics(new Tags(host, method, OTHER_URI_TEMPLATE));
+			if (metrics == null) {
+				return;
+			}
+		}
+		metrics.record(observation);
+	}
+
+	private Metrics getMetrics(Tags tags) {
+		Metrics metrics = this.metrics.get(tags);
+		if (metrics == null) {
+			if (this.metrics.size() >= this.maxTagCount && !OTHER_URI_TEMPLATE.equals(tags.uriTemplate)) {
+				return null;
+			}
+			metrics = new Metrics();
+			Metrics existing = this.metrics.putIfAbsent(tags, metrics);
+			if (existing != null) {
+				metrics = existing;
+			}
+		}
+		return metrics;
+	}
+
+	private static String getHost(URI uri) {
+		return (uri.getPort() != -1 ? uri.getHost() + ":" + uri.getPort() : uri.getHost());
+	}
+
+	/**
+	 * Return a snapshot of the metrics recorded so far, one per combination
+	 * of host, HTTP method and URI template.
+	 */
+	public List<Snapshot> getSnapshot() {
+		List<Snapshot> result = new ArrayList<Snapshot>(this.metrics.size());
+		for (Map.Entry<Tags, Metrics> entry : this.metrics.entrySet()) {
+			result.add(entry.getValue().getSnapshot(entry.getKey()));
+		}
+		return result;
+	}
+
+	/**
+	 * Discard all metrics recorded so far.
+	 */
+	public void reset() {
+		this.metrics.clear();
+	}
+
+
+	private static final class Tags {
+
+		private final String host;
+
+		private final String method;
+
+		private final String uriTemplate;
+
+		public Tags(String host, String method, String uriTemplate) {
+			this.host = host;
+			this.method = method;
+			this.uriTemplate = uriTemplate;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (this == other) {
+				return true;
+			}
+			if (!(other instanceof Tags)) {
+				return false;
+			}
+			Tags otherTags = (Tags) other;
+			return (ObjectUtils.nullSafeEquals(this.host, otherTags.host) &&
+					this.method.equals(otherTags.method) &&
+					ObjectUtils.nullSafeEquals(this.uriTemplate, otherTags.uriTemplate));
+		}
+
+		@Override
+		public int hashCode() {
+			return (ObjectUtils.nullSafeHashCode(this.host) * 31 + this.method.hashCode()) * 31 +
+					ObjectUtils.nullSafeHashCode(this.uriTemplate);
+		}
+	}
+
+
+	private static final class Metrics {
+
+		private final AtomicLong requestCount = new AtomicLong();
+
+		private final AtomicLong errorCount = new AtomicLong();
+
+		private final ConcurrentMap<Integer, AtomicLong> statusCounts = new ConcurrentHashMap<Integer, AtomicLong>();
+
+		private final AtomicLong bytesSent = new AtomicLong();
+
+		private final AtomicLong bytesReceived = new AtomicLong();
+
+		private final LatencyHistogram responseTime = new LatencyHistogram();
+
+		private final LatencyHistogram totalTime = new LatencyHistogram();
+
+		public void record(ClientHttpRequestObservation observation) {
+			this.requestCount.incrementAndGet();
+			if (observation.getException() != null) {
+				this.errorCount.incrementAndGet();
+			}
+			else {
+				Integer statusCode = observation.getStatusCode();
+				AtomicLong statusCount = this.statusCounts.get(statusCode);
+				if (statusCount == null) {
+					statusCount = new AtomicLong();
+					AtomicLong existing = this.statusCounts.putIfAbsent(statusCode, statusCount);
+					if (existing != null) {
+						statusCount = existing;
+					}
+				}
+				statusCount.incrementAndGet();
+			}
+			this.bytesSent.addAndGet(observation.getBytesSent());
+			this.bytesReceived.addAndGet(observation.getBytesReceived());
+			this.responseTime.record(observation.getResponseTime() / 1000);
+			this.totalTime.record(observation.getTotalTime() / 1000);
+		}
+
+		public Snapshot getSnapshot(Tags tags) {
+			Map<Integer, Long> statusCounts = new TreeMap<Integer, Long>();
+			for (Map.Entry<Integer, AtomicLong> entry : this.statusCounts.entrySet()) {
+				statusCounts.put(entry.getKey(), entry.getValue().get());
+			}
+			return new Snapshot(tags.host, tags.method, tags.uriTemplate, this.requestCount.get(),
+					this.errorCount.get(), Collections.unmodifiableMap(statusCounts), this.bytesSent.get(),
+					this.bytesReceived.get(), this.responseTime.getSnapshot(), this.totalTime.getSnapshot());
+		}
+	}
+
+
+	/**
+	 * The metrics recorded for one combination of host, HTTP method and URI template.
+	 */
+	public static final class Snapshot {
+
+		private final String host;
+
+		private final String method;
+
+		private final String uriTemplate;
+
+		private final long requestCount;
+
+		private final long errorCount;
+
+		private final Map<Integer, Long> statusCounts;
+
+		private final long bytesSent;
+
+		private final long bytesReceived;
+
+		private final LatencyHistogram.Snapshot responseTime;
+
+		private final LatencyHistogram.Snapshot totalTime;
+
+		Snapshot(String host, String method, String uriTemplate, long requestCount, long errorCount,
+				Map<Integer, Long> statusCounts, long bytesSent, long bytesReceived,
+				LatencyHistogram.Snapshot responseTime, LatencyHistogram.Snapshot totalTime) {
+
+			this.host = host;
+			this.method = method;
+			this.uriTemplate = uriTemplate;
+			this.requestCount = requestCount;
+			this.errorCount = errorCount;
+			this.statusCounts = statusCounts;
+			this.bytesSent = bytesSent;
+			this.bytesReceived = bytesReceived;
+			this.responseTime = responseTime;
+			this.totalTime = totalTime;
+		}
+
+		/**
+		 * Return the host, including the port if specified in the URI.
+		 */
+		public String getHost() {
+			return this.host;
+		}
+
+		/**
+		 * Return the name of the HTTP method.
+		 */
+		public String getMethod() {
+			return this.method;
+		}
+
+		/**
+		 * Return the URI template, the URI path if the requests were not
+		 * executed for a template, or {@link #OTHER_URI_TEMPLATE}.
+		 */
+		public String getUriTemplate() {
+			return this.uriTemplate;
+		}
+
+		/**
+		 * Return the number of requests.
+		 */
+		public long getRequestCount() {
+			return this.requestCount;
+		}
+
+		/**
+		 * Return the number of requests that failed without a response.
+		 */
+		public long getErrorCount() {
+			return this.errorCount;
+		}
+
+		/**
+		 * Return the number of responses per raw status code, in ascending order.
+		 */
+		public Map<Integer, Long> getStatusCounts() {
+			return this.statusCounts;
+		}
+
+		/**
+		 * Return the number of request body bytes sent.
+		 */
+		public long getBytesSent() {
+			return this.bytesSent;
+		}
+
+		/**
+		 * Return the number of response body bytes received.
+		 */
+		public long getBytesReceived() {
+			return this.bytesReceived;
+		}
+
+		/**
+		 * Return the histogram of the time, in microseconds, until the response
+		 * status and headers were received.
+		 */
+		public LatencyHistogram.Snapshot getResponseTime() {
+			return this.responseTime;
+		}
+
+		/**
+		 * Return the histogram of the time, in microseconds, until the response
+		 * was closed.
+		 */
+		public LatencyHistogram.Snapshot getTotalTime() {
+			return this.totalTime;
+		}
+
+		@Override
+		public String toString() {
+			return this.method + " " + this.host + this.uriTemplate + ": requests=" + this.requestCount +
+					", errors=" + this.errorCount + ", status=" + this.statusCounts +
+					", responseTime=[" + this.responseTime + "]";
+		}
+	}
+
+}
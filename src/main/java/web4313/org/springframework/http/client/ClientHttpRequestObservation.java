@@ -0,0 +1,143 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client;
+
+import java.net.URI;
+
+import org.springframework.http.HttpMethod;
+
+/**
+ * The details of a single client-side HTTP request execution, as passed to a
+ * {@link ClientHttpRequestObserver}.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+public final class ClientHttpRequestObservation {
+
+	private final HttpMethod method;
+
+	private final URI uri;
+
+	private final String uriTemplate;
+
+	private final int statusCode;
+
+	private final Throwable exception;
+
+	private final long responseTime;
+
+	private final long totalTime;
+
+	private final long bytesSent;
+
+	private final long bytesReceived;
+
+
+	ClientHttpRequestObservation(HttpMethod method, URI uri, String uriTemplate, int statusCode,
+			Throwable exception, long responseTime, long totalTime, long bytesSent, long bytesReceived) {
+
+		this.method = method;
+		this.uri = uri;
+		this.uriTemplate = uriTemplate;
+		this.statusCode = statusCode;
+		this.exception = exception;
+		this.responseTime = responseTime;
+		this.totalTime = totalTime;
+		this.bytesSent = bytesSent;
+		this.bytesReceived = bytesReceived;
+	}
+
+
+	/**
+	 * Return the HTTP method of the request.
+	 */
+	public HttpMethod getMethod() {
+		return this.method;
+	}
+
+	/**
+	 * Return the URI of the request.
+	 */
+	public URI getUri() {
+		return this.uri;
+	}
+
+	/**
+	 * Return the URI template that the request URI was expanded from,
+	 * or {@code null} if not known.
+	 * @see UriTemplateHolder
+	 */
+	public String getUriTemplate() {
+		return this.uriTemplate;
+	}
+
+	/**
+	 * Return the raw status code of the response, or -1 if the request
+	 * failed without a response.
+	 */
+	public int getStatusCode() {
+		return this.statusCode;
+	}
+
+	/**
+	 * Return the exception that the request failed with, or {@code null}.
+	 */
+	public Throwable getException() {
+		return this.exception;
+	}
+
+	/**
+	 * Return the time (in nanoseconds) from executing the request until the
+	 * response status and headers were received, or until the request failed.
+	 * <p>For factories that pool connections, this includes the time waiting
+	 * for a connection.
+	 */
+	public long getResponseTime() {
+		return this.responseTime;
+	}
+
+	/**
+	 * Return the time (in nanoseconds) from executing the request until the
+	 * response was closed, i.e. including reading the response body.
+	 */
+	public long getTotalTime() {
+		return this.totalTime;
+	}
+
+	/**
+	 * Return the number of request body bytes written.
+	 */
+	public long getBytesSent() {
+		return this.bytesSent;
+	}
+
+	/**
+	 * Return the number of response body bytes read.
+	 */
+	public long getBytesReceived() {
+		return this.bytesReceived;
+	}
+
+
+	@Override
+	public String toString() {
+		return this.method + " " + this.uri + " -> " +
+				(this.exception != null ? this.exception.toString() : Integer.toString(this.statusCode)) +
+				" in " + (this.totalTime / 1000000) + " ms";
+	}
+
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client;
+
+/**
+ * Callback interface for observing the execution of client-side HTTP requests,
+ * e.g. in order to record latency histograms and status code distributions.
+ *
+ * <p>Registered with an {@link ObservingClientHttpRequestFactory}, which works
+ * with any {@link ClientHttpRequestFactory} and {@link AsyncClientHttpRequestFactory}.
+ * Implementations are called on the thread that completes the request, i.e.
+ * possibly an I/O thread, and should therefore return quickly and must not block.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see ClientHttpMetrics
+ */
+public interface ClientHttpRequestObserver {
+
+	/**
+	 * Called once per request: when the response has been closed, or when the
+	 * request has failed without a response.
+	 * @param observation the details of the request execution
+	 */
+	void onRequestCompleted(ClientHttpRequestObservation observation);
+
+}
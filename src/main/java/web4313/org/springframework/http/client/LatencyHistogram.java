@@ -0,0 +1,191 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.springframework.util.Assert;
+
+/**
+ * A lock-free histogram of non-negative values, e.g. latencies in microseconds,
+ * with log-linear buckets in the style of HdrHistogram: values below 32 are
+ * counted exactly, and every power of two above that is split into 16 buckets,
+ * for a relative error of at most 1/16 across the full {@code long} range.
+ *
+ * <p>Recording a value takes a few atomic increments and never allocates,
+ * so a histogram may be updated from any number of threads. A {@link #getSnapshot()
+ * snapshot} copies the counts; it is consistent per bucket, but may miss values
+ * recorded concurrently.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see ClientHttpMetrics
+ */
+public class LatencyHistogram {
+
+	private static final int EXACT_BUCKET_COUNT = 32;
+
+	private static final int SUB_BUCKET_BITS = 4;
+
+	private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+	private static final int BUCKET_COUNT = EXACT_BUCKET_COUNT + (63 - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	private final AtomicLong count = new AtomicLong();
+
+	private final AtomicLong sum = new AtomicLong();
+
+	private final AtomicLong max = new AtomicLong();
+
+
+	/**
+	 * Record the given value.
+	 * @param value the value, which must not be negative
+	 */
+	public void record(long value) {
+		Assert.isTrue(value >= 0, "Value must not be negative");
+		this.counts.incrementAndGet(getBucketIndex(value));
+		this.count.incrementAndGet();
+		this.sum.addAndGet(value);
+		long currentMax = this.max.get();
+		while (value > currentMax && !this.max.compareAndSet(currentMax, value)) {
+			currentMax = this.max.get();
+		}
+	}
+
+	/**
+	 * Return the number of recorded values.
+	 */
+	public long getCount() {
+		return this.count.get();
+	}
+
+	/**
+	 * Return a snapshot of the recorded values.
+	 */
+	public Snapshot getSnapshot() {
+		long[] bucketCounts = new long[BUCKET_COUNT];
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			bucketCounts[i] = this.counts.get(i);
+			total += bucketCounts[i];
+		}
+		return new Snapshot(bucketCounts, total, this.sum.get(), this.max.get());
+	}
+
+
+	static int getBucketIndex(long value) {
+		if (value < EXACT_BUCKET_COUNT) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+		return EXACT_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_COUNT + subBucket;
+	}
+
+	static long getBucketUpperBound(int index) {
+		if (index < EXACT_BUCKET_COUNT) {
+			return index;
+		}
+		int shift = (index - EXACT_BUCKET_COUNT) / SUB_BUCKET_COUNT + 1;
+		long subBucket = SUB_BUCKET_COUNT + (index - EXACT_BUCKET_COUNT) % SUB_BUCKET_COUNT;
+		return ((subBucket + 1) << shift) - 1;
+	}
+
+
+	/**
+	 * An immutable copy of the values recorded in a {@link LatencyHistogram}.
+	 */
+	public static final class Snapshot {
+
+		private final long[] bucketCounts;
+
+		private final long count;
+
+		private final long sum;
+
+		private final long max;
+
+		Snapshot(long[] bucketCounts, long count, long sum, long max) {
+			this.bucketCounts = bucketCounts;
+			this.count = count;
+			this.sum = sum;
+			this.max = max;
+		}
+
+		/**
+		 * Return the number of recorded values.
+		 */
+		public long getCount() {
+			return this.count;
+		}
+
+		/**
+		 * Return the sum of the recorded values.
+		 */
+		public long getSum() {
+			return this.sum;
+		}
+
+		/**
+		 * Return the largest recorded value, or 0 if none.
+		 */
+		public long getMax() {
+			return this.max;
+		}
+
+		/**
+		 * Return the mean of the recorded values, or 0 if none.
+		 */
+		public double getMean() {
+			return (this.count > 0 ? (double) this.sum / this.count : 0);
+		}
+
+		/**
+		 * Return the value at the given percentile, i.e. the upper bound of the
+		 * bucket that contains it, capped by the {@link #getMax() maximum}.
+		 * @param percentile the percentile, between 0 and 100, e.g. 99.9
+		 * @return the value, or 0 if no values have been recorded
+		 */
+		public long getValueAtPercentile(double percentile) {
+			Assert.isTrue(percentile >= 0 && percentile <= 100, "Percentile must be between 0 and 100");
+			if (this.count == 0) {
+				return 0;
+			}
+			long rank = Math.max(1, (long) Math.ceil(percentile / 100 * this.count));
+			long seen = 0;
+			for (int i = 0; i < this.bucketCounts.length; i++) {
+				seen += this.bucketCounts[i];
+				if (seen >= rank) {
+					return Math.min(getBucketUpperBound(i), this.max);
+				}
+			}
+			return this.max;
+		}
+
+		@Override
+		public String toString() {
+			return "count=" + this.count + ", mean=" + Math.round(getMean()) +
+					", p50=" + getValueAtPercentile(50) + ", p99=" + getValueAtPercentile(99) +
+					", max=" + this.max;
+		}
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+
+/**
+ * {@link ClientHttpRequest} created by a {@link LoadBalancingClientHttpRequestFactory}
+ * that reports the outcome and latency of the request to the chosen endpoint.
+ *
+ * <p>The request only counts as in progress for the endpoint while it is
+ * being {@link #execute() executed}, so that a request that is created but
+ * never executed, e.g. because a request callback fails, does not leak.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+final class LoadBalancedClientHttpRequest implements ClientHttpRequest {
+
+	private final ClientHttpRequest request;
+
+	private final LoadBalancingClientHttpRequestFactory.Endpoint endpoint;
+
+	private boolean completed;
+
+
+	LoadBalancedClientHttpRequest(ClientHttpRequest request, LoadBalancingClientHttpRequestFactory.Endpoint endpoint) {
+		this.request = request;
+		this.endpoint = endpoint;
+	}
+
+
+	@Override
+	public HttpMethod getMethod() {
+		return this.request.getMethod();
+	}
+
+	@Override
+	public URI getURI() {
+		return this.request.getURI();
+	}
+
+	@Override
+	public HttpHeaders getHeaders() {
+		return this.request.getHeaders();
+	}
+
+	@Override
+	public OutputStream getBody() throws IOException {
+		try {
+			return this.request.getBody();
+		}
+		catch (IOException ex) {
+			this.endpoint.record(false, 0);
+			throw ex;
+		}
+	}
+
+	@Override
+	public ClientHttpResponse execute() throws IOException {
+		this.endpoint.acquire();
+		long startTime = System.nanoTime();
+		ClientHttpResponse response = null;
+		try {
+			response = this.request.execute();
+			complete(response.getRawStatusCode() / 100 != 5, System.nanoTime() - startTime);
+			return response;
+		}
+		catch (IOException ex) {
+			complete(false, System.nanoTime() - startTime);
+			closeQuietly(response);
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			complete(false, System.nanoTime() - startTime);
+			closeQuietly(response);
+			throw ex;
+		}
+	}
+
+	private void closeQuietly(ClientHttpResponse response) {
+		if (response != null) {
+			try {
+				response.close();
+			}
+			catch (RuntimeException ex) {
+				// ignore
+			}
+		}
+	}
+
+	private void complete(boolean success, long latencyNanos) {
+		if (!this.completed) {
+			this.completed = true;
+			this.endpoint.release(success, latencyNanos);
+		}
+	}
+
+}
@@ -0,0 +1,281 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+/**
+ * Wrapper for a {@link ClientHttpRequestFactory} that balances requests for a
+ * logical service name across a pool of endpoints, rewriting the URI of each
+ * request to the endpoint chosen for it.
+ *
+ * <p>A request is load balanced if the host of its URI is a
+ * {@link #addService registered service name}. For example, with a service
+ * named "orders" and a {@code RestTemplate} whose
+ * {@link org.springframework.web.util.DefaultUriTemplateHandler#setBaseUrl base URL}
+ * is "http://orders/api", a request for "/items/42" is sent to
+ * "http://10.0.0.2:8080/api/items/42" on one call and to
+ * "http://10.0.0.3:8080/api/items/42" on the next. Other requests pass
+ * through unchanged.
+ *
+ * <p>Endpoints are chosen with the "power of two choices" algorithm: two
+ * endpoints are picked at random, and the one with the lower expected cost,
+ * based on its number of requests in progress and an exponentially weighted
+ * moving average of its latency, is used. An endpoint that fails a number of
+ * times in a row, with an exception or a 5xx status, is ejected from the pool
+ * for a while. If all endpoints of a service are ejected, all are used.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+public class LoadBalancingClientHttpRequestFactory extends AbstractClientHttpRequestFactoryWrapper {
+
+	private static final double LATENCY_DECAY = 0.2;
+
+	private static final Log logger = LogFactory.getLog(LoadBalancingClientHttpRequestFactory.class);
+
+
+	private final Map<String, List<Endpoint>> services = new ConcurrentHashMap<String, List<Endpoint>>();
+
+	private final Random random = new Random();
+
+	private int maxConsecutiveFailures = 3;
+
+	private long ejectionTime = 30000;
+
+
+	/**
+	 * Create a load balancing wrapper for the given {@link ClientHttpRequestFactory}.
+	 * @param requestFactory the target request factory to wrap
+	 */
+	public LoadBalancingClientHttpRequestFactory(ClientHttpRequestFactory requestFactory) {
+		super(requestFactory);
+	}
+
+
+	/**
+	 * Register the endpoints of a logical service.
+	 * @param serviceName the name used as host in request URIs
+	 * @param baseUrls the base URLs of the endpoints, e.g.
+	 * "http://10.0.0.2:8080", optionally with a path prefix
+	 */
+	public void addService(String serviceName, List<String> baseUrls) {
+		Assert.hasText(serviceName, "Service name must not be empty");
+		Assert.notEmpty(baseUrls, "Base URLs must not be empty");
+		List<Endpoint> endpoints = new ArrayList<Endpoint>(baseUrls.size());
+		for (String baseUrl : baseUrls) {
+			endpoints.add(new Endpoint(URI.create(baseUrl)));
+		}
+		this.services.put(serviceName.toLowerCase(), Collections.unmodifiableList(endpoints));
+	}
+
+	/**
+	 * Set the number of consecutive failures after which an endpoint is ejected.
+	 * <p>By default this is set to 3.
+	 */
+	public void setMaxConsecutiveFailures(int maxConsecutiveFailures) {
+		Assert.isTrue(maxConsecutiveFailures > 0, "'maxConsecutiveFailures' must be greater than 0");
+		this.maxConsecutiveFailures = maxConsecutiveFailures;
+	}
+
+	/**
+	 * Set how long (in milliseconds) an ejected endpoint is left out.
+	 * <p>By default this is set to 30000.
+	 */
+	public void setEjectionTime(long ejectionTime) {
+		this.ejectionTime = ejectionTime;
+	}
+
+	/**
+	 * Return the endpoints of the given service, e.g. for monitoring purposes,
+	 * or {@code null} if there is no such service.
+	 */
+	public List<Endpoint> getEndpoints(String serviceName) {
+		return this.services.get(serviceName.toLowerCase());
+	}
+
+
+	@Override
+	protected ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod, ClientHttpRequestFactory requestFactory)
+			throws IOException {
+
+		List<Endpoint> endpoints = (uri.getHost() != null ? this.services.get(uri.getHost().toLowerCase()) : null);
+		if (endpoints == null) {
+			return requestFactory.createRequest(uri, httpMethod);
+		}
+		Endpoint endpoint = chooseEndpoint(endpoints);
+		try {
+			ClientHttpRequest request = requestFactory.createRequest(endpoint.resolve(uri), httpMethod);
+			return new LoadBalancedClientHttpRequest(request, endpoint);
+		}
+		catch (IOException ex) {
+			endpoint.record(false, 0);
+			throw ex;
+		}
+	}
+
+	private Endpoint chooseEndpoint(List<Endpoint> endpoints) {
+		long now = System.currentTimeMillis();
+		List<Endpoint> available = new ArrayList<Endpoint>(endpoints.size());
+		for (Endpoint endpoint : endpoints) {
+			if (!endpoint.isEjected(now)) {
+				available.add(endpoint);
+			}
+		}
+		if (available.isEmpty()) {
+			available = endpoints;
+		}
+		int size = available.size();
+		if (size == 1) {
+			return available.get(0);
+		}
+		int first = this.random.nextInt(size);
+		int second = this.random.nextInt(size - 1);
+		if (second >= first) {
+			second++;
+		}
+		Endpoint a = available.get(first);
+		Endpoint b = available.get(second);
+		return (a.getCost() <= b.getCost() ? a : b);
+	}
+
+
+	/**
+	 * An endpoint of a service along with its load and health statistics.
+	 */
+	public class Endpoint {
+
+		private final URI baseUrl;
+
+		private final AtomicInteger activeRequests = new AtomicInteger();
+
+		private double latency;
+
+		private int consecutiveFailures;
+
+		private volatile long ejectedUntil;
+
+		Endpoint(URI baseUrl) {
+			Assert.isTrue(baseUrl.getScheme() != null && baseUrl.getRawAuthority() != null,
+					"Base URL must be absolute: " + baseUrl);
+			this.baseUrl = baseUrl;
+		}
+
+		/**
+		 * Return the base URL of this endpoint.
+		 */
+		public URI getBaseUrl() {
+			return this.baseUrl;
+		}
+
+		/**
+		 * Return the number of requests in progress.
+		 */
+		public int getActiveRequests() {
+			return this.activeRequests.get();
+		}
+
+		/**
+		 * Return the moving average of the latency, in milliseconds.
+		 */
+		public synchronized double getLatency() {
+			return this.latency;
+		}
+
+		/**
+		 * Whether this endpoint is currently ejected.
+		 */
+		public boolean isEjected() {
+			return isEjected(System.currentTimeMillis());
+		}
+
+		boolean isEjected(long now) {
+			return (this.ejectedUntil > now);
+		}
+
+		double getCost() {
+			return (getActiveRequests() + 1) * (getLatency() + 1);
+		}
+
+		URI resolve(URI uri) {
+			StringBuilder builder = new StringBuilder();
+			builder.append(this.baseUrl.getScheme()).append("://").append(this.baseUrl.getRawAuthority());
+			String basePath = this.baseUrl.getRawPath();
+			if (basePath != null && basePath.endsWith("/")) {
+				basePath = basePath.substring(0, basePath.length() - 1);
+			}
+			if (basePath != null) {
+				builder.append(basePath);
+			}
+			if (uri.getRawPath() != null) {
+				builder.append(uri.getRawPath());
+			}
+			if (uri.getRawQuery() != null) {
+				builder.append('?').append(uri.getRawQuery());
+			}
+			return URI.create(builder.toString());
+		}
+
+		void acquire() {
+			this.activeRequests.incrementAndGet();
+		}
+
+		void release(boolean success, long latencyNanos) {
+			this.activeRequests.decrementAndGet();
+			record(success, latencyNanos);
+		}
+
+		synchronized void record(boolean success, long latencyNanos) {
+			if (latencyNanos > 0) {
+				double millis = (double) latencyNanos / TimeUnit.MILLISECONDS.toNanos(1);
+				this.latency = (this.latency == 0 ? millis :
+						LATENCY_DECAY * millis + (1 - LATENCY_DECAY) * this.latency);
+			}
+			if (success) {
+				this.consecutiveFailures = 0;
+			}
+			else if (++this.consecutiveFailures >= maxConsecutiveFailures) {
+				this.consecutiveFailures = 0;
+				this.ejectedUntil = System.currentTimeMillis() + ejectionTime;
+				if (logger.isWarnEnabled()) {
+					logger.warn("Ejecting endpoint " + this.baseUrl + " for " + ejectionTime + " ms");
+				}
+			}
+		}
+
+		@Override
+		public String toString() {
+			return this.baseUrl.toString();
+		}
+	}
+
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+
+/**
+ * An {@link InputStream} over the body chunks of a Netty 4 response, which
+ * are queued as they arrive on the channel and consumed by the reading thread.
+ *
+ * <p>Reading from the channel is suspended through
+ * {@link io.netty.channel.ChannelConfig#setAutoRead auto-read} once a number
+ * of chunks are queued, and resumed once the reader has caught up, so that
+ * memory use is bounded regardless of the size of the response.
+ *
+ * <p>Since chunks are delivered by the event loop, this stream must not be
+ * read on the event loop itself: doing so would deadlock, and therefore fails
+ * with an {@link IllegalStateException} as soon as the read would block.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+class Netty4ChannelInputStream extends InputStream {
+
+	private static final int HIGH_WATERMARK = 16;
+
+	private static final int LOW_WATERMARK = 4;
+
+	private static final Object END_OF_CONTENT = new Object();
+
+
+	private final Channel channel;
+
+	private final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+
+	private final Runnable resumeTask = new Runnable() {
+		@Override
+		public void run() {
+			resumeIfDrained();
+		}
+	};
+
+	private ByteBuf current;
+
+	private volatile boolean suspended;
+
+	private volatile boolean received;
+
+	private volatile boolean finished;
+
+	private volatile boolean closed;
+
+
+	public Netty4ChannelInputStream(Channel channel) {
+		this.channel = channel;
+	}
+
+
+	/**
+	 * Queue the given chunk, to be called from the event loop.
+	 */
+	void offer(ByteBuf content) {
+		if (!content.isReadable()) {
+			return;
+		}
+		this.queue.offer(content.retain());
+		if (this.closed) {
+			drain();
+		}
+		else if (!this.suspended && this.queue.size() >= HIGH_WATERMARK) {
+			this.suspended = true;
+			this.channel.config().setAutoRead(false);
+			// The reader may have drained the queue before it could see the flag
+			resumeIfDrained();
+		}
+	}
+
+	/**
+	 * Resume reading from the channel if it was suspended and the reader has
+	 * caught up, to be called from the event loop only so that suspending and
+	 * resuming never interleave.
+	 */
+	private void resumeIfDrained() {
+		if (this.suspended && this.queue.size() <= LOW_WATERMARK) {
+			this.suspended = false;
+			this.channel.config().setAutoRead(true);
+			this.channel.read();
+		}
+	}
+
+	/**
+	 * Signal the end of the content, to be called from the event loop.
+	 */
+	void complete() {
+		this.received = true;
+		this.queue.offer(END_OF_CONTENT);
+	}
+
+	/**
+	 * Signal an error, to be called from the event loop. Ignored if the end
+	 * of the content has already been received.
+	 */
+	void error(Throwable cause) {
+		if (!this.received) {
+			this.received = true;
+			this.queue.offer(cause);
+		}
+	}
+
+	/**
+	 * Whether the end of the content, or an error, has been received from
+	 * the channel, although not necessarily read yet.
+	 */
+	public boolean isReceived() {
+		return this.received;
+	}
+
+
+	@Override
+	public int read() throws IOException {
+		ByteBuf buffer = nextBuffer();
+		return (buffer != null ? buffer.readByte() & 0xFF : -1);
+	}
+
+	@Override
+	public int read(byte[] bytes, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		ByteBuf buffer = nextBuffer();
+		if (buffer == null) {
+			return -1;
+		}
+		int count = Math.min(len, buffer.readableBytes());
+		buffer.readBytes(bytes, off, count);
+		return count;
+	}
+
+	@Override
+	public int available() {
+		return (this.current != null ? this.current.readableBytes() : 0);
+	}
+
+	private ByteBuf nextBuffer() throws IOException {
+		if (this.closed) {
+			throw new IOException("Stream closed");
+		}
+		while (this.current == null || !this.current.isReadable()) {
+			if (this.current != null) {
+				this.current.release();
+				this.current = null;
+			}
+			if (this.finished) {
+				return null;
+			}
+			Object item = this.queue.poll();
+			if (item == null && this.channel.eventLoop().inEventLoop()) {
+				// Blocking here would prevent the event loop from ever delivering the next chunk
+				throw new IllegalStateException("Cannot block on the Netty event loop while waiting for " +
+						"response content: read the body of a streamed response from another thread");
+			}
+			try {
+				if (item == null) {
+					item = this.queue.take();
+				}
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for response content");
+			}
+			if (this.suspended && this.queue.size() <= LOW_WATERMARK) {
+				this.channel.eventLoop().execute(this.resumeTask);
+			}
+			if (item == END_OF_CONTENT) {
+				this.finished = true;
+				return null;
+			}
+			if (item instanceof Throwable) {
+				Throwable cause = (Throwable) item;
+				this.finished = true;
+				throw (cause instanceof IOException ? (IOException) cause : new IOException(cause.getMessage(), cause));
+			}
+			this.current = (ByteBuf) item;
+		}
+		return this.current;
+	}
+
+	@Override
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		if (this.current != null) {
+			this.current.release();
+			this.current = null;
+		}
+		drain();
+	}
+
+	private void drain() {
+		Object item;
+		while ((item = this.queue.poll()) != null) {
+			if (item == END_OF_CONTENT) {
+				this.finished = true;
+			}
+			else if (item instanceof ByteBuf) {
+				((ByteBuf) item).release();
+			}
+		}
+	}
+
+}
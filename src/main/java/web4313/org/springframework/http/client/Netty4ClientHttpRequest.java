@@ -22,6 +22,7 @@ import java.net.URI;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import io.netty.bootstrap.Bootstrap;
 import io.netty.buffer.ByteBufOutputStream;
@@ -29,12 +30,22 @@ import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
 import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelPipeline;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.pool.ChannelPool;
 import io.netty.handler.codec.http.DefaultFullHttpRequest;
 import io.netty.handler.codec.http.FullHttpRequest;
 import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpContent;
+import io.netty.handler.codec.http.HttpObject;
+import io.netty.handler.codec.http.HttpResponse;
 import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.LastHttpContent;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
 
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
@@ -53,8 +64,17 @@ import org.springframework.util.concurrent.SettableListenableFuture;
  */
 class Netty4ClientHttpRequest extends AbstractAsyncClientHttpRequest implements ClientHttpRequest {
 
+	private static final String READ_TIMEOUT_HANDLER_NAME = "readTimeoutHandler";
+
+
 	private final Bootstrap bootstrap;
 
+	private final ChannelPool channelPool;
+
+	private final int readTimeout;
+
+	private final boolean bufferResponseBody;
+
 	private final URI uri;
 
 	private final HttpMethod method;
@@ -63,7 +83,38 @@ class Netty4ClientHttpRequest extends AbstractAsyncClientHttpRequest implements
 
 
 	public Netty4ClientHttpRequest(Bootstrap bootstrap, URI uri, HttpMethod method) {
+		this(bootstrap, uri, method, true);
+	}
+
+	/**
+	 * Create a request on a new connection, with the response body either
+	 * aggregated or streamed depending on the pipeline set up by the given
+	 * {@code Bootstrap}.
+	 * @since 4.3.14
+	 */
+	public Netty4ClientHttpRequest(Bootstrap bootstrap, URI uri, HttpMethod method, boolean bufferResponseBody) {
 		this.bootstrap = bootstrap;
+		this.channelPool = null;
+		this.readTimeout = -1;
+		this.bufferResponseBody = bufferResponseBody;
+		this.uri = uri;
+		this.method = method;
+		this.body = new ByteBufOutputStream(Unpooled.buffer(1024));
+	}
+
+	/**
+	 * Create a request that is executed on a keep-alive connection acquired
+	 * from the given pool, and released back to it once the response has
+	 * been received.
+	 * @since 4.3.14
+	 */
+	public Netty4ClientHttpRequest(ChannelPool channelPool, URI uri, HttpMethod method,
+			int readTimeout, boolean bufferResponseBody) {
+
+		this.bootstrap = null;
+		this.channelPool = channelPool;
+		this.readTimeout = readTimeout;
+		this.bufferResponseBody = bufferResponseBody;
 		this.uri = uri;
 		this.method = method;
 		this.body = new ByteBufOutputStream(Unpooled.buffer(1024));
@@ -108,13 +159,18 @@ class Netty4ClientHttpRequest extends AbstractAsyncClientHttpRequest implements
 		final SettableListenableFuture<ClientHttpResponse> responseFuture =
 				new SettableListenableFuture<ClientHttpResponse>();
 
+		if (this.channelPool != null) {
+			return executePooled(headers, responseFuture);
+		}
+
 		ChannelFutureListener connectionListener = new ChannelFutureListener() {
 			@Override
 			public void operationComplete(ChannelFuture future) throws Exception {
 				if (future.isSuccess()) {
 					Channel channel = future.channel();
-					channel.pipeline().addLast(new RequestExecuteHandler(responseFuture));
-					FullHttpRequest nettyRequest = createFullHttpRequest(headers);
+					channel.pipeline().addLast(bufferResponseBody ? new RequestExecuteHandler(responseFuture) :
+							new StreamingRequestExecuteHandler(responseFuture, null));
+					FullHttpRequest nettyRequest = createFullHttpRequest(headers, false);
 					channel.writeAndFlush(nettyRequest);
 				}
 				else {
@@ -127,7 +183,36 @@ class Netty4ClientHttpRequest extends AbstractAsyncClientHttpRequest implements
 		return responseFuture;
 	}
 
-	private FullHttpRequest createFullHttpRequest(HttpHeaders headers) {
+	private ListenableFuture<ClientHttpResponse> executePooled(final HttpHeaders headers,
+			final SettableListenableFuture<ClientHttpResponse> responseFuture) {
+
+		FutureListener<Channel> acquireListener = new FutureListener<Channel>() {
+			@Override
+			public void operationComplete(Future<Channel> future) throws Exception {
+				if (future.isSuccess()) {
+					Channel channel = future.getNow();
+					ChannelPipeline pipeline = channel.pipeline();
+					if (readTimeout > 0) {
+						pipeline.addLast(READ_TIMEOUT_HANDLER_NAME,
+								new ReadTimeoutHandler(readTimeout, TimeUnit.MILLISECONDS));
+					}
+					pipeline.addLast(bufferResponseBody ?
+							new PooledRequestExecuteHandler(responseFuture, channelPool) :
+							new StreamingRequestExecuteHandler(responseFuture, channelPool));
+					FullHttpRequest nettyRequest = createFullHttpRequest(headers, true);
+					channel.writeAndFlush(nettyRequest);
+				}
+				else {
+					responseFuture.setException(future.cause());
+				}
+			}
+		};
+
+		this.channelPool.acquire().addListener(acquireListener);
+		return responseFuture;
+	}
+
+	private FullHttpRequest createFullHttpRequest(HttpHeaders headers, boolean keepAlive) {
 		io.netty.handler.codec.http.HttpMethod nettyMethod =
 				io.netty.handler.codec.http.HttpMethod.valueOf(this.method.name());
 
@@ -137,7 +222,9 @@ class Netty4ClientHttpRequest extends AbstractAsyncClientHttpRequest implements
 				HttpVersion.HTTP_1_1, nettyMethod, path, this.body.buffer());
 
 		nettyRequest.headers().set(HttpHeaders.HOST, this.uri.getHost() + ":" + getPort(uri));
-		nettyRequest.headers().set(HttpHeaders.CONNECTION, "close");
+		if (!keepAlive) {
+			nettyRequest.headers().set(HttpHeaders.CONNECTION, "close");
+		}
 		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
 			nettyRequest.headers().add(entry.getKey(), entry.getValue());
 		}
@@ -184,4 +271,161 @@ class Netty4ClientHttpRequest extends AbstractAsyncClientHttpRequest implements
 		}
 	}
 
+
+	/**
+	 * A SimpleChannelInboundHandler for a pooled connection that updates the
+	 * given SettableListenableFuture, then removes itself from the pipeline
+	 * and releases the connection back to the pool.
+	 */
+	private static class PooledRequestExecuteHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+		private final SettableListenableFuture<ClientHttpResponse> responseFuture;
+
+		private final ChannelPool channelPool;
+
+		private boolean released;
+
+		public PooledRequestExecuteHandler(SettableListenableFuture<ClientHttpResponse> responseFuture,
+				ChannelPool channelPool) {
+
+			this.responseFuture = responseFuture;
+			this.channelPool = channelPool;
+		}
+
+		@Override
+		@SuppressWarnings("deprecation")
+		protected void channelRead0(ChannelHandlerContext context, FullHttpResponse response) throws Exception {
+			// The content is aggregated and retained by the response,
+			// so the connection can be reused right away
+			boolean keepAlive = io.netty.handler.codec.http.HttpHeaders.isKeepAlive(response);
+			this.responseFuture.set(new Netty4ClientHttpResponse(response));
+			release(context, !keepAlive);
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext context, Throwable cause) throws Exception {
+			this.responseFuture.setException(cause);
+			release(context, true);
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext context) throws Exception {
+			if (!this.responseFuture.isDone()) {
+				this.responseFuture.setException(new IOException("Connection closed before response was received"));
+			}
+			release(context, false);
+			super.channelInactive(context);
+		}
+
+		private void release(ChannelHandlerContext context, boolean close) {
+			if (!this.released) {
+				this.released = true;
+				releaseToPool(context, this, this.channelPool, close);
+			}
+		}
+	}
+
+
+	/**
+	 * A SimpleChannelInboundHandler that updates the given SettableListenableFuture
+	 * as soon as the response head is received, and then queues body chunks on
+	 * a {@link Netty4ChannelInputStream} as they arrive. If a ChannelPool is
+	 * given, the connection is released back to it after the last chunk.
+	 */
+	private static class StreamingRequestExecuteHandler extends SimpleChannelInboundHandler<HttpObject> {
+
+		private final SettableListenableFuture<ClientHttpResponse> responseFuture;
+
+		private final ChannelPool channelPool;
+
+		private Netty4ChannelInputStream body;
+
+		private boolean keepAlive;
+
+		private boolean released;
+
+		public StreamingRequestExecuteHandler(SettableListenableFuture<ClientHttpResponse> responseFuture,
+				ChannelPool channelPool) {
+
+			this.responseFuture = responseFuture;
+			this.channelPool = channelPool;
+		}
+
+		@Override
+		@SuppressWarnings("deprecation")
+		protected void channelRead0(ChannelHandlerContext context, HttpObject message) throws Exception {
+			if (message instanceof HttpResponse) {
+				HttpResponse response = (HttpResponse) message;
+				this.keepAlive = io.netty.handler.codec.http.HttpHeaders.isKeepAlive(response);
+				this.body = new Netty4ChannelInputStream(context.channel());
+				this.responseFuture.set(new Netty4StreamingClientHttpResponse(
+						response, this.body, context.channel(), this.channelPool != null));
+			}
+			if (message instanceof HttpContent && this.body != null) {
+				this.body.offer(((HttpContent) message).content());
+				if (message instanceof LastHttpContent) {
+					this.body.complete();
+					release(context, !this.keepAlive);
+				}
+			}
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext context, Throwable cause) throws Exception {
+			boolean responseReturned = (this.body != null);
+			handleError(cause);
+			if (this.channelPool != null) {
+				release(context, true);
+			}
+			else if (!responseReturned) {
+				context.close();
+			}
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext context) throws Exception {
+			handleError(new IOException("Connection closed before response was received"));
+			release(context, false);
+			super.channelInactive(context);
+		}
+
+		private void handleError(Throwable cause) {
+			if (this.body != null) {
+				this.body.error(cause);
+			}
+			else if (!this.responseFuture.isDone()) {
+				this.responseFuture.setException(cause);
+			}
+		}
+
+		private void release(ChannelHandlerContext context, boolean close) {
+			if (this.channelPool != null && !this.released) {
+				this.released = true;
+				context.channel().config().setAutoRead(true);
+				releaseToPool(context, this, this.channelPool, close);
+			}
+		}
+	}
+
+
+	/**
+	 * Remove the given per-request handler, and the read timeout handler if
+	 * any, from the pipeline, and release the channel back to the given pool,
+	 * optionally closing it first.
+	 */
+	private static void releaseToPool(ChannelHandlerContext context, ChannelHandler handler,
+			ChannelPool channelPool, boolean close) {
+
+		Channel channel = context.channel();
+		ChannelPipeline pipeline = context.pipeline();
+		if (pipeline.get(READ_TIMEOUT_HANDLER_NAME) != null) {
+			pipeline.remove(READ_TIMEOUT_HANDLER_NAME);
+		}
+		pipeline.remove(handler);
+		if (close) {
+			channel.close();
+		}
+		channelPool.release(channel);
+	}
+
 }
@@ -1,5 +1,5 @@
 /*
- * Copyright 2002-2016 the original author or authors.
+ * Copyright 2002-2017 the original author or authors.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -18,15 +18,29 @@ package org.springframework.http.client;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.net.ssl.SSLException;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelConfig;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.pool.AbstractChannelPoolHandler;
+import io.netty.channel.pool.ChannelHealthChecker;
+import io.netty.channel.pool.ChannelPool;
+import io.netty.channel.pool.FixedChannelPool;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.SocketChannelConfig;
 import io.netty.channel.socket.nio.NioSocketChannel;
@@ -34,7 +48,13 @@ import io.netty.handler.codec.http.HttpClientCodec;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.AttributeKey;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.FutureListener;
+import io.netty.util.concurrent.Promise;
 
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
@@ -48,8 +68,10 @@ import org.springframework.util.Assert;
  * <p>Allows to use a pre-configured {@link EventLoopGroup} instance: useful for
  * sharing across multiple clients.
  *
- * <p>Note that this implementation consistently closes the HTTP connection on each
- * request.
+ * <p>Note that by default this implementation consistently closes the HTTP
+ * connection on each request. Alternatively, connections can be kept alive and
+ * reused from a pool per host by setting a
+ * {@link #setMaxConnectionsPerRoute maximum number of connections per route}.
  *
  * @author Arjen Poutsma
  * @author Rossen Stoyanchev
@@ -66,6 +88,9 @@ public class Netty4ClientHttpRequestFactory implements ClientHttpRequestFactory,
 	 */
 	public static final int DEFAULT_MAX_RESPONSE_SIZE = 1024 * 1024 * 10;
 
+	private static final AttributeKey<Boolean> IN_USE =
+			AttributeKey.valueOf(Netty4ClientHttpRequestFactory.class.getName() + ".IN_USE");
+
 
 	private final EventLoopGroup eventLoopGroup;
 
@@ -79,8 +104,21 @@ public class Netty4ClientHttpRequestFactory implements ClientHttpRequestFactory,
 
 	private int readTimeout = -1;
 
+	private boolean bufferResponseBody = true;
+
+	private int maxConnectionsPerRoute = -1;
+
+	private int maxPendingAcquires = Integer.MAX_VALUE;
+
+	private long acquireTimeout = 30000;
+
+	private long maxIdleTime = 60000;
+
 	private volatile Bootstrap bootstrap;
 
+	private final ConcurrentMap<String, MeteredChannelPool> channelPools =
+			new ConcurrentHashMap<String, MeteredChannelPool>();
+
 
 	/**
 	 * Create a new {@code Netty4ClientHttpRequestFactory} with a default
@@ -143,6 +181,90 @@ public class Netty4ClientHttpRequestFactory implements ClientHttpRequestFactory,
 		this.readTimeout = readTimeout;
 	}
 
+	/**
+	 * Indicate whether this request factory should buffer the response body
+	 * in memory, up to the {@link #setMaxResponseSize maximum response size}.
+	 * <p>When set to {@code false}, the response is returned as soon as its
+	 * status and headers have been received, and its body is exposed as a
+	 * stream of chunks as they arrive. Reading from the connection is
+	 * suspended while a number of chunks wait to be consumed, so responses
+	 * of any size are read with bounded memory. Note that the
+	 * {@link #setReadTimeout read timeout} then also applies while the
+	 * application is slow to consume the body.
+	 * <p>Asynchronous requests complete their response future on the Netty
+	 * event loop, so callbacks, including the {@code ResponseExtractor} of
+	 * {@code AsyncRestTemplate}, run there as well and must hand reading of a
+	 * streamed body off to another executor. Reading it on the event loop
+	 * fails with an {@link IllegalStateException} rather than deadlocking.
+	 * <p>Default is {@code true}.
+	 * @since 4.3.14
+	 */
+	public void setBufferResponseBody(boolean bufferResponseBody) {
+		this.bufferResponseBody = bufferResponseBody;
+	}
+
+	/**
+	 * Set the maximum number of connections per route, i.e. per scheme, host
+	 * and port. When set to a value greater than 0, HTTP/1.1 connections are
+	 * kept alive and reused for subsequent requests to the same route, and
+	 * requests wait for a connection when all connections are in use.
+	 * <p>By default this is set to -1, in which case connections are not
+	 * pooled and a new connection is opened and closed for every request.
+	 * @since 4.3.14
+	 * @see #setAcquireTimeout(long)
+	 * @see #setMaxIdleTime(long)
+	 */
+	public void setMaxConnectionsPerRoute(int maxConnectionsPerRoute) {
+		this.maxConnectionsPerRoute = maxConnectionsPerRoute;
+	}
+
+	/**
+	 * Set the maximum number of requests per route that may wait for a pooled
+	 * connection. Further requests fail immediately.
+	 * <p>By default this is unbounded.
+	 * @since 4.3.14
+	 */
+	public void setMaxPendingAcquires(int maxPendingAcquires) {
+		Assert.isTrue(maxPendingAcquires > 0, "'maxPendingAcquires' must be greater than 0");
+		this.maxPendingAcquires = maxPendingAcquires;
+	}
+
+	/**
+	 * Set how long (in milliseconds) a request waits for a pooled connection
+	 * before failing with a {@link java.util.concurrent.TimeoutException}.
+	 * A value of -1 specifies an infinite wait.
+	 * <p>By default this is set to 30000.
+	 * @since 4.3.14
+	 */
+	public void setAcquireTimeout(long acquireTimeout) {
+		this.acquireTimeout = acquireTimeout;
+	}
+
+	/**
+	 * Set how long (in milliseconds) a pooled connection may remain unused
+	 * before it is closed and evicted from the pool. A value of 0 or less
+	 * keeps idle connections open until the server closes them.
+	 * <p>By default this is set to 60000.
+	 * @since 4.3.14
+	 */
+	public void setMaxIdleTime(long maxIdleTime) {
+		this.maxIdleTime = maxIdleTime;
+	}
+
+	/**
+	 * Return the metrics of each connection pool, keyed by route
+	 * (e.g. "http://example.org:80"). Empty unless
+	 * {@link #setMaxConnectionsPerRoute connection pooling} is enabled.
+	 * @since 4.3.14
+	 */
+	public Map<String, PoolMetrics> getPoolMetrics() {
+		Map<String, PoolMetrics> result = new LinkedHashMap<String, PoolMetrics>();
+		for (Map.Entry<String, MeteredChannelPool> entry : this.channelPools.entrySet()) {
+			result.put(entry.getKey(), entry.getValue().getMetrics());
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
 
 	@Override
 	public void afterPropertiesSet() {
@@ -172,12 +294,19 @@ public class Netty4ClientHttpRequestFactory implements ClientHttpRequestFactory,
 	}
 
 	private Netty4ClientHttpRequest createRequestInternal(URI uri, HttpMethod httpMethod) {
-		return new Netty4ClientHttpRequest(getBootstrap(uri), uri, httpMethod);
+		if (this.maxConnectionsPerRoute > 0) {
+			return new Netty4ClientHttpRequest(
+					getChannelPool(uri), uri, httpMethod, this.readTimeout, this.bufferResponseBody);
+		}
+		return new Netty4ClientHttpRequest(getBootstrap(uri), uri, httpMethod, this.bufferResponseBody);
+	}
+
+	private static boolean isSecure(URI uri) {
+		return (uri.getPort() == 443 || "https".equalsIgnoreCase(uri.getScheme()));
 	}
 
 	private Bootstrap getBootstrap(URI uri) {
-		boolean isSecure = (uri.getPort() == 443 || "https".equalsIgnoreCase(uri.getScheme()));
-		if (isSecure) {
+		if (isSecure(uri)) {
 			return buildBootstrap(uri, true);
 		}
 		else {
@@ -201,7 +330,9 @@ public class Netty4ClientHttpRequestFactory implements ClientHttpRequestFactory,
 							pipeline.addLast(sslContext.newHandler(channel.alloc(), uri.getHost(), uri.getPort()));
 						}
 						pipeline.addLast(new HttpClientCodec());
-						pipeline.addLast(new HttpObjectAggregator(maxResponseSize));
+						if (bufferResponseBody) {
+							pipeline.addLast(new HttpObjectAggregator(maxResponseSize));
+						}
 						if (readTimeout > 0) {
 							pipeline.addLast(new ReadTimeoutHandler(readTimeout,
 									TimeUnit.MILLISECONDS));
@@ -211,6 +342,69 @@ public class Netty4ClientHttpRequestFactory implements ClientHttpRequestFactory,
 		return bootstrap;
 	}
 
+	private ChannelPool getChannelPool(URI uri) {
+		int port = getPort(uri);
+		String route = uri.getScheme() + "://" + uri.getHost() + ":" + port;
+		MeteredChannelPool pool = this.channelPools.get(route);
+		if (pool == null) {
+			MeteredChannelPool newPool = new MeteredChannelPool(buildChannelPool(uri, port, isSecure(uri)));
+			pool = this.channelPools.putIfAbsent(route, newPool);
+			if (pool == null) {
+				pool = newPool;
+			}
+			else {
+				newPool.close();
+			}
+		}
+		return pool;
+	}
+
+	private ChannelPool buildChannelPool(final URI uri, final int port, final boolean isSecure) {
+		Bootstrap bootstrap = new Bootstrap();
+		bootstrap.group(this.eventLoopGroup).channel(NioSocketChannel.class).remoteAddress(uri.getHost(), port);
+		AbstractChannelPoolHandler handler = new AbstractChannelPoolHandler() {
+			@Override
+			public void channelCreated(Channel channel) throws Exception {
+				configureChannel((SocketChannelConfig) channel.config());
+				ChannelPipeline pipeline = channel.pipeline();
+				if (isSecure) {
+					Assert.notNull(sslContext, "sslContext should not be null");
+					pipeline.addLast(sslContext.newHandler(channel.alloc(), uri.getHost(), port));
+				}
+				pipeline.addLast(new HttpClientCodec());
+				if (bufferResponseBody) {
+					pipeline.addLast(new HttpObjectAggregator(maxResponseSize));
+				}
+				if (maxIdleTime > 0) {
+					pipeline.addLast(new IdleStateHandler(0, 0, maxIdleTime, TimeUnit.MILLISECONDS));
+					pipeline.addLast(new IdleConnectionHandler());
+				}
+			}
+			@Override
+			public void channelAcquired(Channel channel) throws Exception {
+				channel.attr(IN_USE).set(Boolean.TRUE);
+			}
+			@Override
+			public void channelReleased(Channel channel) throws Exception {
+				channel.attr(IN_USE).set(Boolean.FALSE);
+			}
+		};
+		if (this.acquireTimeout >= 0) {
+			return new FixedChannelPool(bootstrap, handler, ChannelHealthChecker.ACTIVE,
+					FixedChannelPool.AcquireTimeoutAction.FAIL, this.acquireTimeout,
+					this.maxConnectionsPerRoute, this.maxPendingAcquires);
+		}
+		return new FixedChannelPool(bootstrap, handler, this.maxConnectionsPerRoute, this.maxPendingAcquires);
+	}
+
+	private static int getPort(URI uri) {
+		int port = uri.getPort();
+		if (port == -1) {
+			port = ("https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80);
+		}
+		return port;
+	}
+
 	/**
 	 * Template method for changing properties on the given {@link SocketChannelConfig}.
 	 * <p>The default implementation sets the connect timeout based on the set property.
@@ -225,10 +419,207 @@ public class Netty4ClientHttpRequestFactory implements ClientHttpRequestFactory,
 
 	@Override
 	public void destroy() throws InterruptedException {
+		for (MeteredChannelPool pool : this.channelPools.values()) {
+			pool.close();
+		}
+		this.channelPools.clear();
 		if (this.defaultEventLoopGroup) {
 			// Clean up the EventLoopGroup if we created it in the constructor
 			this.eventLoopGroup.shutdownGracefully().sync();
 		}
 	}
 
+
+	/**
+	 * Closes a pooled connection once it has been idle for the configured
+	 * {@link #setMaxIdleTime maximum idle time}. Connections in use are left
+	 * to the {@link ReadTimeoutHandler}, if any.
+	 */
+	private static class IdleConnectionHandler extends ChannelInboundHandlerAdapter {
+
+		@Override
+		public void userEventTriggered(ChannelHandlerContext context, Object event) throws Exception {
+			if (event instanceof IdleStateEvent) {
+				if (!Boolean.TRUE.equals(context.channel().attr(IN_USE).get())) {
+					context.close();
+				}
+			}
+			else {
+				super.userEventTriggered(context, event);
+			}
+		}
+	}
+
+
+	/**
+	 * ChannelPool decorator that keeps track of pool occupancy and of the time
+	 * spent waiting for a connection.
+	 */
+	private static class MeteredChannelPool implements ChannelPool {
+
+		private final ChannelPool delegate;
+
+		private final AtomicInteger leased = new AtomicInteger();
+
+		private final AtomicInteger pending = new AtomicInteger();
+
+		private final AtomicLong acquireCount = new AtomicLong();
+
+		private final AtomicLong acquireFailureCount = new AtomicLong();
+
+		private final AtomicLong totalWaitTime = new AtomicLong();
+
+		private final AtomicLong maxWaitTime = new AtomicLong();
+
+		public MeteredChannelPool(ChannelPool delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public Future<Channel> acquire() {
+			return track(this.delegate.acquire());
+		}
+
+		@Override
+		public Future<Channel> acquire(Promise<Channel> promise) {
+			return track(this.delegate.acquire(promise));
+		}
+
+		private Future<Channel> track(Future<Channel> future) {
+			final long startTime = System.nanoTime();
+			this.pending.incrementAndGet();
+			future.addListener(new FutureListener<Channel>() {
+				@Override
+				public void operationComplete(Future<Channel> future) {
+					long waitTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+					pending.decrementAndGet();
+					if (future.isSuccess()) {
+						leased.incrementAndGet();
+						acquireCount.incrementAndGet();
+						totalWaitTime.addAndGet(waitTime);
+						long max = maxWaitTime.get();
+						while (waitTime > max && !maxWaitTime.compareAndSet(max, waitTime)) {
+							max = maxWaitTime.get();
+						}
+					}
+					else {
+						acquireFailureCount.incrementAndGet();
+					}
+				}
+			});
+			return future;
+		}
+
+		@Override
+		public Future<Void> release(Channel channel) {
+			this.leased.decrementAndGet();
+			return this.delegate.release(channel);
+		}
+
+		@Override
+		public Future<Void> release(Channel channel, Promise<Void> promise) {
+			this.leased.decrementAndGet();
+			return this.delegate.release(channel, promise);
+		}
+
+		@Override
+		public void close() {
+			this.delegate.close();
+		}
+
+		public PoolMetrics getMetrics() {
+			return new PoolMetrics(this.leased.get(), this.pending.get(), this.acquireCount.get(),
+					this.acquireFailureCount.get(), this.totalWaitTime.get(), this.maxWaitTime.get());
+		}
+	}
+
+
+	/**
+	 * A snapshot of the metrics of the connection pool for one route.
+	 * @since 4.3.14
+	 * @see #getPoolMetrics()
+	 */
+	public static final class PoolMetrics {
+
+		private final int leasedConnections;
+
+		private final int pendingAcquires;
+
+		private final long acquireCount;
+
+		private final long acquireFailureCount;
+
+		private final long totalWaitTime;
+
+		private final long maxWaitTime;
+
+		PoolMetrics(int leasedConnections, int pendingAcquires, long acquireCount,
+				long acquireFailureCount, long totalWaitTime, long maxWaitTime) {
+
+			this.leasedConnections = leasedConnections;
+			this.pendingAcquires = pendingAcquires;
+			this.acquireCount = acquireCount;
+			this.acquireFailureCount = acquireFailureCount;
+			this.totalWaitTime = totalWaitTime;
+			this.maxWaitTime = maxWaitTime;
+		}
+
+		/**
+		 * Return the number of connections currently in use.
+		 */
+		public int getLeasedConnections() {
+			return this.leasedConnections;
+		}
+
+		/**
+		 * Return the number of requests currently waiting for a connection.
+		 */
+		public int getPendingAcquires() {
+			return this.pendingAcquires;
+		}
+
+		/**
+		 * Return the number of connections acquired so far.
+		 */
+		public long getAcquireCount() {
+			return this.acquireCount;
+		}
+
+		/**
+		 * Return the number of failed acquisitions, e.g. due to a timeout or a
+		 * connection failure.
+		 */
+		public long getAcquireFailureCount() {
+			return this.acquireFailureCount;
+		}
+
+		/**
+		 * Return the total time, in milliseconds, spent waiting for connections.
+		 */
+		public long getTotalWaitTime() {
+			return this.totalWaitTime;
+		}
+
+		/**
+		 * Return the average time, in milliseconds, spent waiting for a connection.
+		 */
+		public long getAverageWaitTime() {
+			return (this.acquireCount > 0 ? this.totalWaitTime / this.acquireCount : 0);
+		}
+
+		/**
+		 * Return the longest time, in milliseconds, spent waiting for a connection.
+		 */
+		public long getMaxWaitTime() {
+			return this.maxWaitTime;
+		}
+
+		@Override
+		public String toString() {
+			return "leased=" + this.leasedConnections + ", pending=" + this.pendingAcquires +
+					", acquired=" + this.acquireCount + ", failed=" + this.acquireFailureCount +
+					", averageWaitTime=" + getAverageWaitTime() + "ms, maxWaitTime=" + this.maxWaitTime + "ms";
+		}
+	}
+
 }
@@ -53,6 +53,19 @@ class Netty4ClientHttpResponse extends AbstractClientHttpResponse {
 		this.nettyResponse.retain();
 	}
 
+	/**
+	 * Create a response whose channel has already been returned to a
+	 * connection pool, and which only holds on to the aggregated content.
+	 * @since 4.3.14
+	 */
+	public Netty4ClientHttpResponse(FullHttpResponse nettyResponse) {
+		Assert.notNull(nettyResponse, "FullHttpResponse must not be null");
+		this.context = null;
+		this.nettyResponse = nettyResponse;
+		this.body = new ByteBufInputStream(this.nettyResponse.content());
+		this.nettyResponse.retain();
+	}
+
 
 	@Override
 	@SuppressWarnings("deprecation")
@@ -86,7 +99,9 @@ class Netty4ClientHttpResponse extends AbstractClientHttpResponse {
 	@Override
 	public void close() {
 		this.nettyResponse.release();
-		this.context.close();
+		if (this.context != null) {
+			this.context.close();
+		}
 	}
 
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.HttpVersion;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * {@link ClientHttpRequest} implementation that is sent as a stream over a
+ * shared HTTP/2 connection with Netty 4.
+ *
+ * <p>Created via the {@link Netty4Http2ClientHttpRequestFactory}.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+class Netty4Http2ClientHttpRequest extends AbstractAsyncClientHttpRequest implements ClientHttpRequest {
+
+	private final Netty4Http2Connection connection;
+
+	private final URI uri;
+
+	private final HttpMethod method;
+
+	private final ByteBufOutputStream body;
+
+
+	public Netty4Http2ClientHttpRequest(Netty4Http2Connection connection, URI uri, HttpMethod method) {
+		this.connection = connection;
+		this.uri = uri;
+		this.method = method;
+		this.body = new ByteBufOutputStream(Unpooled.buffer(1024));
+	}
+
+
+	@Override
+	public HttpMethod getMethod() {
+		return this.method;
+	}
+
+	@Override
+	public URI getURI() {
+		return this.uri;
+	}
+
+	@Override
+	public ClientHttpResponse execute() throws IOException {
+		try {
+			return executeAsync().get();
+		}
+		catch (InterruptedException ex) {
+			throw new IOException(ex.getMessage(), ex);
+		}
+		catch (ExecutionException ex) {
+			if (ex.getCause() instanceof IOException) {
+				throw (IOException) ex.getCause();
+			}
+			else {
+				throw new IOException(ex.getMessage(), ex.getCause());
+			}
+		}
+	}
+
+	@Override
+	protected OutputStream getBodyInternal(HttpHeaders headers) throws IOException {
+		return this.body;
+	}
+
+	@Override
+	protected ListenableFuture<ClientHttpResponse> executeInternal(HttpHeaders headers) throws IOException {
+		SettableListenableFuture<ClientHttpResponse> responseFuture = new SettableListenableFuture<ClientHttpResponse>();
+		this.connection.execute(createFullHttpRequest(headers), responseFuture);
+		return responseFuture;
+	}
+
+	private FullHttpRequest createFullHttpRequest(HttpHeaders headers) {
+		io.netty.handler.codec.http.HttpMethod nettyMethod =
+				io.netty.handler.codec.http.HttpMethod.valueOf(this.method.name());
+
+		String authority = this.uri.getRawAuthority();
+		String path = this.uri.toString().substring(this.uri.toString().indexOf(authority) + authority.length());
+		if (path.isEmpty()) {
+			path = "/";
+		}
+		FullHttpRequest nettyRequest = new DefaultFullHttpRequest(
+				HttpVersion.HTTP_1_1, nettyMethod, path, this.body.buffer());
+
+		// Converted to the ":authority" pseudo-header
+		nettyRequest.headers().set(HttpHeaders.HOST, authority);
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			nettyRequest.headers().add(entry.getKey(), entry.getValue());
+		}
+		if (!nettyRequest.headers().contains(HttpHeaders.CONTENT_LENGTH) && this.body.buffer().readableBytes() > 0) {
+			nettyRequest.headers().set(HttpHeaders.CONTENT_LENGTH, this.body.buffer().readableBytes());
+		}
+		return nettyRequest;
+	}
+
+}
@@ -0,0 +1,327 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.net.ssl.SSLException;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.SocketChannelConfig;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.DefaultHttp2ConnectionDecoder;
+import io.netty.handler.codec.http2.DefaultHttp2ConnectionEncoder;
+import io.netty.handler.codec.http2.DefaultHttp2FrameReader;
+import io.netty.handler.codec.http2.DefaultHttp2FrameWriter;
+import io.netty.handler.codec.http2.DelegatingDecompressorFrameListener;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionDecoder;
+import io.netty.handler.codec.http2.Http2ConnectionEncoder;
+import io.netty.handler.codec.http2.Http2SecurityUtil;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
+import io.netty.handler.codec.http2.StreamBufferingEncoder;
+import io.netty.handler.ssl.ApplicationProtocolConfig;
+import io.netty.handler.ssl.ApplicationProtocolNames;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SupportedCipherSuiteFilter;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+/**
+ * {@link org.springframework.http.client.ClientHttpRequestFactory} implementation
+ * that uses <a href="http://netty.io/">Netty 4</a> to send requests over HTTP/2.
+ *
+ * <p>Concurrent requests to the same route, i.e. scheme, host and port, are
+ * multiplexed as streams over a single connection, which is opened on first
+ * use and re-opened once closed. Requests beyond the number of concurrent
+ * streams the server allows, as advertised through its
+ * {@code SETTINGS_MAX_CONCURRENT_STREAMS} setting, are queued until another
+ * stream on the connection completes.
+ *
+ * <p>"http" URLs use cleartext HTTP/2 with prior knowledge ("h2c"), i.e.
+ * without an HTTP/1.1 upgrade, as is common for internal services. "https"
+ * URLs negotiate "h2" through ALPN, which requires an ALPN-capable SSL
+ * provider, e.g. OpenSSL through netty-tcnative. There is no fallback to
+ * HTTP/1.1; use {@link Netty4ClientHttpRequestFactory} for servers that
+ * don't support HTTP/2.
+ *
+ * <p>Flow control is configured through the {@link #setInitialWindowSize
+ * initial window size} and {@link #setMaxFrameSize maximum frame size} that
+ * this client advertises to the server. Response bodies are aggregated, up to
+ * the {@link #setMaxResponseSize maximum response size}.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+public class Netty4Http2ClientHttpRequestFactory implements ClientHttpRequestFactory,
+		AsyncClientHttpRequestFactory, InitializingBean, DisposableBean {
+
+	private final EventLoopGroup eventLoopGroup;
+
+	private final boolean defaultEventLoopGroup;
+
+	private int maxResponseSize = Netty4ClientHttpRequestFactory.DEFAULT_MAX_RESPONSE_SIZE;
+
+	private int initialWindowSize = -1;
+
+	private int maxFrameSize = -1;
+
+	private long maxHeaderListSize = -1;
+
+	private SslContext sslContext;
+
+	private int connectTimeout = -1;
+
+	private int readTimeout = -1;
+
+	private final ConcurrentMap<String, Netty4Http2Connection> connections =
+			new ConcurrentHashMap<String, Netty4Http2Connection>();
+
+
+	/**
+	 * Create a new {@code Netty4Http2ClientHttpRequestFactory} with a default
+	 * {@link NioEventLoopGroup}.
+	 */
+	public Netty4Http2ClientHttpRequestFactory() {
+		int ioWorkerCount = Runtime.getRuntime().availableProcessors() * 2;
+		this.eventLoopGroup = new NioEventLoopGroup(ioWorkerCount);
+		this.defaultEventLoopGroup = true;
+	}
+
+	/**
+	 * Create a new {@code Netty4Http2ClientHttpRequestFactory} with the given
+	 * {@link EventLoopGroup}.
+	 * <p><b>NOTE:</b> the given group will <strong>not</strong> be
+	 * {@linkplain EventLoopGroup#shutdownGracefully() shutdown} by this factory;
+	 * doing so becomes the responsibility of the caller.
+	 */
+	public Netty4Http2ClientHttpRequestFactory(EventLoopGroup eventLoopGroup) {
+		Assert.notNull(eventLoopGroup, "EventLoopGroup must not be null");
+		this.eventLoopGroup = eventLoopGroup;
+		this.defaultEventLoopGroup = false;
+	}
+
+
+	/**
+	 * Set the maximum size of an aggregated response body.
+	 * <p>By default this is set to
+	 * {@link Netty4ClientHttpRequestFactory#DEFAULT_MAX_RESPONSE_SIZE}.
+	 */
+	public void setMaxResponseSize(int maxResponseSize) {
+		this.maxResponseSize = maxResponseSize;
+	}
+
+	/**
+	 * Set the initial flow-control window size, in bytes, that this client
+	 * advertises for each stream, i.e. how much response data the server may
+	 * send on a stream before it has to wait for a window update.
+	 * <p>By default the HTTP/2 default of 65535 is used. Larger values improve
+	 * throughput for large responses on high-latency connections.
+	 */
+	public void setInitialWindowSize(int initialWindowSize) {
+		this.initialWindowSize = initialWindowSize;
+	}
+
+	/**
+	 * Set the maximum size, in bytes, of a frame this client accepts.
+	 * <p>By default the HTTP/2 default of 16384 is used.
+	 */
+	public void setMaxFrameSize(int maxFrameSize) {
+		this.maxFrameSize = maxFrameSize;
+	}
+
+	/**
+	 * Set the maximum size, in bytes, of the response headers this client accepts.
+	 * <p>By default Netty's default is used.
+	 */
+	public void setMaxHeaderListSize(long maxHeaderListSize) {
+		this.maxHeaderListSize = maxHeaderListSize;
+	}
+
+	/**
+	 * Set the SSL context for "https" URLs. It must be configured for ALPN
+	 * with "h2" as application protocol.
+	 * <p>A default client SslContext is configured if none has been provided.
+	 */
+	public void setSslContext(SslContext sslContext) {
+		this.sslContext = sslContext;
+	}
+
+	/**
+	 * Set the underlying connect timeout (in milliseconds).
+	 * A timeout value of 0 specifies an infinite timeout.
+	 */
+	public void setConnectTimeout(int connectTimeout) {
+		this.connectTimeout = connectTimeout;
+	}
+
+
+	/**
+	 * Set the time (in milliseconds) to wait for the complete response to a
+	 * request, for both synchronous and asynchronous requests. Once elapsed,
+	 * the request fails with a {@link java.net.SocketTimeoutException} and its
+	 * stream is reset, without affecting other streams on the connection.
+	 * <p>By default there is no timeout.
+	 */
+	public void setReadTimeout(int readTimeout) {
+		this.readTimeout = readTimeout;
+	}
+
+
+	@Override
+	public void afterPropertiesSet() {
+		if (this.sslContext == null) {
+			this.sslContext = getDefaultClientSslContext();
+		}
+	}
+
+	private SslContext getDefaultClientSslContext() {
+		try {
+			return SslContextBuilder.forClient()
+					.ciphers(Http2SecurityUtil.CIPHERS, SupportedCipherSuiteFilter.INSTANCE)
+					.applicationProtocolConfig(new ApplicationProtocolConfig(
+							ApplicationProtocolConfig.Protocol.ALPN,
+							ApplicationProtocolConfig.SelectorFailureBehavior.NO_ADVERTISE,
+							ApplicationProtocolConfig.SelectedListenerFailureBehavior.ACCEPT,
+							ApplicationProtocolNames.HTTP_2))
+					.build();
+		}
+		catch (SSLException ex) {
+			throw new IllegalStateException("Could not create default client SslContext", ex);
+		}
+	}
+
+
+	@Override
+	public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+		return createRequestInternal(uri, httpMethod);
+	}
+
+	@Override
+	public AsyncClientHttpRequest createAsyncRequest(URI uri, HttpMethod httpMethod) throws IOException {
+		return createRequestInternal(uri, httpMethod);
+	}
+
+	private Netty4Http2ClientHttpRequest createRequestInternal(URI uri, HttpMethod httpMethod) {
+		return new Netty4Http2ClientHttpRequest(getConnection(uri), uri, httpMethod);
+	}
+
+	private Netty4Http2Connection getConnection(URI uri) {
+		boolean isSecure = "https".equalsIgnoreCase(uri.getScheme());
+		int port = (uri.getPort() != -1 ? uri.getPort() : (isSecure ? 443 : 80));
+		String route = uri.getScheme() + "://" + uri.getHost() + ":" + port;
+		Netty4Http2Connection connection = this.connections.get(route);
+		if (connection != null && connection.isUsable()) {
+			return connection;
+		}
+		synchronized (this.connections) {
+			connection = this.connections.get(route);
+			if (connection == null || !connection.isUsable()) {
+				connection = connect(uri.getHost(), port, isSecure);
+				this.connections.put(route, connection);
+			}
+			return connection;
+		}
+	}
+
+	private Netty4Http2Connection connect(final String host, final int port, final boolean isSecure) {
+		final Http2Settings settings = new Http2Settings().pushEnabled(false);
+		if (this.initialWindowSize > 0) {
+			settings.initialWindowSize(this.initialWindowSize);
+		}
+		if (this.maxFrameSize > 0) {
+			settings.maxFrameSize(this.maxFrameSize);
+		}
+		if (this.maxHeaderListSize > 0) {
+			settings.maxHeaderListSize(this.maxHeaderListSize);
+		}
+
+		final Netty4Http2Connection http2Connection =
+				new Netty4Http2Connection((isSecure ? "https" : "http"), this.readTimeout);
+		Bootstrap bootstrap = new Bootstrap();
+		bootstrap.group(this.eventLoopGroup).channel(NioSocketChannel.class)
+				.handler(new ChannelInitializer<SocketChannel>() {
+					@Override
+					protected void initChannel(SocketChannel channel) throws Exception {
+						configureChannel(channel.config());
+						ChannelPipeline pipeline = channel.pipeline();
+						if (isSecure) {
+							Assert.notNull(sslContext, "sslContext should not be null");
+							pipeline.addLast(sslContext.newHandler(channel.alloc(), host, port));
+						}
+						Http2Connection connection = new DefaultHttp2Connection(false);
+						// Queue streams beyond the server's SETTINGS_MAX_CONCURRENT_STREAMS
+						// rather than failing them
+						Http2ConnectionEncoder encoder = new StreamBufferingEncoder(
+								new DefaultHttp2ConnectionEncoder(connection, new DefaultHttp2FrameWriter()));
+						Http2ConnectionDecoder decoder = new DefaultHttp2ConnectionDecoder(
+								connection, encoder, new DefaultHttp2FrameReader());
+						pipeline.addLast(new HttpToHttp2ConnectionHandlerBuilder()
+								.codec(decoder, encoder)
+								.initialSettings(settings)
+								.frameListener(new DelegatingDecompressorFrameListener(connection,
+										new InboundHttp2ToHttpAdapterBuilder(connection)
+												.maxContentLength(maxResponseSize)
+												.propagateSettings(false)
+												.build()))
+								.build());
+						pipeline.addLast(http2Connection.getResponseHandler(connection));
+					}
+				});
+		http2Connection.connect(bootstrap, host, port);
+		return http2Connection;
+	}
+
+	/**
+	 * Template method for changing properties on the given {@link SocketChannelConfig}.
+	 * <p>The default implementation sets the connect timeout based on the set property.
+	 * @param config the channel configuration
+	 */
+	protected void configureChannel(SocketChannelConfig config) {
+		if (this.connectTimeout >= 0) {
+			config.setConnectTimeoutMillis(this.connectTimeout);
+		}
+	}
+
+
+	@Override
+	public void destroy() throws InterruptedException {
+		for (Netty4Http2Connection connection : this.connections.values()) {
+			connection.close();
+		}
+		this.connections.clear();
+		if (this.defaultEventLoopGroup) {
+			// Clean up the EventLoopGroup if we created it in the constructor
+			this.eventLoopGroup.shutdownGracefully().sync();
+		}
+	}
+
+}
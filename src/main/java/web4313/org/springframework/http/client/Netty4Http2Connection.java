@@ -0,0 +1,262 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2ConnectionAdapter;
+import io.netty.handler.codec.http2.Http2ConnectionHandler;
+import io.netty.handler.codec.http2.Http2Error;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * A single HTTP/2 connection to a route, over which the requests of a
+ * {@link Netty4Http2ClientHttpRequestFactory} are multiplexed, each on its
+ * own stream.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+class Netty4Http2Connection {
+
+	private static final String STREAM_ID_HEADER = HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text().toString();
+
+	private static final String SCHEME_HEADER = HttpConversionUtil.ExtensionHeaderNames.SCHEME.text().toString();
+
+
+	private volatile ChannelFuture connectFuture;
+
+	private final String scheme;
+
+	private final int readTimeout;
+
+	private volatile Http2Connection http2Connection;
+
+	private final Map<Integer, SettableListenableFuture<ClientHttpResponse>> responseFutures =
+			new ConcurrentHashMap<Integer, SettableListenableFuture<ClientHttpResponse>>();
+
+	// Only modified from the event loop, so that streams are opened in order
+	private volatile int nextStreamId = 3;
+
+
+	public Netty4Http2Connection(String scheme, int readTimeout) {
+		this.scheme = scheme;
+		this.readTimeout = readTimeout;
+	}
+
+
+	/**
+	 * Connect through the given bootstrap, whose channel initializer is
+	 * expected to add the {@link #getResponseHandler response handler}.
+	 * Must be called before this connection is used for requests.
+	 */
+	public void connect(Bootstrap bootstrap, String host, int port) {
+		this.connectFuture = bootstrap.connect(host, port);
+	}
+
+	/**
+	 * Whether this connection is being established, or is open and can still
+	 * open new streams, i.e. the server has not sent a GOAWAY frame and the
+	 * stream ids have not been exhausted.
+	 */
+	public boolean isUsable() {
+		if (!this.connectFuture.isDone()) {
+			return true;
+		}
+		return (this.connectFuture.isSuccess() && this.connectFuture.channel().isActive() &&
+				!isGoAwayReceived() && !isStreamIdExhausted());
+	}
+
+	private boolean isGoAwayReceived() {
+		Http2Connection connection = this.http2Connection;
+		return (connection != null && connection.goAwayReceived());
+	}
+
+	private boolean isStreamIdExhausted() {
+		// Overflows to a negative value once all client stream ids are used
+		return (this.nextStreamId < 0);
+	}
+
+	/**
+	 * Return the handler to add to the end of the pipeline of the channel,
+	 * and observe the streams of the given HTTP/2 connection.
+	 */
+	public ResponseHandler getResponseHandler(Http2Connection http2Connection) {
+		this.http2Connection = http2Connection;
+		http2Connection.addListener(new Http2ConnectionAdapter() {
+			@Override
+			public void onStreamClosed(Http2Stream stream) {
+				// Reset by either side before a complete response was received
+				failStream(stream.id(), new IOException("HTTP/2 stream " + stream.id() + " closed without response"));
+			}
+		});
+		return new ResponseHandler();
+	}
+
+	/**
+	 * Send the given request on a new stream, once the connection is established.
+	 */
+	public void execute(final FullHttpRequest request, final SettableListenableFuture<ClientHttpResponse> responseFuture) {
+		this.connectFuture.addListener(new ChannelFutureListener() {
+			@Override
+			public void operationComplete(ChannelFuture future) throws Exception {
+				if (!future.isSuccess()) {
+					request.release();
+					responseFuture.setException(future.cause());
+					return;
+				}
+				final Channel channel = future.channel();
+				channel.eventLoop().execute(new Runnable() {
+					@Override
+					public void run() {
+						if (!channel.isActive() || isGoAwayReceived() || isStreamIdExhausted()) {
+							request.release();
+							responseFuture.setException(new IOException("HTTP/2 connection closed or closing"));
+							return;
+						}
+						int streamId = nextStreamId;
+						nextStreamId += 2;
+						request.headers().set(STREAM_ID_HEADER, streamId);
+						request.headers().set(SCHEME_HEADER, scheme);
+						responseFutures.put(streamId, responseFuture);
+						channel.writeAndFlush(request).addListener(new WriteListener(streamId));
+						if (readTimeout > 0) {
+							scheduleReadTimeout(channel, streamId);
+						}
+					}
+				});
+			}
+		});
+	}
+
+	/**
+	 * Close the connection.
+	 */
+	public void close() {
+		this.connectFuture.channel().close();
+	}
+
+	private void scheduleReadTimeout(final Channel channel, final int streamId) {
+		channel.eventLoop().schedule(new Runnable() {
+			@Override
+			public void run() {
+				if (failStream(streamId, new SocketTimeoutException(
+						"No response on HTTP/2 stream " + streamId + " within " + readTimeout + " ms"))) {
+					Http2ConnectionHandler handler = channel.pipeline().get(Http2ConnectionHandler.class);
+					if (handler != null && channel.isActive()) {
+						ChannelHandlerContext context = channel.pipeline().context(handler);
+						handler.resetStream(context, streamId, Http2Error.CANCEL.code(), context.newPromise());
+						context.flush();
+					}
+				}
+			}
+		}, this.readTimeout, TimeUnit.MILLISECONDS);
+	}
+
+	private boolean failStream(int streamId, Throwable cause) {
+		SettableListenableFuture<ClientHttpResponse> responseFuture = this.responseFutures.remove(streamId);
+		if (responseFuture != null) {
+			responseFuture.setException(cause);
+			return true;
+		}
+		return false;
+	}
+
+	private void failAll(Throwable cause) {
+		for (Integer streamId : this.responseFutures.keySet()) {
+			SettableListenableFuture<ClientHttpResponse> responseFuture = this.responseFutures.remove(streamId);
+			if (responseFuture != null) {
+				responseFuture.setException(cause);
+			}
+		}
+	}
+
+
+	private class WriteListener implements ChannelFutureListener {
+
+		private final int streamId;
+
+		public WriteListener(int streamId) {
+			this.streamId = streamId;
+		}
+
+		@Override
+		public void operationComplete(ChannelFuture future) throws Exception {
+			if (!future.isSuccess()) {
+				SettableListenableFuture<ClientHttpResponse> responseFuture = responseFutures.remove(this.streamId);
+				if (responseFuture != null) {
+					responseFuture.setException(future.cause());
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Completes the future of each stream with its aggregated response.
+	 */
+	class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext context, FullHttpResponse response) throws Exception {
+			Integer streamId = response.headers().getInt(STREAM_ID_HEADER);
+			SettableListenableFuture<ClientHttpResponse> responseFuture =
+					(streamId != null ? responseFutures.remove(streamId) : null);
+			if (responseFuture != null) {
+				for (HttpConversionUtil.ExtensionHeaderNames name : HttpConversionUtil.ExtensionHeaderNames.values()) {
+					response.headers().remove(name.text());
+				}
+				responseFuture.set(new Netty4ClientHttpResponse(response));
+			}
+		}
+
+		@Override
+		public void exceptionCaught(ChannelHandlerContext context, Throwable cause) throws Exception {
+			if (cause instanceof Http2Exception.StreamException) {
+				// e.g. RST_STREAM from the server: only that stream is affected
+				failStream(((Http2Exception.StreamException) cause).streamId(), cause);
+				return;
+			}
+			failAll(cause);
+			context.close();
+		}
+
+		@Override
+		public void channelInactive(ChannelHandlerContext context) throws Exception {
+			failAll(new IOException("HTTP/2 connection closed"));
+			super.channelInactive(context);
+		}
+	}
+
+}
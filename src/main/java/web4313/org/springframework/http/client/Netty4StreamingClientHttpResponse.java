@@ -0,0 +1,119 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+
+import io.netty.channel.Channel;
+import io.netty.handler.codec.http.HttpResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ClientHttpResponse} implementation based on Netty 4 that exposes
+ * the response body as it arrives, rather than after it has been aggregated.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see Netty4ClientHttpRequestFactory#setBufferResponseBody(boolean)
+ */
+class Netty4StreamingClientHttpResponse extends AbstractClientHttpResponse {
+
+	private final HttpResponse nettyResponse;
+
+	private final Netty4ChannelInputStream body;
+
+	private final Channel channel;
+
+	private final boolean pooled;
+
+	private volatile HttpHeaders headers;
+
+
+	/**
+	 * Create a new response.
+	 * @param nettyResponse the response head
+	 * @param body the stream the body chunks are queued on
+	 * @param channel the channel the response is received on
+	 * @param pooled whether the channel belongs to a connection pool, in which
+	 * case it is released to the pool by the request once the end of the
+	 * content has been received, rather than closed along with this response
+	 */
+	public Netty4StreamingClientHttpResponse(HttpResponse nettyResponse, Netty4ChannelInputStream body,
+			Channel channel, boolean pooled) {
+
+		Assert.notNull(nettyResponse, "HttpResponse must not be null");
+		Assert.notNull(body, "Netty4ChannelInputStream must not be null");
+		this.nettyResponse = nettyResponse;
+		this.body = body;
+		this.channel = channel;
+		this.pooled = pooled;
+	}
+
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public int getRawStatusCode() throws IOException {
+		return this.nettyResponse.getStatus().code();
+	}
+
+	@Override
+	@SuppressWarnings("deprecation")
+	public String getStatusText() throws IOException {
+		return this.nettyResponse.getStatus().reasonPhrase();
+	}
+
+	@Override
+	public HttpHeaders getHeaders() {
+		if (this.headers == null) {
+			HttpHeaders headers = new HttpHeaders();
+			for (Map.Entry<String, String> entry : this.nettyResponse.headers()) {
+				headers.add(entry.getKey(), entry.getValue());
+			}
+			this.headers = headers;
+		}
+		return this.headers;
+	}
+
+	@Override
+	public InputStream getBody() throws IOException {
+		return this.body;
+	}
+
+	@Override
+	public void close() {
+		this.body.close();
+		if (!this.pooled) {
+			this.channel.close();
+			return;
+		}
+		// Check on the event loop, where the end of the content is received and
+		// the channel released: a partially received response can't be reused
+		this.channel.eventLoop().execute(new Runnable() {
+			@Override
+			public void run() {
+				if (!body.isReceived()) {
+					channel.close();
+				}
+			}
+		});
+	}
+
+}
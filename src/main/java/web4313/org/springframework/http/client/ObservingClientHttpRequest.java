@@ -0,0 +1,170 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.HttpRequest;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * {@link ClientHttpRequest} and {@link AsyncClientHttpRequest} implementation
+ * that times the execution of a delegate request, created by an
+ * {@link ObservingClientHttpRequestFactory}.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+final class ObservingClientHttpRequest implements ClientHttpRequest, AsyncClientHttpRequest {
+
+	private final HttpRequest delegate;
+
+	private final String uriTemplate;
+
+	private final ClientHttpRequestObserver observer;
+
+	private CountingOutputStream body;
+
+
+	ObservingClientHttpRequest(HttpRequest delegate, String uriTemplate, ClientHttpRequestObserver observer) {
+		this.delegate = delegate;
+		this.uriTemplate = uriTemplate;
+		this.observer = observer;
+	}
+
+
+	@Override
+	public HttpMethod getMethod() {
+		return this.delegate.getMethod();
+	}
+
+	@Override
+	public URI getURI() {
+		return this.delegate.getURI();
+	}
+
+	@Override
+	public HttpHeaders getHeaders() {
+		return this.delegate.getHeaders();
+	}
+
+	@Override
+	public OutputStream getBody() throws IOException {
+		if (this.body == null) {
+			this.body = new CountingOutputStream(((HttpOutputMessage) this.delegate).getBody());
+		}
+		return this.body;
+	}
+
+	@Override
+	public ClientHttpResponse execute() throws IOException {
+		long startTime = System.nanoTime();
+		try {
+			ClientHttpResponse response = ((ClientHttpRequest) this.delegate).execute();
+			return new ObservingClientHttpResponse(response, this, startTime, System.nanoTime() - startTime);
+		}
+		catch (IOException ex) {
+			onFailure(ex, startTime);
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			onFailure(ex, startTime);
+			throw ex;
+		}
+	}
+
+	@Override
+	public ListenableFuture<ClientHttpResponse> executeAsync() throws IOException {
+		final long startTime = System.nanoTime();
+		ListenableFuture<ClientHttpResponse> future;
+		try {
+			future = ((AsyncClientHttpRequest) this.delegate).executeAsync();
+		}
+		catch (IOException ex) {
+			onFailure(ex, startTime);
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			onFailure(ex, startTime);
+			throw ex;
+		}
+		final SettableListenableFuture<ClientHttpResponse> result = new SettableListenableFuture<ClientHttpResponse>();
+		future.addCallback(new ListenableFutureCallback<ClientHttpResponse>() {
+			@Override
+			public void onSuccess(ClientHttpResponse response) {
+				result.set(new ObservingClientHttpResponse(response, ObservingClientHttpRequest.this,
+						startTime, System.nanoTime() - startTime));
+			}
+			@Override
+			public void onFailure(Throwable ex) {
+				ObservingClientHttpRequest.this.onFailure(ex, startTime);
+				result.setException(ex);
+			}
+		});
+		return result;
+	}
+
+	private void onFailure(Throwable ex, long startTime) {
+		long elapsed = System.nanoTime() - startTime;
+		this.observer.onRequestCompleted(new ClientHttpRequestObservation(getMethod(), getURI(),
+				this.uriTemplate, -1, ex, elapsed, elapsed, getBytesSent(), 0));
+	}
+
+	void onResponseClosed(int statusCode, long startTime, long responseTime, long bytesReceived) {
+		this.observer.onRequestCompleted(new ClientHttpRequestObservation(getMethod(), getURI(),
+				this.uriTemplate, statusCode, null, responseTime, System.nanoTime() - startTime,
+				getBytesSent(), bytesReceived));
+	}
+
+	private long getBytesSent() {
+		return (this.body != null ? this.body.getCount() : 0);
+	}
+
+
+	private static class CountingOutputStream extends FilterOutputStream {
+
+		private long count;
+
+		public CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			this.out.write(b);
+			this.count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+			this.count += len;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+	}
+
+}
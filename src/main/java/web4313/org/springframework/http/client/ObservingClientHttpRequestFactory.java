@@ -0,0 +1,88 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.net.URI;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+
+/**
+ * Wrapper for a {@link ClientHttpRequestFactory} that reports the execution
+ * of each request to a {@link ClientHttpRequestObserver}, including the
+ * response time, the response status or exception, and the number of body
+ * bytes sent and received.
+ *
+ * <p>If the wrapped factory is also an {@link AsyncClientHttpRequestFactory},
+ * as {@link SimpleClientHttpRequestFactory}, {@link OkHttp3ClientHttpRequestFactory}
+ * and {@link Netty4ClientHttpRequestFactory} are, asynchronous requests are
+ * observed as well. Requests created while a {@link UriTemplateHolder URI template}
+ * is bound to the current thread, e.g. by {@code RestTemplate}, are reported
+ * with that template.
+ *
+ * <p>A request is reported when its response is closed, so that reading the
+ * body is included, or when it fails. Responses that are never closed are
+ * never reported.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see ClientHttpMetrics
+ */
+public class ObservingClientHttpRequestFactory extends AbstractClientHttpRequestFactoryWrapper
+		implements AsyncClientHttpRequestFactory {
+
+	private final AsyncClientHttpRequestFactory asyncRequestFactory;
+
+	private final ClientHttpRequestObserver observer;
+
+
+	/**
+	 * Create a new {@code ObservingClientHttpRequestFactory} for the given
+	 * request factory and observer.
+	 * @param requestFactory the request factory to wrap
+	 * @param observer the observer to report requests to
+	 */
+	public ObservingClientHttpRequestFactory(ClientHttpRequestFactory requestFactory,
+			ClientHttpRequestObserver observer) {
+
+		super(requestFactory);
+		Assert.notNull(observer, "ClientHttpRequestObserver must not be null");
+		this.asyncRequestFactory = (requestFactory instanceof AsyncClientHttpRequestFactory ?
+				(AsyncClientHttpRequestFactory) requestFactory : null);
+		this.observer = observer;
+	}
+
+
+	@Override
+	protected ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod, ClientHttpRequestFactory requestFactory)
+			throws IOException {
+
+		ClientHttpRequest request = requestFactory.createRequest(uri, httpMethod);
+		return new ObservingClientHttpRequest(request, UriTemplateHolder.getUriTemplate(), this.observer);
+	}
+
+	@Override
+	public AsyncClientHttpRequest createAsyncRequest(URI uri, HttpMethod httpMethod) throws IOException {
+		if (this.asyncRequestFactory == null) {
+			throw new IllegalStateException(
+					"Wrapped ClientHttpRequestFactory does not implement AsyncClientHttpRequestFactory");
+		}
+		AsyncClientHttpRequest request = this.asyncRequestFactory.createAsyncRequest(uri, httpMethod);
+		return new ObservingClientHttpRequest(request, UriTemplateHolder.getUriTemplate(), this.observer);
+	}
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+
+/**
+ * {@link ClientHttpResponse} implementation that counts the body bytes read
+ * from a delegate response, and reports the request to its
+ * {@link ClientHttpRequestObserver} when closed.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+final class ObservingClientHttpResponse extends AbstractClientHttpResponse {
+
+	private final ClientHttpResponse delegate;
+
+	private final ObservingClientHttpRequest request;
+
+	private final long startTime;
+
+	private final long responseTime;
+
+	private CountingInputStream body;
+
+	private boolean closed;
+
+
+	ObservingClientHttpResponse(ClientHttpResponse delegate, ObservingClientHttpRequest request,
+			long startTime, long responseTime) {
+
+		this.delegate = delegate;
+		this.request = request;
+		this.startTime = startTime;
+		this.responseTime = responseTime;
+	}
+
+
+	@Override
+	public int getRawStatusCode() throws IOException {
+		return this.delegate.getRawStatusCode();
+	}
+
+	@Override
+	public String getStatusText() throws IOException {
+		return this.delegate.getStatusText();
+	}
+
+	@Override
+	public HttpHeaders getHeaders() {
+		return this.delegate.getHeaders();
+	}
+
+	@Override
+	public InputStream getBody() throws IOException {
+		if (this.body == null) {
+			this.body = new CountingInputStream(this.delegate.getBody());
+		}
+		return this.body;
+	}
+
+	@Override
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		int statusCode;
+		try {
+			statusCode = this.delegate.getRawStatusCode();
+		}
+		catch (IOException ex) {
+			statusCode = -1;
+		}
+		this.delegate.close();
+		this.request.onResponseClosed(statusCode, this.startTime, this.responseTime,
+				(this.body != null ? this.body.getCount() : 0));
+	}
+
+
+	private static class CountingInputStream extends FilterInputStream {
+
+		private long count;
+
+		public CountingInputStream(InputStream in) {
+			super(in);
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = this.in.read();
+			if (b != -1) {
+				this.count++;
+			}
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int count = this.in.read(b, off, len);
+			if (count > 0) {
+				this.count += count;
+			}
+			return count;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			long skipped = this.in.skip(n);
+			this.count += skipped;
+			return skipped;
+		}
+
+		public long getCount() {
+			return this.count;
+		}
+	}
+
+}
@@ -40,6 +40,8 @@ public class SimpleClientHttpRequestFactory implements ClientHttpRequestFactory,
 
 	private static final int DEFAULT_CHUNK_SIZE = 4096;
 
+	private static final int DEFAULT_STREAMING_THRESHOLD = 1024 * 1024;
+
 
 	private Proxy proxy;
 
@@ -47,6 +49,8 @@ public class SimpleClientHttpRequestFactory implements ClientHttpRequestFactory,
 
 	private int chunkSize = DEFAULT_CHUNK_SIZE;
 
+	private int streamingThreshold = DEFAULT_STREAMING_THRESHOLD;
+
 	private int connectTimeout = -1;
 
 	private int readTimeout = -1;
@@ -93,6 +97,25 @@ public class SimpleClientHttpRequestFactory implements ClientHttpRequestFactory,
 		this.chunkSize = chunkSize;
 	}
 
+	/**
+	 * Set the request body size beyond which a buffered request switches to
+	 * streaming, for synchronous requests.
+	 * <p>A body whose {@link org.springframework.http.HttpHeaders#getContentLength()
+	 * Content-Length} is known in advance and exceeds the threshold, e.g. a
+	 * {@link org.springframework.core.io.Resource} written by the
+	 * {@link org.springframework.http.converter.ResourceHttpMessageConverter},
+	 * is streamed from the start. A body of unknown length is buffered until
+	 * it exceeds the threshold, and then sent with "Chunked transfer encoding".
+	 * <p>Default is 1M. Set this to -1 to always buffer the entire body.
+	 * <p>Note that this parameter is only used when
+	 * {@link #setBufferRequestBody(boolean) bufferRequestBody} and
+	 * {@link #setOutputStreaming(boolean) outputStreaming} are set to {@code true}.
+	 * @since 4.3.14
+	 */
+	public void setStreamingThreshold(int streamingThreshold) {
+		this.streamingThreshold = streamingThreshold;
+	}
+
 	/**
 	 * Set the underlying URLConnection's connect timeout (in milliseconds).
 	 * A timeout value of 0 specifies an infinite timeout.
@@ -142,6 +165,10 @@ public class SimpleClientHttpRequestFactory implements ClientHttpRequestFactory,
 		prepareConnection(connection, httpMethod.name());
 
 		if (this.bufferRequestBody) {
+			if (this.outputStreaming && this.streamingThreshold >= 0) {
+				return new SimpleThresholdStreamingClientHttpRequest(
+						connection, this.chunkSize, this.streamingThreshold);
+			}
 			return new SimpleBufferingClientHttpRequest(connection, this.outputStreaming);
 		}
 		else {
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URISyntaxException;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.FileCopyUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * {@link ClientHttpRequest} implementation that uses standard JDK facilities
+ * to execute requests whose body is buffered up to a threshold and streamed
+ * beyond it. Created via the {@link SimpleClientHttpRequestFactory}.
+ *
+ * <p>A body whose "Content-Length" is known in advance and exceeds the
+ * threshold is streamed from the start. A body of unknown length is buffered
+ * until it exceeds the threshold, at which point the connection switches to
+ * "Chunked transfer encoding", the buffered part is written, and the rest of
+ * the body is streamed.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see SimpleClientHttpRequestFactory#setStreamingThreshold(int)
+ */
+final class SimpleThresholdStreamingClientHttpRequest extends AbstractClientHttpRequest {
+
+	private final HttpURLConnection connection;
+
+	private final int chunkSize;
+
+	private final int streamingThreshold;
+
+	private HttpHeaders bodyHeaders;
+
+	private ByteArrayOutputStream bufferedOutput;
+
+	private OutputStream streamingOutput;
+
+	private OutputStream body;
+
+
+	SimpleThresholdStreamingClientHttpRequest(HttpURLConnection connection, int chunkSize, int streamingThreshold) {
+		this.connection = connection;
+		this.chunkSize = chunkSize;
+		this.streamingThreshold = streamingThreshold;
+	}
+
+
+	@Override
+	public HttpMethod getMethod() {
+		return HttpMethod.resolve(this.connection.getRequestMethod());
+	}
+
+	@Override
+	public URI getURI() {
+		try {
+			return this.connection.getURL().toURI();
+		}
+		catch (URISyntaxException ex) {
+			throw new IllegalStateException("Could not get HttpURLConnection URI: " + ex.getMessage(), ex);
+		}
+	}
+
+	@Override
+	protected OutputStream getBodyInternal(HttpHeaders headers) throws IOException {
+		if (this.body == null) {
+			this.bodyHeaders = headers;
+			long contentLength = headers.getContentLength();
+			if (contentLength > this.streamingThreshold) {
+				startStreaming(contentLength);
+				this.body = this.streamingOutput;
+			}
+			else {
+				this.bufferedOutput = new ByteArrayOutputStream(1024);
+				this.body = new ThresholdOutputStream();
+			}
+		}
+		return StreamUtils.nonClosing(this.body);
+	}
+
+	private void startStreaming(long contentLength) throws IOException {
+		if (contentLength >= 0 && contentLength <= Integer.MAX_VALUE) {
+			this.connection.setFixedLengthStreamingMode((int) contentLength);
+		}
+		else {
+			this.connection.setChunkedStreamingMode(this.chunkSize);
+		}
+		SimpleBufferingClientHttpRequest.addHeaders(this.connection, this.bodyHeaders);
+		this.connection.connect();
+		this.streamingOutput = this.connection.getOutputStream();
+	}
+
+	@Override
+	protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+		if (this.streamingOutput != null) {
+			try {
+				this.streamingOutput.close();
+			}
+			catch (IOException ex) {
+				// ignore, as SimpleStreamingClientHttpRequest does
+			}
+			return new SimpleClientHttpResponse(this.connection);
+		}
+
+		byte[] bytes = (this.bufferedOutput != null ? this.bufferedOutput.toByteArray() : new byte[0]);
+		this.bufferedOutput = null;
+		if (headers.getContentLength() < 0) {
+			headers.setContentLength(bytes.length);
+		}
+		SimpleBufferingClientHttpRequest.addHeaders(this.connection, headers);
+		// JDK <1.8 doesn't support getOutputStream with HTTP DELETE
+		if (HttpMethod.DELETE == getMethod() && bytes.length == 0) {
+			this.connection.setDoOutput(false);
+		}
+		if (this.connection.getDoOutput()) {
+			this.connection.setFixedLengthStreamingMode(bytes.length);
+		}
+		this.connection.connect();
+		if (this.connection.getDoOutput()) {
+			FileCopyUtils.copy(bytes, this.connection.getOutputStream());
+		}
+		else {
+			// Immediately trigger the request in a no-output scenario as well
+			this.connection.getResponseCode();
+		}
+		return new SimpleClientHttpResponse(this.connection);
+	}
+
+
+	/**
+	 * OutputStream that buffers up to the threshold, and then switches the
+	 * connection to streaming mode.
+	 */
+	private class ThresholdOutputStream extends OutputStream {
+
+		@Override
+		public void write(int b) throws IOException {
+			getTarget(1).write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			getTarget(len).write(b, off, len);
+		}
+
+		@Override
+		public void flush() throws IOException {
+			if (streamingOutput != null) {
+				streamingOutput.flush();
+			}
+		}
+
+		private OutputStream getTarget(int len) throws IOException {
+			if (streamingOutput == null && bufferedOutput.size() + len > streamingThreshold) {
+				startStreaming(-1);
+				bufferedOutput.writeTo(streamingOutput);
+				bufferedOutput = null;
+			}
+			return (streamingOutput != null ? streamingOutput : bufferedOutput);
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client;
+
+import org.springframework.core.NamedThreadLocal;
+
+/**
+ * Holder class to expose the URI template of the request that is about to be
+ * created in the form of a thread-bound String, e.g. {@code "/items/{id}"}
+ * rather than the expanded {@code "/items/42"}.
+ *
+ * <p>{@link org.springframework.web.client.RestTemplate} and
+ * {@link org.springframework.web.client.AsyncRestTemplate} expose the template
+ * while executing requests for a URI template, so that request factories such
+ * as {@link ObservingClientHttpRequestFactory} can tag requests with it.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+public abstract class UriTemplateHolder {
+
+	private static final ThreadLocal<String> uriTemplateHolder = new NamedThreadLocal<String>("URI template");
+
+
+	/**
+	 * Reset the URI template for the current thread.
+	 */
+	public static void resetUriTemplate() {
+		uriTemplateHolder.remove();
+	}
+
+	/**
+	 * Bind the given URI template to the current thread.
+	 * @param uriTemplate the URI template to expose,
+	 * or {@code null} to reset the thread-bound template
+	 */
+	public static void setUriTemplate(String uriTemplate) {
+		if (uriTemplate == null) {
+			resetUriTemplate();
+		}
+		else {
+			uriTemplateHolder.set(uriTemplate);
+		}
+	}
+
+	/**
+	 * Return the URI template currently bound to the thread.
+	 * @return the URI template, or {@code null} if none bound
+	 */
+	public static String getUriTemplate() {
+		return uriTemplateHolder.get();
+	}
+
+}
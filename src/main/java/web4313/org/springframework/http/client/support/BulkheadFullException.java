@@ -0,0 +1,53 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.support;
+
+import java.io.IOException;
+
+/**
+ * Exception thrown by a {@link BulkheadInterceptor} when a request is
+ * rejected because the maximum number of concurrent requests for its route
+ * has been reached.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+@SuppressWarnings("serial")
+public class BulkheadFullException extends IOException {
+
+	private final String route;
+
+
+	/**
+	 * Create a new {@code BulkheadFullException}.
+	 * @param route the route whose concurrency limit has been reached
+	 * @param maxConcurrentCalls the concurrency limit
+	 */
+	public BulkheadFullException(String route, int maxConcurrentCalls) {
+		super("Maximum of " + maxConcurrentCalls + " concurrent requests to [" + route + "] reached");
+		this.route = route;
+	}
+
+
+	/**
+	 * Return the route whose concurrency limit has been reached.
+	 */
+	public String getRoute() {
+		return this.route;
+	}
+
+}
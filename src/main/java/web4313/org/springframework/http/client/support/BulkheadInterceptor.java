@@ -0,0 +1,200 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.support;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.AsyncClientHttpRequestExecution;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureAdapter;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+/**
+ * {@link ClientHttpRequestInterceptor} and {@link AsyncClientHttpRequestInterceptor}
+ * that limits the number of concurrent requests per route, i.e. per scheme,
+ * host and port, so that a slow downstream service cannot tie up all threads
+ * of the calling application. Requests beyond the limit wait for up to the
+ * {@link #setMaxWaitTime maximum wait time} and then fail with a
+ * {@link BulkheadFullException}.
+ *
+ * <p>A permit is held until the response is closed, i.e. until its body has
+ * been read, or until the request fails. Callers using the interceptor
+ * directly must therefore always close the response, as
+ * {@link org.springframework.web.client.RestTemplate RestTemplate} does.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see CircuitBreakerInterceptor
+ */
+public class BulkheadInterceptor implements ClientHttpRequestInterceptor, AsyncClientHttpRequestInterceptor {
+
+	private final int maxConcurrentCalls;
+
+	private long maxWaitTime = 0;
+
+	private final ConcurrentMap<String, Semaphore> semaphores = new ConcurrentHashMap<String, Semaphore>();
+
+
+	/**
+	 * Create a new interceptor with the given maximum number of concurrent
+	 * requests per route.
+	 */
+	public BulkheadInterceptor(int maxConcurrentCalls) {
+		Assert.isTrue(maxConcurrentCalls > 0, "'maxConcurrentCalls' must be greater than 0");
+		this.maxConcurrentCalls = maxConcurrentCalls;
+	}
+
+
+	/**
+	 * Set how long (in milliseconds) a request waits for a permit once the
+	 * limit has been reached.
+	 * <p>By default this is set to 0, i.e. such requests fail immediately.
+	 */
+	public void setMaxWaitTime(long maxWaitTime) {
+		this.maxWaitTime = maxWaitTime;
+	}
+
+	/**
+	 * Return the configured maximum number of concurrent requests per route.
+	 */
+	public int getMaxConcurrentCalls() {
+		return this.maxConcurrentCalls;
+	}
+
+	/**
+	 * Return the number of requests in progress, keyed by route
+	 * (e.g. "http://example.org:8080").
+	 */
+	public Map<String, Integer> getActiveCalls() {
+		Map<String, Integer> result = new LinkedHashMap<String, Integer>();
+		for (Map.Entry<String, Semaphore> entry : this.semaphores.entrySet()) {
+			result.put(entry.getKey(), this.maxConcurrentCalls - entry.getValue().availablePermits());
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+
+		Semaphore semaphore = acquire(request.getURI());
+		ClientHttpResponse response;
+		try {
+			response = execution.execute(request, body);
+		}
+		catch (IOException ex) {
+			semaphore.release();
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			semaphore.release();
+			throw ex;
+		}
+		return new CloseCallbackClientHttpResponse(response, new ReleaseCallback(semaphore));
+	}
+
+	@Override
+	public ListenableFuture<ClientHttpResponse> intercept(HttpRequest request, byte[] body,
+			AsyncClientHttpRequestExecution execution) throws IOException {
+
+		final Semaphore semaphore = acquire(request.getURI());
+		ListenableFuture<ClientHttpResponse> future;
+		try {
+			future = execution.executeAsync(request, body);
+		}
+		catch (IOException ex) {
+			semaphore.release();
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			semaphore.release();
+			throw ex;
+		}
+		future.addCallback(new ListenableFutureCallback<ClientHttpResponse>() {
+			@Override
+			public void onSuccess(ClientHttpResponse result) {
+				// Released once the response is closed
+			}
+			@Override
+			public void onFailure(Throwable ex) {
+				semaphore.release();
+			}
+		});
+		return new ListenableFutureAdapter<ClientHttpResponse, ClientHttpResponse>(future) {
+			@Override
+			protected ClientHttpResponse adapt(ClientHttpResponse response) {
+				return new CloseCallbackClientHttpResponse(response, new ReleaseCallback(semaphore));
+			}
+		};
+	}
+
+	private Semaphore acquire(URI uri) throws IOException {
+		String route = CircuitBreakerInterceptor.getRoute(uri);
+		Semaphore semaphore = this.semaphores.get(route);
+		if (semaphore == null) {
+			semaphore = new Semaphore(this.maxConcurrentCalls);
+			Semaphore existing = this.semaphores.putIfAbsent(route, semaphore);
+			if (existing != null) {
+				semaphore = existing;
+			}
+		}
+		boolean acquired;
+		try {
+			acquired = (this.maxWaitTime > 0 ?
+					semaphore.tryAcquire(this.maxWaitTime, TimeUnit.MILLISECONDS) : semaphore.tryAcquire());
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			acquired = false;
+		}
+		if (!acquired) {
+			throw new BulkheadFullException(route, this.maxConcurrentCalls);
+		}
+		return semaphore;
+	}
+
+
+	private static class ReleaseCallback implements Runnable {
+
+		private final Semaphore semaphore;
+
+		public ReleaseCallback(Semaphore semaphore) {
+			this.semaphore = semaphore;
+		}
+
+		@Override
+		public void run() {
+			this.semaphore.release();
+		}
+	}
+
+}
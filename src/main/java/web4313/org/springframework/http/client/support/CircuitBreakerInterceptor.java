@@ -0,0 +1,476 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.support;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.AsyncClientHttpRequestExecution;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureAdapter;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+/**
+ * {@link ClientHttpRequestInterceptor} and {@link AsyncClientHttpRequestInterceptor}
+ * with a circuit breaker per route, i.e. per scheme, host and port, so that
+ * requests to a failing or slow downstream service fail fast with a
+ * {@link CircuitBreakerOpenException} rather than tying up threads.
+ *
+ * <p>The outcome of the most recent requests on a route is recorded in a
+ * sliding window. A request fails if it raises an exception or if the
+ * response has a 5xx status, and is slow if it takes longer than the
+ * {@link #setSlowCallDurationThreshold slow call duration threshold} until
+ * the response is closed, i.e. including reading the response body. Once
+ * the window has a {@link #setMinimumNumberOfCalls minimum number of calls},
+ * and the failure rate or slow call rate reaches its threshold, the circuit
+ * breaker opens and rejects all requests on that route.
+ *
+ * <p>After the {@link #setWaitDurationInOpenState wait duration} a number of
+ * probe requests are let through. If all of them succeed in time, the circuit
+ * breaker closes again, otherwise it opens for another wait duration.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see BulkheadInterceptor
+ */
+public class CircuitBreakerInterceptor implements ClientHttpRequestInterceptor, AsyncClientHttpRequestInterceptor {
+
+	private static final Log logger = LogFactory.getLog(CircuitBreakerInterceptor.class);
+
+
+	private int slidingWindowSize = 100;
+
+	private int minimumNumberOfCalls = 10;
+
+	private float failureRateThreshold = 50;
+
+	private float slowCallRateThreshold = 100;
+
+	private long slowCallDurationThreshold = 60000;
+
+	private long waitDurationInOpenState = 60000;
+
+	private int permittedCallsInHalfOpenState = 10;
+
+	private final ConcurrentMap<String, CircuitBreaker> circuitBreakers =
+			new ConcurrentHashMap<String, CircuitBreaker>();
+
+
+	/**
+	 * Set the number of most recent requests per route whose outcome is
+	 * used to calculate the failure and slow call rates.
+	 * <p>By default this is set to 100.
+	 */
+	public void setSlidingWindowSize(int slidingWindowSize) {
+		Assert.isTrue(slidingWindowSize > 0, "'slidingWindowSize' must be greater than 0");
+		this.slidingWindowSize = slidingWindowSize;
+	}
+
+	/**
+	 * Set the minimum number of recorded requests before the failure and slow
+	 * call rates are evaluated.
+	 * <p>By default this is set to 10.
+	 */
+	public void setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+		Assert.isTrue(minimumNumberOfCalls > 0, "'minimumNumberOfCalls' must be greater than 0");
+		this.minimumNumberOfCalls = minimumNumberOfCalls;
+	}
+
+	/**
+	 * Set the percentage of failed requests at which the circuit breaker opens.
+	 * <p>By default this is set to 50.
+	 */
+	public void setFailureRateThreshold(float failureRateThreshold) {
+		Assert.isTrue(failureRateThreshold > 0 && failureRateThreshold <= 100,
+				"'failureRateThreshold' must be between 0 and 100");
+		this.failureRateThreshold = failureRateThreshold;
+	}
+
+	/**
+	 * Set the percentage of slow requests at which the circuit breaker opens.
+	 * <p>By default this is set to 100.
+	 */
+	public void setSlowCallRateThreshold(float slowCallRateThreshold) {
+		Assert.isTrue(slowCallRateThreshold > 0 && slowCallRateThreshold <= 100,
+				"'slowCallRateThreshold' must be between 0 and 100");
+		this.slowCallRateThreshold = slowCallRateThreshold;
+	}
+
+	/**
+	 * Set the duration (in milliseconds) above which a request is slow.
+	 * <p>By default this is set to 60000.
+	 */
+	public void setSlowCallDurationThreshold(long slowCallDurationThreshold) {
+		this.slowCallDurationThreshold = slowCallDurationThreshold;
+	}
+
+	/**
+	 * Set how long (in milliseconds) an open circuit breaker rejects requests
+	 * before letting probe requests through.
+	 * <p>By default this is set to 60000.
+	 */
+	public void setWaitDurationInOpenState(long waitDurationInOpenState) {
+		this.waitDurationInOpenState = waitDurationInOpenState;
+	}
+
+	/**
+	 * Set the number of probe requests let through once the wait duration
+	 * has elapsed, all of which must succeed for the circuit breaker to close.
+	 * <p>By default this is set to 10.
+	 */
+	public void setPermittedCallsInHalfOpenState(int permittedCallsInHalfOpenState) {
+		Assert.isTrue(permittedCallsInHalfOpenState > 0, "'permittedCallsInHalfOpenState' must be greater than 0");
+		this.permittedCallsInHalfOpenState = permittedCallsInHalfOpenState;
+	}
+
+	/**
+	 * Return the circuit breakers created so far, keyed by route
+	 * (e.g. "http://example.org:8080"), e.g. for monitoring purposes.
+	 */
+	public Map<String, CircuitBreaker> getCircuitBreakers() {
+		return Collections.unmodifiableMap(new LinkedHashMap<String, CircuitBreaker>(this.circuitBreakers));
+	}
+
+
+	@Override
+	public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+			throws IOException {
+
+		CircuitBreaker circuitBreaker = acquirePermission(request.getURI());
+		long startTime = System.nanoTime();
+		ClientHttpResponse response;
+		try {
+			response = execution.execute(request, body);
+		}
+		catch (IOException ex) {
+			circuitBreaker.onResult(false, startTime);
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			circuitBreaker.onResult(false, startTime);
+			throw ex;
+		}
+		boolean success;
+		try {
+			success = !isFailure(response);
+		}
+		catch (IOException ex) {
+			response.close();
+			circuitBreaker.onResult(false, startTime);
+			throw ex;
+		}
+		return new CloseCallbackClientHttpResponse(response, new ResultCallback(circuitBreaker, success, startTime));
+	}
+
+	@Override
+	public ListenableFuture<ClientHttpResponse> intercept(HttpRequest request, byte[] body,
+			AsyncClientHttpRequestExecution execution) throws IOException {
+
+		final CircuitBreaker circuitBreaker = acquirePermission(request.getURI());
+		final long startTime = System.nanoTime();
+		ListenableFuture<ClientHttpResponse> future;
+		try {
+			future = execution.executeAsync(request, body);
+		}
+		catch (IOException ex) {
+			circuitBreaker.onResult(false, startTime);
+			throw ex;
+		}
+		catch (RuntimeException ex) {
+			circuitBreaker.onResult(false, startTime);
+			throw ex;
+		}
+		future.addCallback(new ListenableFutureCallback<ClientHttpResponse>() {
+			@Override
+			public void onSuccess(ClientHttpResponse response) {
+				// Recorded once the response is closed
+			}
+			@Override
+			public void onFailure(Throwable ex) {
+				circuitBreaker.onResult(false, startTime);
+			}
+		});
+		return new ListenableFutureAdapter<ClientHttpResponse, ClientHttpResponse>(future) {
+			@Override
+			protected ClientHttpResponse adapt(ClientHttpResponse response) {
+				boolean success;
+				try {
+					success = !isFailure(response);
+				}
+				catch (IOException ex) {
+					success = false;
+				}
+				return new CloseCallbackClientHttpResponse(response, new ResultCallback(circuitBreaker, success, startTime));
+			}
+		};
+	}
+
+	/**
+	 * Whether the given response counts as a failure.
+	 * <p>The default implementation returns {@code true} for 5xx status codes.
+	 * @param response the response
+	 * @return {@code true} if the response is a failure
+	 * @throws IOException in case of I/O errors
+	 */
+	protected boolean isFailure(ClientHttpResponse response) throws IOException {
+		return (response.getRawStatusCode() / 100 == 5);
+	}
+
+	private CircuitBreaker acquirePermission(URI uri) throws IOException {
+		String route = getRoute(uri);
+		CircuitBreaker circuitBreaker = this.circuitBreakers.get(route);
+		if (circuitBreaker == null) {
+			circuitBreaker = new CircuitBreaker(route);
+			CircuitBreaker existing = this.circuitBreakers.putIfAbsent(route, circuitBreaker);
+			if (existing != null) {
+				circuitBreaker = existing;
+			}
+		}
+		if (!circuitBreaker.tryAcquirePermission()) {
+			throw new CircuitBreakerOpenException(route);
+		}
+		return circuitBreaker;
+	}
+
+	/**
+	 * Return the route, i.e. scheme, host and port, of the given URI.
+	 */
+	static String getRoute(URI uri) {
+		int port = uri.getPort();
+		if (port == -1) {
+			port = ("https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80);
+		}
+		return uri.getScheme() + "://" + uri.getHost() + ":" + port;
+	}
+
+
+	/**
+	 * Records the outcome of a request with its circuit breaker once the
+	 * response is closed.
+	 */
+	private static class ResultCallback implements Runnable {
+
+		private final CircuitBreaker circuitBreaker;
+
+		private final boolean success;
+
+		private final long startTime;
+
+		public ResultCallback(CircuitBreaker circuitBreaker, boolean success, long startTime) {
+			this.circuitBreaker = circuitBreaker;
+			this.success = success;
+			this.startTime = startTime;
+		}
+
+		@Override
+		public void run() {
+			this.circuitBreaker.onResult(this.success, this.startTime);
+		}
+	}
+
+
+	/**
+	 * The state of a {@link CircuitBreaker}.
+	 */
+	public enum State {
+
+		/** Requests are let through and their outcome is recorded. */
+		CLOSED,
+
+		/** Requests are rejected. */
+		OPEN,
+
+		/** A limited number of probe requests are let through. */
+		HALF_OPEN
+	}
+
+
+	/**
+	 * The circuit breaker for a single route.
+	 */
+	public class CircuitBreaker {
+
+		private final String route;
+
+		private final byte[] outcomes = new byte[slidingWindowSize];
+
+		private int outcomeIndex;
+
+		private int callCount;
+
+		private int failureCount;
+
+		private int slowCallCount;
+
+		private State state = State.CLOSED;
+
+		private long openedAt;
+
+		private int halfOpenPermits;
+
+		private int halfOpenSuccesses;
+
+		CircuitBreaker(String route) {
+			this.route = route;
+		}
+
+		/**
+		 * Return the route this circuit breaker applies to.
+		 */
+		public String getRoute() {
+			return this.route;
+		}
+
+		/**
+		 * Return the current state.
+		 */
+		public synchronized State getState() {
+			if (this.state == State.OPEN && isWaitDurationElapsed()) {
+				return State.HALF_OPEN;
+			}
+			return this.state;
+		}
+
+		/**
+		 * Return the percentage of failed requests in the sliding window,
+		 * or -1 if fewer than the minimum number of requests were recorded.
+		 */
+		public synchronized float getFailureRate() {
+			return (this.callCount >= minimumNumberOfCalls ? this.failureCount * 100f / this.callCount : -1);
+		}
+
+		/**
+		 * Return the percentage of slow requests in the sliding window,
+		 * or -1 if fewer than the minimum number of requests were recorded.
+		 */
+		public synchronized float getSlowCallRate() {
+			return (this.callCount >= minimumNumberOfCalls ? this.slowCallCount * 100f / this.callCount : -1);
+		}
+
+		/**
+		 * Return the number of requests recorded in the sliding window.
+		 */
+		public synchronized int getNumberOfCalls() {
+			return this.callCount;
+		}
+
+		/**
+		 * Close the circuit breaker and clear the sliding window.
+		 */
+		public synchronized void reset() {
+			transitionTo(State.CLOSED);
+		}
+
+		synchronized boolean tryAcquirePermission() {
+			if (this.state == State.OPEN) {
+				if (!isWaitDurationElapsed()) {
+					return false;
+				}
+				transitionTo(State.HALF_OPEN);
+			}
+			if (this.state == State.HALF_OPEN) {
+				if (this.halfOpenPermits == 0) {
+					return false;
+				}
+				this.halfOpenPermits--;
+			}
+			return true;
+		}
+
+		synchronized void onResult(boolean success, long startTime) {
+			boolean slow = (System.nanoTime() - startTime > TimeUnit.MILLISECONDS.toNanos(slowCallDurationThreshold));
+			if (this.state == State.HALF_OPEN) {
+				if (!success || slow) {
+					transitionTo(State.OPEN);
+				}
+				else if (++this.halfOpenSuccesses >= permittedCallsInHalfOpenState) {
+					transitionTo(State.CLOSED);
+				}
+				return;
+			}
+			if (this.state == State.OPEN) {
+				return;
+			}
+			record(success, slow);
+			if (this.callCount >= minimumNumberOfCalls &&
+					(getFailureRate() >= failureRateThreshold || getSlowCallRate() >= slowCallRateThreshold)) {
+				transitionTo(State.OPEN);
+			}
+		}
+
+		private void record(boolean success, boolean slow) {
+			byte outcome = (byte) ((success ? 0 : 1) | (slow ? 2 : 0));
+			if (this.callCount == this.outcomes.length) {
+				byte evicted = this.outcomes[this.outcomeIndex];
+				this.failureCount -= (evicted & 1);
+				this.slowCallCount -= (evicted & 2) >> 1;
+			}
+			else {
+				this.callCount++;
+			}
+			this.outcomes[this.outcomeIndex] = outcome;
+			this.outcomeIndex = (this.outcomeIndex + 1) % this.outcomes.length;
+			this.failureCount += (outcome & 1);
+			this.slowCallCount += (outcome & 2) >> 1;
+		}
+
+		private boolean isWaitDurationElapsed() {
+			return (System.currentTimeMillis() - this.openedAt >= waitDurationInOpenState);
+		}
+
+		private void transitionTo(State newState) {
+			if (logger.isInfoEnabled() && newState != this.state) {
+				logger.info("Circuit breaker for [" + this.route + "] changed from " + this.state + " to " + newState);
+			}
+			this.state = newState;
+			if (newState == State.OPEN) {
+				this.openedAt = System.currentTimeMillis();
+			}
+			else if (newState == State.HALF_OPEN) {
+				this.halfOpenPermits = permittedCallsInHalfOpenState;
+				this.halfOpenSuccesses = 0;
+			}
+			else {
+				this.outcomeIndex = 0;
+				this.callCount = 0;
+				this.failureCount = 0;
+				this.slowCallCount = 0;
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "CircuitBreaker[" + this.route + ", " + getState() + "]";
+		}
+	}
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.support;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.ClientHttpResponse;
+
+/**
+ * {@link ClientHttpResponse} that delegates to another response and runs a
+ * callback once when closed, i.e. once the caller is done with the body.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see BulkheadInterceptor
+ * @see CircuitBreakerInterceptor
+ */
+final class CloseCallbackClientHttpResponse extends AbstractClientHttpResponse {
+
+	private final ClientHttpResponse delegate;
+
+	private final Runnable closeCallback;
+
+	private boolean closed;
+
+
+	CloseCallbackClientHttpResponse(ClientHttpResponse delegate, Runnable closeCallback) {
+		this.delegate = delegate;
+		this.closeCallback = closeCallback;
+	}
+
+
+	@Override
+	public int getRawStatusCode() throws IOException {
+		return this.delegate.getRawStatusCode();
+	}
+
+	@Override
+	public String getStatusText() throws IOException {
+		return this.delegate.getStatusText();
+	}
+
+	@Override
+	public HttpHeaders getHeaders() {
+		return this.delegate.getHeaders();
+	}
+
+	@Override
+	public InputStream getBody() throws IOException {
+		return this.delegate.getBody();
+	}
+
+	@Override
+	public void close() {
+		if (this.closed) {
+			return;
+		}
+		this.closed = true;
+		try {
+			this.delegate.close();
+		}
+		finally {
+			this.closeCallback.run();
+		}
+	}
+
+}
@@ -0,0 +1,623 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.support;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.AbstractClientHttpResponse;
+import org.springframework.http.client.AsyncClientHttpRequestExecution;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+/**
+ * Base class for {@link AsyncClientHttpRequestInterceptor AsyncClientHttpRequestInterceptors}
+ * that coalesce individual requests for single items, e.g. {@code GET /items/{id}},
+ * into one bulk request, e.g. {@code GET /items?ids=...}, for services that
+ * support both.
+ *
+ * <p>Requests for which {@link #getItemKey} returns a key are collected per
+ * {@link #getBatchGroup batch group} until either the {@linkplain
+ * #RequestBatchingInterceptor(int, long) maximum batch size} is reached or the
+ * maximum delay has elapsed since the first request of the batch. The batch is
+ * then sent as a single request created by {@link #createBatchRequest}, and
+ * {@link #splitBatchResponse} demultiplexes the bulk response into one response
+ * per item key, which completes the future of each original caller. Requests
+ * for the same item key within a batch are sent once. A batch with a single
+ * request is sent as is. All other requests pass through unchanged.
+ *
+ * <p>Batch size, latency and queueing metrics are exposed through getters,
+ * e.g. for export through JMX.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+public abstract class RequestBatchingInterceptor implements AsyncClientHttpRequestInterceptor {
+
+	protected final Log logger = LogFactory.getLog(getClass());
+
+	private final int maxBatchSize;
+
+	private final long maxDelay;
+
+	private ScheduledExecutorService scheduledExecutor;
+
+	private TaskExecutor flushExecutor;
+
+	private final ConcurrentMap<Object, Batch> batches = new ConcurrentHashMap<Object, Batch>();
+
+	private final AtomicLong batchCount = new AtomicLong();
+
+	private final AtomicLong failedBatchCount = new AtomicLong();
+
+	private final AtomicLong batchedRequestCount = new AtomicLong();
+
+	private final AtomicLong totalBatchLatency = new AtomicLong();
+
+	private final AtomicLong totalQueueTime = new AtomicLong();
+
+
+	/**
+	 * Create a new interceptor.
+	 * @param maxBatchSize the number of requests at which a batch is sent
+	 * @param maxDelay the maximum time (in milliseconds) that a request waits
+	 * for other requests to batch with
+	 */
+	protected RequestBatchingInterceptor(int maxBatchSize, long maxDelay) {
+		Assert.isTrue(maxBatchSize > 1, "'maxBatchSize' must be greater than 1");
+		Assert.isTrue(maxDelay > 0, "'maxDelay' must be greater than 0");
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelay = maxDelay;
+	}
+
+
+	/**
+	 * Set the executor that triggers batches once the maximum delay has elapsed.
+	 * <p>By default the {@link SharedScheduledExecutor} is used.
+	 * @see #setFlushExecutor
+	 */
+	public void setScheduledExecutor(ScheduledExecutorService scheduledExecutor) {
+		this.scheduledExecutor = scheduledExecutor;
+	}
+
+	/**
+	 * Set the executor that sends batches once the maximum delay has elapsed,
+	 * so that a request factory that blocks while sending does not hold up
+	 * the scheduler thread. Batches that reach the maximum size are sent from
+	 * the thread that adds the last request.
+	 * <p>By default a {@link SimpleAsyncTaskExecutor} with daemon threads is
+	 * created on first use.
+	 */
+	public void setFlushExecutor(TaskExecutor flushExecutor) {
+		this.flushExecutor = flushExecutor;
+	}
+
+	/**
+	 * Return the number of requests at which a batch is sent.
+	 */
+	public int getMaxBatchSize() {
+		return this.maxBatchSize;
+	}
+
+	/**
+	 * Return the maximum time (in milliseconds) that a request waits for
+	 * other requests to batch with.
+	 */
+	public long getMaxDelay() {
+		return this.maxDelay;
+	}
+
+	/**
+	 * Return the number of batches sent.
+	 */
+	public long getBatchCount() {
+		return this.batchCount.get();
+	}
+
+	/**
+	 * Return the number of batches that failed, either because the bulk
+	 * request failed or its response could not be split.
+	 */
+	public long getFailedBatchCount() {
+		return this.failedBatchCount.get();
+	}
+
+	/**
+	 * Return the number of individual requests sent as part of a batch.
+	 */
+	public long getBatchedRequestCount() {
+		return this.batchedRequestCount.get();
+	}
+
+	/**
+	 * Return the average number of individual requests per batch.
+	 */
+	public double getAverageBatchSize() {
+		long count = this.batchCount.get();
+		return (count > 0 ? (double) this.batchedRequestCount.get() / count : 0);
+	}
+
+	/**
+	 * Return the average time (in milliseconds) from sending a batch until
+	 * its response has been split.
+	 */
+	public double getAverageBatchLatency() {
+		long count = this.batchCount.get();
+		return (count > 0 ? this.totalBatchLatency.get() / 1000000d / count : 0);
+	}
+
+	/**
+	 * Return the average time (in milliseconds) that individual requests
+	 * waited for their batch to be sent.
+	 */
+	public double getAverageQueueTime() {
+		long count = this.batchedRequestCount.get();
+		return (count > 0 ? this.totalQueueTime.get() / 1000000d / count : 0);
+	}
+
+
+	@Override
+	public ListenableFuture<ClientHttpResponse> intercept(HttpRequest request, byte[] body,
+			AsyncClientHttpRequestExecution execution) throws IOException {
+
+		String itemKey = getItemKey(request, body);
+		if (itemKey == null) {
+			return execution.executeAsync(request, body);
+		}
+		Object group = getBatchGroup(request);
+		BatchItem item = new BatchItem(itemKey, request, body, execution);
+		while (true) {
+			Batch batch = this.batches.get(group);
+			if (batch == null) {
+				batch = new Batch(group);
+				Batch existing = this.batches.putIfAbsent(group, batch);
+				if (existing != null) {
+					batch = existing;
+				}
+				else {
+					scheduleFlush(batch);
+				}
+			}
+			int size = batch.add(item);
+			if (size == -1) {
+				// Already sent
+				this.batches.remove(group, batch);
+				continue;
+			}
+			if (size >= this.maxBatchSize) {
+				flush(batch);
+			}
+			return item.getResponseFuture();
+		}
+	}
+
+	/**
+	 * Return the key of the item that the given request is for, or
+	 * {@code null} if the request cannot be batched.
+	 * @param request the individual request
+	 * @param body the body of the request
+	 */
+	protected abstract String getItemKey(HttpRequest request, byte[] body);
+
+	/**
+	 * Return the group of the given request. Only requests of the same group
+	 * are batched together.
+	 * <p>The default implementation groups by HTTP method and route, i.e.
+	 * scheme, host and port.
+	 */
+	protected Object getBatchGroup(HttpRequest request) {
+		return request.getMethod() + " " + CircuitBreakerInterceptor.getRoute(request.getURI());
+	}
+
+	/**
+	 * Create the bulk request for the given item keys, e.g. by
+	 * {@linkplain HttpRequestWrapper wrapping} the given request with a
+	 * different URI.
+	 * @param request the first individual request of the batch
+	 * @param itemKeys the distinct item keys of the batch, in order
+	 */
+	protected abstract HttpRequest createBatchRequest(HttpRequest request, List<String> itemKeys);
+
+	/**
+	 * Return the body of the bulk request for the given item keys.
+	 * <p>The default implementation returns an empty body.
+	 */
+	protected byte[] getBatchBody(List<String> itemKeys) {
+		return new byte[0];
+	}
+
+	/**
+	 * Split the response of a bulk request into one response per item key.
+	 * <p>The returned responses must not depend on the bulk response, which is
+	 * closed afterwards; {@link #createItemResponse} creates such responses.
+	 * Items for which no response is returned fail with an {@link IOException},
+	 * so a "404 Not Found" response should be returned for items that don't
+	 * exist, if the callers expect that.
+	 * @param response the response of the bulk request
+	 * @param itemKeys the item keys of the batch, in order
+	 * @return the responses, keyed by item key
+	 * @throws IOException in case of I/O errors
+	 */
+	protected abstract Map<String, ClientHttpResponse> splitBatchResponse(
+			ClientHttpResponse response, List<String> itemKeys) throws IOException;
+
+	/**
+	 * Create an in-memory response for a single item.
+	 */
+	protected ClientHttpResponse createItemResponse(HttpStatus status, HttpHeaders headers, byte[] body) {
+		return new ItemResponse(status.value(), status.getReasonPhrase(), headers, body);
+	}
+
+
+	private void scheduleFlush(final Batch batch) {
+		final Runnable flushTask = new Runnable() {
+			@Override
+			public void run() {
+				flush(batch);
+			}
+		};
+		batch.setFlushTask(getScheduledExecutor().schedule(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					getFlushExecutor().execute(flushTask);
+				}
+				catch (Throwable ex) {
+					logger.debug("Failed to hand off batch flush, sending from scheduler thread", ex);
+					flushTask.run();
+				}
+			}
+		}, this.maxDelay, TimeUnit.MILLISECONDS));
+	}
+
+	private void flush(Batch batch) {
+		List<BatchItem> items = batch.close();
+		if (items == null) {
+			return;
+		}
+		this.batches.remove(batch.getGroup(), batch);
+		batch.cancelFlushTask();
+		if (items.size() == 1) {
+			BatchItem item = items.get(0);
+			try {
+				item.pipe(item.getExecution().executeAsync(item.getRequest(), item.getBody()));
+			}
+			catch (Throwable ex) {
+				item.getResponseFuture().setException(ex);
+			}
+			return;
+		}
+		send(items);
+	}
+
+	private void send(List<BatchItem> items) {
+		final Map<String, List<BatchItem>> itemsByKey = new LinkedHashMap<String, List<BatchItem>>();
+		for (BatchItem item : items) {
+			List<BatchItem> sameKey = itemsByKey.get(item.getItemKey());
+			if (sameKey == null) {
+				sameKey = new ArrayList<BatchItem>(1);
+				itemsByKey.put(item.getItemKey(), sameKey);
+			}
+			sameKey.add(item);
+		}
+		final List<String> itemKeys = new ArrayList<String>(itemsByKey.keySet());
+
+		final long startTime = System.nanoTime();
+		for (BatchItem item : items) {
+			this.totalQueueTime.addAndGet(startTime - item.getCreatedAt());
+		}
+		this.batchCount.incrementAndGet();
+		this.batchedRequestCount.addAndGet(items.size());
+		if (logger.isTraceEnabled()) {
+			logger.trace("Sending batch of " + items.size() + " requests for " + itemKeys.size() + " items");
+		}
+
+		BatchItem first = items.get(0);
+		ListenableFuture<ClientHttpResponse> future;
+		try {
+			HttpRequest batchRequest = createBatchRequest(first.getRequest(), itemKeys);
+			future = first.getExecution().executeAsync(batchRequest, getBatchBody(itemKeys));
+		}
+		catch (Throwable ex) {
+			failBatch(itemsByKey, ex, startTime);
+			return;
+		}
+		future.addCallback(new ListenableFutureCallback<ClientHttpResponse>() {
+			@Override
+			public void onSuccess(ClientHttpResponse response) {
+				Map<String, ClientHttpResponse> results;
+				try {
+					results = splitBatchResponse(response, itemKeys);
+				}
+				catch (Throwable ex) {
+					failBatch(itemsByKey, ex, startTime);
+					return;
+				}
+				finally {
+					response.close();
+				}
+				totalBatchLatency.addAndGet(System.nanoTime() - startTime);
+				dispatch(itemsByKey, (results != null ? results : Collections.<String, ClientHttpResponse>emptyMap()));
+			}
+			@Override
+			public void onFailure(Throwable ex) {
+				failBatch(itemsByKey, ex, startTime);
+			}
+		});
+	}
+
+	private void dispatch(Map<String, List<BatchItem>> itemsByKey, Map<String, ClientHttpResponse> batchResults) {
+		Map<String, ClientHttpResponse> results = new LinkedHashMap<String, ClientHttpResponse>(batchResults);
+		for (Map.Entry<String, List<BatchItem>> entry : itemsByKey.entrySet()) {
+			List<BatchItem> sameKey = entry.getValue();
+			ClientHttpResponse result = results.remove(entry.getKey());
+			if (result == null) {
+				IOException ex = new IOException("No response for item [" + entry.getKey() + "] in batch");
+				for (BatchItem item : sameKey) {
+					item.getResponseFuture().setException(ex);
+				}
+			}
+			else if (sameKey.size() == 1) {
+				sameKey.get(0).getResponseFuture().set(result);
+			}
+			else {
+				// Each caller reads its own copy of the body
+				try {
+					ItemResponse copy = new ItemResponse(result.getRawStatusCode(), result.getStatusText(),
+							result.getHeaders(), StreamUtils.copyToByteArray(result.getBody()));
+					for (BatchItem item : sameKey) {
+						item.getResponseFuture().set(copy.duplicate());
+					}
+				}
+				catch (IOException ex) {
+					for (BatchItem item : sameKey) {
+						item.getResponseFuture().setException(ex);
+					}
+				}
+				finally {
+					result.close();
+				}
+			}
+		}
+		for (ClientHttpResponse unused : results.values()) {
+			unused.close();
+		}
+	}
+
+	private void failBatch(Map<String, List<BatchItem>> itemsByKey, Throwable ex, long startTime) {
+		this.failedBatchCount.incrementAndGet();
+		this.totalBatchLatency.addAndGet(System.nanoTime() - startTime);
+		if (logger.isDebugEnabled()) {
+			logger.debug("Batch of " + itemsByKey.size() + " items failed", ex);
+		}
+		for (List<BatchItem> sameKey : itemsByKey.values()) {
+			for (BatchItem item : sameKey) {
+				item.getResponseFuture().setException(ex);
+			}
+		}
+	}
+
+	private ScheduledExecutorService getScheduledExecutor() {
+		return (this.scheduledExecutor != null ? this.scheduledExecutor : SharedScheduledExecutor.getInstance());
+	}
+
+	private synchronized TaskExecutor getFlushExecutor() {
+		if (this.flushExecutor == null) {
+			SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("RequestBatchingInterceptor-flush-");
+			executor.setDaemon(true);
+			this.flushExecutor = executor;
+		}
+		return this.flushExecutor;
+	}
+
+
+	/**
+	 * The requests of a batch group collected so far.
+	 */
+	private static class Batch {
+
+		private final Object group;
+
+		private List<BatchItem> items = new ArrayList<BatchItem>();
+
+		private volatile ScheduledFuture<?> flushTask;
+
+		public Batch(Object group) {
+			this.group = group;
+		}
+
+		public Object getGroup() {
+			return this.group;
+		}
+
+		/**
+		 * Add the given item, returning the resulting size of the batch,
+		 * or -1 if the batch has already been closed.
+		 */
+		public synchronized int add(BatchItem item) {
+			if (this.items == null) {
+				return -1;
+			}
+			this.items.add(item);
+			return this.items.size();
+		}
+
+		/**
+		 * Close the batch, returning its items, or {@code null} if it has
+		 * already been closed.
+		 */
+		public synchronized List<BatchItem> close() {
+			List<BatchItem> result = this.items;
+			this.items = null;
+			return result;
+		}
+
+		public void setFlushTask(ScheduledFuture<?> flushTask) {
+			this.flushTask = flushTask;
+		}
+
+		public void cancelFlushTask() {
+			ScheduledFuture<?> task = this.flushTask;
+			if (task != null) {
+				task.cancel(false);
+			}
+		}
+	}
+
+
+	/**
+	 * An individual request waiting in a batch.
+	 */
+	private static class BatchItem {
+
+		private final String itemKey;
+
+		private final HttpRequest request;
+
+		private final byte[] body;
+
+		private final AsyncClientHttpRequestExecution execution;
+
+		private final long createdAt = System.nanoTime();
+
+		private final SettableListenableFuture<ClientHttpResponse> responseFuture =
+				new SettableListenableFuture<ClientHttpResponse>();
+
+		public BatchItem(String itemKey, HttpRequest request, byte[] body, AsyncClientHttpRequestExecution execution) {
+			this.itemKey = itemKey;
+			this.request = request;
+			this.body = body;
+			this.execution = execution;
+		}
+
+		public String getItemKey() {
+			return this.itemKey;
+		}
+
+		public HttpRequest getRequest() {
+			return this.request;
+		}
+
+		public byte[] getBody() {
+			return this.body;
+		}
+
+		public AsyncClientHttpRequestExecution getExecution() {
+			return this.execution;
+		}
+
+		public long getCreatedAt() {
+			return this.createdAt;
+		}
+
+		public SettableListenableFuture<ClientHttpResponse> getResponseFuture() {
+			return this.responseFuture;
+		}
+
+		public void pipe(ListenableFuture<ClientHttpResponse> future) {
+			future.addCallback(new ListenableFutureCallback<ClientHttpResponse>() {
+				@Override
+				public void onSuccess(ClientHttpResponse result) {
+					responseFuture.set(result);
+				}
+				@Override
+				public void onFailure(Throwable ex) {
+					responseFuture.setException(ex);
+				}
+			});
+		}
+	}
+
+
+	/**
+	 * In-memory response for a single item of a batch.
+	 */
+	private static class ItemResponse extends AbstractClientHttpResponse {
+
+		private final int statusCode;
+
+		private final String statusText;
+
+		private final HttpHeaders headers;
+
+		private final byte[] body;
+
+		public ItemResponse(int statusCode, String statusText, HttpHeaders headers, byte[] body) {
+			this.statusCode = statusCode;
+			this.statusText = statusText;
+			this.headers = new HttpHeaders();
+			if (headers != null) {
+				this.headers.putAll(headers);
+			}
+			this.body = (body != null ? body : new byte[0]);
+		}
+
+		public ItemResponse duplicate() {
+			return new ItemResponse(this.statusCode, this.statusText, this.headers, this.body);
+		}
+
+		@Override
+		public int getRawStatusCode() {
+			return this.statusCode;
+		}
+
+		@Override
+		public String getStatusText() {
+			return this.statusText;
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		@Override
+		public InputStream getBody() {
+			return new ByteArrayInputStream(this.body);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.http.client.support;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Holder for a single daemon {@link ScheduledExecutorService} shared by HTTP
+ * client components that schedule short tasks, such as timeouts, hedged
+ * requests or batch flushes, and have not been given an executor of their own.
+ *
+ * <p>All tasks run on one thread, so a task that blocks delays every other
+ * scheduled task. Tasks that send requests rely on the request factory not
+ * blocking while sending; components configured with one that may block
+ * should be given an executor of their own.
+ *
+ * <p>The executor is created on first use. Applications that create and
+ * discard their own class loaders, e.g. in a Servlet container, should call
+ * {@link #shutdown()} when stopping, or inject an executor they manage
+ * themselves into each component instead.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see org.springframework.web.client.AsyncRestTemplate#setScheduledExecutor
+ * @see RequestBatchingInterceptor#setScheduledExecutor
+ */
+public abstract class SharedScheduledExecutor {
+
+	private static ScheduledExecutorService instance;
+
+
+	/**
+	 * Return the shared executor, creating it if necessary.
+	 */
+	public static synchronized ScheduledExecutorService getInstance() {
+		if (instance == null) {
+			instance = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "http-client-scheduler");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return instance;
+	}
+
+	/**
+	 * Shut down the shared executor, if it has been created. Tasks that are
+	 * already scheduled are not run. A new executor is created on next use.
+	 */
+	public static synchronized void shutdown() {
+		if (instance != null) {
+			instance.shutdownNow();
+			instance = null;
+		}
+	}
+
+}
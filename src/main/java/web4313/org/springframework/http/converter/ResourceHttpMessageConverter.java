@@ -16,17 +16,27 @@
 
 package org.springframework.http.converter;
 
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpInputMessage;
 import org.springframework.http.HttpOutputMessage;
 import org.springframework.http.MediaType;
 import org.springframework.util.ClassUtils;
+import org.springframework.util.ResourceUtils;
 import org.springframework.util.StreamUtils;
 
 /**
@@ -37,6 +47,10 @@ import org.springframework.util.StreamUtils;
  * if available - is used to determine the {@code Content-Type} of written resources.
  * If JAF is not available, {@code application/octet-stream} is used.
  *
+ * <p>As of 4.3.14, resources backed by a file in the file system are written
+ * through {@link FileChannel#transferTo}, which lets the JDK use the most
+ * efficient transfer available for the target stream.
+ *
  * @author Arjen Poutsma
  * @author Juergen Hoeller
  * @author Kazuki Shimizu
@@ -104,6 +118,12 @@ public class ResourceHttpMessageConverter extends AbstractHttpMessageConverter<R
 
 	protected void writeContent(Resource resource, HttpOutputMessage outputMessage)
 			throws IOException, HttpMessageNotWritableException {
+
+		File file = getFile(resource);
+		if (file != null) {
+			writeFileContent(file, outputMessage.getBody());
+			return;
+		}
 		try {
 			InputStream in = resource.getInputStream();
 			try {
@@ -126,4 +146,75 @@ public class ResourceHttpMessageConverter extends AbstractHttpMessageConverter<R
 		}
 	}
 
+	private void writeFileContent(File file, OutputStream outputStream) throws IOException {
+		try {
+			FileChannel channel = new FileInputStream(file).getChannel();
+			try {
+				transferTo(channel, 0, channel.size(), Channels.newChannel(outputStream));
+			}
+			catch (NullPointerException ex) {
+				// ignore, see SPR-13620
+			}
+			finally {
+				try {
+					channel.close();
+				}
+				catch (Throwable ex) {
+					// ignore, see SPR-12999
+				}
+			}
+		}
+		catch (FileNotFoundException ex) {
+			// ignore, see SPR-12999
+		}
+	}
+
+
+	/**
+	 * Return the file that the given resource is backed by, or {@code null}
+	 * if the resource does not resolve to a file in the file system.
+	 */
+	static File getFile(Resource resource) {
+		if (resource instanceof FileSystemResource) {
+			return ((FileSystemResource) resource).getFile();
+		}
+		if (resource instanceof ByteArrayResource || resource instanceof InputStreamResource) {
+			return null;
+		}
+		try {
+			URL url = resource.getURL();
+			if (ResourceUtils.isFileURL(url)) {
+				return resource.getFile();
+			}
+		}
+		catch (IOException ex) {
+			// not resolvable to a file
+		}
+		return null;
+	}
+
+	/**
+	 * Transfer the given number of bytes from the given position of a file
+	 * channel to the target channel.
+	 * <p>Since the content length has been set by then, a short transfer must
+	 * not go unnoticed: an {@link EOFException} is thrown if the file ends
+	 * before all bytes have been transferred, e.g. as it has been truncated
+	 * in the meantime, and an {@link IOException} if no progress is made.
+	 */
+	static void transferTo(FileChannel channel, long position, long count, WritableByteChannel target)
+			throws IOException {
+
+		long end = position + count;
+		while (position < end) {
+			long transferred = channel.transferTo(position, end - position, target);
+			if (transferred <= 0) {
+				if (position >= channel.size()) {
+					throw new EOFException("File ended at position " + position + " of expected " + end);
+				}
+				throw new IOException("Failed to transfer file content at position " + position);
+			}
+			position += transferred;
+		}
+	}
+
 }
@@ -16,13 +16,24 @@
 
 package org.springframework.http.converter;
 
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 
+import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.ResourceRegion;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpInputMessage;
@@ -37,6 +48,12 @@ import org.springframework.util.StreamUtils;
  * Implementation of {@link HttpMessageConverter} that can write a single {@link ResourceRegion},
  * or Collections of {@link ResourceRegion ResourceRegions}.
  *
+ * <p>As of 4.3.14, regions of resources backed by a file in the file system are
+ * written with positional reads through a {@link FileChannel}, rather than by
+ * skipping over the preceding content of the resource stream. The channel is
+ * opened once and shared across the parts of a multipart response. Regions of
+ * the same resource that overlap or are adjacent are coalesced before writing.
+ *
  * @author Brian Clozel
  * @author Juergen Hoeller
  * @since 4.3
@@ -130,12 +147,12 @@ public class ResourceRegionHttpMessageConverter extends AbstractGenericHttpMessa
 			writeResourceRegion((ResourceRegion) object, outputMessage);
 		}
 		else {
-			Collection<ResourceRegion> regions = (Collection<ResourceRegion>) object;
+			Collection<ResourceRegion> regions = coalesceRegions((Collection<ResourceRegion>) object);
 			if (regions.size() == 1) {
 				writeResourceRegion(regions.iterator().next(), outputMessage);
 			}
 			else {
-				writeResourceRegionCollection((Collection<ResourceRegion>) object, outputMessage);
+				writeResourceRegionCollection(regions, outputMessage);
 			}
 		}
 	}
@@ -153,18 +170,20 @@ public class ResourceRegionHttpMessageConverter extends AbstractGenericHttpMessa
 		responseHeaders.add("Content-Range", "bytes " + start + '-' + end + '/' + resourceLength);
 		responseHeaders.setContentLength(rangeLength);
 
-		InputStream in = region.getResource().getInputStream();
-		try {
-			StreamUtils.copyRange(in, outputMessage.getBody(), start, end);
-		}
-		finally {
+		File file = ResourceHttpMessageConverter.getFile(region.getResource());
+		if (file != null) {
+			FileChannel channel = new FileInputStream(file).getChannel();
 			try {
-				in.close();
+				ResourceHttpMessageConverter.transferTo(
+						channel, start, rangeLength, Channels.newChannel(outputMessage.getBody()));
 			}
-			catch (IOException ex) {
-				// ignore
+			finally {
+				closeQuietly(channel);
 			}
 		}
+		else {
+			copyRange(region.getResource(), outputMessage.getBody(), start, end);
+		}
 	}
 
 	private void writeResourceRegionCollection(Collection<ResourceRegion> resourceRegions,
@@ -177,12 +196,14 @@ public class ResourceRegionHttpMessageConverter extends AbstractGenericHttpMessa
 		String boundaryString = MimeTypeUtils.generateMultipartBoundaryString();
 		responseHeaders.set(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundaryString);
 		OutputStream out = outputMessage.getBody();
+		WritableByteChannel outChannel = null;
 
-		for (ResourceRegion region : resourceRegions) {
-			long start = region.getPosition();
-			long end = start + region.getCount() - 1;
-			InputStream in = region.getResource().getInputStream();
-			try {
+		Resource channelResource = null;
+		FileChannel channel = null;
+		try {
+			for (ResourceRegion region : resourceRegions) {
+				long start = region.getPosition();
+				long end = start + region.getCount() - 1;
 				// Writing MIME header.
 				println(out);
 				print(out, "--" + boundaryString);
@@ -197,22 +218,108 @@ public class ResourceRegionHttpMessageConverter extends AbstractGenericHttpMessa
 				println(out);
 				println(out);
 				// Printing content
-				StreamUtils.copyRange(in, out, start, end);
-			}
-			finally {
-				try {
-					in.close();
+				if (region.getResource() != channelResource) {
+					closeQuietly(channel);
+					channel = null;
+					channelResource = region.getResource();
+					File file = ResourceHttpMessageConverter.getFile(channelResource);
+					if (file != null) {
+						channel = new FileInputStream(file).getChannel();
+					}
+				}
+				if (channel != null) {
+					if (outChannel == null) {
+						outChannel = Channels.newChannel(out);
+					}
+					ResourceHttpMessageConverter.transferTo(channel, start, end - start + 1, outChannel);
 				}
-				catch (IOException ex) {
-					// ignore
+				else {
+					copyRange(region.getResource(), out, start, end);
 				}
 			}
 		}
+		finally {
+			closeQuietly(channel);
+		}
 
 		println(out);
 		print(out, "--" + boundaryString + "--");
 	}
 
+	private void copyRange(Resource resource, OutputStream out, long start, long end) throws IOException {
+		InputStream in = resource.getInputStream();
+		try {
+			long copied = StreamUtils.copyRange(in, out, start, end);
+			if (copied < end - start + 1) {
+				// The Content-Length or Content-Range has already been written
+				throw new EOFException("Resource ended after " + copied + " of " + (end - start + 1) +
+						" bytes of range starting at " + start);
+			}
+		}
+		finally {
+			try {
+				in.close();
+			}
+			catch (IOException ex) {
+				// ignore
+			}
+		}
+	}
+
+	/**
+	 * Sort regions of the same resource by position and merge those that
+	 * overlap or are adjacent, as permitted by RFC 7233 section 4.1. Regions
+	 * spanning different resources are returned unchanged.
+	 */
+	private static Collection<ResourceRegion> coalesceRegions(Collection<ResourceRegion> regions) {
+		if (regions.size() < 2) {
+			return regions;
+		}
+		Resource resource = null;
+		for (ResourceRegion region : regions) {
+			if (resource == null) {
+				resource = region.getResource();
+			}
+			else if (region.getResource() != resource) {
+				return regions;
+			}
+		}
+		List<ResourceRegion> sorted = new ArrayList<ResourceRegion>(regions);
+		Collections.sort(sorted, new Comparator<ResourceRegion>() {
+			@Override
+			public int compare(ResourceRegion r1, ResourceRegion r2) {
+				return (r1.getPosition() < r2.getPosition() ? -1 : (r1.getPosition() > r2.getPosition() ? 1 : 0));
+			}
+		});
+		List<ResourceRegion> result = new ArrayList<ResourceRegion>(sorted.size());
+		ResourceRegion current = sorted.get(0);
+		for (int i = 1; i < sorted.size(); i++) {
+			ResourceRegion next = sorted.get(i);
+			long currentEnd = current.getPosition() + current.getCount();
+			if (next.getPosition() <= currentEnd) {
+				long end = Math.max(currentEnd, next.getPosition() + next.getCount());
+				current = new ResourceRegion(resource, current.getPosition(), end - current.getPosition());
+			}
+			else {
+				result.add(current);
+				current = next;
+			}
+		}
+		result.add(current);
+		return result;
+	}
+
+	private static void closeQuietly(FileChannel channel) {
+		if (channel != null) {
+			try {
+				channel.close();
+			}
+			catch (IOException ex) {
+				// ignore
+			}
+		}
+	}
+
 	private static void println(OutputStream os) throws IOException {
 		os.write('\r');
 		os.write('\n');
@@ -21,6 +21,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import javax.servlet.AsyncContext;
 import javax.servlet.AsyncEvent;
 import javax.servlet.AsyncListener;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -99,6 +100,28 @@ public class ServletServerHttpAsyncRequestControl implements ServerHttpAsyncRequ
 		}
 	}
 
+	/**
+	 * Switch the response body to non-blocking mode once async processing has
+	 * started, so data is written only when the underlying connection is ready
+	 * to accept it. Requires Servlet 3.1.
+	 * @param writeListener the listener to notify when writing is possible
+	 * @since 4.3.14
+	 * @see ServletServerHttpResponse#setWriteListener(WriteListener)
+	 */
+	public void setWriteListener(WriteListener writeListener) throws IOException {
+		Assert.state(isStarted(), "Async processing has not been started");
+		this.response.setWriteListener(writeListener);
+	}
+
+	/**
+	 * Whether the response body can be written without blocking.
+	 * @since 4.3.14
+	 * @see ServletServerHttpResponse#isReady()
+	 */
+	public boolean isWriteReady() throws IOException {
+		return this.response.isReady();
+	}
+
 	@Override
 	public void complete() {
 		if (isStarted() && !isCompleted()) {
@@ -18,10 +18,13 @@ package org.springframework.http.server;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
 
 import org.springframework.http.HttpHeaders;
@@ -43,6 +46,10 @@ public class ServletServerHttpResponse implements ServerHttpResponse {
 	private static final boolean servlet3Present =
 			ClassUtils.hasMethod(HttpServletResponse.class, "getHeader", String.class);
 
+	/** Checking for Servlet 3.1+ non-blocking I/O support */
+	private static final boolean servlet31Present =
+			ClassUtils.isPresent("javax.servlet.WriteListener", ServletServerHttpResponse.class.getClassLoader());
+
 
 	private final HttpServletResponse servletResponse;
 
@@ -89,6 +96,55 @@ public class ServletServerHttpResponse implements ServerHttpResponse {
 		return this.servletResponse.getOutputStream();
 	}
 
+	/**
+	 * Whether the response body can be written with non-blocking I/O, i.e.
+	 * on a Servlet 3.1+ container, and if the output stream is not decorated
+	 * by a response wrapper that does not implement non-blocking I/O, such as
+	 * the stream of a {@code ContentCachingResponseWrapper}.
+	 * @since 4.3.14
+	 */
+	public boolean isNonBlockingSupported() throws IOException {
+		if (!servlet31Present) {
+			return false;
+		}
+		Class<?> streamClass = this.servletResponse.getOutputStream().getClass();
+		Method isReady = ClassUtils.getMethodIfAvailable(streamClass, "isReady");
+		return (isReady != null && !Modifier.isAbstract(isReady.getModifiers()));
+	}
+
+	/**
+	 * Whether the response body can be written to without blocking.
+	 * <p>Only meaningful once a {@link #setWriteListener WriteListener} has been
+	 * registered. Requires Servlet 3.1.
+	 * @since 4.3.14
+	 * @see javax.servlet.ServletOutputStream#isReady()
+	 */
+	public boolean isReady() throws IOException {
+		assertServlet31();
+		return this.servletResponse.getOutputStream().isReady();
+	}
+
+	/**
+	 * Switch the response body to non-blocking mode, writing the response
+	 * headers first. The given listener is notified when the body can be
+	 * written without blocking. Requires Servlet 3.1 and async processing
+	 * to have been started.
+	 * @param writeListener the listener to register
+	 * @since 4.3.14
+	 * @see javax.servlet.ServletOutputStream#setWriteListener(WriteListener)
+	 */
+	public void setWriteListener(WriteListener writeListener) throws IOException {
+		Assert.notNull(writeListener, "WriteListener must not be null");
+		assertServlet31();
+		this.bodyUsed = true;
+		writeHeaders();
+		this.servletResponse.getOutputStream().setWriteListener(writeListener);
+	}
+
+	private void assertServlet31() {
+		Assert.state(servlet31Present, "Non-blocking I/O requires a Servlet 3.1+ container");
+	}
+
 	@Override
 	public void flush() throws IOException {
 		writeHeaders();
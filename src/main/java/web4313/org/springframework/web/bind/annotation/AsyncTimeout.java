@@ -0,0 +1,81 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.bind.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.springframework.core.annotation.AliasFor;
+
+/**
+ * Configures the async request timeout, and optionally a fallback result, for
+ * handler methods that return a future such as a
+ * {@link org.springframework.util.concurrent.ListenableFuture ListenableFuture}
+ * or a {@link java.util.concurrent.CompletionStage CompletionStage}.
+ *
+ * <p>If the future does not complete within the timeout, the {@link #fallback}
+ * is used as the result if present. Otherwise the timeout is handled as usual,
+ * i.e. as an {@code AsyncRequestTimeoutException}. In both cases the upstream
+ * future is cancelled.
+ *
+ * <p>May be declared on a controller class, in which case it applies to all
+ * handler methods that don't declare it themselves.
+ *
+ * <p>{@link org.springframework.web.context.request.async.DeferredResult
+ * DeferredResult} return values are not affected since they provide their own
+ * timeout and timeout result through their constructor.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+@Target({ElementType.TYPE, ElementType.METHOD})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface AsyncTimeout {
+
+	/**
+	 * Alias for {@link #timeout}.
+	 */
+	@AliasFor("timeout")
+	long value() default -1;
+
+	/**
+	 * The timeout in milliseconds.
+	 * <p>By default not set, in which case the async request timeout configured
+	 * in the MVC Java Config or the MVC namespace is used.
+	 */
+	@AliasFor("value")
+	long timeout() default -1;
+
+	/**
+	 * A fallback value to use as the result in case of a timeout. For
+	 * {@code @ResponseBody} methods this is written as the response body
+	 * (e.g. {@code "[]"} for a JSON array), otherwise it is treated as a
+	 * view name.
+	 * <p>Since the value is a {@code String}, it is written as is, typically
+	 * by the {@code StringHttpMessageConverter}, rather than converted like
+	 * a value of the method's declared return type. It must therefore be a
+	 * literal body in the media type negotiated for the request, e.g. a JSON
+	 * document if the response would otherwise be rendered as JSON.
+	 * <p>By default there is no fallback value.
+	 */
+	String fallback() default ValueConstants.DEFAULT_NONE;
+
+}
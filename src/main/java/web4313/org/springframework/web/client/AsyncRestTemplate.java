@@ -20,10 +20,16 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.core.task.AsyncListenableTaskExecutor;
@@ -32,6 +38,7 @@ import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.RequestEntity;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.AsyncClientHttpRequest;
 import org.springframework.http.client.AsyncClientHttpRequestFactory;
@@ -39,11 +46,15 @@ import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpResponse;
 import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.UriTemplateHolder;
 import org.springframework.http.client.support.InterceptingAsyncHttpAccessor;
+import org.springframework.http.client.support.SharedScheduledExecutor;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.util.Assert;
 import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.util.concurrent.ListenableFutureAdapter;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.util.concurrent.SettableListenableFuture;
 import org.springframework.web.util.AbstractUriTemplateHandler;
 import org.springframework.web.util.UriTemplateHandler;
 
@@ -71,6 +82,8 @@ public class AsyncRestTemplate extends InterceptingAsyncHttpAccessor implements
 
 	private final RestTemplate syncTemplate;
 
+	private ScheduledExecutorService scheduledExecutor;
+
 
 	/**
 	 * Create a new instance of the {@code AsyncRestTemplate} using default settings.
@@ -133,6 +146,20 @@ public class AsyncRestTemplate extends InterceptingAsyncHttpAccessor implements
 	}
 
 
+	/**
+	 * Set the executor to schedule request timeouts and hedged requests with.
+	 * <p>By default the {@link SharedScheduledExecutor} is used.
+	 * <p>Note that hedged requests are sent from the scheduler thread, so an
+	 * {@link AsyncClientHttpRequestFactory} that blocks while sending delays
+	 * all other timeouts and hedged requests scheduled on the same executor.
+	 * @since 4.3.14
+	 * @see #exchangeAll(List, Class, long)
+	 * @see #hedgedExchange(List, HttpMethod, HttpEntity, Class, HedgingPolicy)
+	 */
+	public void setScheduledExecutor(ScheduledExecutorService scheduledExecutor) {
+		this.scheduledExecutor = scheduledExecutor;
+	}
+
 	/**
 	 * Set the error handler.
 	 * <p>By default, AsyncRestTemplate uses a
@@ -453,6 +480,111 @@ public class AsyncRestTemplate extends InterceptingAsyncHttpAccessor implements
 	}
 
 
+	// scatter-gather and hedging
+
+	/**
+	 * Execute the given requests concurrently and gather their responses.
+	 * <p>The returned future completes once every request has either
+	 * succeeded, failed or timed out, and never completes exceptionally:
+	 * individual failures are available from the {@link ScatterGatherResult},
+	 * along with the responses of the requests that succeeded.
+	 * @param requests the requests to execute
+	 * @param responseType the type of the response bodies
+	 * @param timeout the timeout in milliseconds for each request, after which
+	 * it is cancelled and recorded as a {@link TimeoutException}, or -1 for none
+	 * @return the future for the gathered responses
+	 * @since 4.3.14
+	 */
+	public <T> ListenableFuture<ScatterGatherResult<T>> exchangeAll(List<RequestEntity<?>> requests,
+			Class<T> responseType, long timeout) {
+
+		Assert.notEmpty(requests, "Requests must not be empty");
+		final ScatterGatherResult<T> result = new ScatterGatherResult<T>(requests.size());
+		final SettableListenableFuture<ScatterGatherResult<T>> resultFuture =
+				new SettableListenableFuture<ScatterGatherResult<T>>();
+		final AtomicInteger remaining = new AtomicInteger(requests.size());
+
+		for (int i = 0; i < requests.size(); i++) {
+			final int index = i;
+			RequestEntity<?> request = requests.get(i);
+			final ListenableFuture<ResponseEntity<T>> future;
+			try {
+				future = exchange(request.getUrl(), request.getMethod(), request, responseType);
+			}
+			catch (RestClientException ex) {
+				result.setException(index, ex);
+				if (remaining.decrementAndGet() == 0) {
+					resultFuture.set(result);
+				}
+				continue;
+			}
+			final ScheduledFuture<?> timeoutTask = (timeout <= 0 ? null :
+					getScheduledExecutor().schedule(new Runnable() {
+						@Override
+						public void run() {
+							if (result.setException(index, new TimeoutException("Request timed out"))) {
+								future.cancel(true);
+								if (remaining.decrementAndGet() == 0) {
+									resultFuture.set(result);
+								}
+							}
+						}
+					}, timeout, TimeUnit.MILLISECONDS));
+			future.addCallback(new ListenableFutureCallback<ResponseEntity<T>>() {
+				@Override
+				public void onSuccess(ResponseEntity<T> response) {
+					complete(result.setResponse(index, response));
+				}
+				@Override
+				public void onFailure(Throwable ex) {
+					complete(result.setException(index, ex));
+				}
+				private void complete(boolean recorded) {
+					if (timeoutTask != null) {
+						timeoutTask.cancel(false);
+					}
+					if (recorded && remaining.decrementAndGet() == 0) {
+						resultFuture.set(result);
+					}
+				}
+			});
+		}
+		return resultFuture;
+	}
+
+	/**
+	 * Execute a hedged request: send it to the first of the given URLs, and
+	 * if there is no response within the delay determined by the given policy,
+	 * send it to the next URL as well, and so on. The first successful response
+	 * is used, and the requests still in progress are cancelled. A request that
+	 * fails causes the next URL to be tried immediately.
+	 * <p>Only use this for idempotent requests, since the same request may be
+	 * processed by more than one server.
+	 * @param urls the equivalent URLs to send the request to, in order of preference
+	 * @param method the HTTP method (GET, POST, etc)
+	 * @param requestEntity the entity (headers and/or body) to write to the
+	 * request, may be {@code null}
+	 * @param responseType the type of the response body
+	 * @param policy determines the delay before hedging
+	 * @return the future for the first successful response, or for the last
+	 * failure if all requests fail
+	 * @since 4.3.14
+	 */
+	public <T> ListenableFuture<ResponseEntity<T>> hedgedExchange(List<URI> urls, HttpMethod method,
+			HttpEntity<?> requestEntity, Class<T> responseType, HedgingPolicy policy) {
+
+		Assert.notEmpty(urls, "URLs must not be empty");
+		Assert.notNull(policy, "HedgingPolicy must not be null");
+		HedgedExchange<T> hedgedExchange = new HedgedExchange<T>(urls, method, requestEntity, responseType, policy);
+		hedgedExchange.sendNext();
+		return hedgedExchange.getResultFuture();
+	}
+
+	private ScheduledExecutorService getScheduledExecutor() {
+		return (this.scheduledExecutor != null ? this.scheduledExecutor : SharedScheduledExecutor.getInstance());
+	}
+
+
 	// general execution
 
 	@Override
@@ -460,7 +592,7 @@ public class AsyncRestTemplate extends InterceptingAsyncHttpAccessor implements
 			ResponseExtractor<T> responseExtractor, Object... uriVariables) throws RestClientException {
 
 		URI expanded = getUriTemplateHandler().expand(url, uriVariables);
-		return doExecute(expanded, method, requestCallback, responseExtractor);
+		return doExecute(url, expanded, method, requestCallback, responseExtractor);
 	}
 
 	@Override
@@ -468,7 +600,7 @@ public class AsyncRestTemplate extends InterceptingAsyncHttpAccessor implements
 			ResponseExtractor<T> responseExtractor, Map<String, ?> uriVariables) throws RestClientException {
 
 		URI expanded = getUriTemplateHandler().expand(url, uriVariables);
-		return doExecute(expanded, method, requestCallback, responseExtractor);
+		return doExecute(url, expanded, method, requestCallback, responseExtractor);
 	}
 
 	@Override
@@ -478,6 +610,25 @@ public class AsyncRestTemplate extends InterceptingAsyncHttpAccessor implements
 		return doExecute(url, method, requestCallback, responseExtractor);
 	}
 
+	/**
+	 * Execute the given method on the provided URI, exposing the URI template
+	 * it was expanded from through the {@link UriTemplateHolder} meanwhile.
+	 * @param uriTemplate the URI template
+	 * @param url the expanded URI
+	 */
+	private <T> ListenableFuture<T> doExecute(String uriTemplate, URI url, HttpMethod method,
+			AsyncRequestCallback requestCallback, ResponseExtractor<T> responseExtractor) throws RestClientException {
+
+		String previousUriTemplate = UriTemplateHolder.getUriTemplate();
+		UriTemplateHolder.setUriTemplate(uriTemplate);
+		try {
+			return doExecute(url, method, requestCallback, responseExtractor);
+		}
+		finally {
+			UriTemplateHolder.setUriTemplate(previousUriTemplate);
+		}
+	}
+
 	/**
 	 * Execute the given method on the provided URI. The
 	 * {@link org.springframework.http.client.ClientHttpRequest}
@@ -574,6 +725,136 @@ public class AsyncRestTemplate extends InterceptingAsyncHttpAccessor implements
 	}
 
 
+	/**
+	 * State of a single call to
+	 * {@link #hedgedExchange(List, HttpMethod, HttpEntity, Class, HedgingPolicy)}.
+	 */
+	private class HedgedExchange<T> {
+
+		private final List<URI> urls;
+
+		private final HttpMethod method;
+
+		private final HttpEntity<?> requestEntity;
+
+		private final Class<T> responseType;
+
+		private final HedgingPolicy policy;
+
+		private final SettableListenableFuture<ResponseEntity<T>> resultFuture =
+				new SettableListenableFuture<ResponseEntity<T>>();
+
+		private final List<ListenableFuture<ResponseEntity<T>>> attempts =
+				new ArrayList<ListenableFuture<ResponseEntity<T>>>();
+
+		private final AtomicInteger sent = new AtomicInteger();
+
+		private final AtomicInteger failed = new AtomicInteger();
+
+		private ScheduledFuture<?> hedgeTask;
+
+		public HedgedExchange(List<URI> urls, HttpMethod method, HttpEntity<?> requestEntity,
+				Class<T> responseType, HedgingPolicy policy) {
+
+			this.urls = new ArrayList<URI>(urls);
+			this.method = method;
+			this.requestEntity = requestEntity;
+			this.responseType = responseType;
+			this.policy = policy;
+		}
+
+		public ListenableFuture<ResponseEntity<T>> getResultFuture() {
+			return this.resultFuture;
+		}
+
+		/**
+		 * Send the request to the next URL right away, e.g. after a failure.
+		 */
+		public void sendNext() {
+			send(this.sent.getAndIncrement());
+		}
+
+		/**
+		 * Send the request to the URL at the given index, unless another
+		 * attempt has been sent in the meantime, as the hedge timer armed
+		 * for it is then stale.
+		 */
+		private void hedge(int index) {
+			if (this.sent.compareAndSet(index, index + 1)) {
+				send(index);
+			}
+		}
+
+		private void send(final int index) {
+			if (this.resultFuture.isDone() || index >= this.urls.size()) {
+				return;
+			}
+			final long attemptStartTime = System.currentTimeMillis();
+			final ListenableFuture<ResponseEntity<T>> attempt;
+			try {
+				attempt = exchange(this.urls.get(index), this.method, this.requestEntity, this.responseType);
+			}
+			catch (RestClientException ex) {
+				handleFailure(ex);
+				return;
+			}
+			synchronized (this.attempts) {
+				this.attempts.add(attempt);
+			}
+			attempt.addCallback(new ListenableFutureCallback<ResponseEntity<T>>() {
+				@Override
+				public void onSuccess(ResponseEntity<T> response) {
+					policy.recordLatency(System.currentTimeMillis() - attemptStartTime);
+					if (resultFuture.set(response)) {
+						cancelOtherAttempts(attempt);
+					}
+				}
+				@Override
+				public void onFailure(Throwable ex) {
+					handleFailure(ex);
+				}
+			});
+			if (index + 1 < this.urls.size()) {
+				ScheduledFuture<?> task = getScheduledExecutor().schedule(new Runnable() {
+					@Override
+					public void run() {
+						hedge(index + 1);
+					}
+				}, this.policy.getDelay(), TimeUnit.MILLISECONDS);
+				synchronized (this.attempts) {
+					// Re-arm: the delay now runs from this attempt, not an earlier one
+					if (this.hedgeTask != null) {
+						this.hedgeTask.cancel(false);
+					}
+					this.hedgeTask = task;
+				}
+			}
+		}
+
+		private void handleFailure(Throwable ex) {
+			if (this.failed.incrementAndGet() >= this.urls.size()) {
+				this.resultFuture.setException(ex);
+			}
+			else {
+				sendNext();
+			}
+		}
+
+		private void cancelOtherAttempts(ListenableFuture<ResponseEntity<T>> winner) {
+			synchronized (this.attempts) {
+				if (this.hedgeTask != null) {
+					this.hedgeTask.cancel(false);
+				}
+				for (ListenableFuture<ResponseEntity<T>> attempt : this.attempts) {
+					if (attempt != winner) {
+						attempt.cancel(true);
+					}
+				}
+			}
+		}
+	}
+
+
 	/**
 	 * Future returned from
 	 * {@link #doExecute(URI, HttpMethod, AsyncRequestCallback, ResponseExtractor)}
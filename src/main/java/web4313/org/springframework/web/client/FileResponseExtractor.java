@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.client;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+
+/**
+ * {@link ResponseExtractor} that writes the response body to a file with
+ * {@link FileChannel#transferFrom}, without materializing it in memory,
+ * and returns the file.
+ *
+ * <p>The file is written to a temporary file in the same directory first
+ * and then renamed, so that an existing file is not changed if reading the
+ * response fails. On platforms where renaming does not replace an existing
+ * file, that file is deleted right before the rename, so a failure to rename
+ * may then leave no file at all.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see StreamingResponseExtractor
+ * @see StreamingRequestCallback
+ */
+public class FileResponseExtractor implements ResponseExtractor<File> {
+
+	private static final long TRANSFER_CHUNK_SIZE = 1024 * 1024;
+
+
+	private final File file;
+
+
+	/**
+	 * Create a new extractor that writes the response body to the given file.
+	 */
+	public FileResponseExtractor(File file) {
+		Assert.notNull(file, "File must not be null");
+		this.file = file;
+	}
+
+
+	@Override
+	public File extractData(ClientHttpResponse response) throws IOException {
+		File directory = this.file.getAbsoluteFile().getParentFile();
+		// File.createTempFile requires a prefix of at least 3 characters
+		String prefix = this.file.getName();
+		if (prefix.length() < 3) {
+			prefix = (prefix + "___").substring(0, 3);
+		}
+		File tempFile = File.createTempFile(prefix, ".part", directory);
+		boolean success = false;
+		try {
+			ReadableByteChannel source = Channels.newChannel(response.getBody());
+			FileOutputStream out = new FileOutputStream(tempFile);
+			try {
+				FileChannel target = out.getChannel();
+				long position = 0;
+				long count;
+				while ((count = target.transferFrom(source, position, TRANSFER_CHUNK_SIZE)) > 0) {
+					position += count;
+				}
+			}
+			finally {
+				out.close();
+			}
+			if (!tempFile.renameTo(this.file)) {
+				// Renaming does not replace an existing file on some platforms, e.g. Windows
+				if (!this.file.exists() || !this.file.delete() || !tempFile.renameTo(this.file)) {
+					throw new IOException("Could not rename [" + tempFile.getAbsolutePath() +
+							"] to [" + this.file.getAbsolutePath() + "]");
+				}
+			}
+			success = true;
+			return this.file;
+		}
+		finally {
+			if (!success) {
+				tempFile.delete();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.client;
+
+import java.util.Arrays;
+
+import org.springframework.util.Assert;
+
+/**
+ * Determines how long {@link AsyncRestTemplate#hedgedExchange hedged requests}
+ * wait for a response before sending the same request to the next base URL.
+ *
+ * <p>The delay is either fixed, or derived from a percentile of the latency
+ * of recent successful requests, so that only the slowest requests are
+ * hedged. For example with the 95th percentile, about 5% of requests
+ * result in a duplicate request.
+ *
+ * <p>Instances are thread-safe and are meant to be shared across requests
+ * to the same group of services.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+public class HedgingPolicy {
+
+	private static final int DEFAULT_WINDOW_SIZE = 100;
+
+
+	private final long delay;
+
+	private final double percentile;
+
+	private final long[] latencies;
+
+	private int latencyCount;
+
+	private int latencyIndex;
+
+
+	private HedgingPolicy(long delay, double percentile, int windowSize) {
+		this.delay = delay;
+		this.percentile = percentile;
+		this.latencies = (windowSize > 0 ? new long[windowSize] : null);
+	}
+
+
+	/**
+	 * Hedge after the given fixed delay.
+	 * @param delay the delay in milliseconds
+	 */
+	public static HedgingPolicy fixedDelay(long delay) {
+		Assert.isTrue(delay >= 0, "'delay' must not be negative");
+		return new HedgingPolicy(delay, 0, 0);
+	}
+
+	/**
+	 * Hedge after the given percentile of the latency of the last 100
+	 * successful requests.
+	 * @param percentile the percentile, e.g. 95.0
+	 * @param initialDelay the delay in milliseconds to use until 100 latencies
+	 * have been recorded
+	 */
+	public static HedgingPolicy percentileDelay(double percentile, long initialDelay) {
+		Assert.isTrue(percentile > 0 && percentile <= 100, "'percentile' must be between 0 and 100");
+		Assert.isTrue(initialDelay >= 0, "'initialDelay' must not be negative");
+		return new HedgingPolicy(initialDelay, percentile, DEFAULT_WINDOW_SIZE);
+	}
+
+
+	/**
+	 * Return the current delay, in milliseconds, before a request is hedged.
+	 */
+	public long getDelay() {
+		if (this.latencies == null) {
+			return this.delay;
+		}
+		long[] sorted;
+		synchronized (this) {
+			if (this.latencyCount < this.latencies.length) {
+				return this.delay;
+			}
+			sorted = this.latencies.clone();
+		}
+		Arrays.sort(sorted);
+		int index = (int) Math.ceil(this.percentile / 100 * sorted.length) - 1;
+		return sorted[Math.max(index, 0)];
+	}
+
+	/**
+	 * Record the latency of a successful attempt, measured from when that
+	 * attempt was sent. Each attempt of a hedged exchange that completes is
+	 * recorded on its own, so that the recorded latencies reflect the latency
+	 * of a single request to a service.
+	 * @param latency the latency in milliseconds
+	 */
+	public void recordLatency(long latency) {
+		if (this.latencies == null) {
+			return;
+		}
+		synchronized (this) {
+			this.latencies[this.latencyIndex] = latency;
+			this.latencyIndex = (this.latencyIndex + 1) % this.latencies.length;
+			if (this.latencyCount < this.latencies.length) {
+				this.latencyCount++;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return (this.latencies != null ? "HedgingPolicy[p" + this.percentile + "]" :
+				"HedgingPolicy[fixedDelay=" + this.delay + "ms]");
+	}
+
+}
@@ -35,6 +35,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.http.client.ClientHttpRequest;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.UriTemplateHolder;
 import org.springframework.http.client.support.InterceptingHttpAccessor;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.GenericHttpMessageConverter;
@@ -617,7 +618,7 @@ public class RestTemplate extends InterceptingHttpAccessor implements RestOperat
 			ResponseExtractor<T> responseExtractor, Object... uriVariables) throws RestClientException {
 
 		URI expanded = getUriTemplateHandler().expand(url, uriVariables);
-		return doExecute(expanded, method, requestCallback, responseExtractor);
+		return doExecute(url, expanded, method, requestCallback, responseExtractor);
 	}
 
 	@Override
@@ -625,7 +626,7 @@ public class RestTemplate extends InterceptingHttpAccessor implements RestOperat
 			ResponseExtractor<T> responseExtractor, Map<String, ?> uriVariables) throws RestClientException {
 
 		URI expanded = getUriTemplateHandler().expand(url, uriVariables);
-		return doExecute(expanded, method, requestCallback, responseExtractor);
+		return doExecute(url, expanded, method, requestCallback, responseExtractor);
 	}
 
 	@Override
@@ -635,6 +636,25 @@ public class RestTemplate extends InterceptingHttpAccessor implements RestOperat
 		return doExecute(url, method, requestCallback, responseExtractor);
 	}
 
+	/**
+	 * Execute the given method on the provided URI, exposing the URI template
+	 * it was expanded from through the {@link UriTemplateHolder} meanwhile.
+	 * @param uriTemplate the URI template
+	 * @param url the expanded URI
+	 */
+	private <T> T doExecute(String uriTemplate, URI url, HttpMethod method, RequestCallback requestCallback,
+			ResponseExtractor<T> responseExtractor) throws RestClientException {
+
+		String previousUriTemplate = UriTemplateHolder.getUriTemplate();
+		UriTemplateHolder.setUriTemplate(uriTemplate);
+		try {
+			return doExecute(url, method, requestCallback, responseExtractor);
+		}
+		finally {
+			UriTemplateHolder.setUriTemplate(previousUriTemplate);
+		}
+	}
+
 	/**
 	 * Execute the given method on the provided URI.
 	 * <p>The {@link ClientHttpRequest} is processed using the {@link RequestCallback};
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.springframework.http.ResponseEntity;
+
+/**
+ * The outcome of a scatter-gather call through
+ * {@link AsyncRestTemplate#exchangeAll AsyncRestTemplate}: the response of
+ * each request that succeeded and the exception of each request that failed
+ * or timed out, by the index of the request.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @param <T> the type of the response bodies
+ */
+public class ScatterGatherResult<T> {
+
+	private final AtomicIntegerArray completed;
+
+	private final AtomicReferenceArray<ResponseEntity<T>> responses;
+
+	private final AtomicReferenceArray<Throwable> exceptions;
+
+
+	ScatterGatherResult(int size) {
+		this.completed = new AtomicIntegerArray(size);
+		this.responses = new AtomicReferenceArray<ResponseEntity<T>>(size);
+		this.exceptions = new AtomicReferenceArray<Throwable>(size);
+	}
+
+
+	/**
+	 * Record the response of the request at the given index, unless it has
+	 * completed already, e.g. due to a timeout.
+	 * @return {@code true} if the response was recorded
+	 */
+	boolean setResponse(int index, ResponseEntity<T> response) {
+		if (!this.completed.compareAndSet(index, 0, 1)) {
+			return false;
+		}
+		this.responses.set(index, response);
+		return true;
+	}
+
+	/**
+	 * Record the exception of the request at the given index, unless it has
+	 * completed already.
+	 * @return {@code true} if the exception was recorded
+	 */
+	boolean setException(int index, Throwable exception) {
+		if (!this.completed.compareAndSet(index, 0, 1)) {
+			return false;
+		}
+		this.exceptions.set(index, exception);
+		return true;
+	}
+
+
+	/**
+	 * Return the number of requests.
+	 */
+	public int size() {
+		return this.responses.length();
+	}
+
+	/**
+	 * Whether all requests succeeded.
+	 */
+	public boolean isComplete() {
+		for (int i = 0; i < this.exceptions.length(); i++) {
+			if (this.exceptions.get(i) != null) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Return the response of the request at the given index, or {@code null}
+	 * if that request failed or timed out.
+	 */
+	public ResponseEntity<T> getResponse(int index) {
+		return this.responses.get(index);
+	}
+
+	/**
+	 * Return the exception of the request at the given index, or {@code null}
+	 * if that request succeeded. A request that timed out has a
+	 * {@link java.util.concurrent.TimeoutException}.
+	 */
+	public Throwable getException(int index) {
+		return this.exceptions.get(index);
+	}
+
+	/**
+	 * Return the responses of all requests in request order, with
+	 * {@code null} for requests that failed or timed out.
+	 */
+	public List<ResponseEntity<T>> getResponses() {
+		List<ResponseEntity<T>> result = new ArrayList<ResponseEntity<T>>(this.responses.length());
+		for (int i = 0; i < this.responses.length(); i++) {
+			result.add(this.responses.get(i));
+		}
+		return result;
+	}
+
+	/**
+	 * Return the responses of the requests that succeeded, in request order.
+	 */
+	public List<ResponseEntity<T>> getSuccessfulResponses() {
+		List<ResponseEntity<T>> result = new ArrayList<ResponseEntity<T>>(this.responses.length());
+		for (int i = 0; i < this.responses.length(); i++) {
+			if (this.exceptions.get(i) == null && this.responses.get(i) != null) {
+				result.add(this.responses.get(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Return the exceptions of the requests that failed or timed out, keyed
+	 * by the index of the request.
+	 */
+	public Map<Integer, Throwable> getExceptions() {
+		Map<Integer, Throwable> result = new LinkedHashMap<Integer, Throwable>();
+		for (int i = 0; i < this.exceptions.length(); i++) {
+			if (this.exceptions.get(i) != null) {
+				result.put(i, this.exceptions.get(i));
+			}
+		}
+		return Collections.unmodifiableMap(result);
+	}
+
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.springframework.core.io.InputStreamResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+
+/**
+ * {@link RequestCallback} that streams the content of a {@link Resource}
+ * to the request body, without reading it into memory first.
+ *
+ * <p>The "Content-Length" header is set if the length of the resource is
+ * known, which allows a request factory to stream the body directly to the
+ * connection, e.g. with the
+ * {@link org.springframework.http.client.SimpleClientHttpRequestFactory#setStreamingThreshold
+ * streaming threshold} of the {@code SimpleClientHttpRequestFactory}.
+ * For true end-to-end streaming, use a request factory that does not buffer
+ * request bodies.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see StreamingResponseExtractor
+ * @see FileResponseExtractor
+ */
+public class StreamingRequestCallback implements RequestCallback {
+
+	private final Resource resource;
+
+	private final MediaType contentType;
+
+
+	/**
+	 * Create a new callback for the given resource.
+	 * @param resource the resource to stream
+	 */
+	public StreamingRequestCallback(Resource resource) {
+		this(resource, null);
+	}
+
+	/**
+	 * Create a new callback for the given resource.
+	 * @param resource the resource to stream
+	 * @param contentType the content type of the request, or {@code null}
+	 */
+	public StreamingRequestCallback(Resource resource, MediaType contentType) {
+		Assert.notNull(resource, "Resource must not be null");
+		this.resource = resource;
+		this.contentType = contentType;
+	}
+
+
+	@Override
+	public void doWithRequest(ClientHttpRequest request) throws IOException {
+		if (this.contentType != null) {
+			request.getHeaders().setContentType(this.contentType);
+		}
+		if (request.getHeaders().getContentLength() < 0 && !isInputStreamResource()) {
+			request.getHeaders().setContentLength(this.resource.contentLength());
+		}
+		InputStream in = this.resource.getInputStream();
+		try {
+			OutputStream out = request.getBody();
+			StreamUtils.copy(in, out);
+			out.flush();
+		}
+		finally {
+			try {
+				in.close();
+			}
+			catch (IOException ex) {
+				// ignore
+			}
+		}
+	}
+
+	private boolean isInputStreamResource() {
+		// An InputStreamResource can only be read once
+		return (this.resource instanceof InputStreamResource);
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.util.StreamUtils;
+
+/**
+ * {@link ResponseExtractor} that copies the response body to an
+ * {@link OutputStream} as it is read, rather than converting it to an object
+ * or a byte array, and returns the number of bytes copied.
+ *
+ * <p>The given stream is flushed but not closed.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see FileResponseExtractor
+ * @see StreamingRequestCallback
+ */
+public class StreamingResponseExtractor implements ResponseExtractor<Long> {
+
+	private final OutputStream outputStream;
+
+
+	/**
+	 * Create a new extractor that copies the response body to the given stream.
+	 */
+	public StreamingResponseExtractor(OutputStream outputStream) {
+		Assert.notNull(outputStream, "OutputStream must not be null");
+		this.outputStream = outputStream;
+	}
+
+
+	@Override
+	public Long extractData(ClientHttpResponse response) throws IOException {
+		InputStream in = response.getBody();
+		byte[] buffer = new byte[StreamUtils.BUFFER_SIZE];
+		long byteCount = 0;
+		int bytesRead;
+		while ((bytesRead = in.read(buffer)) != -1) {
+			this.outputStream.write(buffer, 0, bytesRead);
+			byteCount += bytesRead;
+		}
+		this.outputStream.flush();
+		return byteCount;
+	}
+
+}
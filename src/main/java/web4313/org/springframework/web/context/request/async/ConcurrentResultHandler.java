@@ -0,0 +1,52 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.context.request.async;
+
+/**
+ * Contract for handling a concurrent result directly on the thread that
+ * produced it, as an alternative to dispatching the request back to the
+ * container in order to resume processing.
+ *
+ * <p>When registered with {@link WebAsyncManager#setConcurrentResultHandler},
+ * the handler is given the chance to write the response for the concurrent
+ * result. If it does, async processing is completed without a dispatch.
+ * Otherwise the result is saved and the request dispatched as usual.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see WebAsyncManager#setConcurrentResultHandler(ConcurrentResultHandler)
+ */
+public interface ConcurrentResultHandler {
+
+	/**
+	 * Handle the given concurrent result, after it has been passed through
+	 * {@link DeferredResultProcessingInterceptor#postProcess} or
+	 * {@link CallableProcessingInterceptor#postProcess}.
+	 * <p>Implementations must decide whether they can handle the result
+	 * before writing anything to the response.
+	 * @param concurrentResult the concurrent result, possibly an exception
+	 * @return {@code true} if the response has been fully written, or
+	 * {@code false} if nothing was written and the request should be
+	 * dispatched for regular processing of the result
+	 * @throws Exception in case of errors while writing the response, in which
+	 * case the request is dispatched with the exception as concurrent result,
+	 * unless the response has already been committed, in which case async
+	 * processing is completed
+	 */
+	boolean handleConcurrentResult(Object concurrentResult) throws Exception;
+
+}
@@ -129,6 +129,20 @@ public class StandardServletAsyncWebRequest extends ServletWebRequest implements
 		this.asyncContext.dispatch();
 	}
 
+	/**
+	 * Complete async processing without dispatching the request back to the
+	 * container, e.g. after the response has been written from the thread
+	 * that produced the concurrent result.
+	 * @since 4.3.14
+	 */
+	public void complete() {
+		AsyncContext context = this.asyncContext;
+		Assert.notNull(context, "Cannot complete without an AsyncContext");
+		if (!isAsyncComplete()) {
+			context.complete();
+		}
+	}
+
 
 	// ---------------------------------------------------------------------
 	// Implementation of AsyncListener methods
@@ -49,6 +49,10 @@ import org.springframework.web.util.UrlPathHelper;
  * result can be accessed via {@link #getConcurrentResult()} or its presence
  * detected via {@link #hasConcurrentResult()}.
  *
+ * <p>Alternatively a {@link ConcurrentResultHandler} may be registered to
+ * handle the result directly in the thread that produced it (T2), completing
+ * async processing without a dispatch.
+ *
  * @author Rossen Stoyanchev
  * @since 3.2
  * @see org.springframework.web.context.request.AsyncWebRequestInterceptor
@@ -79,6 +83,8 @@ public final class WebAsyncManager {
 
 	private Object[] concurrentResultContext;
 
+	private ConcurrentResultHandler concurrentResultHandler;
+
 	private final Map<Object, CallableProcessingInterceptor> callableInterceptors =
 			new LinkedHashMap<Object, CallableProcessingInterceptor>();
 
@@ -228,6 +234,25 @@ public final class WebAsyncManager {
 		}
 	}
 
+	/**
+	 * Register a {@link ConcurrentResultHandler} to give the concurrent result
+	 * of the current async request a chance to be handled directly on the
+	 * thread that produced it, i.e. without a container dispatch. This must be
+	 * called after concurrent handling has started. If a concurrent result has
+	 * already been set, the handler is ignored and the request is dispatched.
+	 * @param resultHandler the handler to use
+	 * @since 4.3.14
+	 */
+	public void setConcurrentResultHandler(ConcurrentResultHandler resultHandler) {
+		Assert.notNull(resultHandler, "ConcurrentResultHandler must not be null");
+		Assert.state(isConcurrentHandlingStarted(), "Concurrent handling has not been started");
+		synchronized (WebAsyncManager.this) {
+			if (!hasConcurrentResult()) {
+				this.concurrentResultHandler = resultHandler;
+			}
+		}
+	}
+
 	/**
 	 * Clear {@linkplain #getConcurrentResult() concurrentResult} and
 	 * {@linkplain #getConcurrentResultContext() concurrentResultContext}.
@@ -345,11 +370,14 @@ public final class WebAsyncManager {
 	}
 
 	private void setConcurrentResultAndDispatch(Object result) {
+		ConcurrentResultHandler resultHandler;
 		synchronized (WebAsyncManager.this) {
 			if (hasConcurrentResult()) {
 				return;
 			}
 			this.concurrentResult = result;
+			resultHandler = this.concurrentResultHandler;
+			this.concurrentResultHandler = null;
 		}
 
 		if (this.asyncWebRequest.isAsyncComplete()) {
@@ -357,6 +385,10 @@ public final class WebAsyncManager {
 			return;
 		}
 
+		if (resultHandler != null && completeWithoutDispatch(resultHandler, result)) {
+			return;
+		}
+
 		if (logger.isDebugEnabled()) {
 			logger.debug("Concurrent result value [" + this.concurrentResult +
 					"] - dispatching request to resume processing");
@@ -365,6 +397,38 @@ public final class WebAsyncManager {
 		this.asyncWebRequest.dispatch();
 	}
 
+	private boolean completeWithoutDispatch(ConcurrentResultHandler resultHandler, Object result) {
+		if (!(this.asyncWebRequest instanceof StandardServletAsyncWebRequest)) {
+			return false;
+		}
+		StandardServletAsyncWebRequest servletAsyncWebRequest = (StandardServletAsyncWebRequest) this.asyncWebRequest;
+		try {
+			if (!resultHandler.handleConcurrentResult(result)) {
+				return false;
+			}
+		}
+		catch (Throwable ex) {
+			if (servletAsyncWebRequest.getResponse().isCommitted()) {
+				// Partial output: a dispatch could not render an error response anymore
+				logger.error("Failed to write concurrent result [" + result + "] after the response " +
+						"was committed - completing async processing", ex);
+				servletAsyncWebRequest.complete();
+				return true;
+			}
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to handle concurrent result [" + result + "] without dispatch", ex);
+			}
+			this.concurrentResult = ex;
+			return false;
+		}
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("Concurrent result value [" + result + "] handled - completing async processing");
+		}
+		servletAsyncWebRequest.complete();
+		return true;
+	}
+
 	/**
 	 * Start concurrent request processing and initialize the given
 	 * {@link DeferredResult} with a {@link DeferredResultHandler} that saves
@@ -445,6 +509,9 @@ public final class WebAsyncManager {
 	}
 
 	private void startAsyncProcessing(Object[] processingContext) {
+		synchronized (WebAsyncManager.this) {
+			this.concurrentResultHandler = null;
+		}
 		clearConcurrentResult();
 		this.concurrentResultContext = processingContext;
 		this.asyncWebRequest.startAsync();
@@ -244,8 +244,13 @@ public abstract class AbstractRequestLoggingFilter extends OncePerRequestFilter
 			filterChain.doFilter(requestToUse, response);
 		}
 		finally {
-			if (shouldLog && !isAsyncStarted(requestToUse)) {
-				afterRequest(requestToUse, getAfterMessage(requestToUse));
+			if (!isAsyncStarted(requestToUse)) {
+				if (shouldLog) {
+					afterRequest(requestToUse, getAfterMessage(requestToUse));
+				}
+				if (requestToUse != request) {
+					((ContentCachingRequestWrapper) requestToUse).release();
+				}
 			}
 		}
 	}
@@ -0,0 +1,516 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.filter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.StringUtils;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * {@link javax.servlet.Filter} that caches complete responses to GET requests
+ * in memory and serves subsequent matching requests from the cache, without
+ * invoking the rest of the filter chain.
+ *
+ * <p>A response is cached only if its {@code Cache-Control} header, e.g. as
+ * set through {@link org.springframework.http.CacheControl CacheControl} on a
+ * {@code ResponseEntity} or a {@code WebContentGenerator}, allows it to be
+ * stored by a shared cache, i.e. it has a positive "s-maxage" or "max-age"
+ * directive and none of "private", "no-cache" or "no-store". The directive
+ * also determines how long the response is cached for. Responses that set
+ * cookies are never cached.
+ *
+ * <p>Responses are cached by request method, URI and query string, and by
+ * the values of the request headers listed in the response's {@code Vary}
+ * header. The cache is limited by the total size of cached response bodies,
+ * evicting the least recently used entries first, and responses larger than
+ * the {@link #setMaxEntrySize maximum entry size} are not cached.
+ *
+ * <p>Requests with an "Authorization" header, with cookies, or that belong to
+ * an HTTP session are neither served from nor stored in the cache, since
+ * their responses are likely specific to a user.
+ *
+ * <p>Concurrent requests that miss the cache for the same key are coalesced:
+ * the first request is processed while the others wait for it to complete,
+ * for up to the {@link #setCoalescingTimeout coalescing timeout}, and are then
+ * served from the cache. Requests that are processed asynchronously are not
+ * coalesced.
+ *
+ * <p>This filter requires a Servlet 3.0 container.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+	private static final String CACHE_KEY_ATTRIBUTE = ResponseCacheFilter.class.getName() + ".CACHE_KEY";
+
+	private static final int MAX_ASYNC_KEYS = 1024;
+
+
+	private long maxTotalSize = 10 * 1024 * 1024;
+
+	private int maxEntrySize = 256 * 1024;
+
+	private long coalescingTimeout = 200;
+
+	private final Map<String, CachedResponse> cache = new LinkedHashMap<String, CachedResponse>(256, 0.75f, true);
+
+	private long totalSize;
+
+	private final Map<String, VaryEntry> varyEntries = new HashMap<String, VaryEntry>(256);
+
+	private final ConcurrentMap<String, CountDownLatch> inFlightRequests = new ConcurrentHashMap<String, CountDownLatch>();
+
+	private final Set<String> asyncKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+
+	/**
+	 * Set the maximum total size, in bytes, of cached response bodies.
+	 * <p>Should be configured using an {@code <init-param>} for parameter name
+	 * "maxTotalSize" in the filter definition in {@code web.xml}.
+	 * <p>By default this is set to 10M.
+	 */
+	public void setMaxTotalSize(long maxTotalSize) {
+		this.maxTotalSize = maxTotalSize;
+	}
+
+	/**
+	 * Return the configured maximum total size of cached response bodies.
+	 */
+	public long getMaxTotalSize() {
+		return this.maxTotalSize;
+	}
+
+	/**
+	 * Set the maximum size, in bytes, of a response body to cache. Larger
+	 * responses are written through to the client and not cached.
+	 * <p>Should be configured using an {@code <init-param>} for parameter name
+	 * "maxEntrySize" in the filter definition in {@code web.xml}.
+	 * <p>By default this is set to 256K.
+	 */
+	public void setMaxEntrySize(int maxEntrySize) {
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	/**
+	 * Return the configured maximum size of a cached response body.
+	 */
+	public int getMaxEntrySize() {
+		return this.maxEntrySize;
+	}
+
+	/**
+	 * Set how long, in milliseconds, a request that misses the cache waits for
+	 * a concurrent request for the same key to complete, before it proceeds
+	 * to be processed itself. A value of 0 disables request coalescing.
+	 * <p>Requests for keys that have been processed asynchronously are not
+	 * coalesced, since waiting for them would hold container threads without
+	 * saving any processing.
+	 * <p>Should be configured using an {@code <init-param>} for parameter name
+	 * "coalescingTimeout" in the filter definition in {@code web.xml}.
+	 * <p>By default this is set to 200.
+	 */
+	public void setCoalescingTimeout(long coalescingTimeout) {
+		this.coalescingTimeout = coalescingTimeout;
+	}
+
+	/**
+	 * Return the configured coalescing timeout.
+	 */
+	public long getCoalescingTimeout() {
+		return this.coalescingTimeout;
+	}
+
+	/**
+	 * Remove all cached responses.
+	 */
+	public void clearCache() {
+		synchronized (this.cache) {
+			this.cache.clear();
+			this.varyEntries.clear();
+			this.totalSize = 0;
+		}
+		this.asyncKeys.clear();
+	}
+
+
+	/**
+	 * The default value is {@code false} so that the filter may cache the
+	 * response once the last asynchronously dispatched thread has completed.
+	 */
+	@Override
+	protected boolean shouldNotFilterAsyncDispatch() {
+		return false;
+	}
+
+	@Override
+	protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+			throws ServletException, IOException {
+
+		if (isAsyncDispatch(request)) {
+			filterChain.doFilter(request, response);
+			if (!isAsyncStarted(request)) {
+				ContentCachingResponseWrapper wrapper =
+						WebUtils.getNativeResponse(response, ContentCachingResponseWrapper.class);
+				String key = (String) request.getAttribute(CACHE_KEY_ATTRIBUTE);
+				if (wrapper != null && key != null) {
+					updateCache(request, wrapper, key);
+					wrapper.copyBodyToResponse();
+				}
+			}
+			return;
+		}
+
+		if (!isCacheableRequest(request)) {
+			filterChain.doFilter(request, response);
+			return;
+		}
+
+		String primaryKey = getCacheKey(request);
+		CachedResponse cachedResponse = getCachedResponse(request, primaryKey);
+		if (cachedResponse != null) {
+			writeCachedResponse(response, cachedResponse);
+			return;
+		}
+
+		String key = getVariantKey(request, primaryKey);
+		CountDownLatch latch = null;
+		if (this.coalescingTimeout > 0 && !this.asyncKeys.contains(key)) {
+			latch = new CountDownLatch(1);
+			CountDownLatch existingLatch = this.inFlightRequests.putIfAbsent(key, latch);
+			if (existingLatch != null) {
+				latch = null;
+				try {
+					existingLatch.await(this.coalescingTimeout, TimeUnit.MILLISECONDS);
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+				cachedResponse = getCachedResponse(request, primaryKey);
+				if (cachedResponse != null) {
+					writeCachedResponse(response, cachedResponse);
+					return;
+				}
+			}
+		}
+
+		ContentCachingResponseWrapper wrapper = new ShallowEtagHeaderFilter.HttpStreamingAwareContentCachingResponseWrapper(
+				response, request, this.maxEntrySize);
+		request.setAttribute(CACHE_KEY_ATTRIBUTE, primaryKey);
+		try {
+			filterChain.doFilter(request, wrapper);
+			if (!isAsyncStarted(request)) {
+				updateCache(request, wrapper, primaryKey);
+				wrapper.copyBodyToResponse();
+			}
+			else if (latch != null && this.asyncKeys.size() < MAX_ASYNC_KEYS) {
+				this.asyncKeys.add(key);
+			}
+		}
+		finally {
+			if (latch != null) {
+				this.inFlightRequests.remove(key, latch);
+				latch.countDown();
+			}
+		}
+	}
+
+	/**
+	 * Whether responses to the given request may be served from, and stored
+	 * in, the cache.
+	 * <p>The default implementation returns {@code true} for GET requests
+	 * without an "Authorization" header, without cookies, and without a
+	 * requested or existing HTTP session. Sub-classes may relax this, e.g. for
+	 * cookies that don't identify a user, provided that the response does not
+	 * depend on them or the {@link #getCacheKey cache key} includes them.
+	 */
+	protected boolean isCacheableRequest(HttpServletRequest request) {
+		return (HttpMethod.GET.matches(request.getMethod()) &&
+				request.getHeader(HttpHeaders.AUTHORIZATION) == null &&
+				request.getHeader(HttpHeaders.COOKIE) == null &&
+				request.getRequestedSessionId() == null &&
+				request.getSession(false) == null);
+	}
+
+	/**
+	 * Return the cache key for the given request, not including the values
+	 * of request headers that the response may vary by.
+	 * <p>The default implementation combines the request method, URI and
+	 * query string.
+	 */
+	protected String getCacheKey(HttpServletRequest request) {
+		StringBuilder key = new StringBuilder(request.getMethod()).append(' ').append(request.getRequestURI());
+		String query = request.getQueryString();
+		if (query != null) {
+			key.append('?').append(query);
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Return the number of seconds for which the given response may be cached,
+	 * or 0 if it should not be cached.
+	 * <p>The default implementation accepts 200 responses with a
+	 * {@code Cache-Control} header that allows storage by shared caches, and
+	 * without cookies.
+	 * @param response the raw response, with all headers set
+	 * @param statusCode the response status code
+	 */
+	protected long getTimeToLive(HttpServletResponse response, int statusCode) {
+		if (statusCode != HttpServletResponse.SC_OK || response.containsHeader("Set-Cookie")) {
+			return 0;
+		}
+		String vary = response.getHeader(HttpHeaders.VARY);
+		if (vary != null && vary.contains("*")) {
+			return 0;
+		}
+		String cacheControl = response.getHeader(HttpHeaders.CACHE_CONTROL);
+		if (cacheControl == null) {
+			return 0;
+		}
+		long maxAge = 0;
+		long sharedMaxAge = -1;
+		for (String directive : StringUtils.tokenizeToStringArray(cacheControl, ",")) {
+			String name = directive.toLowerCase();
+			if (name.startsWith("private") || name.startsWith("no-cache") || name.equals("no-store")) {
+				// Including qualified forms, e.g. private="Set-Cookie"
+				return 0;
+			}
+			try {
+				if (name.startsWith("max-age=")) {
+					maxAge = Long.parseLong(name.substring(8));
+				}
+				else if (name.startsWith("s-maxage=")) {
+					sharedMaxAge = Long.parseLong(name.substring(9));
+				}
+			}
+			catch (NumberFormatException ex) {
+				return 0;
+			}
+		}
+		return (sharedMaxAge >= 0 ? sharedMaxAge : maxAge);
+	}
+
+	private CachedResponse getCachedResponse(HttpServletRequest request, String primaryKey) {
+		synchronized (this.cache) {
+			VaryEntry varyEntry = this.varyEntries.get(primaryKey);
+			if (varyEntry == null) {
+				return null;
+			}
+			String key = getVariantKey(request, primaryKey, varyEntry.getHeaderNames());
+			CachedResponse cachedResponse = this.cache.get(key);
+			if (cachedResponse != null && cachedResponse.isExpired()) {
+				this.cache.remove(key);
+				removed(cachedResponse);
+				return null;
+			}
+			return cachedResponse;
+		}
+	}
+
+	/**
+	 * Update the size and Vary bookkeeping for a response that has been
+	 * removed from the cache. Must be called while holding the cache lock.
+	 */
+	private void removed(CachedResponse cachedResponse) {
+		this.totalSize -= cachedResponse.getBody().length;
+		VaryEntry varyEntry = this.varyEntries.get(cachedResponse.getPrimaryKey());
+		if (varyEntry != null && --varyEntry.variantCount <= 0) {
+			this.varyEntries.remove(cachedResponse.getPrimaryKey());
+		}
+	}
+
+	private String getVariantKey(HttpServletRequest request, String primaryKey) {
+		List<String> headerNames;
+		synchronized (this.cache) {
+			VaryEntry varyEntry = this.varyEntries.get(primaryKey);
+			headerNames = (varyEntry != null ? varyEntry.getHeaderNames() : Collections.<String>emptyList());
+		}
+		return getVariantKey(request, primaryKey, headerNames);
+	}
+
+	private String getVariantKey(HttpServletRequest request, String primaryKey, List<String> headerNames) {
+		if (headerNames.isEmpty()) {
+			return primaryKey;
+		}
+		StringBuilder key = new StringBuilder(primaryKey);
+		for (String headerName : headerNames) {
+			key.append('|').append(headerName).append('=');
+			Enumeration<String> values = request.getHeaders(headerName);
+			while (values != null && values.hasMoreElements()) {
+				key.append(values.nextElement()).append(',');
+			}
+		}
+		return key.toString();
+	}
+
+	private void updateCache(HttpServletRequest request, ContentCachingResponseWrapper wrapper, String primaryKey) {
+		HttpServletResponse rawResponse = (HttpServletResponse) wrapper.getResponse();
+		if (rawResponse.isCommitted() || wrapper.isContentOverflow() ||
+				ShallowEtagHeaderFilter.isContentCachingDisabled(request)) {
+			return;
+		}
+		long timeToLive = getTimeToLive(rawResponse, wrapper.getStatusCode());
+		if (timeToLive <= 0) {
+			return;
+		}
+
+		List<String> headerNames = new ArrayList<String>();
+		for (String vary : rawResponse.getHeaders(HttpHeaders.VARY)) {
+			for (String headerName : StringUtils.tokenizeToStringArray(vary, ",")) {
+				headerNames.add(headerName.toLowerCase());
+			}
+		}
+		Collections.sort(headerNames);
+
+		HttpHeaders headers = new HttpHeaders();
+		for (String headerName : rawResponse.getHeaderNames()) {
+			if (!HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(headerName) &&
+					!HttpHeaders.DATE.equalsIgnoreCase(headerName)) {
+				headers.put(headerName, new ArrayList<String>(rawResponse.getHeaders(headerName)));
+			}
+		}
+		CachedResponse cachedResponse = new CachedResponse(primaryKey, wrapper.getStatusCode(), headers,
+				wrapper.getContentAsByteArray(), System.currentTimeMillis() + timeToLive * 1000);
+
+		String key = getVariantKey(request, primaryKey, headerNames);
+		synchronized (this.cache) {
+			VaryEntry varyEntry = this.varyEntries.get(primaryKey);
+			if (varyEntry == null) {
+				varyEntry = new VaryEntry();
+				this.varyEntries.put(primaryKey, varyEntry);
+			}
+			varyEntry.headerNames = headerNames;
+			varyEntry.variantCount++;
+			CachedResponse previous = this.cache.put(key, cachedResponse);
+			if (previous != null) {
+				removed(previous);
+			}
+			this.totalSize += cachedResponse.getBody().length;
+			Iterator<CachedResponse> iterator = this.cache.values().iterator();
+			while (this.totalSize > this.maxTotalSize && iterator.hasNext()) {
+				CachedResponse eldest = iterator.next();
+				iterator.remove();
+				removed(eldest);
+			}
+		}
+		if (logger.isTraceEnabled()) {
+			logger.trace("Cached response for [" + key + "] for " + timeToLive + " seconds");
+		}
+	}
+
+	private void writeCachedResponse(HttpServletResponse response, CachedResponse cachedResponse) throws IOException {
+		if (logger.isTraceEnabled()) {
+			logger.trace("Serving cached response");
+		}
+		response.setStatus(cachedResponse.getStatusCode());
+		for (Map.Entry<String, List<String>> entry : cachedResponse.getHeaders().entrySet()) {
+			for (String value : entry.getValue()) {
+				response.addHeader(entry.getKey(), value);
+			}
+		}
+		response.setHeader(HttpHeaders.AGE, Long.toString(cachedResponse.getAge()));
+		response.setContentLength(cachedResponse.getBody().length);
+		response.getOutputStream().write(cachedResponse.getBody());
+	}
+
+
+	/**
+	 * The Vary header names last seen for a primary key, along with the
+	 * number of cached variants that still refer to it.
+	 */
+	private static final class VaryEntry {
+
+		private List<String> headerNames;
+
+		private int variantCount;
+
+		public List<String> getHeaderNames() {
+			return this.headerNames;
+		}
+	}
+
+
+	private static final class CachedResponse {
+
+		private final String primaryKey;
+
+		private final int statusCode;
+
+		private final HttpHeaders headers;
+
+		private final byte[] body;
+
+		private final long createdAt = System.currentTimeMillis();
+
+		private final long expiresAt;
+
+		public CachedResponse(String primaryKey, int statusCode, HttpHeaders headers, byte[] body, long expiresAt) {
+			this.primaryKey = primaryKey;
+			this.statusCode = statusCode;
+			this.headers = headers;
+			this.body = body;
+			this.expiresAt = expiresAt;
+		}
+
+		public String getPrimaryKey() {
+			return this.primaryKey;
+		}
+
+		public int getStatusCode() {
+			return this.statusCode;
+		}
+
+		public HttpHeaders getHeaders() {
+			return this.headers;
+		}
+
+		public byte[] getBody() {
+			return this.body;
+		}
+
+		public long getAge() {
+			return (System.currentTimeMillis() - this.createdAt) / 1000;
+		}
+
+		public boolean isExpired() {
+			return (System.currentTimeMillis() > this.expiresAt);
+		}
+	}
+
+}
@@ -19,6 +19,9 @@ package org.springframework.web.filter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.PrintWriter;
+import java.util.zip.CRC32;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
@@ -43,6 +46,10 @@ import org.springframework.web.util.WebUtils;
  * (e.g. a {@link org.springframework.web.servlet.View}) is still rendered.
  * As such, this filter only saves bandwidth, not server performance.
  *
+ * <p>As of 4.3.14, a {@link #setContentCacheLimit content cache limit} can be
+ * set, beyond which the response is streamed to the client without an ETag,
+ * and a faster {@link #setHashAlgorithm hash algorithm} can be chosen.
+ *
  * @author Arjen Poutsma
  * @author Rossen Stoyanchev
  * @author Brian Clozel
@@ -61,6 +68,12 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 
 	private static final String STREAMING_ATTRIBUTE = ShallowEtagHeaderFilter.class.getName() + ".STREAMING";
 
+	/** Hash algorithm for an MD5 based ETag value, the default */
+	public static final String HASH_ALGORITHM_MD5 = "MD5";
+
+	/** Hash algorithm for a CRC32 based ETag value */
+	public static final String HASH_ALGORITHM_CRC32 = "CRC32";
+
 
 	/** Checking for Servlet 3.0+ HttpServletResponse.getHeader(String) */
 	private static final boolean servlet3Present =
@@ -68,6 +81,12 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 
 	private boolean writeWeakETag = false;
 
+	private int contentCacheLimit = -1;
+
+	private String hashAlgorithm = HASH_ALGORITHM_MD5;
+
+	private int contentSpoolThreshold = -1;
+
 
 	/**
 	 * Set whether the ETag value written to the response should be weak, as per RFC 7232.
@@ -88,6 +107,73 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 		return this.writeWeakETag;
 	}
 
+	/**
+	 * Set the maximum number of bytes of the response body to buffer in order
+	 * to compute the ETag. Larger responses are written through to the client
+	 * as soon as the limit is exceeded, and are sent without an ETag.
+	 * <p>Should be configured using an {@code <init-param>} for parameter name
+	 * "contentCacheLimit" in the filter definition in {@code web.xml}.
+	 * <p>By default this is set to -1, i.e. the entire response is buffered.
+	 * @since 4.3.14
+	 */
+	public void setContentCacheLimit(int contentCacheLimit) {
+		this.contentCacheLimit = contentCacheLimit;
+	}
+
+	/**
+	 * Return the configured content cache limit.
+	 * @since 4.3.14
+	 */
+	public int getContentCacheLimit() {
+		return this.contentCacheLimit;
+	}
+
+	/**
+	 * Set the hash algorithm to generate ETag values with, either
+	 * {@link #HASH_ALGORITHM_MD5 "MD5"} or {@link #HASH_ALGORITHM_CRC32 "CRC32"}.
+	 * CRC32 is not a cryptographic hash and is considerably faster to compute,
+	 * which is sufficient for detecting changes to the content of a resource.
+	 * <p>Should be configured using an {@code <init-param>} for parameter name
+	 * "hashAlgorithm" in the filter definition in {@code web.xml}.
+	 * <p>By default this is set to "MD5".
+	 * @since 4.3.14
+	 */
+	public void setHashAlgorithm(String hashAlgorithm) {
+		Assert.isTrue(HASH_ALGORITHM_MD5.equalsIgnoreCase(hashAlgorithm) ||
+				HASH_ALGORITHM_CRC32.equalsIgnoreCase(hashAlgorithm),
+				"Unsupported hash algorithm: " + hashAlgorithm);
+		this.hashAlgorithm = hashAlgorithm;
+	}
+
+	/**
+	 * Return the configured hash algorithm.
+	 * @since 4.3.14
+	 */
+	public String getHashAlgorithm() {
+		return this.hashAlgorithm;
+	}
+
+	/**
+	 * Set the number of bytes of buffered response content beyond which the
+	 * content is moved to a temporary file rather than held in memory.
+	 * <p>Should be configured using an {@code <init-param>} for parameter name
+	 * "contentSpoolThreshold" in the filter definition in {@code web.xml}.
+	 * <p>By default this is set to -1, i.e. content is always held in memory.
+	 * @since 4.3.14
+	 * @see ContentCachingResponseWrapper#setContentSpoolThreshold(int)
+	 */
+	public void setContentSpoolThreshold(int contentSpoolThreshold) {
+		this.contentSpoolThreshold = contentSpoolThreshold;
+	}
+
+	/**
+	 * Return the configured content spool threshold.
+	 * @since 4.3.14
+	 */
+	public int getContentSpoolThreshold() {
+		return this.contentSpoolThreshold;
+	}
+
 
 	/**
 	 * The default value is {@code false} so that the filter may delay the generation
@@ -103,15 +189,54 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 			throws ServletException, IOException {
 
 		HttpServletResponse responseToUse = response;
+		ContentCachingResponseWrapper wrapper = null;
 		if (!isAsyncDispatch(request) && !(response instanceof ContentCachingResponseWrapper)) {
-			responseToUse = new HttpStreamingAwareContentCachingResponseWrapper(response, request);
+			wrapper = (this.contentCacheLimit >= 0 ?
+					new HttpStreamingAwareContentCachingResponseWrapper(response, request, this.contentCacheLimit) :
+					new HttpStreamingAwareContentCachingResponseWrapper(response, request));
+			wrapper.setContentSpoolThreshold(this.contentSpoolThreshold);
+			responseToUse = wrapper;
 		}
 
-		filterChain.doFilter(request, responseToUse);
+		try {
+			filterChain.doFilter(request, responseToUse);
+			if (!isAsyncStarted(request) && !isContentCachingDisabled(request)) {
+				updateResponse(request, responseToUse);
+			}
+		}
+		finally {
+			if (wrapper != null) {
+				releaseContent(request, wrapper);
+			}
+		}
+	}
 
-		if (!isAsyncStarted(request) && !isContentCachingDisabled(request)) {
-			updateResponse(request, responseToUse);
+	/**
+	 * Release the cached content of a wrapper created by this filter once the
+	 * response is complete or has failed, including async requests that never
+	 * dispatch back to the container.
+	 */
+	private void releaseContent(HttpServletRequest request, final ContentCachingResponseWrapper responseWrapper) {
+		if (!isAsyncStarted(request)) {
+			responseWrapper.release();
+			return;
 		}
+		request.getAsyncContext().addListener(new AsyncListener() {
+			@Override
+			public void onComplete(AsyncEvent event) {
+				responseWrapper.release();
+			}
+			@Override
+			public void onTimeout(AsyncEvent event) {
+			}
+			@Override
+			public void onError(AsyncEvent event) {
+			}
+			@Override
+			public void onStartAsync(AsyncEvent event) {
+				event.getAsyncContext().addListener(this);
+			}
+		});
 	}
 
 	private void updateResponse(HttpServletRequest request, HttpServletResponse response) throws IOException {
@@ -121,7 +246,10 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 		HttpServletResponse rawResponse = (HttpServletResponse) responseWrapper.getResponse();
 		int statusCode = responseWrapper.getStatusCode();
 
-		if (rawResponse.isCommitted()) {
+		if (rawResponse.isCommitted() || responseWrapper.isContentOverflow()) {
+			if (logger.isTraceEnabled() && responseWrapper.isContentOverflow()) {
+				logger.trace("Response exceeded content cache limit, sent without ETag");
+			}
 			responseWrapper.copyBodyToResponse();
 		}
 		else if (isEligibleForEtag(request, responseWrapper, statusCode, responseWrapper.getContentInputStream())) {
@@ -187,7 +315,8 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 
 	/**
 	 * Generate the ETag header value from the given response body byte array.
-	 * <p>The default implementation generates an MD5 hash.
+	 * <p>The default implementation generates an MD5 hash, or a CRC32 checksum
+	 * depending on the configured {@link #setHashAlgorithm hash algorithm}.
 	 * @param inputStream the response body as an InputStream
 	 * @param isWeak whether the generated ETag should be weak
 	 * @return the ETag header value
@@ -200,7 +329,18 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 			builder.append("W/");
 		}
 		builder.append("\"0");
-		DigestUtils.appendMd5DigestAsHex(inputStream, builder);
+		if (HASH_ALGORITHM_CRC32.equalsIgnoreCase(this.hashAlgorithm)) {
+			CRC32 checksum = new CRC32();
+			byte[] buffer = new byte[4096];
+			int bytesRead;
+			while ((bytesRead = inputStream.read(buffer)) != -1) {
+				checksum.update(buffer, 0, bytesRead);
+			}
+			builder.append(Long.toHexString(checksum.getValue()));
+		}
+		else {
+			DigestUtils.appendMd5DigestAsHex(inputStream, builder);
+		}
 		builder.append('"');
 		return builder.toString();
 	}
@@ -218,12 +358,17 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 		request.setAttribute(STREAMING_ATTRIBUTE, true);
 	}
 
-	private static boolean isContentCachingDisabled(HttpServletRequest request) {
+	static boolean isContentCachingDisabled(HttpServletRequest request) {
 		return (request.getAttribute(STREAMING_ATTRIBUTE) != null);
 	}
 
 
-	private static class HttpStreamingAwareContentCachingResponseWrapper extends ContentCachingResponseWrapper {
+	/**
+	 * Response wrapper that stops caching content once streaming has been
+	 * requested via {@link #disableContentCaching}. Also used by
+	 * {@link ResponseCacheFilter}.
+	 */
+	static class HttpStreamingAwareContentCachingResponseWrapper extends ContentCachingResponseWrapper {
 
 		private final HttpServletRequest request;
 
@@ -232,6 +377,13 @@ public class ShallowEtagHeaderFilter extends OncePerRequestFilter {
 			this.request = request;
 		}
 
+		public HttpStreamingAwareContentCachingResponseWrapper(HttpServletResponse response, HttpServletRequest request,
+				int contentCacheLimit) {
+
+			super(response, contentCacheLimit);
+			this.request = request;
+		}
+
 		@Override
 		public ServletOutputStream getOutputStream() throws IOException {
 			return (useRawResponse() ? getResponse().getOutputStream() : super.getOutputStream());
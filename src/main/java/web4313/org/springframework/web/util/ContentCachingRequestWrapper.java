@@ -17,7 +17,6 @@
 package org.springframework.web.util;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.URLEncoder;
@@ -37,6 +36,10 @@ import org.springframework.http.HttpMethod;
  * the {@linkplain #getInputStream() input stream} and {@linkplain #getReader() reader},
  * and allows this content to be retrieved via a {@link #getContentAsByteArray() byte array}.
  *
+ * <p>As of 4.3.14, the content is held in fixed-size segments from a shared
+ * pool, which may be returned to the pool via {@link #release()}, and can
+ * optionally be {@link #setContentSpoolThreshold spooled} to a temporary file.
+ *
  * <p>Used e.g. by {@link org.springframework.web.filter.AbstractRequestLoggingFilter}.
  *
  * @author Juergen Hoeller
@@ -49,7 +52,7 @@ public class ContentCachingRequestWrapper extends HttpServletRequestWrapper {
 	private static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
 
 
-	private final ByteArrayOutputStream cachedContent;
+	private final PooledContentBuffer cachedContent = new PooledContentBuffer();
 
 	private final Integer contentCacheLimit;
 
@@ -64,8 +67,6 @@ public class ContentCachingRequestWrapper extends HttpServletRequestWrapper {
 	 */
 	public ContentCachingRequestWrapper(HttpServletRequest request) {
 		super(request);
-		int contentLength = request.getContentLength();
-		this.cachedContent = new ByteArrayOutputStream(contentLength >= 0 ? contentLength : 1024);
 		this.contentCacheLimit = null;
 	}
 
@@ -78,11 +79,21 @@ public class ContentCachingRequestWrapper extends HttpServletRequestWrapper {
 	 */
 	public ContentCachingRequestWrapper(HttpServletRequest request, int contentCacheLimit) {
 		super(request);
-		this.cachedContent = new ByteArrayOutputStream(contentCacheLimit);
 		this.contentCacheLimit = contentCacheLimit;
 	}
 
 
+	/**
+	 * Set the number of bytes beyond which the cached content is moved to a
+	 * temporary file rather than held in memory. Must be set before any
+	 * content is read. The temporary file is deleted on {@link #release()}.
+	 * <p>By default this is set to -1, i.e. content is always held in memory.
+	 * @since 4.3.14
+	 */
+	public void setContentSpoolThreshold(int contentSpoolThreshold) {
+		this.cachedContent.setSpoolThreshold(contentSpoolThreshold);
+	}
+
 	@Override
 	public ServletInputStream getInputStream() throws IOException {
 		if (this.inputStream == null) {
@@ -180,7 +191,22 @@ public class ContentCachingRequestWrapper extends HttpServletRequestWrapper {
 	 * @see #ContentCachingRequestWrapper(HttpServletRequest, int)
 	 */
 	public byte[] getContentAsByteArray() {
-		return this.cachedContent.toByteArray();
+		try {
+			return this.cachedContent.toByteArray();
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to read cached content", ex);
+		}
+	}
+
+	/**
+	 * Discard the cached content, return its buffer segments to the shared
+	 * pool and delete the temporary file, if any. To be called once the cached
+	 * content is no longer needed, e.g. at the end of request processing.
+	 * @since 4.3.14
+	 */
+	public void release() {
+		this.cachedContent.reset();
 	}
 
 	/**
@@ -26,13 +26,20 @@ import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 
-import org.springframework.util.FastByteArrayOutputStream;
-
 /**
  * {@link javax.servlet.http.HttpServletResponse} wrapper that caches all content written to
  * the {@linkplain #getOutputStream() output stream} and {@linkplain #getWriter() writer},
  * and allows this content to be retrieved via a {@link #getContentAsByteArray() byte array}.
  *
+ * <p>As of 4.3.14, a content cache limit may be specified, beyond which the
+ * cached content is copied to the response and further content is written
+ * through to the response directly.
+ *
+ * <p>As of 4.3.14, the content is held in fixed-size segments from a shared
+ * pool, which are returned to the pool once the content has been copied to
+ * the response, and can optionally be {@link #setContentSpoolThreshold spooled}
+ * to a temporary file.
+ *
  * <p>Used e.g. by {@link org.springframework.web.filter.ShallowEtagHeaderFilter}.
  *
  * @author Juergen Hoeller
@@ -41,10 +48,14 @@ import org.springframework.util.FastByteArrayOutputStream;
  */
 public class ContentCachingResponseWrapper extends HttpServletResponseWrapper {
 
-	private final FastByteArrayOutputStream content = new FastByteArrayOutputStream(1024);
+	private final PooledContentBuffer content = new PooledContentBuffer();
 
 	private final ServletOutputStream outputStream = new ResponseServletOutputStream();
 
+	private final Integer contentCacheLimit;
+
+	private boolean contentOverflow = false;
+
 	private PrintWriter writer;
 
 	private int statusCode = HttpServletResponse.SC_OK;
@@ -58,6 +69,31 @@ public class ContentCachingResponseWrapper extends HttpServletResponseWrapper {
 	 */
 	public ContentCachingResponseWrapper(HttpServletResponse response) {
 		super(response);
+		this.contentCacheLimit = null;
+	}
+
+	/**
+	 * Create a new ContentCachingResponseWrapper for the given servlet response.
+	 * @param response the original servlet response
+	 * @param contentCacheLimit the maximum number of bytes to cache per response
+	 * @since 4.3.14
+	 * @see #handleContentOverflow(int)
+	 */
+	public ContentCachingResponseWrapper(HttpServletResponse response, int contentCacheLimit) {
+		super(response);
+		this.contentCacheLimit = contentCacheLimit;
+	}
+
+
+	/**
+	 * Set the number of bytes beyond which the cached content is moved to a
+	 * temporary file rather than held in memory. Must be set before any
+	 * content is written.
+	 * <p>By default this is set to -1, i.e. content is always held in memory.
+	 * @since 4.3.14
+	 */
+	public void setContentSpoolThreshold(int contentSpoolThreshold) {
+		this.content.setSpoolThreshold(contentSpoolThreshold);
 	}
 
 
@@ -125,12 +161,16 @@ public class ContentCachingResponseWrapper extends HttpServletResponseWrapper {
 	@Override
 	public void flushBuffer() throws IOException {
 		// do not flush the underlying response as the content as not been copied to it yet
+		if (this.contentOverflow) {
+			super.flushBuffer();
+		}
 	}
 
 	@Override
 	public void setContentLength(int len) {
-		if (len > this.content.size()) {
-			this.content.resize(len);
+		if (this.contentOverflow) {
+			super.setContentLength(len);
+			return;
 		}
 		this.contentLength = len;
 	}
@@ -142,21 +182,28 @@ public class ContentCachingResponseWrapper extends HttpServletResponseWrapper {
 					Integer.MAX_VALUE + "): " + len);
 		}
 		int lenInt = (int) len;
-		if (lenInt > this.content.size()) {
-			this.content.resize(lenInt);
+		if (this.contentOverflow) {
+			super.setContentLength(lenInt);
+			return;
 		}
 		this.contentLength = lenInt;
 	}
 
+	/**
+	 * As of 4.3.14, the cached content grows in pooled segments and is not
+	 * pre-allocated, so the given size is passed on to the underlying
+	 * response, where it applies once the content is copied to it.
+	 */
 	@Override
 	public void setBufferSize(int size) {
-		if (size > this.content.size()) {
-			this.content.resize(size);
-		}
+		super.setBufferSize(size);
 	}
 
 	@Override
 	public void resetBuffer() {
+		if (this.contentOverflow) {
+			super.resetBuffer();
+		}
 		this.content.reset();
 	}
 
@@ -166,6 +213,18 @@ public class ContentCachingResponseWrapper extends HttpServletResponseWrapper {
 		this.content.reset();
 	}
 
+	/**
+	 * Discard the cached content, return its buffer segments to the shared
+	 * pool and delete the temporary file, if any, without resetting the
+	 * underlying response. To be called once the cached content is no longer
+	 * needed, e.g. if request processing failed before it was copied to the
+	 * response.
+	 * @since 4.3.14
+	 */
+	public void release() {
+		this.content.reset();
+	}
+
 	/**
 	 * Return the status code as specified on the response.
 	 */
@@ -177,15 +236,28 @@ public class ContentCachingResponseWrapper extends HttpServletResponseWrapper {
 	 * Return the cached response content as a byte array.
 	 */
 	public byte[] getContentAsByteArray() {
-		return this.content.toByteArray();
+		try {
+			return this.content.toByteArray();
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to read cached content", ex);
+		}
 	}
 
 	/**
 	 * Return an {@link InputStream} to the cached content.
+	 * <p>As of 4.3.14, the stream reads the cached content in place and must
+	 * be consumed before the content is copied to the response or otherwise
+	 * discarded; it fails with an {@link IOException} if read afterwards.
 	 * @since 4.2
 	 */
 	public InputStream getContentInputStream() {
-		return this.content.getInputStream();
+		try {
+			return this.content.getInputStream();
+		}
+		catch (IOException ex) {
+			throw new IllegalStateException("Failed to read cached content", ex);
+		}
 	}
 
 	/**
@@ -196,6 +268,17 @@ public class ContentCachingResponseWrapper extends HttpServletResponseWrapper {
 		return this.content.size();
 	}
 
+	/**
+	 * Whether the content cache limit has been exceeded, in which case the
+	 * cached content has been copied to the response, and the content
+	 * returned by this wrapper is incomplete.
+	 * @since 4.3.14
+	 * @see #ContentCachingResponseWrapper(HttpServletResponse, int)
+	 */
+	public boolean isContentOverflow() {
+		return this.contentOverflow;
+	}
+
 	/**
 	 * Copy the complete cached body content to the response.
 	 * @since 4.2
@@ -225,17 +308,58 @@ public class ContentCachingResponseWrapper extends HttpServletResponseWrapper {
 		}
 	}
 
+	/**
+	 * Template method for handling a content overflow: specifically, a response
+	 * body being written that exceeds the specified content cache limit.
+	 * <p>The default implementation is empty. It is called before the cached
+	 * content is copied to the response.
+	 * @param contentCacheLimit the maximum number of bytes to cache per response
+	 * which is about to be exceeded
+	 * @since 4.3.14
+	 * @see #ContentCachingResponseWrapper(HttpServletResponse, int)
+	 */
+	protected void handleContentOverflow(int contentCacheLimit) {
+	}
+
+	private void checkContentOverflow(int len) throws IOException {
+		if (!this.contentOverflow && this.contentCacheLimit != null &&
+				this.content.size() + len > this.contentCacheLimit) {
+			handleContentOverflow(this.contentCacheLimit);
+			copyBodyToResponse(false);
+			// Nothing may have been cached yet, in which case a content length
+			// set earlier has not been propagated along with the content
+			HttpServletResponse rawResponse = (HttpServletResponse) getResponse();
+			if (this.contentLength != null && !rawResponse.isCommitted()) {
+				rawResponse.setContentLength(this.contentLength);
+				this.contentLength = null;
+			}
+			this.contentOverflow = true;
+		}
+	}
+
 
 	private class ResponseServletOutputStream extends ServletOutputStream {
 
 		@Override
 		public void write(int b) throws IOException {
-			content.write(b);
+			checkContentOverflow(1);
+			if (contentOverflow) {
+				getResponse().getOutputStream().write(b);
+			}
+			else {
+				content.write(b);
+			}
 		}
 
 		@Override
 		public void write(byte[] b, int off, int len) throws IOException {
-			content.write(b, off, len);
+			checkContentOverflow(len);
+			if (contentOverflow) {
+				getResponse().getOutputStream().write(b, off, len);
+			}
+			else {
+				content.write(b, off, len);
+			}
 		}
 	}
 
@@ -243,7 +367,7 @@ public class ContentCachingResponseWrapper extends HttpServletResponseWrapper {
 	private class ResponsePrintWriter extends PrintWriter {
 
 		public ResponsePrintWriter(String characterEncoding) throws UnsupportedEncodingException {
-			super(new OutputStreamWriter(content, characterEncoding));
+			super(new OutputStreamWriter(outputStream, characterEncoding));
 		}
 
 		@Override
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.util;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.StreamUtils;
+
+/**
+ * An {@link OutputStream} that keeps its content in a list of fixed-size
+ * segments taken from a pool shared by all instances, and returns them to the
+ * pool on {@link #reset()}. Content is never copied in order to grow the
+ * buffer, and {@link #writeTo(OutputStream)} writes the segments in order.
+ *
+ * <p>If a spool threshold is set, content beyond that size is moved to a
+ * temporary file, and the in-memory segments are returned to the pool.
+ *
+ * <p>Used by {@link ContentCachingRequestWrapper} and
+ * {@link ContentCachingResponseWrapper}.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+class PooledContentBuffer extends OutputStream {
+
+	static final int SEGMENT_SIZE = 8192;
+
+	private static final int MAX_POOLED_SEGMENTS = 512;
+
+	private static final Queue<byte[]> segmentPool = new ConcurrentLinkedQueue<byte[]>();
+
+	private static final AtomicInteger pooledSegmentCount = new AtomicInteger();
+
+	private static final Log logger = LogFactory.getLog(PooledContentBuffer.class);
+
+
+	private final List<byte[]> segments = new ArrayList<byte[]>();
+
+	private int spoolThreshold = -1;
+
+	private int size;
+
+	private int segmentIndex;
+
+	private File spoolFile;
+
+	private OutputStream spoolOutputStream;
+
+	private int generation;
+
+
+	/**
+	 * Set the number of bytes beyond which content is moved to a temporary
+	 * file, or -1 to always keep it in memory.
+	 */
+	public void setSpoolThreshold(int spoolThreshold) {
+		this.spoolThreshold = spoolThreshold;
+	}
+
+
+	@Override
+	public void write(int b) throws IOException {
+		checkSpoolThreshold(1);
+		if (this.spoolOutputStream != null) {
+			this.spoolOutputStream.write(b);
+		}
+		else {
+			byte[] segment = currentSegment();
+			segment[this.segmentIndex++] = (byte) b;
+		}
+		this.size++;
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		checkSpoolThreshold(len);
+		if (this.spoolOutputStream != null) {
+			this.spoolOutputStream.write(b, off, len);
+		}
+		else {
+			int remaining = len;
+			while (remaining > 0) {
+				byte[] segment = currentSegment();
+				int count = Math.min(remaining, segment.length - this.segmentIndex);
+				System.arraycopy(b, off + len - remaining, segment, this.segmentIndex, count);
+				this.segmentIndex += count;
+				remaining -= count;
+			}
+		}
+		this.size += len;
+	}
+
+	private byte[] currentSegment() {
+		if (this.segments.isEmpty() || this.segmentIndex == SEGMENT_SIZE) {
+			this.segments.add(obtainSegment());
+			this.segmentIndex = 0;
+		}
+		return this.segments.get(this.segments.size() - 1);
+	}
+
+	private void checkSpoolThreshold(int len) throws IOException {
+		if (this.spoolOutputStream == null && this.spoolThreshold >= 0 && this.size + len > this.spoolThreshold) {
+			this.spoolFile = File.createTempFile("spring-content", ".tmp");
+			this.spoolOutputStream = new BufferedOutputStream(new FileOutputStream(this.spoolFile), SEGMENT_SIZE);
+			writeSegmentsTo(this.spoolOutputStream);
+			releaseSegments();
+		}
+	}
+
+	/**
+	 * Return the number of bytes written.
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Return a copy of the content.
+	 */
+	public byte[] toByteArray() throws IOException {
+		if (this.spoolOutputStream != null) {
+			this.spoolOutputStream.flush();
+			InputStream in = new FileInputStream(this.spoolFile);
+			try {
+				return StreamUtils.copyToByteArray(in);
+			}
+			finally {
+				in.close();
+			}
+		}
+		byte[] result = new byte[this.size];
+		int position = 0;
+		for (byte[] segment : this.segments) {
+			int count = Math.min(segment.length, this.size - position);
+			System.arraycopy(segment, 0, result, position, count);
+			position += count;
+		}
+		return result;
+	}
+
+	/**
+	 * Return an {@link InputStream} over the content. The stream reads the
+	 * pooled segments in place, and hence must be consumed before the buffer
+	 * is {@link #reset()}, after which it fails with an {@link IOException}
+	 * rather than return segments that may have been reused in the meantime.
+	 */
+	public InputStream getInputStream() throws IOException {
+		if (this.spoolOutputStream != null) {
+			this.spoolOutputStream.flush();
+			return new FileInputStream(this.spoolFile);
+		}
+		return new SegmentInputStream();
+	}
+
+	/**
+	 * Write the content to the given stream, segment by segment.
+	 */
+	public void writeTo(OutputStream out) throws IOException {
+		if (this.spoolOutputStream != null) {
+			this.spoolOutputStream.flush();
+			InputStream in = new FileInputStream(this.spoolFile);
+			try {
+				StreamUtils.copy(in, out);
+			}
+			finally {
+				in.close();
+			}
+		}
+		else {
+			writeSegmentsTo(out);
+		}
+	}
+
+	private void writeSegmentsTo(OutputStream out) throws IOException {
+		int remaining = this.size;
+		for (byte[] segment : this.segments) {
+			int count = Math.min(segment.length, remaining);
+			out.write(segment, 0, count);
+			remaining -= count;
+		}
+	}
+
+	/**
+	 * Discard the content, return the segments to the pool and delete the
+	 * temporary file, if any.
+	 */
+	public void reset() {
+		this.generation++;
+		releaseSegments();
+		if (this.spoolOutputStream != null) {
+			try {
+				this.spoolOutputStream.close();
+			}
+			catch (IOException ex) {
+				// ignore
+			}
+			if (!this.spoolFile.delete()) {
+				logger.warn("Could not delete temporary content file [" + this.spoolFile.getAbsolutePath() + "]");
+			}
+			this.spoolOutputStream = null;
+			this.spoolFile = null;
+		}
+		this.size = 0;
+	}
+
+	private void releaseSegments() {
+		for (byte[] segment : this.segments) {
+			if (pooledSegmentCount.incrementAndGet() <= MAX_POOLED_SEGMENTS) {
+				segmentPool.offer(segment);
+			}
+			else {
+				pooledSegmentCount.decrementAndGet();
+			}
+		}
+		this.segments.clear();
+		this.segmentIndex = 0;
+	}
+
+	private static byte[] obtainSegment() {
+		byte[] segment = segmentPool.poll();
+		if (segment != null) {
+			pooledSegmentCount.decrementAndGet();
+			return segment;
+		}
+		return new byte[SEGMENT_SIZE];
+	}
+
+
+	/**
+	 * InputStream that reads the in-memory segments in order.
+	 */
+	private class SegmentInputStream extends InputStream {
+
+		private final int expectedGeneration = generation;
+
+		private int position;
+
+		private void assertNotReset() throws IOException {
+			if (generation != this.expectedGeneration) {
+				throw new IOException("Content buffer has been reset");
+			}
+		}
+
+		@Override
+		public int read() throws IOException {
+			assertNotReset();
+			if (this.position >= size) {
+				return -1;
+			}
+			byte[] segment = segments.get(this.position / SEGMENT_SIZE);
+			return segment[this.position++ % SEGMENT_SIZE] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			assertNotReset();
+			if (this.position >= size) {
+				return -1;
+			}
+			int count = Math.min(len, size - this.position);
+			int remaining = count;
+			while (remaining > 0) {
+				byte[] segment = segments.get(this.position / SEGMENT_SIZE);
+				int index = this.position % SEGMENT_SIZE;
+				int chunk = Math.min(remaining, SEGMENT_SIZE - index);
+				System.arraycopy(segment, index, b, off + count - remaining, chunk);
+				this.position += chunk;
+				remaining -= chunk;
+			}
+			return count;
+		}
+
+		@Override
+		public int available() throws IOException {
+			assertNotReset();
+			return size - this.position;
+		}
+	}
+
+}
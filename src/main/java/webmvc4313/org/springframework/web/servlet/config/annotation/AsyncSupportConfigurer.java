@@ -40,6 +40,12 @@ public class AsyncSupportConfigurer {
 
 	private Long timeout;
 
+	private Boolean fastCompletion;
+
+	private Boolean inlineCompletedFutures;
+
+	private Boolean nonBlockingResponseBodyEmitter;
+
 	private final List<CallableProcessingInterceptor> callableInterceptors =
 			new ArrayList<CallableProcessingInterceptor>();
 
@@ -75,6 +81,47 @@ public class AsyncSupportConfigurer {
 		return this;
 	}
 
+	/**
+	 * Whether the concurrent result of a {@code @ResponseBody} controller method
+	 * should be written directly from the thread that produced it, completing
+	 * async processing without a dispatch back to the container.
+	 * <p>By default this is not enabled.
+	 * @param fastCompletion whether to complete without a dispatch
+	 * @since 4.3.14
+	 * @see org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter#setFastAsyncCompletion
+	 */
+	public AsyncSupportConfigurer setFastCompletion(boolean fastCompletion) {
+		this.fastCompletion = fastCompletion;
+		return this;
+	}
+
+	/**
+	 * Whether a {@code ListenableFuture} or {@code CompletionStage} returned by
+	 * a controller method that is already complete should be handled inline,
+	 * without starting async processing.
+	 * <p>By default this is not enabled.
+	 * @param inlineCompletedFutures whether to handle completed futures inline
+	 * @since 4.3.14
+	 * @see org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter#setInlineCompletedFutures
+	 */
+	public AsyncSupportConfigurer setInlineCompletedFutures(boolean inlineCompletedFutures) {
+		this.inlineCompletedFutures = inlineCompletedFutures;
+		return this;
+	}
+
+	/**
+	 * Whether data sent through a {@code ResponseBodyEmitter} returned by a
+	 * controller method should be written with Servlet 3.1 non-blocking I/O.
+	 * <p>By default this is not enabled.
+	 * @param nonBlockingResponseBodyEmitter whether to write with non-blocking I/O
+	 * @since 4.3.14
+	 * @see org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerAdapter#setNonBlockingResponseBodyEmitter
+	 */
+	public AsyncSupportConfigurer setNonBlockingResponseBodyEmitter(boolean nonBlockingResponseBodyEmitter) {
+		this.nonBlockingResponseBodyEmitter = nonBlockingResponseBodyEmitter;
+		return this;
+	}
+
 	/**
 	 * Configure lifecycle interceptors with callbacks around concurrent request
 	 * execution that starts when a controller returns a
@@ -105,6 +152,18 @@ public class AsyncSupportConfigurer {
 		return this.timeout;
 	}
 
+	protected Boolean getFastCompletion() {
+		return this.fastCompletion;
+	}
+
+	protected Boolean getInlineCompletedFutures() {
+		return this.inlineCompletedFutures;
+	}
+
+	protected Boolean getNonBlockingResponseBodyEmitter() {
+		return this.nonBlockingResponseBodyEmitter;
+	}
+
 	protected List<CallableProcessingInterceptor> getCallableInterceptors() {
 		return this.callableInterceptors;
 	}
@@ -546,6 +546,15 @@ public class WebMvcConfigurationSupport implements ApplicationContextAware, Serv
 		if (configurer.getTimeout() != null) {
 			adapter.setAsyncRequestTimeout(configurer.getTimeout());
 		}
+		if (configurer.getFastCompletion() != null) {
+			adapter.setFastAsyncCompletion(configurer.getFastCompletion());
+		}
+		if (configurer.getInlineCompletedFutures() != null) {
+			adapter.setInlineCompletedFutures(configurer.getInlineCompletedFutures());
+		}
+		if (configurer.getNonBlockingResponseBodyEmitter() != null) {
+			adapter.setNonBlockingResponseBodyEmitter(configurer.getNonBlockingResponseBodyEmitter());
+		}
 		adapter.setCallableInterceptors(configurer.getCallableInterceptors());
 		adapter.setDeferredResultInterceptors(configurer.getDeferredResultInterceptors());
 
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.mvc;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.util.Assert;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+
+/**
+ * Handler interceptor that checks conditional GET and HEAD requests against
+ * the ETag and last-modified timestamp provided by a {@link HandlerVersionSource},
+ * before the handler is invoked.
+ *
+ * <p>If the content is unchanged, a 304 "Not Modified" response is sent and
+ * the handler is not invoked at all, i.e. neither the handler logic nor the
+ * serialization of its return value take place. Otherwise the ETag and
+ * Last-Modified headers are set on the response and processing continues.
+ *
+ * <p>Unlike {@link org.springframework.web.context.request.WebRequest#checkNotModified}
+ * called from within a handler method, this works for annotated controllers
+ * without loading any data first. The interceptor is typically mapped to the
+ * URL patterns of the handlers the version source applies to.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see HandlerVersionSource
+ */
+public class ConditionalRequestInterceptor extends HandlerInterceptorAdapter {
+
+	private static final Log logger = LogFactory.getLog(ConditionalRequestInterceptor.class);
+
+
+	private final HandlerVersionSource versionSource;
+
+
+	public ConditionalRequestInterceptor(HandlerVersionSource versionSource) {
+		Assert.notNull(versionSource, "HandlerVersionSource is required");
+		this.versionSource = versionSource;
+	}
+
+
+	/**
+	 * Return the configured {@link HandlerVersionSource}.
+	 */
+	public HandlerVersionSource getVersionSource() {
+		return this.versionSource;
+	}
+
+
+	@Override
+	public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+		if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+			return true;
+		}
+		String eTag = this.versionSource.getETag(request, handler);
+		long lastModified = this.versionSource.getLastModified(request, handler);
+		if (eTag == null && lastModified < 0) {
+			return true;
+		}
+		if (new ServletWebRequest(request, response).checkNotModified(eTag, lastModified)) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Content not modified for [" + request.getRequestURI() + "] - skipping handler");
+			}
+			return false;
+		}
+		return true;
+	}
+
+}
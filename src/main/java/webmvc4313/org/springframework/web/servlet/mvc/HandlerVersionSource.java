@@ -0,0 +1,57 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.mvc;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Strategy to determine the version of the content that a handler would
+ * produce for a request, without invoking the handler. Used by
+ * {@link ConditionalRequestInterceptor} to answer conditional GET and HEAD
+ * requests before the handler runs.
+ *
+ * <p>This is the equivalent of {@link LastModified} for any kind of handler,
+ * including annotated controllers. Implementations typically consult a cheap
+ * version source, e.g. a version column or an update counter, and may inspect
+ * the handler, e.g. a {@link org.springframework.web.method.HandlerMethod}
+ * and its annotations, to decide which source applies.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see ConditionalRequestInterceptor
+ */
+public interface HandlerVersionSource {
+
+	/**
+	 * Return the ETag value for the content the given handler would produce,
+	 * with or without surrounding quotes.
+	 * @param request current HTTP request
+	 * @param handler the handler selected for the request
+	 * @return the ETag value, or {@code null} if not available
+	 */
+	String getETag(HttpServletRequest request, Object handler);
+
+	/**
+	 * Return the time the content the given handler would produce was last
+	 * modified.
+	 * @param request current HTTP request
+	 * @param handler the handler selected for the request
+	 * @return the last-modified timestamp, or -1 if not available
+	 */
+	long getLastModified(HttpServletRequest request, Object handler);
+
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.mvc.method.annotation;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.util.ClassUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * Reads the request body with Servlet 3.1 non-blocking I/O into memory, or
+ * into a temporary file once a threshold is exceeded, up to an optional
+ * maximum size, and sets the resulting {@link BufferedRequestBody} on the
+ * given {@link DeferredResult}.
+ *
+ * <p>The request can then be dispatched and the handler method invoked with
+ * a request {@link BufferedRequestBody#wrap wrapper} that exposes the buffered
+ * body, without a container thread having been held for the upload.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see RequestMappingHandlerAdapter#setAsyncRequestBodyReading(boolean)
+ */
+class AsyncRequestBodyReader implements ReadListener {
+
+	private static final Log logger = LogFactory.getLog(AsyncRequestBodyReader.class);
+
+
+	private final ServletInputStream inputStream;
+
+	private final DeferredResult<Object> deferredResult;
+
+	private final int inMemoryThreshold;
+
+	private final File spoolDirectory;
+
+	private final long maxSize;
+
+	private final byte[] buffer = new byte[8192];
+
+	private ByteArrayOutputStream memoryBuffer = new ByteArrayOutputStream(1024);
+
+	private File spoolFile;
+
+	private OutputStream spoolOutputStream;
+
+	private long size;
+
+	private boolean failed;
+
+
+	public AsyncRequestBodyReader(HttpServletRequest request, DeferredResult<Object> deferredResult,
+			int inMemoryThreshold, File spoolDirectory, long maxSize) throws IOException {
+
+		this.inputStream = request.getInputStream();
+		this.deferredResult = deferredResult;
+		this.inMemoryThreshold = inMemoryThreshold;
+		this.spoolDirectory = spoolDirectory;
+		this.maxSize = maxSize;
+	}
+
+
+	/**
+	 * Whether the input stream of the given request supports non-blocking
+	 * reads. This is not the case if it is decorated by a request wrapper that
+	 * does not implement non-blocking I/O, such as the stream of a
+	 * {@code ContentCachingRequestWrapper}, in which case calling
+	 * {@code setReadListener} would fail with an {@link AbstractMethodError}.
+	 */
+	public static boolean isNonBlockingSupported(HttpServletRequest request) {
+		try {
+			Class<?> streamClass = request.getInputStream().getClass();
+			Method setReadListener = ClassUtils.getMethodIfAvailable(streamClass, "setReadListener", ReadListener.class);
+			return (setReadListener != null && !Modifier.isAbstract(setReadListener.getModifiers()));
+		}
+		catch (IOException ex) {
+			return false;
+		}
+	}
+
+	/**
+	 * Register this reader with the request input stream. Must be called after
+	 * async processing has started.
+	 */
+	public void start() {
+		this.inputStream.setReadListener(this);
+	}
+
+	@Override
+	public void onDataAvailable() throws IOException {
+		while (!this.failed && this.inputStream.isReady() && !this.inputStream.isFinished()) {
+			int count = this.inputStream.read(this.buffer);
+			if (count == -1) {
+				break;
+			}
+			this.size += count;
+			if (this.maxSize >= 0 && this.size > this.maxSize) {
+				onError(new MaxUploadSizeExceededException(this.maxSize));
+				return;
+			}
+			write(this.buffer, count);
+		}
+	}
+
+	private void write(byte[] bytes, int count) throws IOException {
+		if (this.spoolOutputStream != null) {
+			this.spoolOutputStream.write(bytes, 0, count);
+		}
+		else if (this.memoryBuffer.size() + count > this.inMemoryThreshold) {
+			this.spoolFile = File.createTempFile("spring-request-body", ".tmp", this.spoolDirectory);
+			this.spoolOutputStream = new FileOutputStream(this.spoolFile);
+			this.memoryBuffer.writeTo(this.spoolOutputStream);
+			this.memoryBuffer = null;
+			this.spoolOutputStream.write(bytes, 0, count);
+		}
+		else {
+			this.memoryBuffer.write(bytes, 0, count);
+		}
+	}
+
+	@Override
+	public void onAllDataRead() throws IOException {
+		if (this.failed) {
+			return;
+		}
+		BufferedRequestBody body;
+		if (this.spoolOutputStream != null) {
+			this.spoolOutputStream.close();
+			body = new BufferedRequestBody(null, this.spoolFile);
+		}
+		else {
+			body = new BufferedRequestBody(this.memoryBuffer.toByteArray(), null);
+		}
+		if (!this.deferredResult.setResult(body)) {
+			body.release();
+		}
+	}
+
+	@Override
+	public void onError(Throwable ex) {
+		if (this.failed) {
+			return;
+		}
+		this.failed = true;
+		if (logger.isDebugEnabled()) {
+			logger.debug("Failed to read request body", ex);
+		}
+		if (this.spoolOutputStream != null) {
+			try {
+				this.spoolOutputStream.close();
+			}
+			catch (IOException closeEx) {
+				// ignore
+			}
+			deleteSpoolFile(this.spoolFile);
+		}
+		this.deferredResult.setErrorResult(ex);
+	}
+
+	private static void deleteSpoolFile(File file) {
+		if (file != null && file.exists() && !file.delete()) {
+			logger.warn("Could not delete temporary request body file [" + file.getAbsolutePath() + "]");
+		}
+	}
+
+
+	/**
+	 * A request body read ahead of handler method invocation.
+	 */
+	static class BufferedRequestBody {
+
+		private final byte[] content;
+
+		private final File file;
+
+		BufferedRequestBody(byte[] content, File file) {
+			this.content = content;
+			this.file = file;
+		}
+
+		public InputStream getInputStream() throws IOException {
+			return (this.content != null ? new ByteArrayInputStream(this.content) : new FileInputStream(this.file));
+		}
+
+		/**
+		 * Wrap the given request to expose the buffered body.
+		 */
+		public HttpServletRequest wrap(HttpServletRequest request) {
+			return new BufferedBodyRequestWrapper(request, this);
+		}
+
+		/**
+		 * Delete the temporary file, if any. Streams opened earlier may remain
+		 * readable depending on the file system.
+		 */
+		public void release() {
+			deleteSpoolFile(this.file);
+		}
+	}
+
+
+	private static class BufferedBodyRequestWrapper extends HttpServletRequestWrapper {
+
+		private final BufferedRequestBody body;
+
+		private ServletInputStream inputStream;
+
+		private BufferedReader reader;
+
+		public BufferedBodyRequestWrapper(HttpServletRequest request, BufferedRequestBody body) {
+			super(request);
+			this.body = body;
+		}
+
+		@Override
+		public ServletInputStream getInputStream() throws IOException {
+			if (this.reader != null) {
+				throw new IllegalStateException("getReader() has already been called for this request");
+			}
+			if (this.inputStream == null) {
+				this.inputStream = new BufferedServletInputStream(this.body.getInputStream());
+			}
+			return this.inputStream;
+		}
+
+		@Override
+		public BufferedReader getReader() throws IOException {
+			if (this.inputStream != null) {
+				throw new IllegalStateException("getInputStream() has already been called for this request");
+			}
+			if (this.reader == null) {
+				String encoding = getCharacterEncoding();
+				this.reader = new BufferedReader(new InputStreamReader(this.body.getInputStream(),
+						(encoding != null ? encoding : WebUtils.DEFAULT_CHARACTER_ENCODING)));
+			}
+			return this.reader;
+		}
+	}
+
+
+	private static class BufferedServletInputStream extends ServletInputStream {
+
+		private final InputStream delegate;
+
+		private boolean finished;
+
+		public BufferedServletInputStream(InputStream delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = this.delegate.read();
+			this.finished = (b == -1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] bytes, int off, int len) throws IOException {
+			int count = this.delegate.read(bytes, off, len);
+			this.finished = (count == -1);
+			return count;
+		}
+
+		@Override
+		public int available() throws IOException {
+			return this.delegate.available();
+		}
+
+		@Override
+		public void close() throws IOException {
+			this.delegate.close();
+		}
+
+		@Override
+		public boolean isFinished() {
+			return this.finished;
+		}
+
+		@Override
+		public boolean isReady() {
+			return true;
+		}
+
+		@Override
+		public void setReadListener(ReadListener readListener) {
+			throw new UnsupportedOperationException("Request body has already been read");
+		}
+	}
+
+}
@@ -18,15 +18,19 @@ package org.springframework.web.servlet.mvc.method.annotation;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.function.BiFunction;
 
 import org.springframework.core.MethodParameter;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.lang.UsesJava8;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.util.concurrent.ListenableFutureCallback;
+import org.springframework.web.bind.annotation.AsyncTimeout;
+import org.springframework.web.bind.annotation.ValueConstants;
 import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.context.request.async.WebAsyncUtils;
@@ -38,6 +42,11 @@ import org.springframework.web.method.support.ModelAndViewContainer;
  * {@link CompletionStage} and any other async type with a {@link #getAdapterMap()
  * registered adapter}.
  *
+ * <p>Futures may be combined with {@link AsyncTimeout @AsyncTimeout} to apply
+ * a per-handler timeout and fallback result. The upstream future is cancelled
+ * if async processing ends before it completes, e.g. due to a timeout or
+ * network error.
+ *
  * @author Rossen Stoyanchev
  * @since 3.2
  */
@@ -103,11 +112,33 @@ public class DeferredResultMethodReturnValueHandler implements AsyncHandlerMetho
 			throw new IllegalStateException(
 					"Could not find DeferredResultAdapter for return value type: " + returnValue.getClass());
 		}
-		DeferredResult<?> result = adapter.adaptToDeferredResult(returnValue);
+		DeferredResult<?> result;
+		if (adapter instanceof FutureAdapter) {
+			result = ((FutureAdapter) adapter).adaptToDeferredResult(returnValue, createDeferredResult(returnType));
+		}
+		else {
+			result = adapter.adaptToDeferredResult(returnValue);
+		}
 		WebAsyncUtils.getAsyncManager(webRequest).startDeferredResultProcessing(result, mavContainer);
 	}
 
 
+	private DeferredResult<Object> createDeferredResult(MethodParameter returnType) {
+		AsyncTimeout ann = returnType.getMethodAnnotation(AsyncTimeout.class);
+		if (ann == null) {
+			ann = AnnotatedElementUtils.findMergedAnnotation(returnType.getContainingClass(), AsyncTimeout.class);
+		}
+		if (ann == null) {
+			return new DeferredResult<Object>();
+		}
+		Long timeout = (ann.timeout() >= 0 ? ann.timeout() : null);
+		if (ValueConstants.DEFAULT_NONE.equals(ann.fallback())) {
+			return new DeferredResult<Object>(timeout);
+		}
+		return new DeferredResult<Object>(timeout, ann.fallback());
+	}
+
+
 	/**
 	 * Adapter for {@code DeferredResult} return values.
 	 */
@@ -122,14 +153,47 @@ public class DeferredResultMethodReturnValueHandler implements AsyncHandlerMetho
 
 
 	/**
-	 * Adapter for {@code ListenableFuture} return values.
+	 * Base class for adapters of future return values that populate a given
+	 * {@code DeferredResult} and cancel the future when async processing ends
+	 * before the future has completed.
 	 */
-	private static class ListenableFutureAdapter implements DeferredResultAdapter {
+	private static abstract class FutureAdapter implements DeferredResultAdapter {
 
 		@Override
 		public DeferredResult<?> adaptToDeferredResult(Object returnValue) {
+			return adaptToDeferredResult(returnValue, new DeferredResult<Object>());
+		}
+
+		public DeferredResult<?> adaptToDeferredResult(final Object returnValue, DeferredResult<Object> result) {
+			adaptInternal(returnValue, result);
+			// Invoked on completion for any reason, including timeout and network error.
+			// Cancelling earlier, e.g. from onTimeout, would pre-empt the timeout result.
+			result.onCompletion(new Runnable() {
+				@Override
+				public void run() {
+					cancel(returnValue);
+				}
+			});
+			return result;
+		}
+
+		protected abstract void adaptInternal(Object returnValue, DeferredResult<Object> result);
+
+		/**
+		 * Cancel the future, if not done yet.
+		 */
+		protected abstract void cancel(Object returnValue);
+	}
+
+
+	/**
+	 * Adapter for {@code ListenableFuture} return values.
+	 */
+	private static class ListenableFutureAdapter extends FutureAdapter {
+
+		@Override
+		protected void adaptInternal(Object returnValue, final DeferredResult<Object> result) {
 			Assert.isInstanceOf(ListenableFuture.class, returnValue, "ListenableFuture expected");
-			final DeferredResult<Object> result = new DeferredResult<Object>();
 			((ListenableFuture<?>) returnValue).addCallback(new ListenableFutureCallback<Object>() {
 				@Override
 				public void onSuccess(Object value) {
@@ -140,7 +204,14 @@ public class DeferredResultMethodReturnValueHandler implements AsyncHandlerMetho
 					result.setErrorResult(ex);
 				}
 			});
-			return result;
+		}
+
+		@Override
+		protected void cancel(Object returnValue) {
+			ListenableFuture<?> future = (ListenableFuture<?>) returnValue;
+			if (!future.isDone()) {
+				future.cancel(true);
+			}
 		}
 	}
 
@@ -149,12 +220,11 @@ public class DeferredResultMethodReturnValueHandler implements AsyncHandlerMetho
 	 * Adapter for {@code CompletionStage} return values.
 	 */
 	@UsesJava8
-	private static class CompletionStageAdapter implements DeferredResultAdapter {
+	private static class CompletionStageAdapter extends FutureAdapter {
 
 		@Override
-		public DeferredResult<?> adaptToDeferredResult(Object returnValue) {
+		protected void adaptInternal(Object returnValue, final DeferredResult<Object> result) {
 			Assert.isInstanceOf(CompletionStage.class, returnValue, "CompletionStage expected");
-			final DeferredResult<Object> result = new DeferredResult<Object>();
 			@SuppressWarnings("unchecked")
 			CompletionStage<?> future = (CompletionStage<?>) returnValue;
 			future.handle(new BiFunction<Object, Throwable, Object>() {
@@ -169,7 +239,19 @@ public class DeferredResultMethodReturnValueHandler implements AsyncHandlerMetho
 					return null;
 				}
 			});
-			return result;
+		}
+
+		@Override
+		protected void cancel(Object returnValue) {
+			try {
+				CompletableFuture<?> future = ((CompletionStage<?>) returnValue).toCompletableFuture();
+				if (!future.isDone()) {
+					future.cancel(true);
+				}
+			}
+			catch (UnsupportedOperationException ex) {
+				// CompletionStage implementation without CompletableFuture view: cannot cancel
+			}
 		}
 	}
 
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.mvc.method.annotation;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.web.context.request.async.DeferredResult;
+
+/**
+ * Writes the response body with Servlet 3.1 non-blocking I/O, either from
+ * chunks pushed through {@link #write(byte[])} or pulled from a
+ * {@link NonBlockingStreamingResponseBody}, and sets the given
+ * {@link DeferredResult} once all data has been written.
+ *
+ * <p>Data is written only while {@link ServletOutputStream#isReady()} returns
+ * {@code true}; otherwise writing resumes when the container calls
+ * {@link #onWritePossible()}. Calls from application threads and container
+ * callbacks are serialized so that only one thread writes at a time.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+class NonBlockingResponseBodyWriter implements WriteListener {
+
+	private static final Log logger = LogFactory.getLog(NonBlockingResponseBodyWriter.class);
+
+
+	private final ServletServerHttpResponse response;
+
+	private final DeferredResult<?> deferredResult;
+
+	private final NonBlockingStreamingResponseBody chunkSource;
+
+	private final Queue<byte[]> chunks = new ConcurrentLinkedQueue<byte[]>();
+
+	private final AtomicInteger workInProgress = new AtomicInteger();
+
+	private final AtomicBoolean done = new AtomicBoolean();
+
+	private volatile boolean complete;
+
+	private ServletOutputStream outputStream;
+
+	private boolean flushNeeded;
+
+
+	/**
+	 * Create a writer for chunks pushed through {@link #write(byte[])}.
+	 */
+	public NonBlockingResponseBodyWriter(ServletServerHttpResponse response, DeferredResult<?> deferredResult) {
+		this(response, deferredResult, null);
+	}
+
+	/**
+	 * Create a writer that pulls chunks from the given source.
+	 */
+	public NonBlockingResponseBodyWriter(ServletServerHttpResponse response, DeferredResult<?> deferredResult,
+			NonBlockingStreamingResponseBody chunkSource) {
+
+		this.response = response;
+		this.deferredResult = deferredResult;
+		this.chunkSource = chunkSource;
+	}
+
+
+	/**
+	 * Register this writer with the response. Must be called after async
+	 * processing has started.
+	 */
+	public void start() throws IOException {
+		this.outputStream = this.response.getServletResponse().getOutputStream();
+		this.response.setWriteListener(this);
+	}
+
+	/**
+	 * Queue the given data, writing it immediately if possible.
+	 */
+	public void write(byte[] data) {
+		if (!this.done.get() && data.length > 0) {
+			this.chunks.add(data);
+			drain();
+		}
+	}
+
+	/**
+	 * Complete the response once all queued data has been written.
+	 */
+	public void complete() {
+		this.complete = true;
+		drain();
+	}
+
+	/**
+	 * Complete the response with an error, discarding any queued data.
+	 */
+	public void completeWithError(Throwable ex) {
+		if (this.done.compareAndSet(false, true)) {
+			this.chunks.clear();
+			this.deferredResult.setErrorResult(ex);
+		}
+	}
+
+	/**
+	 * Whether the response has been completed, or failed.
+	 */
+	public boolean isDone() {
+		return this.done.get();
+	}
+
+
+	@Override
+	public void onWritePossible() throws IOException {
+		drain();
+	}
+
+	@Override
+	public void onError(Throwable ex) {
+		if (logger.isDebugEnabled()) {
+			logger.debug("Non-blocking write failed", ex);
+		}
+		completeWithError(ex);
+	}
+
+
+	private void drain() {
+		if (this.outputStream == null || this.workInProgress.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		do {
+			try {
+				writeAvailable();
+			}
+			catch (Throwable ex) {
+				onError(ex);
+			}
+			missed = this.workInProgress.addAndGet(-missed);
+		}
+		while (missed != 0);
+	}
+
+	private void writeAvailable() throws IOException {
+		while (!this.done.get() && this.outputStream.isReady()) {
+			byte[] chunk = this.chunks.poll();
+			if (chunk == null && this.chunkSource != null && !this.complete) {
+				chunk = this.chunkSource.nextChunk();
+				if (chunk == null) {
+					this.complete = true;
+				}
+			}
+			if (chunk != null) {
+				this.outputStream.write(chunk);
+				this.flushNeeded = true;
+			}
+			else if (this.flushNeeded) {
+				this.flushNeeded = false;
+				this.outputStream.flush();
+			}
+			else {
+				if (this.complete && this.chunks.isEmpty() && this.done.compareAndSet(false, true)) {
+					this.deferredResult.setResult(null);
+				}
+				return;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.mvc.method.annotation;
+
+import java.io.IOException;
+
+/**
+ * A controller method return value type for asynchronous request processing
+ * where the response body is produced in chunks and written with Servlet 3.1
+ * non-blocking I/O.
+ *
+ * <p>Unlike {@link StreamingResponseBody}, no thread is held while the client
+ * is slow to read. Chunks are pulled only when the response can be written
+ * without blocking, from whichever thread the container uses to signal that.
+ * Hence {@link #nextChunk()} must not block. For data produced asynchronously
+ * by the application use a {@link ResponseBodyEmitter} with non-blocking writes
+ * enabled on {@link ResponseBodyEmitterReturnValueHandler#setNonBlocking}.
+ *
+ * <p><strong>Note:</strong> requires a Servlet 3.1+ container.
+ *
+ * @author agent
+ * @since 4.3.14
+ * @see StreamingResponseBodyReturnValueHandler
+ */
+public interface NonBlockingStreamingResponseBody {
+
+	/**
+	 * Return the next chunk of the response body, or {@code null} if the body
+	 * is complete. Invoked only when the chunk can be written without blocking.
+	 * @return the next chunk, or {@code null} to complete the response
+	 * @throws IOException an exception while producing the chunk
+	 */
+	byte[] nextChunk() throws IOException;
+
+}
@@ -0,0 +1,420 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.mvc.method.annotation;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.util.Assert;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.context.request.async.WebAsyncUtils;
+import org.springframework.web.method.support.AsyncHandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Handler for return values of type Reactive Streams {@link Publisher}.
+ *
+ * <p>A single-value publisher (e.g. Reactor {@code Mono}) is adapted to a
+ * {@link DeferredResult} and its value is then handled like any other return
+ * value, e.g. as the response body of a {@code @ResponseBody} method. Note that
+ * RxJava 2 {@code Single} and {@code Maybe} are not a {@code Publisher} and
+ * hence not supported; they need to be converted first, e.g. to a {@code Mono}.
+ *
+ * <p>Any other publisher is streamed to the response with one of the following,
+ * depending on the requested media types:
+ * <ul>
+ * <li>"text/event-stream" -- each element is written as a Server-Sent Event.
+ * <li>"application/stream+json" -- each element is written as JSON followed
+ * by a newline.
+ * <li>anything else -- the elements are written as a JSON array.
+ * </ul>
+ *
+ * <p>In both JSON modes, {@code String} elements are written as JSON strings.
+ *
+ * <p>Elements are requested one at a time. The next element is requested only
+ * after the previous one has been written and flushed, so a slow client slows
+ * down the publisher rather than causing elements to be buffered in memory.
+ * The subscription is cancelled when async processing ends early, e.g. due to
+ * a timeout or network error.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+public class PublisherReturnValueHandler implements AsyncHandlerMethodReturnValueHandler {
+
+	private static final Log logger = LogFactory.getLog(PublisherReturnValueHandler.class);
+
+	private static final MediaType APPLICATION_STREAM_JSON = new MediaType("application", "stream+json");
+
+	private static final Set<String> DEFAULT_SINGLE_VALUE_TYPES =
+			Collections.singleton("reactor.core.publisher.Mono");
+
+
+	private final ResponseBodyEmitterReturnValueHandler emitterHandler;
+
+	private final ContentNegotiationManager contentNegotiationManager;
+
+	private Set<String> singleValueTypes = DEFAULT_SINGLE_VALUE_TYPES;
+
+
+	public PublisherReturnValueHandler(List<HttpMessageConverter<?>> messageConverters) {
+		this(messageConverters, null);
+	}
+
+	public PublisherReturnValueHandler(List<HttpMessageConverter<?>> messageConverters,
+			ContentNegotiationManager manager) {
+
+		this.emitterHandler = new ResponseBodyEmitterReturnValueHandler(messageConverters);
+		this.contentNegotiationManager = (manager != null ? manager : new ContentNegotiationManager());
+	}
+
+
+	/**
+	 * Configure the fully qualified class names of {@code Publisher} types that
+	 * produce at most one value, and hence are handled as a deferred result
+	 * rather than as a stream. Sub-classes of the given types are included.
+	 * <p>By default this includes Reactor {@code Mono}.
+	 */
+	public void setSingleValueTypes(Set<String> singleValueTypes) {
+		Assert.notNull(singleValueTypes, "'singleValueTypes' must not be null");
+		this.singleValueTypes = Collections.unmodifiableSet(new LinkedHashSet<String>(singleValueTypes));
+	}
+
+	/**
+	 * Return the configured single-value {@code Publisher} type names.
+	 */
+	public Set<String> getSingleValueTypes() {
+		return this.singleValueTypes;
+	}
+
+
+	@Override
+	public boolean supportsReturnType(MethodParameter returnType) {
+		return Publisher.class.isAssignableFrom(returnType.getParameterType());
+	}
+
+	@Override
+	public boolean isAsyncReturnValue(Object returnValue, MethodParameter returnType) {
+		return (returnValue instanceof Publisher);
+	}
+
+	@Override
+	public void handleReturnValue(Object returnValue, MethodParameter returnType,
+			ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
+
+		if (returnValue == null) {
+			mavContainer.setRequestHandled(true);
+			return;
+		}
+
+		Publisher<?> publisher = (Publisher<?>) returnValue;
+
+		if (isSingleValuePublisher(publisher.getClass())) {
+			DeferredResult<Object> deferredResult = new DeferredResult<Object>();
+			WebAsyncUtils.getAsyncManager(webRequest).startDeferredResultProcessing(deferredResult, mavContainer);
+			publisher.subscribe(new DeferredResultSubscriber(deferredResult));
+			return;
+		}
+
+		StreamMode mode = getStreamMode(webRequest);
+		ResponseBodyEmitter emitter = (mode == StreamMode.SSE ?
+				new SseEmitter() : new ContentTypeResponseBodyEmitter(mode.getContentType()));
+		this.emitterHandler.handleReturnValue(emitter, returnType, mavContainer, webRequest);
+		publisher.subscribe(new EmitterSubscriber(emitter, mode));
+	}
+
+	/**
+	 * Whether the given {@code Publisher} type produces at most one value.
+	 * @see #setSingleValueTypes(Set)
+	 */
+	protected boolean isSingleValuePublisher(Class<?> publisherType) {
+		Class<?> type = publisherType;
+		while (type != null && type != Object.class) {
+			if (this.singleValueTypes.contains(type.getName())) {
+				return true;
+			}
+			type = type.getSuperclass();
+		}
+		return false;
+	}
+
+	private StreamMode getStreamMode(NativeWebRequest webRequest) throws Exception {
+		for (MediaType mediaType : this.contentNegotiationManager.resolveMediaTypes(webRequest)) {
+			if (mediaType.isWildcardType()) {
+				continue;
+			}
+			if (MediaType.TEXT_EVENT_STREAM.includes(mediaType)) {
+				return StreamMode.SSE;
+			}
+			if (APPLICATION_STREAM_JSON.includes(mediaType)) {
+				return StreamMode.JSON_STREAM;
+			}
+		}
+		return StreamMode.JSON_ARRAY;
+	}
+
+
+	private enum StreamMode {
+
+		SSE(MediaType.TEXT_EVENT_STREAM),
+
+		JSON_STREAM(APPLICATION_STREAM_JSON),
+
+		JSON_ARRAY(MediaType.APPLICATION_JSON);
+
+		private final MediaType contentType;
+
+		StreamMode(MediaType contentType) {
+			this.contentType = contentType;
+		}
+
+		public MediaType getContentType() {
+			return this.contentType;
+		}
+	}
+
+
+	/**
+	 * ResponseBodyEmitter that sets the Content-Type of the response.
+	 */
+	private static class ContentTypeResponseBodyEmitter extends ResponseBodyEmitter {
+
+		private final MediaType contentType;
+
+		public ContentTypeResponseBodyEmitter(MediaType contentType) {
+			this.contentType = contentType;
+		}
+
+		@Override
+		protected void extendResponse(ServerHttpResponse outputMessage) {
+			super.extendResponse(outputMessage);
+			if (outputMessage.getHeaders().getContentType() == null) {
+				outputMessage.getHeaders().setContentType(this.contentType);
+			}
+		}
+	}
+
+
+	/**
+	 * Subscriber that sets the first value, or the completion with no value,
+	 * on a DeferredResult.
+	 */
+	private static class DeferredResultSubscriber implements Subscriber<Object> {
+
+		private final DeferredResult<Object> deferredResult;
+
+		private Subscription subscription;
+
+		public DeferredResultSubscriber(DeferredResult<Object> deferredResult) {
+			this.deferredResult = deferredResult;
+		}
+
+		@Override
+		public void onSubscribe(final Subscription subscription) {
+			this.subscription = subscription;
+			this.deferredResult.onCompletion(new Runnable() {
+				@Override
+				public void run() {
+					subscription.cancel();
+				}
+			});
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(Object value) {
+			this.deferredResult.setResult(value);
+			this.subscription.cancel();
+		}
+
+		@Override
+		public void onError(Throwable ex) {
+			this.deferredResult.setErrorResult(ex);
+		}
+
+		@Override
+		public void onComplete() {
+			this.deferredResult.setResult(null);
+		}
+	}
+
+
+	/**
+	 * Subscriber that writes each element through a ResponseBodyEmitter,
+	 * requesting the next element after the previous one has been written.
+	 */
+	private static class EmitterSubscriber implements Subscriber<Object> {
+
+		private final ResponseBodyEmitter emitter;
+
+		private final StreamMode mode;
+
+		private Subscription subscription;
+
+		private boolean first = true;
+
+		private volatile boolean terminated;
+
+		public EmitterSubscriber(ResponseBodyEmitter emitter, StreamMode mode) {
+			this.emitter = emitter;
+			this.mode = mode;
+		}
+
+		@Override
+		public void onSubscribe(final Subscription subscription) {
+			this.subscription = subscription;
+			this.emitter.onCompletion(new Runnable() {
+				@Override
+				public void run() {
+					if (!terminated) {
+						terminated = true;
+						subscription.cancel();
+					}
+				}
+			});
+			if (this.mode == StreamMode.JSON_ARRAY) {
+				if (!trySend("[", MediaType.TEXT_PLAIN)) {
+					return;
+				}
+			}
+			subscription.request(1);
+		}
+
+		@Override
+		public void onNext(Object element) {
+			if (this.terminated) {
+				return;
+			}
+			boolean sent;
+			if (this.mode == StreamMode.SSE) {
+				sent = trySend(SseEmitter.event().data(element));
+			}
+			else if (this.mode == StreamMode.JSON_STREAM) {
+				sent = (trySendJson(element) && trySend("\n", MediaType.TEXT_PLAIN));
+			}
+			else {
+				sent = ((this.first || trySend(",", MediaType.TEXT_PLAIN)) && trySendJson(element));
+			}
+			this.first = false;
+			if (sent) {
+				this.subscription.request(1);
+			}
+		}
+
+		@Override
+		public void onError(Throwable ex) {
+			if (!this.terminated) {
+				this.terminated = true;
+				this.emitter.completeWithError(ex);
+			}
+		}
+
+		@Override
+		public void onComplete() {
+			if (this.terminated) {
+				return;
+			}
+			if (this.mode == StreamMode.JSON_ARRAY && !trySend("]", MediaType.TEXT_PLAIN)) {
+				return;
+			}
+			this.terminated = true;
+			this.emitter.complete();
+		}
+
+		/**
+		 * Send an element as JSON. String elements would otherwise be written
+		 * as is by the {@code StringHttpMessageConverter}, so they are encoded
+		 * as JSON string literals instead.
+		 */
+		private boolean trySendJson(Object element) {
+			if (element instanceof CharSequence) {
+				return trySend(toJsonString((CharSequence) element), MediaType.TEXT_PLAIN);
+			}
+			return trySend(element, MediaType.APPLICATION_JSON);
+		}
+
+		private boolean trySend(Object data, MediaType mediaType) {
+			try {
+				this.emitter.send(data, mediaType);
+				return true;
+			}
+			catch (IOException ex) {
+				handleSendFailure(ex);
+				return false;
+			}
+		}
+
+		private boolean trySend(SseEmitter.SseEventBuilder event) {
+			try {
+				((SseEmitter) this.emitter).send(event);
+				return true;
+			}
+			catch (IOException ex) {
+				handleSendFailure(ex);
+				return false;
+			}
+		}
+
+		/**
+		 * Encode the given text as a JSON string literal, escaping non-ASCII
+		 * characters so that the result does not depend on the charset used
+		 * for writing plain text.
+		 */
+		private static String toJsonString(CharSequence text) {
+			StringBuilder builder = new StringBuilder(text.length() + 2);
+			builder.append('"');
+			for (int i = 0; i < text.length(); i++) {
+				char c = text.charAt(i);
+				if (c == '"' || c == '\\') {
+					builder.append('\\').append(c);
+				}
+				else if (c < 0x20 || c > 0x7e) {
+					builder.append(String.format("\\u%04x", (int) c));
+				}
+				else {
+					builder.append(c);
+				}
+			}
+			return builder.append('"').toString();
+		}
+
+		private void handleSendFailure(IOException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Failed to write Publisher element, cancelling subscription", ex);
+			}
+			this.terminated = true;
+			this.subscription.cancel();
+			this.emitter.completeWithError(ex);
+		}
+	}
+
+}
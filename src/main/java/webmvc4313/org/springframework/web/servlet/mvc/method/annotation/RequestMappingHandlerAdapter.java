@@ -16,6 +16,7 @@
 
 package org.springframework.web.servlet.mvc.method.annotation;
 
+import java.io.File;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
@@ -25,6 +26,7 @@ import java.util.Map.Entry;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.DispatcherType;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpSession;
@@ -36,11 +38,14 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.config.ConfigurableBeanFactory;
 import org.springframework.core.DefaultParameterNameDiscoverer;
 import org.springframework.core.MethodIntrospector;
+import org.springframework.core.MethodParameter;
 import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
 import org.springframework.core.annotation.AnnotationUtils;
 import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.converter.ByteArrayHttpMessageConverter;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.StringHttpMessageConverter;
@@ -48,12 +53,15 @@ import org.springframework.http.converter.support.AllEncompassingFormHttpMessage
 import org.springframework.http.converter.xml.SourceHttpMessageConverter;
 import org.springframework.ui.ModelMap;
 import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.ReflectionUtils.MethodFilter;
 import org.springframework.web.accept.ContentNegotiationManager;
 import org.springframework.web.bind.annotation.InitBinder;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.support.DefaultDataBinderFactory;
 import org.springframework.web.bind.support.DefaultSessionAttributeStore;
 import org.springframework.web.bind.support.SessionAttributeStore;
@@ -64,6 +72,8 @@ import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.context.request.async.AsyncWebRequest;
 import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.context.request.async.ConcurrentResultHandler;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.context.request.async.DeferredResultProcessingInterceptor;
 import org.springframework.web.context.request.async.WebAsyncManager;
 import org.springframework.web.context.request.async.WebAsyncTask;
@@ -83,18 +93,21 @@ import org.springframework.web.method.annotation.RequestParamMapMethodArgumentRe
 import org.springframework.web.method.annotation.RequestParamMethodArgumentResolver;
 import org.springframework.web.method.annotation.SessionAttributesHandler;
 import org.springframework.web.method.annotation.SessionStatusMethodArgumentResolver;
+import org.springframework.web.method.support.AsyncHandlerMethodReturnValueHandler;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.method.support.HandlerMethodArgumentResolverComposite;
 import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
 import org.springframework.web.method.support.HandlerMethodReturnValueHandlerComposite;
 import org.springframework.web.method.support.InvocableHandlerMethod;
 import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 import org.springframework.web.servlet.ModelAndView;
 import org.springframework.web.servlet.View;
 import org.springframework.web.servlet.mvc.annotation.ModelAndViewResolver;
 import org.springframework.web.servlet.mvc.method.AbstractHandlerMethodAdapter;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import org.springframework.web.servlet.support.RequestContextUtils;
+import org.springframework.web.util.ContentCachingResponseWrapper;
 import org.springframework.web.util.WebUtils;
 
 /**
@@ -116,6 +129,12 @@ import org.springframework.web.util.WebUtils;
 public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 		implements BeanFactoryAware, InitializingBean {
 
+	private static final boolean reactiveStreamsPresent =
+			ClassUtils.isPresent("org.reactivestreams.Publisher", RequestMappingHandlerAdapter.class.getClassLoader());
+
+	private static final boolean servlet31Present =
+			ClassUtils.isPresent("javax.servlet.ReadListener", RequestMappingHandlerAdapter.class.getClassLoader());
+
 	private List<HandlerMethodArgumentResolver> customArgumentResolvers;
 
 	private HandlerMethodArgumentResolverComposite argumentResolvers;
@@ -144,6 +163,22 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 
 	private DeferredResultProcessingInterceptor[] deferredResultInterceptors = new DeferredResultProcessingInterceptor[0];
 
+	private boolean fastAsyncCompletion = false;
+
+	private boolean inlineCompletedFutures = false;
+
+	private boolean nonBlockingResponseBodyEmitter = false;
+
+	private boolean asyncRequestBodyReading = false;
+
+	private int asyncRequestBodyInMemoryThreshold = 256 * 1024;
+
+	private File asyncRequestBodySpoolDirectory;
+
+	private long asyncRequestBodyMaxSize = -1;
+
+	private long asyncRequestBodyReadTimeout = -1;
+
 	private boolean ignoreDefaultModelOnRedirect = false;
 
 	private int cacheSecondsForSessionAttributeHandlers = 0;
@@ -157,6 +192,8 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 	private ConfigurableBeanFactory beanFactory;
 
 
+	private final Map<Method, Boolean> asyncRequestBodyCandidateCache = new ConcurrentHashMap<Method, Boolean>(64);
+
 	private final Map<Class<?>, SessionAttributesHandler> sessionAttributesHandlerCache =
 			new ConcurrentHashMap<Class<?>, SessionAttributesHandler>(64);
 
@@ -409,6 +446,116 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 		this.deferredResultInterceptors = interceptors.toArray(new DeferredResultProcessingInterceptor[interceptors.size()]);
 	}
 
+	/**
+	 * Whether the concurrent result of a {@code @ResponseBody} method should be
+	 * written directly from the thread that produced it, completing async
+	 * processing without dispatching the request back to the container.
+	 * <p>This avoids a second pass through the filter chain, the
+	 * {@code DispatcherServlet} and handler mapping for each result, which
+	 * matters for applications completing a high rate of {@code DeferredResult}s.
+	 * {@code DeferredResultProcessingInterceptor} and
+	 * {@code CallableProcessingInterceptor} callbacks are still invoked.
+	 * However, {@code HandlerInterceptor}s and filters do not see an
+	 * {@code ASYNC} dispatch. Exceptions are always handled through a dispatch.
+	 * Responses wrapped in a {@link ContentCachingResponseWrapper}, e.g. by
+	 * {@code ShallowEtagHeaderFilter}, are also dispatched, since the cached
+	 * content is only copied to the response by the filter.
+	 * <p>The default is {@code false}.
+	 * @since 4.3.14
+	 */
+	public void setFastAsyncCompletion(boolean fastAsyncCompletion) {
+		this.fastAsyncCompletion = fastAsyncCompletion;
+	}
+
+	/**
+	 * Whether a {@code ListenableFuture} or {@code CompletionStage} returned by
+	 * a controller method that is already complete should be handled as if its
+	 * value had been returned directly, i.e. without starting async processing.
+	 * <p>The default is {@code false}.
+	 * @since 4.3.14
+	 * @see ServletInvocableHandlerMethod#setInlineCompletedFutures(boolean)
+	 */
+	public void setInlineCompletedFutures(boolean inlineCompletedFutures) {
+		this.inlineCompletedFutures = inlineCompletedFutures;
+	}
+
+	/**
+	 * Whether data sent through a {@link ResponseBodyEmitter} should be written
+	 * with Servlet 3.1 non-blocking I/O.
+	 * <p>The default is {@code false}.
+	 * @since 4.3.14
+	 * @see ResponseBodyEmitterReturnValueHandler#setNonBlocking(boolean)
+	 */
+	public void setNonBlockingResponseBodyEmitter(boolean nonBlockingResponseBodyEmitter) {
+		this.nonBlockingResponseBodyEmitter = nonBlockingResponseBodyEmitter;
+	}
+
+	/**
+	 * Whether to read the request body with Servlet 3.1 non-blocking I/O before
+	 * invoking handler methods that have a {@code @RequestBody} or
+	 * {@code HttpEntity} argument and an async return type (e.g.
+	 * {@code DeferredResult}, {@code Callable}, {@code CompletionStage}).
+	 * <p>When enabled, async processing is started and the container thread
+	 * released while the body is uploaded. Once the body has been read, the
+	 * request is dispatched and the handler method invoked with the buffered
+	 * body. Bodies above the {@link #setAsyncRequestBodyInMemoryThreshold
+	 * in-memory threshold} are spooled to a temporary file.
+	 * <p>The default is {@code false}. Requires a Servlet 3.1+ container.
+	 * @since 4.3.14
+	 */
+	public void setAsyncRequestBodyReading(boolean asyncRequestBodyReading) {
+		this.asyncRequestBodyReading = asyncRequestBodyReading;
+	}
+
+	/**
+	 * Set the maximum number of bytes of a request body read with non-blocking
+	 * I/O to keep in memory before spooling it to a temporary file.
+	 * <p>The default is 256K.
+	 * @since 4.3.14
+	 * @see #setAsyncRequestBodyReading(boolean)
+	 */
+	public void setAsyncRequestBodyInMemoryThreshold(int asyncRequestBodyInMemoryThreshold) {
+		this.asyncRequestBodyInMemoryThreshold = asyncRequestBodyInMemoryThreshold;
+	}
+
+	/**
+	 * Set the directory for temporary files holding request bodies above the
+	 * in-memory threshold.
+	 * <p>By default the "java.io.tmpdir" system property is used.
+	 * @since 4.3.14
+	 * @see #setAsyncRequestBodyReading(boolean)
+	 */
+	public void setAsyncRequestBodySpoolDirectory(File asyncRequestBodySpoolDirectory) {
+		this.asyncRequestBodySpoolDirectory = asyncRequestBodySpoolDirectory;
+	}
+
+	/**
+	 * Set the maximum size in bytes of a request body read with non-blocking
+	 * I/O. Larger bodies are rejected with a {@link MaxUploadSizeExceededException}
+	 * and any temporary file is deleted.
+	 * <p>The default is -1, i.e. no limit.
+	 * @since 4.3.14
+	 * @see #setAsyncRequestBodyReading(boolean)
+	 */
+	public void setAsyncRequestBodyMaxSize(long asyncRequestBodyMaxSize) {
+		this.asyncRequestBodyMaxSize = asyncRequestBodyMaxSize;
+	}
+
+	/**
+	 * Set the timeout in milliseconds for reading a request body with
+	 * non-blocking I/O. This applies instead of the
+	 * {@link #setAsyncRequestTimeout async request timeout}, which only starts
+	 * once the handler method has been invoked, so that slow uploads do not
+	 * count towards the time allowed for producing the result.
+	 * <p>The default is -1, in which case the body read is only bounded by the
+	 * read or idle timeout of the Servlet container connector.
+	 * @since 4.3.14
+	 * @see #setAsyncRequestBodyReading(boolean)
+	 */
+	public void setAsyncRequestBodyReadTimeout(long asyncRequestBodyReadTimeout) {
+		this.asyncRequestBodyReadTimeout = asyncRequestBodyReadTimeout;
+	}
+
 	/**
 	 * By default the content of the "default" model is used both during
 	 * rendering and redirect scenarios. Alternatively a controller method
@@ -664,7 +811,13 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 		handlers.add(new ModelAndViewMethodReturnValueHandler());
 		handlers.add(new ModelMethodProcessor());
 		handlers.add(new ViewMethodReturnValueHandler());
-		handlers.add(new ResponseBodyEmitterReturnValueHandler(getMessageConverters()));
+		ResponseBodyEmitterReturnValueHandler emitterHandler =
+				new ResponseBodyEmitterReturnValueHandler(getMessageConverters());
+		emitterHandler.setNonBlocking(this.nonBlockingResponseBodyEmitter);
+		handlers.add(emitterHandler);
+		if (reactiveStreamsPresent) {
+			handlers.add(new PublisherReturnValueHandler(getMessageConverters(), this.contentNegotiationManager));
+		}
 		handlers.add(new StreamingResponseBodyReturnValueHandler());
 		handlers.add(new HttpEntityMethodProcessor(getMessageConverters(),
 				this.contentNegotiationManager, this.requestResponseBodyAdvice));
@@ -789,6 +942,20 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 	protected ModelAndView invokeHandlerMethod(HttpServletRequest request,
 			HttpServletResponse response, HandlerMethod handlerMethod) throws Exception {
 
+		AsyncRequestBodyReader.BufferedRequestBody bufferedBody = null;
+		if (this.asyncRequestBodyReading) {
+			WebAsyncManager asyncManager = WebAsyncUtils.getAsyncManager(request);
+			if (asyncManager.getConcurrentResult() instanceof AsyncRequestBodyReader.BufferedRequestBody) {
+				bufferedBody = (AsyncRequestBodyReader.BufferedRequestBody) asyncManager.getConcurrentResult();
+				asyncManager.clearConcurrentResult();
+				request = bufferedBody.wrap(request);
+			}
+			else if (!asyncManager.hasConcurrentResult() && isAsyncRequestBodyCandidate(request, handlerMethod)) {
+				startAsyncRequestBodyReading(request, response, asyncManager);
+				return null;
+			}
+		}
+
 		ServletWebRequest webRequest = new ServletWebRequest(request, response);
 		try {
 			WebDataBinderFactory binderFactory = getDataBinderFactory(handlerMethod);
@@ -799,6 +966,7 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 			invocableMethod.setHandlerMethodReturnValueHandlers(this.returnValueHandlers);
 			invocableMethod.setDataBinderFactory(binderFactory);
 			invocableMethod.setParameterNameDiscoverer(this.parameterNameDiscoverer);
+			invocableMethod.setInlineCompletedFutures(this.inlineCompletedFutures);
 
 			ModelAndViewContainer mavContainer = new ModelAndViewContainer();
 			mavContainer.addAllAttributes(RequestContextUtils.getInputFlashMap(request));
@@ -826,6 +994,10 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 
 			invocableMethod.invokeAndHandle(webRequest, mavContainer);
 			if (asyncManager.isConcurrentHandlingStarted()) {
+				if (this.fastAsyncCompletion && isResponseBodyMethod(invocableMethod)) {
+					asyncManager.setConcurrentResultHandler(new ResponseBodyConcurrentResultHandler(
+							request, response, invocableMethod, mavContainer));
+				}
 				return null;
 			}
 
@@ -833,6 +1005,75 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 		}
 		finally {
 			webRequest.requestCompleted();
+			if (bufferedBody != null) {
+				bufferedBody.release();
+			}
+		}
+	}
+
+	private boolean isAsyncRequestBodyCandidate(HttpServletRequest request, HandlerMethod handlerMethod) {
+		if (!servlet31Present || !request.isAsyncSupported() ||
+				request.getDispatcherType() != DispatcherType.REQUEST) {
+			return false;
+		}
+		if (request.getContentLength() <= 0 && request.getHeader("Transfer-Encoding") == null) {
+			return false;
+		}
+		Boolean candidate = this.asyncRequestBodyCandidateCache.get(handlerMethod.getMethod());
+		if (candidate == null) {
+			candidate = (hasRequestBodyParameter(handlerMethod) && hasAsyncReturnType(handlerMethod));
+			this.asyncRequestBodyCandidateCache.put(handlerMethod.getMethod(), candidate);
+		}
+		// Fall back on blocking reads behind request wrappers without non-blocking I/O
+		return (candidate && AsyncRequestBodyReader.isNonBlockingSupported(request));
+	}
+
+	private boolean hasRequestBodyParameter(HandlerMethod handlerMethod) {
+		for (MethodParameter parameter : handlerMethod.getMethodParameters()) {
+			if (parameter.hasParameterAnnotation(RequestBody.class) ||
+					HttpEntity.class.isAssignableFrom(parameter.getParameterType())) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean hasAsyncReturnType(HandlerMethod handlerMethod) {
+		MethodParameter returnType = handlerMethod.getReturnType();
+		for (HandlerMethodReturnValueHandler handler : this.returnValueHandlers.getHandlers()) {
+			if (handler instanceof AsyncHandlerMethodReturnValueHandler && handler.supportsReturnType(returnType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Start async processing and read the request body with non-blocking I/O.
+	 * The request is dispatched once the body has been read, or if reading fails,
+	 * in which case the resulting exception is handled as a concurrent result.
+	 * <p>The read is bounded by the {@link #setAsyncRequestBodyReadTimeout
+	 * body read timeout} rather than the async request timeout, and goes through
+	 * the registered {@link DeferredResultProcessingInterceptor}s.
+	 */
+	private void startAsyncRequestBodyReading(HttpServletRequest request, HttpServletResponse response,
+			WebAsyncManager asyncManager) throws Exception {
+
+		AsyncWebRequest asyncWebRequest = WebAsyncUtils.createAsyncWebRequest(request, response);
+		asyncManager.setTaskExecutor(this.taskExecutor);
+		asyncManager.setAsyncWebRequest(asyncWebRequest);
+		asyncManager.registerCallableInterceptors(this.callableInterceptors);
+		asyncManager.registerDeferredResultInterceptors(this.deferredResultInterceptors);
+
+		DeferredResult<Object> deferredResult = new DeferredResult<Object>(this.asyncRequestBodyReadTimeout);
+		AsyncRequestBodyReader reader = new AsyncRequestBodyReader(request, deferredResult,
+				this.asyncRequestBodyInMemoryThreshold, this.asyncRequestBodySpoolDirectory,
+				this.asyncRequestBodyMaxSize);
+		asyncManager.startDeferredResultProcessing(deferredResult, new ModelAndViewContainer());
+		reader.start();
+
+		if (logger.isDebugEnabled()) {
+			logger.debug("Reading request body with non-blocking I/O for " + request.getRequestURI());
 		}
 	}
 
@@ -945,6 +1186,11 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 		return mav;
 	}
 
+	private boolean isResponseBodyMethod(HandlerMethod handlerMethod) {
+		return (AnnotatedElementUtils.hasAnnotation(handlerMethod.getBeanType(), ResponseBody.class) ||
+				handlerMethod.hasMethodAnnotation(ResponseBody.class));
+	}
+
 
 	/**
 	 * MethodFilter that matches {@link InitBinder @InitBinder} methods.
@@ -967,4 +1213,68 @@ public class RequestMappingHandlerAdapter extends AbstractHandlerMethodAdapter
 		}
 	};
 
+
+	/**
+	 * {@link ConcurrentResultHandler} that writes the concurrent result of a
+	 * {@code @ResponseBody} method through the configured return value handlers
+	 * on the thread that produced it, i.e. without dispatching the request.
+	 * @see #setFastAsyncCompletion(boolean)
+	 */
+	private class ResponseBodyConcurrentResultHandler implements ConcurrentResultHandler {
+
+		private final HttpServletRequest request;
+
+		private final HttpServletResponse response;
+
+		private final ServletInvocableHandlerMethod invocableMethod;
+
+		private final ModelAndViewContainer mavContainer;
+
+		public ResponseBodyConcurrentResultHandler(HttpServletRequest request, HttpServletResponse response,
+				ServletInvocableHandlerMethod invocableMethod, ModelAndViewContainer mavContainer) {
+
+			this.request = request;
+			this.response = response;
+			this.invocableMethod = invocableMethod;
+			this.mavContainer = mavContainer;
+		}
+
+		@Override
+		public boolean handleConcurrentResult(Object concurrentResult) throws Exception {
+			if (concurrentResult instanceof Throwable) {
+				return false;
+			}
+			if (WebUtils.getNativeResponse(this.response, ContentCachingResponseWrapper.class) != null) {
+				// Cached content is only copied to the response on the ASYNC dispatch
+				return false;
+			}
+			ServletInvocableHandlerMethod resultMethod = this.invocableMethod.wrapConcurrentResult(concurrentResult);
+			MethodParameter returnType = resultMethod.getReturnValueType(concurrentResult);
+			if (returnValueHandlers.isAsyncReturnValue(concurrentResult, returnType) ||
+					isStreamingResponseBody(concurrentResult)) {
+				return false;
+			}
+
+			ServletWebRequest webRequest = new ServletWebRequest(this.request, this.response);
+			try {
+				resultMethod.invokeAndHandle(webRequest, this.mavContainer);
+			}
+			finally {
+				webRequest.requestCompleted();
+			}
+			if (!this.mavContainer.isRequestHandled()) {
+				throw new IllegalStateException(
+						"Concurrent result [" + concurrentResult + "] was not handled as the response body");
+			}
+			this.response.flushBuffer();
+			return true;
+		}
+
+		private boolean isStreamingResponseBody(Object concurrentResult) {
+			Object body = (concurrentResult instanceof HttpEntity ?
+					((HttpEntity<?>) concurrentResult).getBody() : concurrentResult);
+			return (body instanceof StreamingResponseBody || body instanceof NonBlockingStreamingResponseBody);
+		}
+	}
+
 }
@@ -16,6 +16,7 @@
 
 package org.springframework.web.servlet.mvc.method.annotation;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.HashMap;
@@ -62,6 +63,8 @@ public class ResponseBodyEmitterReturnValueHandler implements AsyncHandlerMethod
 
 	private final Map<Class<?>, ResponseBodyEmitterAdapter> adapterMap;
 
+	private boolean nonBlocking = false;
+
 
 	public ResponseBodyEmitterReturnValueHandler(List<HttpMessageConverter<?>> messageConverters) {
 		Assert.notEmpty(messageConverters, "HttpMessageConverter List must not be empty");
@@ -83,6 +86,32 @@ public class ResponseBodyEmitterReturnValueHandler implements AsyncHandlerMethod
 		return this.adapterMap;
 	}
 
+	/**
+	 * Whether to write emitted data with Servlet 3.1 non-blocking I/O.
+	 * <p>When enabled, {@link ResponseBodyEmitter#send} serializes the data
+	 * and queues it rather than writing to the response directly. Queued data
+	 * is written only when the response can be written without blocking, so
+	 * application threads are not held up by slow clients. Note that data
+	 * accumulates in memory for as long as a client reads slower than the
+	 * application sends.
+	 * <p>Responses whose output stream does not support non-blocking I/O,
+	 * e.g. behind a filter that caches the response content, are written with
+	 * blocking I/O instead.
+	 * <p>By default this is set to {@code false}. Requires a Servlet 3.1+ container.
+	 * @since 4.3.14
+	 */
+	public void setNonBlocking(boolean nonBlocking) {
+		this.nonBlocking = nonBlocking;
+	}
+
+	/**
+	 * Whether emitted data is written with non-blocking I/O.
+	 * @since 4.3.14
+	 */
+	public boolean isNonBlocking() {
+		return this.nonBlocking;
+	}
+
 	private ResponseBodyEmitterAdapter getAdapterFor(Class<?> type) {
 		if (type != null) {
 			for (Class<?> adapteeType : getAdapterMap().keySet()) {
@@ -131,7 +160,8 @@ public class ResponseBodyEmitterReturnValueHandler implements AsyncHandlerMethod
 		}
 
 		HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
-		ServerHttpResponse outputMessage = new ServletServerHttpResponse(response);
+		ServletServerHttpResponse servletOutputMessage = new ServletServerHttpResponse(response);
+		ServerHttpResponse outputMessage = servletOutputMessage;
 
 		if (returnValue instanceof ResponseEntity) {
 			ResponseEntity<?> responseEntity = (ResponseEntity<?>) returnValue;
@@ -164,10 +194,35 @@ public class ResponseBodyEmitterReturnValueHandler implements AsyncHandlerMethod
 		DeferredResult<?> deferredResult = new DeferredResult<Object>(emitter.getTimeout());
 		WebAsyncUtils.getAsyncManager(webRequest).startDeferredResultProcessing(deferredResult, mavContainer);
 
-		HttpMessageConvertingHandler handler = new HttpMessageConvertingHandler(outputMessage, deferredResult);
+		ResponseBodyEmitter.Handler handler;
+		if (this.nonBlocking && servletOutputMessage.isNonBlockingSupported()) {
+			NonBlockingResponseBodyWriter writer = new NonBlockingResponseBodyWriter(servletOutputMessage, deferredResult);
+			writer.start();
+			handler = new NonBlockingHttpMessageConvertingHandler(writer, outputMessage.getHeaders(), deferredResult);
+		}
+		else {
+			handler = new HttpMessageConvertingHandler(outputMessage, deferredResult);
+		}
 		emitter.initialize(handler);
 	}
 
+	@SuppressWarnings("unchecked")
+	private <T> void writeWithMessageConverters(T data, MediaType mediaType, ServerHttpResponse outputMessage)
+			throws IOException {
+
+		for (HttpMessageConverter<?> converter : this.messageConverters) {
+			if (converter.canWrite(data.getClass(), mediaType)) {
+				((HttpMessageConverter<T>) converter).write(data, mediaType, outputMessage);
+				outputMessage.flush();
+				if (logger.isDebugEnabled()) {
+					logger.debug("Written [" + data + "] using [" + converter + "]");
+				}
+				return;
+			}
+		}
+		throw new IllegalArgumentException("No suitable converter for " + data.getClass());
+	}
+
 
 	/**
 	 * Adapter for {@code ResponseBodyEmitter} return values.
@@ -197,22 +252,7 @@ public class ResponseBodyEmitterReturnValueHandler implements AsyncHandlerMethod
 
 		@Override
 		public void send(Object data, MediaType mediaType) throws IOException {
-			sendInternal(data, mediaType);
-		}
-
-		@SuppressWarnings("unchecked")
-		private <T> void sendInternal(T data, MediaType mediaType) throws IOException {
-			for (HttpMessageConverter<?> converter : ResponseBodyEmitterReturnValueHandler.this.messageConverters) {
-				if (converter.canWrite(data.getClass(), mediaType)) {
-					((HttpMessageConverter<T>) converter).write(data, mediaType, this.outputMessage);
-					this.outputMessage.flush();
-					if (logger.isDebugEnabled()) {
-						logger.debug("Written [" + data + "] using [" + converter + "]");
-					}
-					return;
-				}
-			}
-			throw new IllegalArgumentException("No suitable converter for " + data.getClass());
+			writeWithMessageConverters(data, mediaType, this.outputMessage);
 		}
 
 		@Override
@@ -237,6 +277,100 @@ public class ResponseBodyEmitterReturnValueHandler implements AsyncHandlerMethod
 	}
 
 
+	/**
+	 * ResponseBodyEmitter.Handler that serializes with HttpMessageConverter's
+	 * and queues the output for writing with non-blocking I/O.
+	 */
+	private class NonBlockingHttpMessageConvertingHandler implements ResponseBodyEmitter.Handler {
+
+		private final NonBlockingResponseBodyWriter writer;
+
+		private final HttpHeaders headers;
+
+		private final DeferredResult<?> deferredResult;
+
+		public NonBlockingHttpMessageConvertingHandler(NonBlockingResponseBodyWriter writer,
+				HttpHeaders headers, DeferredResult<?> deferredResult) {
+
+			this.writer = writer;
+			this.headers = headers;
+			this.deferredResult = deferredResult;
+		}
+
+		@Override
+		public void send(Object data, MediaType mediaType) throws IOException {
+			if (this.writer.isDone()) {
+				throw new IOException("Response has already been completed");
+			}
+			BufferingServerHttpResponse outputMessage = new BufferingServerHttpResponse(this.headers);
+			writeWithMessageConverters(data, mediaType, outputMessage);
+			this.writer.write(outputMessage.getBytes());
+		}
+
+		@Override
+		public void complete() {
+			this.writer.complete();
+		}
+
+		@Override
+		public void completeWithError(Throwable failure) {
+			this.writer.completeWithError(failure);
+		}
+
+		@Override
+		public void onTimeout(Runnable callback) {
+			this.deferredResult.onTimeout(callback);
+		}
+
+		@Override
+		public void onCompletion(Runnable callback) {
+			this.deferredResult.onCompletion(callback);
+		}
+	}
+
+
+	/**
+	 * Collect the output of an HttpMessageConverter in memory, silently
+	 * ignoring header changes since the response is already committed.
+	 */
+	private static class BufferingServerHttpResponse implements ServerHttpResponse {
+
+		private final HttpHeaders mutableHeaders = new HttpHeaders();
+
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+
+		public BufferingServerHttpResponse(HttpHeaders headers) {
+			this.mutableHeaders.putAll(headers);
+		}
+
+		public byte[] getBytes() {
+			return this.body.toByteArray();
+		}
+
+		@Override
+		public void setStatusCode(HttpStatus status) {
+		}
+
+		@Override
+		public HttpHeaders getHeaders() {
+			return this.mutableHeaders;
+		}
+
+		@Override
+		public OutputStream getBody() {
+			return this.body;
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+
 	/**
 	 * Wrap to silently ignore header changes HttpMessageConverter's that would
 	 * otherwise cause HttpHeaders to raise exceptions.
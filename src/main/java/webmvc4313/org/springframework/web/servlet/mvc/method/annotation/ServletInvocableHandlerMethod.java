@@ -21,12 +21,18 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import org.springframework.core.MethodParameter;
 import org.springframework.core.ResolvableType;
 import org.springframework.http.HttpStatus;
+import org.springframework.lang.UsesJava8;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.StringUtils;
+import org.springframework.util.concurrent.ListenableFuture;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.method.HandlerMethod;
@@ -57,8 +63,16 @@ public class ServletInvocableHandlerMethod extends InvocableHandlerMethod {
 
 	private static final Method CALLABLE_METHOD = ClassUtils.getMethod(Callable.class, "call");
 
+	private static final boolean completionStagePresent = ClassUtils.isPresent(
+			"java.util.concurrent.CompletionStage", ServletInvocableHandlerMethod.class.getClassLoader());
+
+	private static final Object RESULT_NONE = new Object();
+
+
 	private HandlerMethodReturnValueHandlerComposite returnValueHandlers;
 
+	private boolean inlineCompletedFutures = false;
+
 
 	/**
 	 * Creates an instance from the given handler and method.
@@ -83,6 +97,17 @@ public class ServletInvocableHandlerMethod extends InvocableHandlerMethod {
 		this.returnValueHandlers = returnValueHandlers;
 	}
 
+	/**
+	 * Whether a {@link ListenableFuture} or {@link CompletionStage} return value
+	 * that is already complete should be handled inline, i.e. as if its value
+	 * had been returned directly, without starting async processing.
+	 * <p>The default is {@code false}.
+	 * @since 4.3.14
+	 */
+	public void setInlineCompletedFutures(boolean inlineCompletedFutures) {
+		this.inlineCompletedFutures = inlineCompletedFutures;
+	}
+
 
 	/**
 	 * Invoke the method and handle the return value through one of the
@@ -108,6 +133,14 @@ public class ServletInvocableHandlerMethod extends InvocableHandlerMethod {
 			return;
 		}
 
+		if (this.inlineCompletedFutures) {
+			Object completedResult = getCompletedResult(returnValue);
+			if (completedResult != RESULT_NONE) {
+				wrapConcurrentResult(completedResult).invokeAndHandle(webRequest, mavContainer);
+				return;
+			}
+		}
+
 		mavContainer.setRequestHandled(false);
 		try {
 			this.returnValueHandlers.handleReturnValue(
@@ -160,6 +193,37 @@ public class ServletInvocableHandlerMethod extends InvocableHandlerMethod {
 		return getDetailedErrorMessage(sb.toString());
 	}
 
+	/**
+	 * Return the value of a completed async return value, possibly an exception,
+	 * or {@link #RESULT_NONE} if the return value is not a future that is done.
+	 */
+	private Object getCompletedResult(Object returnValue) {
+		Future<?> future = null;
+		if (returnValue instanceof ListenableFuture) {
+			future = (ListenableFuture<?>) returnValue;
+		}
+		else if (completionStagePresent) {
+			future = CompletionStageDelegate.toFuture(returnValue);
+		}
+		if (future == null || !future.isDone() ||
+				!this.returnValueHandlers.isAsyncReturnValue(returnValue, getReturnValueType(returnValue))) {
+			return RESULT_NONE;
+		}
+		try {
+			return future.get();
+		}
+		catch (ExecutionException ex) {
+			return (ex.getCause() != null ? ex.getCause() : ex);
+		}
+		catch (CancellationException ex) {
+			return ex;
+		}
+		catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+			return RESULT_NONE;
+		}
+	}
+
 	/**
 	 * Create a nested ServletInvocableHandlerMethod subclass that returns the
 	 * the given value (or raises an Exception if the value is one) rather than
@@ -279,4 +343,24 @@ public class ServletInvocableHandlerMethod extends InvocableHandlerMethod {
 		}
 	}
 
+
+	/**
+	 * Inner class to avoid a hard dependency on Java 8.
+	 */
+	@UsesJava8
+	private static class CompletionStageDelegate {
+
+		public static Future<?> toFuture(Object returnValue) {
+			if (returnValue instanceof CompletionStage) {
+				try {
+					return ((CompletionStage<?>) returnValue).toCompletableFuture();
+				}
+				catch (UnsupportedOperationException ex) {
+					// Not backed by a CompletableFuture: cannot check for completion
+				}
+			}
+			return null;
+		}
+	}
+
 }
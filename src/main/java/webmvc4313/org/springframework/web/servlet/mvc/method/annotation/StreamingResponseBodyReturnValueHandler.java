@@ -16,6 +16,7 @@
 
 package org.springframework.web.servlet.mvc.method.annotation;
 
+import java.io.IOException;
 import java.io.OutputStream;
 import java.util.concurrent.Callable;
 import javax.servlet.ServletRequest;
@@ -24,10 +25,10 @@ import javax.servlet.http.HttpServletResponse;
 import org.springframework.core.MethodParameter;
 import org.springframework.core.ResolvableType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.http.server.ServletServerHttpResponse;
 import org.springframework.util.Assert;
 import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
 import org.springframework.web.context.request.async.WebAsyncUtils;
 import org.springframework.web.filter.ShallowEtagHeaderFilter;
 import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
@@ -38,6 +39,10 @@ import org.springframework.web.method.support.ModelAndViewContainer;
  * {@link org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody}
  * and also {@code ResponseEntity<StreamingResponseBody>}.
  *
+ * <p>As of 4.3.14 also supports {@link NonBlockingStreamingResponseBody} and
+ * {@code ResponseEntity<NonBlockingStreamingResponseBody>}, written with
+ * Servlet 3.1 non-blocking I/O rather than from a task executor thread.
+ *
  * @author Rossen Stoyanchev
  * @since 4.2
  */
@@ -45,16 +50,21 @@ public class StreamingResponseBodyReturnValueHandler implements HandlerMethodRet
 
 	@Override
 	public boolean supportsReturnType(MethodParameter returnType) {
-		if (StreamingResponseBody.class.isAssignableFrom(returnType.getParameterType())) {
+		if (isStreamingBodyType(returnType.getParameterType())) {
 			return true;
 		}
 		else if (ResponseEntity.class.isAssignableFrom(returnType.getParameterType())) {
 			Class<?> bodyType = ResolvableType.forMethodParameter(returnType).getGeneric(0).resolve();
-			return (bodyType != null && StreamingResponseBody.class.isAssignableFrom(bodyType));
+			return (bodyType != null && isStreamingBodyType(bodyType));
 		}
 		return false;
 	}
 
+	private boolean isStreamingBodyType(Class<?> type) {
+		return (StreamingResponseBody.class.isAssignableFrom(type) ||
+				NonBlockingStreamingResponseBody.class.isAssignableFrom(type));
+	}
+
 	@Override
 	public void handleReturnValue(Object returnValue, MethodParameter returnType,
 			ModelAndViewContainer mavContainer, NativeWebRequest webRequest) throws Exception {
@@ -65,7 +75,7 @@ public class StreamingResponseBodyReturnValueHandler implements HandlerMethodRet
 		}
 
 		HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
-		ServerHttpResponse outputMessage = new ServletServerHttpResponse(response);
+		ServletServerHttpResponse outputMessage = new ServletServerHttpResponse(response);
 
 		if (returnValue instanceof ResponseEntity) {
 			ResponseEntity<?> responseEntity = (ResponseEntity<?>) returnValue;
@@ -82,8 +92,22 @@ public class StreamingResponseBodyReturnValueHandler implements HandlerMethodRet
 		ServletRequest request = webRequest.getNativeRequest(ServletRequest.class);
 		ShallowEtagHeaderFilter.disableContentCaching(request);
 
-		Assert.isInstanceOf(StreamingResponseBody.class, returnValue, "StreamingResponseBody expected");
-		StreamingResponseBody streamingBody = (StreamingResponseBody) returnValue;
+		StreamingResponseBody streamingBody;
+		if (returnValue instanceof NonBlockingStreamingResponseBody) {
+			NonBlockingStreamingResponseBody chunkSource = (NonBlockingStreamingResponseBody) returnValue;
+			if (outputMessage.isNonBlockingSupported()) {
+				DeferredResult<?> deferredResult = new DeferredResult<Object>();
+				WebAsyncUtils.getAsyncManager(webRequest).startDeferredResultProcessing(deferredResult, mavContainer);
+				new NonBlockingResponseBodyWriter(outputMessage, deferredResult, chunkSource).start();
+				return;
+			}
+			// e.g. behind a content caching filter: write the chunks with blocking I/O
+			streamingBody = new ChunkSourceStreamingResponseBody(chunkSource);
+		}
+		else {
+			Assert.isInstanceOf(StreamingResponseBody.class, returnValue, "StreamingResponseBody expected");
+			streamingBody = (StreamingResponseBody) returnValue;
+		}
 
 		Callable<Void> callable = new StreamingResponseBodyTask(outputMessage.getBody(), streamingBody);
 		WebAsyncUtils.getAsyncManager(webRequest).startCallableProcessing(callable, mavContainer);
@@ -108,4 +132,27 @@ public class StreamingResponseBodyReturnValueHandler implements HandlerMethodRet
 		}
 	}
 
+
+	/**
+	 * Adapts a {@link NonBlockingStreamingResponseBody} to blocking writes,
+	 * for responses that do not support non-blocking I/O.
+	 */
+	private static class ChunkSourceStreamingResponseBody implements StreamingResponseBody {
+
+		private final NonBlockingStreamingResponseBody chunkSource;
+
+		public ChunkSourceStreamingResponseBody(NonBlockingStreamingResponseBody chunkSource) {
+			this.chunkSource = chunkSource;
+		}
+
+		@Override
+		public void writeTo(OutputStream outputStream) throws IOException {
+			byte[] chunk;
+			while ((chunk = this.chunkSource.nextChunk()) != null) {
+				outputStream.write(chunk);
+			}
+			outputStream.flush();
+		}
+	}
+
 }
@@ -17,16 +17,22 @@
 package org.springframework.web.servlet.resource;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.springframework.core.io.Resource;
 import org.springframework.util.DigestUtils;
-import org.springframework.util.FileCopyUtils;
 
 /**
  * A {@code VersionStrategy} that calculates an Hex MD5 hashes from the content
  * of the resource and appends it to the file name, e.g.
  * {@code "styles/main-e36d2e05253c6c7085a91522ce43a0b4.css"}.
  *
+ * <p>As of 4.3.14, calculated hashes are cached by resource URL and are reused
+ * as long as the last-modified timestamp and content length of the resource
+ * remain the same.
+ *
  * @author Brian Clozel
  * @author Rossen Stoyanchev
  * @since 4.1
@@ -34,19 +40,102 @@ import org.springframework.util.FileCopyUtils;
  */
 public class ContentVersionStrategy extends AbstractVersionStrategy {
 
+	private final ConcurrentMap<String, CachedVersion> versionCache = new ConcurrentHashMap<String, CachedVersion>(256);
+
+	private boolean cacheVersions = true;
+
+
 	public ContentVersionStrategy() {
 		super(new FileNameVersionPathStrategy());
 	}
 
+
+	/**
+	 * Whether to cache calculated hashes and reuse them until the
+	 * last-modified timestamp or the length of the resource changes.
+	 * <p>By default this is set to "true".
+	 * @since 4.3.14
+	 */
+	public void setCacheVersions(boolean cacheVersions) {
+		this.cacheVersions = cacheVersions;
+		if (!cacheVersions) {
+			this.versionCache.clear();
+		}
+	}
+
+	/**
+	 * Whether calculated hashes are cached.
+	 * @since 4.3.14
+	 */
+	public boolean isCacheVersions() {
+		return this.cacheVersions;
+	}
+
+
 	@Override
 	public String getResourceVersion(Resource resource) {
+		if (!this.cacheVersions) {
+			return calculateVersion(resource);
+		}
+		String key;
+		long lastModified;
+		long contentLength;
 		try {
-			byte[] content = FileCopyUtils.copyToByteArray(resource.getInputStream());
-			return DigestUtils.md5DigestAsHex(content);
+			key = resource.getURL().toString();
+			lastModified = resource.lastModified();
+			contentLength = resource.contentLength();
+		}
+		catch (IOException ex) {
+			// Not cacheable, e.g. no URL or no last-modified timestamp
+			return calculateVersion(resource);
+		}
+		CachedVersion cachedVersion = this.versionCache.get(key);
+		if (cachedVersion != null && cachedVersion.matches(lastModified, contentLength)) {
+			return cachedVersion.version;
+		}
+		String version = calculateVersion(resource);
+		this.versionCache.put(key, new CachedVersion(version, lastModified, contentLength));
+		return version;
+	}
+
+	private String calculateVersion(Resource resource) {
+		try {
+			InputStream inputStream = resource.getInputStream();
+			try {
+				return DigestUtils.md5DigestAsHex(inputStream);
+			}
+			finally {
+				try {
+					inputStream.close();
+				}
+				catch (IOException ex) {
+					// ignore
+				}
+			}
 		}
 		catch (IOException ex) {
 			throw new IllegalStateException("Failed to calculate hash for " + resource, ex);
 		}
 	}
 
+
+	private static final class CachedVersion {
+
+		private final String version;
+
+		private final long lastModified;
+
+		private final long contentLength;
+
+		public CachedVersion(String version, long lastModified, long contentLength) {
+			this.version = version;
+			this.lastModified = lastModified;
+			this.contentLength = contentLength;
+		}
+
+		public boolean matches(long lastModified, long contentLength) {
+			return (this.lastModified == lastModified && this.contentLength == contentLength);
+		}
+	}
+
 }
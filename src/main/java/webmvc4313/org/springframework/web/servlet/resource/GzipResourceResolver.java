@@ -16,16 +16,33 @@
 
 package org.springframework.web.servlet.resource;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.core.io.AbstractResource;
+import org.springframework.core.io.FileSystemResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
 
 /**
  * A {@code ResourceResolver} that delegates to the chain to locate a resource
@@ -34,6 +51,12 @@ import org.springframework.core.io.Resource;
  * <p>The resolver gets involved only if the "Accept-Encoding" request header
  * contains the value "gzip" indicating the client accepts gzipped responses.
  *
+ * <p>As of 4.3.14, resources for which there is no pre-built ".gz" variant can
+ * optionally be {@link #setCompressOnTheFly compressed on the fly}, subject to
+ * their media type and size. The compressed content is kept in a bounded
+ * in-memory cache or, if configured, in a spool directory on disk, and is
+ * recreated when the original resource is modified.
+ *
  * @author Jeremy Grelle
  * @author Rossen Stoyanchev
  * @author Sam Brannen
@@ -41,6 +64,118 @@ import org.springframework.core.io.Resource;
  */
 public class GzipResourceResolver extends AbstractResourceResolver {
 
+	private static final List<MediaType> DEFAULT_COMPRESSIBLE_MEDIA_TYPES = Arrays.asList(
+			MediaType.parseMediaType("text/*"), MediaType.parseMediaType("application/javascript"),
+			MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MediaType.parseMediaType("image/svg+xml"));
+
+
+	private boolean compressOnTheFly = false;
+
+	private List<MediaType> compressibleMediaTypes = DEFAULT_COMPRESSIBLE_MEDIA_TYPES;
+
+	private long minCompressionSize = 1024;
+
+	private long compressedCacheSize = 10 * 1024 * 1024;
+
+	private File compressionSpoolDirectory;
+
+	private final Map<String, CompressedContent> compressedContents =
+			new LinkedHashMap<String, CompressedContent>(64, 0.75f, true);
+
+	private long compressedContentsSize;
+
+
+	/**
+	 * Whether to gzip resources on the fly when there is no pre-built ".gz"
+	 * variant for them. Only resources with a
+	 * {@link #setCompressibleMediaTypes compressible media type} and at least
+	 * {@link #setMinCompressionSize minimum size} are compressed.
+	 * <p>By default this is set to "false".
+	 */
+	public void setCompressOnTheFly(boolean compressOnTheFly) {
+		this.compressOnTheFly = compressOnTheFly;
+	}
+
+	/**
+	 * Whether resources are compressed on the fly.
+	 */
+	public boolean isCompressOnTheFly() {
+		return this.compressOnTheFly;
+	}
+
+	/**
+	 * Configure the media types of resources to compress on the fly. The
+	 * media type of a resource is determined from its file extension via
+	 * {@link javax.servlet.ServletContext#getMimeType}.
+	 * <p>By default this includes "text/*", "application/javascript",
+	 * "application/json", "application/xml" and "image/svg+xml".
+	 */
+	public void setCompressibleMediaTypes(List<MediaType> compressibleMediaTypes) {
+		Assert.notNull(compressibleMediaTypes, "'compressibleMediaTypes' must not be null");
+		this.compressibleMediaTypes = Collections.unmodifiableList(compressibleMediaTypes);
+	}
+
+	/**
+	 * Return the configured compressible media types.
+	 */
+	public List<MediaType> getCompressibleMediaTypes() {
+		return this.compressibleMediaTypes;
+	}
+
+	/**
+	 * Set the minimum size, in bytes, of a resource to compress on the fly.
+	 * Smaller resources gain little from compression.
+	 * <p>By default this is set to 1024.
+	 */
+	public void setMinCompressionSize(long minCompressionSize) {
+		this.minCompressionSize = minCompressionSize;
+	}
+
+	/**
+	 * Return the configured minimum compression size.
+	 */
+	public long getMinCompressionSize() {
+		return this.minCompressionSize;
+	}
+
+	/**
+	 * Set the maximum total size, in bytes, of compressed content to keep in
+	 * memory. When exceeded, the least recently used content is discarded.
+	 * Resources larger than this are not compressed on the fly, unless a
+	 * {@link #setCompressionSpoolDirectory spool directory} is configured.
+	 * <p>By default this is set to 10M.
+	 */
+	public void setCompressedCacheSize(long compressedCacheSize) {
+		this.compressedCacheSize = compressedCacheSize;
+	}
+
+	/**
+	 * Return the configured maximum size of compressed content kept in memory.
+	 */
+	public long getCompressedCacheSize() {
+		return this.compressedCacheSize;
+	}
+
+	/**
+	 * Set a directory in which to store content compressed on the fly,
+	 * instead of keeping it in memory. Files in the directory are named after
+	 * the original resource and its last-modified timestamp, and are reused
+	 * across restarts. Files for previous versions of a resource are deleted
+	 * once a newer version has been compressed.
+	 * <p>By default this is not set.
+	 */
+	public void setCompressionSpoolDirectory(File compressionSpoolDirectory) {
+		this.compressionSpoolDirectory = compressionSpoolDirectory;
+	}
+
+	/**
+	 * Return the configured compression spool directory, if any.
+	 */
+	public File getCompressionSpoolDirectory() {
+		return this.compressionSpoolDirectory;
+	}
+
+
 	@Override
 	protected Resource resolveResourceInternal(HttpServletRequest request, String requestPath,
 			List<? extends Resource> locations, ResourceResolverChain chain) {
@@ -60,6 +195,18 @@ public class GzipResourceResolver extends AbstractResourceResolver {
 			logger.trace("No gzipped resource for [" + resource.getFilename() + "]", ex);
 		}
 
+		if (this.compressOnTheFly && request != null && isCompressible(request, resource)) {
+			try {
+				Resource compressed = getCompressedResource(resource);
+				if (compressed != null) {
+					return compressed;
+				}
+			}
+			catch (IOException ex) {
+				logger.debug("Failed to compress resource [" + resource.getFilename() + "]", ex);
+			}
+		}
+
 		return resource;
 	}
 
@@ -68,6 +215,127 @@ public class GzipResourceResolver extends AbstractResourceResolver {
 		return (value != null && value.toLowerCase().contains("gzip"));
 	}
 
+	private boolean isCompressible(HttpServletRequest request, Resource resource) {
+		if (resource instanceof EncodedResource || resource.getFilename() == null) {
+			return false;
+		}
+		String mimeType = request.getServletContext().getMimeType(resource.getFilename());
+		if (mimeType == null) {
+			return false;
+		}
+		MediaType mediaType = MediaType.parseMediaType(mimeType);
+		for (MediaType compressibleMediaType : this.compressibleMediaTypes) {
+			if (compressibleMediaType.includes(mediaType)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Resource getCompressedResource(Resource resource) throws IOException {
+		long length = resource.contentLength();
+		if (length < this.minCompressionSize) {
+			return null;
+		}
+		String key = resource.getURL().toString();
+		long lastModified = resource.lastModified();
+
+		if (this.compressionSpoolDirectory != null) {
+			String prefix = DigestUtils.md5DigestAsHex(key.getBytes("UTF-8")) + "-";
+			String name = prefix + lastModified + ".gz";
+			File file = new File(this.compressionSpoolDirectory, name);
+			if (!file.exists()) {
+				File tempFile = File.createTempFile("compress", ".tmp", this.compressionSpoolDirectory);
+				OutputStream out = new FileOutputStream(tempFile);
+				try {
+					compress(resource, out);
+				}
+				finally {
+					out.close();
+				}
+				if (!tempFile.renameTo(file) && !file.exists()) {
+					tempFile.delete();
+					return null;
+				}
+				tempFile.delete();
+				deleteSupersededFiles(prefix, name);
+			}
+			return new GzippedResource(resource, new FileSystemResource(file));
+		}
+
+		if (length > this.compressedCacheSize) {
+			return null;
+		}
+		CompressedContent content;
+		synchronized (this.compressedContents) {
+			content = this.compressedContents.get(key);
+		}
+		if (content == null || content.lastModified != lastModified) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) length / 2);
+			compress(resource, out);
+			content = new CompressedContent(out.toByteArray(), lastModified);
+			if (logger.isTraceEnabled()) {
+				logger.trace("Compressed [" + resource.getFilename() + "] from " + length +
+						" to " + content.bytes.length + " bytes");
+			}
+			synchronized (this.compressedContents) {
+				CompressedContent previous = this.compressedContents.put(key, content);
+				if (previous != null) {
+					this.compressedContentsSize -= previous.bytes.length;
+				}
+				this.compressedContentsSize += content.bytes.length;
+				Iterator<CompressedContent> iterator = this.compressedContents.values().iterator();
+				while (this.compressedContentsSize > this.compressedCacheSize && iterator.hasNext()) {
+					CompressedContent eldest = iterator.next();
+					if (eldest != content) {
+						iterator.remove();
+						this.compressedContentsSize -= eldest.bytes.length;
+					}
+				}
+			}
+		}
+		return new CompressedResource(resource, content.bytes);
+	}
+
+	private void deleteSupersededFiles(final String prefix, final String currentName) {
+		File[] files = this.compressionSpoolDirectory.listFiles(new FilenameFilter() {
+			@Override
+			public boolean accept(File dir, String name) {
+				return (name.startsWith(prefix) && name.endsWith(".gz") && !name.equals(currentName));
+			}
+		});
+		if (files != null) {
+			for (File file : files) {
+				if (!file.delete() && logger.isDebugEnabled()) {
+					logger.debug("Could not delete superseded compressed file [" + file + "]");
+				}
+			}
+		}
+	}
+
+	private void compress(Resource resource, OutputStream out) throws IOException {
+		InputStream in = resource.getInputStream();
+		try {
+			// Close the gzip stream (over a non-closing target) in order to
+			// release the Deflater's native memory right away
+			GZIPOutputStream gzip = new GZIPOutputStream(StreamUtils.nonClosing(out));
+			try {
+				StreamUtils.copy(in, gzip);
+			}
+			finally {
+				gzip.close();
+			}
+		}
+		finally {
+			try {
+				in.close();
+			}
+			catch (IOException ex) {
+				// ignore
+			}
+		}
+	}
+
 	@Override
 	protected String resolveUrlPathInternal(String resourceUrlPath, List<? extends Resource> locations,
 			ResourceResolverChain chain) {
@@ -83,8 +351,12 @@ public class GzipResourceResolver extends AbstractResourceResolver {
 		private final Resource gzipped;
 
 		public GzippedResource(Resource original) throws IOException {
+			this(original, original.createRelative(original.getFilename() + ".gz"));
+		}
+
+		public GzippedResource(Resource original, Resource gzipped) {
 			this.original = original;
-			this.gzipped = original.createRelative(original.getFilename() + ".gz");
+			this.gzipped = gzipped;
 		}
 
 		public InputStream getInputStream() throws IOException {
@@ -140,4 +412,77 @@ public class GzipResourceResolver extends AbstractResourceResolver {
 		}
 	}
 
+
+	private static final class CompressedContent {
+
+		private final byte[] bytes;
+
+		private final long lastModified;
+
+		public CompressedContent(byte[] bytes, long lastModified) {
+			this.bytes = bytes;
+			this.lastModified = lastModified;
+		}
+	}
+
+
+	/**
+	 * Gzipped content of a resource compressed on the fly and held in memory.
+	 */
+	private static final class CompressedResource extends AbstractResource implements EncodedResource {
+
+		private final Resource original;
+
+		private final byte[] content;
+
+		public CompressedResource(Resource original, byte[] content) {
+			this.original = original;
+			this.content = content;
+		}
+
+		public InputStream getInputStream() throws IOException {
+			return new ByteArrayInputStream(this.content);
+		}
+
+		public boolean exists() {
+			return true;
+		}
+
+		public URL getURL() throws IOException {
+			return this.original.getURL();
+		}
+
+		public URI getURI() throws IOException {
+			return this.original.getURI();
+		}
+
+		public File getFile() throws IOException {
+			throw new FileNotFoundException(getDescription() + " is held in memory");
+		}
+
+		public long contentLength() {
+			return this.content.length;
+		}
+
+		public long lastModified() throws IOException {
+			return this.original.lastModified();
+		}
+
+		public Resource createRelative(String relativePath) throws IOException {
+			return this.original.createRelative(relativePath);
+		}
+
+		public String getFilename() {
+			return this.original.getFilename();
+		}
+
+		public String getDescription() {
+			return "gzipped " + this.original.getDescription();
+		}
+
+		public String getContentEncoding() {
+			return "gzip";
+		}
+	}
+
 }
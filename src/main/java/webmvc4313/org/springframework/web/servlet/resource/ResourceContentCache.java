@@ -0,0 +1,312 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import org.springframework.core.io.Resource;
+import org.springframework.http.MediaType;
+import org.springframework.util.Assert;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
+
+/**
+ * An in-memory cache for the content of small, frequently requested static
+ * resources, for use with {@link ResourceHttpRequestHandler#setResourceContentCache}.
+ *
+ * <p>Entries hold the content of a resource as produced by the configured
+ * resource resolvers and transformers (e.g. a pre-compressed variant found by
+ * {@link GzipResourceResolver}), along with its media type, a strong ETag and
+ * its last-modified timestamp. Requests that match an entry are served without
+ * going through the resolver chain and without accessing the file system,
+ * including conditional requests with "If-None-Match" or "If-Modified-Since".
+ *
+ * <p>The cache is bounded by the total size of the cached content. When that is
+ * exceeded, the least recently used entries are evicted. Entries are validated
+ * against the last-modified timestamp of the underlying resource at most once
+ * per {@link #setCheckInterval check interval}, so that changed resources are
+ * picked up without a restart.
+ *
+ * @author agent
+ * @since 4.3.14
+ */
+public class ResourceContentCache {
+
+	private static final Log logger = LogFactory.getLog(ResourceContentCache.class);
+
+
+	private final long maxTotalSize;
+
+	private int maxEntrySize = 128 * 1024;
+
+	private long checkInterval = 5000;
+
+	private final Map<String, CachedContent> contents = new LinkedHashMap<String, CachedContent>(64, 0.75f, true);
+
+	private long totalSize;
+
+
+	/**
+	 * Create a cache with the given maximum total size of cached content.
+	 * @param maxTotalSize the maximum number of bytes to hold in memory
+	 */
+	public ResourceContentCache(long maxTotalSize) {
+		Assert.isTrue(maxTotalSize > 0, "'maxTotalSize' must be greater than 0");
+		this.maxTotalSize = maxTotalSize;
+	}
+
+
+	/**
+	 * Set the maximum size of a resource to cache. Larger resources are
+	 * always served from their original location.
+	 * <p>By default this is set to 128K.
+	 */
+	public void setMaxEntrySize(int maxEntrySize) {
+		this.maxEntrySize = maxEntrySize;
+	}
+
+	/**
+	 * Return the configured maximum size of a cached resource.
+	 */
+	public int getMaxEntrySize() {
+		return this.maxEntrySize;
+	}
+
+	/**
+	 * Set the interval, in milliseconds, at which cached entries are checked
+	 * against the last-modified timestamp of the underlying resource.
+	 * <ul>
+	 * <li>0 -- check on every request.
+	 * <li>-1 -- never check, e.g. for resources that don't change at runtime.
+	 * </ul>
+	 * <p>By default this is set to 5000.
+	 */
+	public void setCheckInterval(long checkInterval) {
+		this.checkInterval = checkInterval;
+	}
+
+	/**
+	 * Return the configured check interval.
+	 */
+	public long getCheckInterval() {
+		return this.checkInterval;
+	}
+
+	/**
+	 * Return the maximum total size of cached content.
+	 */
+	public long getMaxTotalSize() {
+		return this.maxTotalSize;
+	}
+
+	/**
+	 * Return the current total size of cached content.
+	 */
+	public synchronized long getTotalSize() {
+		return this.totalSize;
+	}
+
+	/**
+	 * Remove the entry for the given key, if any.
+	 */
+	public synchronized void evict(String key) {
+		CachedContent content = this.contents.remove(key);
+		if (content != null) {
+			this.totalSize -= content.getContentLength();
+		}
+	}
+
+	/**
+	 * Remove all entries.
+	 */
+	public synchronized void clear() {
+		this.contents.clear();
+		this.totalSize = 0;
+	}
+
+
+	/**
+	 * Return the cached content for the given key, or {@code null} if there
+	 * is none or if the underlying resource has been modified since.
+	 */
+	CachedContent get(String key) {
+		CachedContent content;
+		synchronized (this) {
+			content = this.contents.get(key);
+		}
+		if (content == null) {
+			return null;
+		}
+		if (this.checkInterval >= 0 && System.currentTimeMillis() - content.getCheckedAt() >= this.checkInterval) {
+			if (!content.validate()) {
+				if (logger.isTraceEnabled()) {
+					logger.trace("Evicting modified resource " + content.getResource());
+				}
+				synchronized (this) {
+					if (this.contents.get(key) == content) {
+						this.contents.remove(key);
+						this.totalSize -= content.getContentLength();
+					}
+				}
+				return null;
+			}
+		}
+		return content;
+	}
+
+	/**
+	 * Read the given resource and cache its content under the given key,
+	 * unless it exceeds the {@link #setMaxEntrySize maximum entry size}.
+	 * @return the cached content, or {@code null} if not cached
+	 */
+	CachedContent put(String key, Resource resource, MediaType mediaType) throws IOException {
+		long length = resource.contentLength();
+		if (length < 0 || length > this.maxEntrySize || length > this.maxTotalSize) {
+			return null;
+		}
+		long lastModified = resource.lastModified();
+		byte[] bytes;
+		InputStream inputStream = resource.getInputStream();
+		try {
+			bytes = StreamUtils.copyToByteArray(inputStream);
+		}
+		finally {
+			try {
+				inputStream.close();
+			}
+			catch (IOException ex) {
+				// ignore
+			}
+		}
+		if (bytes.length > this.maxEntrySize) {
+			return null;
+		}
+
+		String eTag = (resource instanceof VersionedResource ?
+				((VersionedResource) resource).getVersion() : DigestUtils.md5DigestAsHex(bytes));
+		String contentEncoding = (resource instanceof EncodedResource ?
+				((EncodedResource) resource).getContentEncoding() : null);
+		CachedContent content = new CachedContent(
+				resource, bytes, mediaType, "\"" + eTag + "\"", lastModified, contentEncoding);
+
+		synchronized (this) {
+			CachedContent previous = this.contents.put(key, content);
+			if (previous != null) {
+				this.totalSize -= previous.getContentLength();
+			}
+			this.totalSize += content.getContentLength();
+			Iterator<CachedContent> iterator = this.contents.values().iterator();
+			while (this.totalSize > this.maxTotalSize && iterator.hasNext()) {
+				CachedContent eldest = iterator.next();
+				if (eldest != content) {
+					iterator.remove();
+					this.totalSize -= eldest.getContentLength();
+				}
+			}
+		}
+		if (logger.isTraceEnabled()) {
+			logger.trace("Cached content of " + resource + " under key [" + key + "]");
+		}
+		return content;
+	}
+
+
+	/**
+	 * The cached content of a resource along with its response metadata.
+	 */
+	static final class CachedContent {
+
+		private final Resource resource;
+
+		private final byte[] content;
+
+		private final MediaType mediaType;
+
+		private final String eTag;
+
+		private final long lastModified;
+
+		private final String contentEncoding;
+
+		private volatile long checkedAt;
+
+		CachedContent(Resource resource, byte[] content, MediaType mediaType,
+				String eTag, long lastModified, String contentEncoding) {
+
+			this.resource = resource;
+			this.content = content;
+			this.mediaType = mediaType;
+			this.eTag = eTag;
+			this.lastModified = lastModified;
+			this.contentEncoding = contentEncoding;
+			this.checkedAt = System.currentTimeMillis();
+		}
+
+		public Resource getResource() {
+			return this.resource;
+		}
+
+		public byte[] getContent() {
+			return this.content;
+		}
+
+		public int getContentLength() {
+			return this.content.length;
+		}
+
+		public MediaType getMediaType() {
+			return this.mediaType;
+		}
+
+		public String getETag() {
+			return this.eTag;
+		}
+
+		public long getLastModified() {
+			return this.lastModified;
+		}
+
+		public String getContentEncoding() {
+			return this.contentEncoding;
+		}
+
+		long getCheckedAt() {
+			return this.checkedAt;
+		}
+
+		boolean validate() {
+			try {
+				if (this.resource.lastModified() != this.lastModified) {
+					return false;
+				}
+			}
+			catch (IOException ex) {
+				return false;
+			}
+			this.checkedAt = System.currentTimeMillis();
+			return true;
+		}
+	}
+
+}
@@ -16,6 +16,7 @@
 
 package org.springframework.web.servlet.resource;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.Charset;
@@ -25,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import javax.servlet.ServletException;
 import javax.servlet.ServletResponse;
+import javax.servlet.ServletResponseWrapper;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -106,6 +108,14 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 
 	private static final String URL_RESOURCE_CHARSET_PREFIX = "[charset=";
 
+	private static final String SENDFILE_SUPPORT_ATTRIBUTE = "org.apache.tomcat.sendfile.support";
+
+	private static final String SENDFILE_FILENAME_ATTRIBUTE = "org.apache.tomcat.sendfile.filename";
+
+	private static final String SENDFILE_START_ATTRIBUTE = "org.apache.tomcat.sendfile.start";
+
+	private static final String SENDFILE_END_ATTRIBUTE = "org.apache.tomcat.sendfile.end";
+
 
 	private final List<String> locationValues = new ArrayList<String>(4);
 
@@ -131,6 +141,12 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 
 	private StringValueResolver embeddedValueResolver;
 
+	private boolean useSendfile = false;
+
+	private ResourceContentCache resourceContentCache;
+
+	private boolean varyByAcceptEncoding;
+
 
 	public ResourceHttpRequestHandler() {
 		super(HttpMethod.GET.name(), HttpMethod.HEAD.name());
@@ -297,6 +313,49 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 		return this.urlPathHelper;
 	}
 
+	/**
+	 * Whether to delegate the writing of file system resources to the servlet
+	 * container's "sendfile" support, if it is available for the current request.
+	 * <p>This is based on the {@code org.apache.tomcat.sendfile.*} request
+	 * attributes supported by Tomcat and Undertow, and lets the container
+	 * transfer the file without copying it through the JVM heap. It applies
+	 * only to full (non-Range) responses and only if the response is not
+	 * wrapped, e.g. by a filter that buffers or compresses the content.
+	 * <p>By default this is set to "false".
+	 * @since 4.3.14
+	 */
+	public void setUseSendfile(boolean useSendfile) {
+		this.useSendfile = useSendfile;
+	}
+
+	/**
+	 * Whether container "sendfile" support is used for file system resources.
+	 * @since 4.3.14
+	 */
+	public boolean isUseSendfile() {
+		return this.useSendfile;
+	}
+
+	/**
+	 * Configure a cache for the content of small, frequently requested
+	 * resources. GET and HEAD requests that match a cached entry are served
+	 * from memory, without going through the configured resolvers and
+	 * transformers. Range requests are always served from the resource.
+	 * <p>By default no cache is configured.
+	 * @since 4.3.14
+	 */
+	public void setResourceContentCache(ResourceContentCache resourceContentCache) {
+		this.resourceContentCache = resourceContentCache;
+	}
+
+	/**
+	 * Return the configured {@link ResourceContentCache}, if any.
+	 * @since 4.3.14
+	 */
+	public ResourceContentCache getResourceContentCache() {
+		return this.resourceContentCache;
+	}
+
 	@Override
 	public void setEmbeddedValueResolver(StringValueResolver resolver) {
 		this.embeddedValueResolver = resolver;
@@ -318,6 +377,16 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 
 		initAllowedLocations();
 
+		for (ResourceResolver resolver : this.resourceResolvers) {
+			if (resolver instanceof GzipResourceResolver) {
+				this.varyByAcceptEncoding = true;
+			}
+			else if (resolver instanceof VersionResourceResolver &&
+					((VersionResourceResolver) resolver).isPrewarmContentVersions()) {
+				((VersionResourceResolver) resolver).prewarmContentVersions(getLocations());
+			}
+		}
+
 		if (this.resourceHttpMessageConverter == null) {
 			this.resourceHttpMessageConverter = new ResourceHttpMessageConverter();
 		}
@@ -429,6 +498,15 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 	public void handleRequest(HttpServletRequest request, HttpServletResponse response)
 			throws ServletException, IOException {
 
+		String cacheKey = getContentCacheKey(request);
+		if (cacheKey != null) {
+			ResourceContentCache.CachedContent content = this.resourceContentCache.get(cacheKey);
+			if (content != null) {
+				handleCachedContent(request, response, content);
+				return;
+			}
+		}
+
 		// For very general mappings (e.g. "/") we need to check 404 first
 		Resource resource = getResource(request);
 		if (resource == null) {
@@ -476,7 +554,20 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 
 		ServletServerHttpResponse outputMessage = new ServletServerHttpResponse(response);
 		if (request.getHeader(HttpHeaders.RANGE) == null) {
+			if (cacheKey != null && METHOD_GET.equals(request.getMethod())) {
+				ResourceContentCache.CachedContent content =
+						this.resourceContentCache.put(cacheKey, resource, mediaType);
+				if (content != null) {
+					setCachedContentHeaders(response, content);
+					response.getOutputStream().write(content.getContent());
+					return;
+				}
+			}
 			setHeaders(response, resource, mediaType);
+			if (this.useSendfile && sendfile(request, response, resource)) {
+				logger.trace("Resource handed over to the container for sendfile");
+				return;
+			}
 			this.resourceHttpMessageConverter.write(resource, mediaType, outputMessage);
 		}
 		else {
@@ -643,6 +734,96 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 		return null;
 	}
 
+	private String getContentCacheKey(HttpServletRequest request) {
+		if (this.resourceContentCache == null || request.getHeader(HttpHeaders.RANGE) != null ||
+				!(METHOD_GET.equals(request.getMethod()) || METHOD_HEAD.equals(request.getMethod()))) {
+			return null;
+		}
+		String path = (String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE);
+		if (path == null) {
+			return null;
+		}
+		String encoding = request.getHeader("Accept-Encoding");
+		return (encoding != null && encoding.contains("gzip") ? path + "+encoding=gzip" : path);
+	}
+
+	private void handleCachedContent(HttpServletRequest request, HttpServletResponse response,
+			ResourceContentCache.CachedContent content) throws ServletException, IOException {
+
+		checkRequest(request);
+
+		if (new ServletWebRequest(request, response).checkNotModified(content.getETag(), content.getLastModified())) {
+			logger.trace("Cached resource not modified - returning 304");
+			return;
+		}
+
+		prepareResponse(response);
+		setCachedContentHeaders(response, content);
+		if (METHOD_HEAD.equals(request.getMethod())) {
+			logger.trace("HEAD request - skipping content");
+			return;
+		}
+		response.getOutputStream().write(content.getContent());
+	}
+
+	private void setCachedContentHeaders(HttpServletResponse response, ResourceContentCache.CachedContent content) {
+		response.setContentLength(content.getContentLength());
+		if (content.getMediaType() != null) {
+			response.setContentType(content.getMediaType().toString());
+		}
+		if (content.getContentEncoding() != null) {
+			response.setHeader(HttpHeaders.CONTENT_ENCODING, content.getContentEncoding());
+		}
+		if (this.varyByAcceptEncoding || content.getContentEncoding() != null) {
+			addVaryAcceptEncoding(response);
+		}
+		response.setHeader(HttpHeaders.ETAG, content.getETag());
+		response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+	}
+
+	/**
+	 * Add "Accept-Encoding" to the "Vary" header unless a filter or an earlier
+	 * step has already done so.
+	 */
+	private void addVaryAcceptEncoding(HttpServletResponse response) {
+		for (String value : response.getHeaders(HttpHeaders.VARY)) {
+			for (String headerName : StringUtils.tokenizeToStringArray(value, ",")) {
+				if ("*".equals(headerName) || "Accept-Encoding".equalsIgnoreCase(headerName)) {
+					return;
+				}
+			}
+		}
+		response.addHeader(HttpHeaders.VARY, "Accept-Encoding");
+	}
+
+	private boolean sendfile(HttpServletRequest request, HttpServletResponse response, Resource resource) {
+		if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT_ATTRIBUTE)) ||
+				response instanceof ServletResponseWrapper) {
+			return false;
+		}
+		File file = getFile(resource);
+		if (file == null) {
+			return false;
+		}
+		request.setAttribute(SENDFILE_FILENAME_ATTRIBUTE, file.getAbsolutePath());
+		request.setAttribute(SENDFILE_START_ATTRIBUTE, 0L);
+		request.setAttribute(SENDFILE_END_ATTRIBUTE, file.length());
+		return true;
+	}
+
+	private File getFile(Resource resource) {
+		try {
+			if (ResourceUtils.isFileURL(resource.getURL())) {
+				File file = resource.getFile();
+				return (file.isFile() ? file : null);
+			}
+		}
+		catch (IOException ex) {
+			// not resolvable to a file
+		}
+		return null;
+	}
+
 	/**
 	 * Set headers on the given servlet response.
 	 * Called for GET requests as well as HEAD requests.
@@ -671,6 +852,9 @@ public class ResourceHttpRequestHandler extends WebContentGenerator
 		if (resource instanceof EncodedResource) {
 			response.setHeader(HttpHeaders.CONTENT_ENCODING, ((EncodedResource) resource).getContentEncoding());
 		}
+		if (this.varyByAcceptEncoding || resource instanceof EncodedResource) {
+			addVaryAcceptEncoding(response);
+		}
 		if (resource instanceof VersionedResource) {
 			response.setHeader(HttpHeaders.ETAG, "\"" + ((VersionedResource) resource).getVersion() + "\"");
 		}
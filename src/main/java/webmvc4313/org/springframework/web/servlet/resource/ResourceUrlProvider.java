@@ -16,12 +16,18 @@
 
 package org.springframework.web.servlet.resource;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import javax.servlet.http.HttpServletRequest;
 
 import org.apache.commons.logging.Log;
@@ -31,6 +37,8 @@ import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.core.annotation.AnnotationAwareOrderComparator;
+import org.springframework.core.io.Resource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.util.PathMatcher;
 import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
@@ -44,6 +52,10 @@ import org.springframework.web.util.UrlPathHelper;
  * resources and uses the {@code ResourceResolver} chains of the configured
  * {@code ResourceHttpRequestHandler}s to make its decisions.
  *
+ * <p>As of 4.3.14, public URL paths can optionally be resolved ahead of time
+ * into an {@link #setUseUrlIndex index}, so that looking up the URL of a
+ * resource while rendering a page is a single map lookup.
+ *
  * @author Rossen Stoyanchev
  * @since 4.1
  */
@@ -59,6 +71,18 @@ public class ResourceUrlProvider implements ApplicationListener<ContextRefreshed
 
 	private boolean autodetect = true;
 
+	private boolean useUrlIndex = false;
+
+	private long urlIndexRefreshInterval = 60000;
+
+	private Executor urlIndexRefreshExecutor;
+
+	private volatile Map<String, String> urlIndex = Collections.emptyMap();
+
+	private volatile long urlIndexTimestamp;
+
+	private final AtomicBoolean urlIndexRefreshing = new AtomicBoolean();
+
 
 	/**
 	 * Configure a {@code UrlPathHelper} to use in
@@ -130,6 +154,67 @@ public class ResourceUrlProvider implements ApplicationListener<ContextRefreshed
 		return this.autodetect;
 	}
 
+	/**
+	 * Whether to resolve the public URL paths of all resources ahead of time,
+	 * when the application context is refreshed, and keep them in an index
+	 * keyed by lookup path. {@link #getForLookupPath} then returns indexed
+	 * URL paths without going through the resource resolver chain.
+	 * <p>The index covers resource mappings with a pattern of the form
+	 * "/prefix/**" and locations that resolve to a directory in the file
+	 * system. Other lookup paths are still resolved on demand.
+	 * <p>By default this is set to "false".
+	 * @since 4.3.14
+	 * @see #setUrlIndexRefreshInterval(long)
+	 */
+	public void setUseUrlIndex(boolean useUrlIndex) {
+		this.useUrlIndex = useUrlIndex;
+	}
+
+	/**
+	 * Whether public URL paths are resolved ahead of time into an index.
+	 * @since 4.3.14
+	 */
+	public boolean isUseUrlIndex() {
+		return this.useUrlIndex;
+	}
+
+	/**
+	 * Set the interval, in milliseconds, after which the URL index is rebuilt
+	 * in order to pick up added or modified resources, e.g. hashed URLs of
+	 * resources changed after deployment. The first lookup after the interval
+	 * has elapsed triggers a rebuild on the
+	 * {@link #setUrlIndexRefreshExecutor refresh executor}, while lookups
+	 * continue to use the current index until the rebuild has completed.
+	 * <p>A value of -1 builds the index only once, when the application context
+	 * is refreshed, which is suitable only for resources that don't change at
+	 * runtime. URL paths in the index are otherwise stale until the next
+	 * {@link #refreshUrlIndex() refresh}.
+	 * <p>By default this is set to 60000.
+	 * @since 4.3.14
+	 * @see #refreshUrlIndex()
+	 */
+	public void setUrlIndexRefreshInterval(long urlIndexRefreshInterval) {
+		this.urlIndexRefreshInterval = urlIndexRefreshInterval;
+	}
+
+	/**
+	 * Return the configured URL index refresh interval.
+	 * @since 4.3.14
+	 */
+	public long getUrlIndexRefreshInterval() {
+		return this.urlIndexRefreshInterval;
+	}
+
+	/**
+	 * Set the executor that rebuilds the URL index once the
+	 * {@link #setUrlIndexRefreshInterval refresh interval} has elapsed.
+	 * <p>By default a new daemon thread is started for each rebuild.
+	 * @since 4.3.14
+	 */
+	public void setUrlIndexRefreshExecutor(Executor urlIndexRefreshExecutor) {
+		this.urlIndexRefreshExecutor = urlIndexRefreshExecutor;
+	}
+
 	@Override
 	public void onApplicationEvent(ContextRefreshedEvent event) {
 		if (isAutodetect()) {
@@ -142,6 +227,9 @@ public class ResourceUrlProvider implements ApplicationListener<ContextRefreshed
 				this.autodetect = false;
 			}
 		}
+		if (isUseUrlIndex()) {
+			refreshUrlIndex();
+		}
 	}
 
 
@@ -168,6 +256,105 @@ public class ResourceUrlProvider implements ApplicationListener<ContextRefreshed
 		}
 	}
 
+	/**
+	 * Rebuild the index of public URL paths by scanning the locations of
+	 * the configured resource handlers.
+	 * @since 4.3.14
+	 * @see #setUseUrlIndex(boolean)
+	 */
+	public void refreshUrlIndex() {
+		Map<String, String> index = new HashMap<String, String>();
+		for (Map.Entry<String, ResourceHttpRequestHandler> entry : this.handlerMap.entrySet()) {
+			String pattern = entry.getKey();
+			if (!pattern.endsWith("/**")) {
+				continue;
+			}
+			String pathPrefix = pattern.substring(0, pattern.length() - 2);
+			if (getPathMatcher().isPattern(pathPrefix)) {
+				continue;
+			}
+			for (Resource location : entry.getValue().getLocations()) {
+				File directory = getDirectory(location);
+				if (directory != null) {
+					indexDirectory(directory, pathPrefix, index);
+				}
+			}
+		}
+		this.urlIndex = Collections.unmodifiableMap(index);
+		this.urlIndexTimestamp = System.currentTimeMillis();
+		if (logger.isDebugEnabled()) {
+			logger.debug("Indexed public URL paths for " + index.size() + " resources");
+		}
+	}
+
+	private File getDirectory(Resource location) {
+		try {
+			File file = location.getFile();
+			return (file.isDirectory() ? file : null);
+		}
+		catch (IOException ex) {
+			return null;
+		}
+	}
+
+	private void indexDirectory(File directory, String pathPrefix, Map<String, String> index) {
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String lookupPath = pathPrefix + file.getName();
+			if (file.isDirectory()) {
+				indexDirectory(file, lookupPath + "/", index);
+			}
+			else if (!index.containsKey(lookupPath)) {
+				String resolved = resolveLookupPath(lookupPath);
+				if (resolved != null) {
+					index.put(lookupPath, resolved);
+				}
+			}
+		}
+	}
+
+	private void refreshUrlIndexIfNecessary() {
+		if (this.urlIndexRefreshInterval >= 0 &&
+				System.currentTimeMillis() - this.urlIndexTimestamp > this.urlIndexRefreshInterval &&
+				this.urlIndexRefreshing.compareAndSet(false, true)) {
+			Runnable refreshTask = new Runnable() {
+				@Override
+				public void run() {
+					try {
+						refreshUrlIndex();
+					}
+					catch (Throwable ex) {
+						logger.error("Failed to refresh URL index", ex);
+					}
+					finally {
+						urlIndexRefreshing.set(false);
+					}
+				}
+			};
+			try {
+				getUrlIndexRefreshExecutor().execute(refreshTask);
+			}
+			catch (RejectedExecutionException ex) {
+				this.urlIndexRefreshing.set(false);
+				if (logger.isDebugEnabled()) {
+					logger.debug("URL index refresh rejected by executor", ex);
+				}
+			}
+		}
+	}
+
+	private Executor getUrlIndexRefreshExecutor() {
+		if (this.urlIndexRefreshExecutor == null) {
+			SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ResourceUrlProvider-");
+			executor.setDaemon(true);
+			this.urlIndexRefreshExecutor = executor;
+		}
+		return this.urlIndexRefreshExecutor;
+	}
+
 	/**
 	 * A variation on {@link #getForLookupPath(String)} that accepts a full request
 	 * URL path (i.e. including context and servlet path) and returns the full request
@@ -226,6 +413,18 @@ public class ResourceUrlProvider implements ApplicationListener<ContextRefreshed
 			logger.trace("Getting resource URL for lookup path \"" + lookupPath + "\"");
 		}
 
+		if (this.useUrlIndex) {
+			refreshUrlIndexIfNecessary();
+			String indexed = this.urlIndex.get(lookupPath);
+			if (indexed != null) {
+				return indexed;
+			}
+		}
+
+		return resolveLookupPath(lookupPath);
+	}
+
+	private String resolveLookupPath(String lookupPath) {
 		List<String> matchingPatterns = new ArrayList<String>();
 		for (String pattern : this.handlerMap.keySet()) {
 			if (getPathMatcher().match(pattern, lookupPath)) {
@@ -28,10 +28,14 @@ import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import javax.servlet.http.HttpServletRequest;
 
 import org.springframework.core.io.AbstractResource;
 import org.springframework.core.io.Resource;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
 import org.springframework.util.AntPathMatcher;
 import org.springframework.util.StringUtils;
 
@@ -67,6 +71,10 @@ public class VersionResourceResolver extends AbstractResourceResolver {
 	/** Map from path pattern -> VersionStrategy */
 	private final Map<String, VersionStrategy> versionStrategyMap = new LinkedHashMap<String, VersionStrategy>();
 
+	private boolean prewarmContentVersions = false;
+
+	private TaskExecutor prewarmExecutor;
+
 
 	/**
 	 * Set a Map with URL paths as keys and {@code VersionStrategy} as values.
@@ -151,6 +159,124 @@ public class VersionResourceResolver extends AbstractResourceResolver {
 	}
 
 
+	/**
+	 * Whether to calculate the versions of all resources that are mapped to a
+	 * {@link ContentVersionStrategy} at startup, in the background, so that
+	 * they are cached by the time the first pages that link to them are rendered.
+	 * <p>This is triggered by {@link ResourceHttpRequestHandler} for its
+	 * locations, and covers locations that resolve to a directory in the file
+	 * system. By default this is set to "false".
+	 * @since 4.3.14
+	 * @see #prewarmContentVersions(List)
+	 */
+	public void setPrewarmContentVersions(boolean prewarmContentVersions) {
+		this.prewarmContentVersions = prewarmContentVersions;
+	}
+
+	/**
+	 * Whether content versions are calculated at startup.
+	 * @since 4.3.14
+	 */
+	public boolean isPrewarmContentVersions() {
+		return this.prewarmContentVersions;
+	}
+
+	/**
+	 * Set the executor to calculate content versions at startup with. As many
+	 * tasks as there are available processors are submitted to it.
+	 * <p>By default a {@link SimpleAsyncTaskExecutor} with daemon threads is
+	 * used, i.e. the threads only live as long as the scan.
+	 * @since 4.3.14
+	 * @see #setPrewarmContentVersions(boolean)
+	 */
+	public void setPrewarmExecutor(TaskExecutor prewarmExecutor) {
+		this.prewarmExecutor = prewarmExecutor;
+	}
+
+	/**
+	 * Scan the given locations and calculate the versions of all resources
+	 * mapped to a {@link ContentVersionStrategy}, so that the strategy caches
+	 * them. The scan runs in parallel on the {@link #setPrewarmExecutor
+	 * prewarm executor}, and this method returns without waiting for it
+	 * to complete.
+	 * @param locations the resource locations to scan
+	 * @since 4.3.14
+	 */
+	public void prewarmContentVersions(final List<? extends Resource> locations) {
+		final TaskExecutor executor = getPrewarmExecutor();
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				Queue<PrewarmItem> items = new ConcurrentLinkedQueue<PrewarmItem>();
+				for (Resource location : locations) {
+					File directory = getDirectory(location);
+					if (directory != null) {
+						collectPrewarmItems(location, directory, "", items);
+					}
+				}
+				ContentVersionPrewarmTask task = new ContentVersionPrewarmTask(items);
+				int parallelism = Math.min(Runtime.getRuntime().availableProcessors(), items.size());
+				for (int i = 1; i < parallelism; i++) {
+					executor.execute(task);
+				}
+				task.run();
+			}
+		});
+	}
+
+	private TaskExecutor getPrewarmExecutor() {
+		if (this.prewarmExecutor != null) {
+			return this.prewarmExecutor;
+		}
+		SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("ResourceVersion-prewarm-");
+		executor.setDaemon(true);
+		this.prewarmExecutor = executor;
+		return executor;
+	}
+
+	private void collectPrewarmItems(Resource location, File directory, String pathPrefix,
+			Queue<PrewarmItem> items) {
+
+		File[] files = directory.listFiles();
+		if (files == null) {
+			return;
+		}
+		for (File file : files) {
+			String path = pathPrefix + file.getName();
+			if (file.isDirectory()) {
+				collectPrewarmItems(location, file, path + "/", items);
+			}
+			else {
+				VersionStrategy strategy = getStrategyForPath(path);
+				if (!(strategy instanceof ContentVersionStrategy)) {
+					continue;
+				}
+				try {
+					items.add(new PrewarmItem(location.createRelative(path), strategy));
+				}
+				catch (IOException ex) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Failed to pre-warm content version for \"" + path + "\"", ex);
+					}
+				}
+			}
+		}
+	}
+
+	private File getDirectory(Resource location) {
+		try {
+			File file = location.getFile();
+			return (file.isDirectory() ? file : null);
+		}
+		catch (IOException ex) {
+			if (logger.isDebugEnabled()) {
+				logger.debug("Not pre-warming content versions for " + location + ": not a directory");
+			}
+			return null;
+		}
+	}
+
+
 	@Override
 	protected Resource resolveResourceInternal(HttpServletRequest request, String requestPath,
 			List<? extends Resource> locations, ResourceResolverChain chain) {
@@ -241,6 +367,51 @@ public class VersionResourceResolver extends AbstractResourceResolver {
 	}
 
 
+	/**
+	 * A resource along with the strategy to calculate its version with.
+	 */
+	private static class PrewarmItem {
+
+		private final Resource resource;
+
+		private final VersionStrategy strategy;
+
+		public PrewarmItem(Resource resource, VersionStrategy strategy) {
+			this.resource = resource;
+			this.strategy = strategy;
+		}
+	}
+
+
+	/**
+	 * Calculates the versions of resources taken from a shared queue until it
+	 * is empty. Submitted several times in order to work in parallel.
+	 */
+	private class ContentVersionPrewarmTask implements Runnable {
+
+		private final Queue<PrewarmItem> items;
+
+		public ContentVersionPrewarmTask(Queue<PrewarmItem> items) {
+			this.items = items;
+		}
+
+		@Override
+		public void run() {
+			PrewarmItem item;
+			while ((item = this.items.poll()) != null) {
+				try {
+					item.strategy.getResourceVersion(item.resource);
+				}
+				catch (Exception ex) {
+					if (logger.isDebugEnabled()) {
+						logger.debug("Failed to pre-warm content version for " + item.resource, ex);
+					}
+				}
+			}
+		}
+	}
+
+
 	private class FileNameVersionedResource extends AbstractResource implements VersionedResource {
 
 		private final Resource original;
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import junit.framework.TestCase;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * Tests for the connection pooling of {@link Netty4ClientHttpRequestFactory}
+ * against an embedded Netty echo server, including a simple benchmark that
+ * compares pooled and unpooled connections.
+ *
+ * @author agent
+ */
+public class Netty4ClientHttpRequestFactoryTests extends TestCase {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int BENCHMARK_REQUESTS = 500;
+
+
+	private EventLoopGroup eventLoopGroup;
+
+	private Channel serverChannel;
+
+	private final AtomicInteger connectionCount = new AtomicInteger();
+
+	private Netty4ClientHttpRequestFactory requestFactory;
+
+
+	@Override
+	protected void setUp() throws Exception {
+		this.eventLoopGroup = new NioEventLoopGroup(2);
+		ServerBootstrap bootstrap = new ServerBootstrap();
+		bootstrap.group(this.eventLoopGroup).channel(NioServerSocketChannel.class)
+				.childHandler(new ChannelInitializer<SocketChannel>() {
+					@Override
+					protected void initChannel(SocketChannel channel) {
+						connectionCount.incrementAndGet();
+						channel.pipeline().addLast(new HttpServerCodec());
+						channel.pipeline().addLast(new HttpObjectAggregator(1024 * 1024));
+						channel.pipeline().addLast(new EchoHandler());
+					}
+				});
+		this.serverChannel = bootstrap.bind(new InetSocketAddress("localhost", 0)).sync().channel();
+		// Shares the server's event loop group, which the factory does not shut down
+		this.requestFactory = new Netty4ClientHttpRequestFactory(this.eventLoopGroup);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		this.requestFactory.destroy();
+		this.serverChannel.close().sync();
+		this.eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+	}
+
+
+	public void testUnpooledConnectionPerRequest() throws Exception {
+		for (int i = 0; i < 5; i++) {
+			assertEquals("request " + i, post("request " + i));
+		}
+		assertEquals(5, this.connectionCount.get());
+		assertTrue(this.requestFactory.getPoolMetrics().isEmpty());
+	}
+
+	public void testPooledConnectionIsReused() throws Exception {
+		this.requestFactory.setMaxConnectionsPerRoute(2);
+		for (int i = 0; i < 5; i++) {
+			assertEquals("request " + i, post("request " + i));
+		}
+		assertEquals(1, this.connectionCount.get());
+
+		Map<String, Netty4ClientHttpRequestFactory.PoolMetrics> metrics = this.requestFactory.getPoolMetrics();
+		assertEquals(1, metrics.size());
+		assertEquals(5, metrics.values().iterator().next().getAcquireCount());
+	}
+
+	public void testPooledConcurrentRequestsLimitedToMaxConnections() throws Exception {
+		this.requestFactory.setMaxConnectionsPerRoute(2);
+		List<ListenableFuture<ClientHttpResponse>> futures = new ArrayList<ListenableFuture<ClientHttpResponse>>();
+		for (int i = 0; i < 20; i++) {
+			AsyncClientHttpRequest request = this.requestFactory.createAsyncRequest(uri(), HttpMethod.POST);
+			StreamUtils.copy("request " + i, UTF_8, request.getBody());
+			futures.add(request.executeAsync());
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			ClientHttpResponse response = futures.get(i).get(10, TimeUnit.SECONDS);
+			try {
+				assertEquals(HttpStatus.OK, response.getStatusCode());
+				assertEquals("request " + i, StreamUtils.copyToString(response.getBody(), UTF_8));
+			}
+			finally {
+				response.close();
+			}
+		}
+		assertTrue("Opened " + this.connectionCount.get() + " connections", this.connectionCount.get() <= 2);
+	}
+
+	public void testBenchmark() throws Exception {
+		long unpooledTime = runBenchmark();
+		assertEquals(BENCHMARK_REQUESTS, this.connectionCount.get());
+
+		this.requestFactory.setMaxConnectionsPerRoute(1);
+		long pooledTime = runBenchmark();
+		// All requests reuse the connection opened while warming up
+		assertEquals(0, this.connectionCount.get());
+
+		System.out.println("Netty4ClientHttpRequestFactory: " + BENCHMARK_REQUESTS + " requests took " +
+				TimeUnit.NANOSECONDS.toMillis(unpooledTime) + " ms unpooled, " +
+				TimeUnit.NANOSECONDS.toMillis(pooledTime) + " ms pooled");
+	}
+
+
+	private long runBenchmark() throws Exception {
+		for (int i = 0; i < 10; i++) {
+			post("warm-up");
+		}
+		this.connectionCount.set(0);
+		long startTime = System.nanoTime();
+		for (int i = 0; i < BENCHMARK_REQUESTS; i++) {
+			post("benchmark");
+		}
+		return System.nanoTime() - startTime;
+	}
+
+	private String post(String body) throws Exception {
+		ClientHttpRequest request = this.requestFactory.createRequest(uri(), HttpMethod.POST);
+		StreamUtils.copy(body, UTF_8, request.getBody());
+		ClientHttpResponse response = request.execute();
+		try {
+			assertEquals(HttpStatus.OK, response.getStatusCode());
+			return StreamUtils.copyToString(response.getBody(), UTF_8);
+		}
+		finally {
+			response.close();
+		}
+	}
+
+	private URI uri() {
+		InetSocketAddress address = (InetSocketAddress) this.serverChannel.localAddress();
+		return URI.create("http://localhost:" + address.getPort() + "/echo");
+	}
+
+
+	/**
+	 * Echoes the request body, keeping the connection alive if requested.
+	 */
+	private static class EchoHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+		@Override
+		protected void channelRead0(ChannelHandlerContext context, FullHttpRequest request) {
+			ByteBuf content = request.content().retain();
+			FullHttpResponse response = new DefaultFullHttpResponse(
+					HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+			response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+			if (HttpUtil.isKeepAlive(request)) {
+				HttpUtil.setKeepAlive(response, true);
+				context.writeAndFlush(response);
+			}
+			else {
+				context.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http2.DefaultHttp2Connection;
+import io.netty.handler.codec.http2.Http2Connection;
+import io.netty.handler.codec.http2.Http2Settings;
+import io.netty.handler.codec.http2.HttpConversionUtil;
+import io.netty.handler.codec.http2.HttpToHttp2ConnectionHandlerBuilder;
+import io.netty.handler.codec.http2.InboundHttp2ToHttpAdapterBuilder;
+import junit.framework.TestCase;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.concurrent.ListenableFuture;
+
+/**
+ * Tests for {@link Netty4Http2ClientHttpRequestFactory} against an in-process
+ * cleartext HTTP/2 server that limits the number of concurrent streams.
+ *
+ * @author agent
+ */
+public class Netty4Http2ClientHttpRequestFactoryTests extends TestCase {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int MAX_CONCURRENT_STREAMS = 2;
+
+	private static final long RESPONSE_DELAY = 50;
+
+	private static final long SLOW_RESPONSE_DELAY = 2000;
+
+
+	private EventLoopGroup eventLoopGroup;
+
+	private Channel serverChannel;
+
+	private final AtomicInteger connectionCount = new AtomicInteger();
+
+	private final AtomicInteger activeStreams = new AtomicInteger();
+
+	private final AtomicInteger maxActiveStreams = new AtomicInteger();
+
+	private Netty4Http2ClientHttpRequestFactory requestFactory;
+
+
+	@Override
+	protected void setUp() throws Exception {
+		this.eventLoopGroup = new NioEventLoopGroup(2);
+		ServerBootstrap bootstrap = new ServerBootstrap();
+		bootstrap.group(this.eventLoopGroup).channel(NioServerSocketChannel.class)
+				.childHandler(new ChannelInitializer<SocketChannel>() {
+					@Override
+					protected void initChannel(SocketChannel channel) {
+						connectionCount.incrementAndGet();
+						Http2Connection connection = new DefaultHttp2Connection(true);
+						channel.pipeline().addLast(new HttpToHttp2ConnectionHandlerBuilder()
+								.connection(connection)
+								.initialSettings(new Http2Settings().maxConcurrentStreams(MAX_CONCURRENT_STREAMS))
+								.frameListener(new InboundHttp2ToHttpAdapterBuilder(connection)
+										.maxContentLength(1024 * 1024)
+										.propagateSettings(false)
+										.build())
+								.build());
+						channel.pipeline().addLast(new StubHandler());
+					}
+				});
+		this.serverChannel = bootstrap.bind(new InetSocketAddress("localhost", 0)).sync().channel();
+		// Shares the server's event loop group, which the factory does not shut down
+		this.requestFactory = new Netty4Http2ClientHttpRequestFactory(this.eventLoopGroup);
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		this.requestFactory.destroy();
+		this.serverChannel.close().sync();
+		this.eventLoopGroup.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+	}
+
+
+	public void testGet() throws Exception {
+		ClientHttpResponse response = this.requestFactory.createRequest(uri("/hello"), HttpMethod.GET).execute();
+		try {
+			assertEquals(HttpStatus.OK, response.getStatusCode());
+			assertEquals("/hello", StreamUtils.copyToString(response.getBody(), UTF_8));
+		}
+		finally {
+			response.close();
+		}
+	}
+
+	public void testPost() throws Exception {
+		ClientHttpRequest request = this.requestFactory.createRequest(uri("/echo"), HttpMethod.POST);
+		StreamUtils.copy("Hello World", UTF_8, request.getBody());
+		ClientHttpResponse response = request.execute();
+		try {
+			assertEquals(HttpStatus.OK, response.getStatusCode());
+			assertEquals("Hello World", StreamUtils.copyToString(response.getBody(), UTF_8));
+		}
+		finally {
+			response.close();
+		}
+	}
+
+	public void testRequestsBeyondMaxConcurrentStreamsAreQueued() throws Exception {
+		// Receive the server's SETTINGS before opening streams concurrently
+		this.requestFactory.createRequest(uri("/warm-up"), HttpMethod.GET).execute().close();
+
+		List<ListenableFuture<ClientHttpResponse>> futures = new ArrayList<ListenableFuture<ClientHttpResponse>>();
+		for (int i = 0; i < 10; i++) {
+			futures.add(this.requestFactory.createAsyncRequest(uri("/" + i), HttpMethod.GET).executeAsync());
+		}
+		for (int i = 0; i < futures.size(); i++) {
+			ClientHttpResponse response = futures.get(i).get(10, TimeUnit.SECONDS);
+			try {
+				assertEquals(HttpStatus.OK, response.getStatusCode());
+				assertEquals("/" + i, StreamUtils.copyToString(response.getBody(), UTF_8));
+			}
+			finally {
+				response.close();
+			}
+		}
+		assertEquals(1, this.connectionCount.get());
+		assertTrue("Server saw " + this.maxActiveStreams.get() + " concurrent streams",
+				this.maxActiveStreams.get() <= MAX_CONCURRENT_STREAMS);
+	}
+
+	public void testReadTimeoutResetsOnlyThatStream() throws Exception {
+		this.requestFactory.setReadTimeout((int) (RESPONSE_DELAY * 10));
+		try {
+			this.requestFactory.createRequest(uri("/slow"), HttpMethod.GET).execute();
+			fail("SocketTimeoutException expected");
+		}
+		catch (SocketTimeoutException ex) {
+			// expected
+		}
+		ClientHttpResponse response = this.requestFactory.createRequest(uri("/after"), HttpMethod.GET).execute();
+		try {
+			assertEquals("/after", StreamUtils.copyToString(response.getBody(), UTF_8));
+		}
+		finally {
+			response.close();
+		}
+		assertEquals(1, this.connectionCount.get());
+	}
+
+	public void testConnectionFailure() throws Exception {
+		URI uri = uri("/hello");
+		this.serverChannel.close().sync();
+		try {
+			this.requestFactory.createRequest(uri, HttpMethod.GET).execute();
+			fail("IOException expected");
+		}
+		catch (IOException ex) {
+			// expected
+		}
+	}
+
+
+	private URI uri(String path) {
+		InetSocketAddress address = (InetSocketAddress) this.serverChannel.localAddress();
+		return URI.create("http://localhost:" + address.getPort() + path);
+	}
+
+
+	/**
+	 * Responds with the request path, or for "/echo" with the request body,
+	 * after a short delay so that streams overlap.
+	 */
+	private class StubHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+		@Override
+		protected void channelRead0(final ChannelHandlerContext context, FullHttpRequest request) {
+			int active = activeStreams.incrementAndGet();
+			while (true) {
+				int max = maxActiveStreams.get();
+				if (active <= max || maxActiveStreams.compareAndSet(max, active)) {
+					break;
+				}
+			}
+			final String streamId = request.headers().get(
+					HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text());
+			String path = request.uri();
+			final ByteBuf content = ("/echo".equals(path) ? request.content().retain() :
+					Unpooled.copiedBuffer(path, UTF_8));
+			long delay = ("/slow".equals(path) ? SLOW_RESPONSE_DELAY : RESPONSE_DELAY);
+			context.executor().schedule(new Runnable() {
+				@Override
+				public void run() {
+					activeStreams.decrementAndGet();
+					FullHttpResponse response = new DefaultFullHttpResponse(
+							HttpVersion.HTTP_1_1, HttpResponseStatus.OK, content);
+					response.headers().set(HttpConversionUtil.ExtensionHeaderNames.STREAM_ID.text(), streamId);
+					response.headers().setInt(HttpHeaderNames.CONTENT_LENGTH, content.readableBytes());
+					context.writeAndFlush(response);
+				}
+			}, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+}
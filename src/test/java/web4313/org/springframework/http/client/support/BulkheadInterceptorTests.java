@@ -0,0 +1,189 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client.support;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.AsyncClientHttpRequestFactory;
+import org.springframework.http.client.AsyncClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.InterceptingAsyncClientHttpRequestFactory;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Tests for {@link BulkheadInterceptor} against a local stub server.
+ *
+ * @author agent
+ */
+public class BulkheadInterceptorTests extends TestCase {
+
+	private StubHttpServer server;
+
+
+	@Override
+	protected void setUp() throws Exception {
+		this.server = new StubHttpServer();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		this.server.stop();
+	}
+
+
+	public void testPermitHeldUntilResponseClosed() throws Exception {
+		BulkheadInterceptor interceptor = new BulkheadInterceptor(1);
+		ClientHttpRequestFactory requestFactory = createRequestFactory(interceptor);
+		URI uri = this.server.uri("/ok");
+		String route = CircuitBreakerInterceptor.getRoute(uri);
+
+		ClientHttpResponse response = requestFactory.createRequest(uri, HttpMethod.GET).execute();
+		assertEquals(Integer.valueOf(1), interceptor.getActiveCalls().get(route));
+		try {
+			requestFactory.createRequest(uri, HttpMethod.GET).execute();
+			fail("BulkheadFullException expected");
+		}
+		catch (BulkheadFullException ex) {
+			assertEquals(route, ex.getRoute());
+		}
+		assertEquals("stub", StreamUtils.copyToString(response.getBody(), Charset.forName("UTF-8")));
+		response.close();
+		assertEquals(Integer.valueOf(0), interceptor.getActiveCalls().get(route));
+
+		response = requestFactory.createRequest(uri, HttpMethod.GET).execute();
+		response.close();
+		assertEquals(2, this.server.getRequestCount());
+	}
+
+	public void testPermitReleasedOnFailure() throws Exception {
+		BulkheadInterceptor interceptor = new BulkheadInterceptor(1);
+		ClientHttpRequestFactory requestFactory = createRequestFactory(interceptor);
+		URI uri = this.server.uri("/ok");
+		this.server.stop();
+		try {
+			requestFactory.createRequest(uri, HttpMethod.GET).execute();
+			fail("IOException expected");
+		}
+		catch (IOException ex) {
+			assertFalse(ex instanceof BulkheadFullException);
+		}
+		assertEquals(Integer.valueOf(0), interceptor.getActiveCalls().get(CircuitBreakerInterceptor.getRoute(uri)));
+	}
+
+	public void testConcurrentCallsLimited() throws Exception {
+		BulkheadInterceptor interceptor = new BulkheadInterceptor(2);
+		interceptor.setMaxWaitTime(StubHttpServer.DELAY * 20);
+		final ClientHttpRequestFactory requestFactory = createRequestFactory(interceptor);
+		final URI uri = this.server.uri("/slow");
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+			for (int i = 0; i < 8; i++) {
+				futures.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() throws Exception {
+						ClientHttpResponse response = requestFactory.createRequest(uri, HttpMethod.GET).execute();
+						try {
+							StreamUtils.drain(response.getBody());
+							return response.getRawStatusCode();
+						}
+						finally {
+							response.close();
+						}
+					}
+				}));
+			}
+			for (Future<Integer> future : futures) {
+				assertEquals(Integer.valueOf(200), future.get());
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		assertEquals(8, this.server.getRequestCount());
+		assertTrue(this.server.getMaxActiveCount() <= 2);
+	}
+
+	public void testConcurrentCallsRejectedWithoutWaitTime() throws Exception {
+		BulkheadInterceptor interceptor = new BulkheadInterceptor(1);
+		final ClientHttpRequestFactory requestFactory = createRequestFactory(interceptor);
+		final URI uri = this.server.uri("/slow-body");
+
+		ClientHttpResponse response = requestFactory.createRequest(uri, HttpMethod.GET).execute();
+		try {
+			requestFactory.createRequest(uri, HttpMethod.GET).execute();
+			fail("BulkheadFullException expected");
+		}
+		catch (BulkheadFullException ex) {
+			// expected: the body of the first response has not been read yet
+		}
+		finally {
+			response.close();
+		}
+		assertEquals(1, this.server.getRequestCount());
+	}
+
+	public void testAsyncPermitHeldUntilResponseClosed() throws Exception {
+		BulkheadInterceptor interceptor = new BulkheadInterceptor(1);
+		SimpleClientHttpRequestFactory delegate = new SimpleClientHttpRequestFactory();
+		delegate.setTaskExecutor(new SimpleAsyncTaskExecutor());
+		AsyncClientHttpRequestFactory requestFactory = new InterceptingAsyncClientHttpRequestFactory(
+				delegate, Collections.<AsyncClientHttpRequestInterceptor>singletonList(interceptor));
+		URI uri = this.server.uri("/ok");
+		String route = CircuitBreakerInterceptor.getRoute(uri);
+
+		ClientHttpResponse response = requestFactory.createAsyncRequest(uri, HttpMethod.GET).executeAsync().get();
+		assertEquals(Integer.valueOf(1), interceptor.getActiveCalls().get(route));
+		try {
+			requestFactory.createAsyncRequest(uri, HttpMethod.GET).executeAsync().get();
+			fail("BulkheadFullException expected");
+		}
+		catch (BulkheadFullException ex) {
+			// expected: thrown by the interceptor before the request is sent
+		}
+		catch (ExecutionException ex) {
+			assertTrue(ex.getCause() instanceof BulkheadFullException);
+		}
+		response.close();
+		assertEquals(Integer.valueOf(0), interceptor.getActiveCalls().get(route));
+	}
+
+
+	private ClientHttpRequestFactory createRequestFactory(ClientHttpRequestInterceptor interceptor) {
+		return new InterceptingClientHttpRequestFactory(new SimpleClientHttpRequestFactory(),
+				Collections.singletonList(interceptor));
+	}
+
+}
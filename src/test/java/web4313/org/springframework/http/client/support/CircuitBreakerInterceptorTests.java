@@ -0,0 +1,154 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client.support;
+
+import java.net.URI;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.InterceptingClientHttpRequestFactory;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.http.client.support.CircuitBreakerInterceptor.CircuitBreaker;
+import org.springframework.http.client.support.CircuitBreakerInterceptor.State;
+import org.springframework.util.StreamUtils;
+
+/**
+ * Tests for {@link CircuitBreakerInterceptor} against a local stub server.
+ *
+ * @author agent
+ */
+public class CircuitBreakerInterceptorTests extends TestCase {
+
+	private StubHttpServer server;
+
+	private CircuitBreakerInterceptor interceptor;
+
+	private ClientHttpRequestFactory requestFactory;
+
+
+	@Override
+	protected void setUp() throws Exception {
+		this.server = new StubHttpServer();
+		this.interceptor = new CircuitBreakerInterceptor();
+		this.interceptor.setSlidingWindowSize(4);
+		this.interceptor.setMinimumNumberOfCalls(4);
+		this.interceptor.setFailureRateThreshold(50);
+		this.interceptor.setWaitDurationInOpenState(StubHttpServer.DELAY);
+		this.interceptor.setPermittedCallsInHalfOpenState(2);
+		this.requestFactory = new InterceptingClientHttpRequestFactory(new SimpleClientHttpRequestFactory(),
+				Collections.<ClientHttpRequestInterceptor>singletonList(this.interceptor));
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		this.server.stop();
+	}
+
+
+	public void testStaysClosedBelowFailureRate() throws Exception {
+		call("/ok");
+		call("/ok");
+		call("/ok");
+		call("/error");
+		CircuitBreaker circuitBreaker = getCircuitBreaker("/ok");
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+		assertEquals(25f, circuitBreaker.getFailureRate());
+	}
+
+	public void testOpensOnFailureRate() throws Exception {
+		call("/ok");
+		call("/ok");
+		call("/error");
+		call("/error");
+		assertEquals(State.OPEN, getCircuitBreaker("/ok").getState());
+		try {
+			call("/ok");
+			fail("CircuitBreakerOpenException expected");
+		}
+		catch (CircuitBreakerOpenException ex) {
+			// expected
+		}
+		assertEquals(4, this.server.getRequestCount());
+	}
+
+	public void testOpensOnSlowBody() throws Exception {
+		this.interceptor.setSlowCallDurationThreshold(StubHttpServer.DELAY / 2);
+		this.interceptor.setSlowCallRateThreshold(50);
+		call("/ok");
+		call("/ok");
+		call("/slow-body");
+		call("/slow-body");
+		CircuitBreaker circuitBreaker = getCircuitBreaker("/ok");
+		assertEquals(50f, circuitBreaker.getSlowCallRate());
+		assertEquals(State.OPEN, circuitBreaker.getState());
+	}
+
+	public void testRecordedWhenResponseClosed() throws Exception {
+		ClientHttpResponse response = this.requestFactory.createRequest(
+				this.server.uri("/ok"), HttpMethod.GET).execute();
+		CircuitBreaker circuitBreaker = getCircuitBreaker("/ok");
+		assertEquals(0, circuitBreaker.getNumberOfCalls());
+		response.close();
+		assertEquals(1, circuitBreaker.getNumberOfCalls());
+		response.close();
+		assertEquals(1, circuitBreaker.getNumberOfCalls());
+	}
+
+	public void testClosesAfterSuccessfulProbes() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			call("/error");
+		}
+		CircuitBreaker circuitBreaker = getCircuitBreaker("/ok");
+		assertEquals(State.OPEN, circuitBreaker.getState());
+		Thread.sleep(StubHttpServer.DELAY * 2);
+		assertEquals(State.HALF_OPEN, circuitBreaker.getState());
+		call("/ok");
+		call("/ok");
+		assertEquals(State.CLOSED, circuitBreaker.getState());
+	}
+
+	public void testReopensAfterFailedProbe() throws Exception {
+		for (int i = 0; i < 4; i++) {
+			call("/error");
+		}
+		Thread.sleep(StubHttpServer.DELAY * 2);
+		call("/error");
+		assertEquals(State.OPEN, getCircuitBreaker("/ok").getState());
+	}
+
+
+	private void call(String path) throws Exception {
+		ClientHttpResponse response = this.requestFactory.createRequest(
+				this.server.uri(path), HttpMethod.GET).execute();
+		try {
+			StreamUtils.drain(response.getBody());
+		}
+		finally {
+			response.close();
+		}
+	}
+
+	private CircuitBreaker getCircuitBreaker(String path) {
+		URI uri = this.server.uri(path);
+		return this.interceptor.getCircuitBreakers().get(CircuitBreakerInterceptor.getRoute(uri));
+	}
+
+}
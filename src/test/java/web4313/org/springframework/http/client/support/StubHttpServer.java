@@ -0,0 +1,140 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.springframework.http.client.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stub server for the interceptor tests, with the following paths:
+ * <ul>
+ * <li>{@code /ok}: "200 OK" with a short body
+ * <li>{@code /error}: "500 Internal Server Error"
+ * <li>{@code /slow}: "200 OK" after a delay
+ * <li>{@code /slow-body}: "200 OK" headers right away, the body after a delay
+ * </ul>
+ *
+ * @author agent
+ */
+class StubHttpServer {
+
+	static final long DELAY = 200;
+
+
+	private final HttpServer server;
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final AtomicInteger requestCount = new AtomicInteger();
+
+	private final AtomicInteger activeCount = new AtomicInteger();
+
+	private final AtomicInteger maxActiveCount = new AtomicInteger();
+
+
+	StubHttpServer() throws IOException {
+		this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		this.server.createContext("/ok", new StubHandler(200, 0, 0));
+		this.server.createContext("/error", new StubHandler(500, 0, 0));
+		this.server.createContext("/slow", new StubHandler(200, DELAY, 0));
+		this.server.createContext("/slow-body", new StubHandler(200, 0, DELAY));
+		this.server.setExecutor(this.executor);
+		this.server.start();
+	}
+
+
+	URI uri(String path) {
+		return URI.create("http://localhost:" + this.server.getAddress().getPort() + path);
+	}
+
+	int getRequestCount() {
+		return this.requestCount.get();
+	}
+
+	int getMaxActiveCount() {
+		return this.maxActiveCount.get();
+	}
+
+	void stop() {
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+
+
+	private class StubHandler implements HttpHandler {
+
+		private final int status;
+
+		private final long headersDelay;
+
+		private final long bodyDelay;
+
+		StubHandler(int status, long headersDelay, long bodyDelay) {
+			this.status = status;
+			this.headersDelay = headersDelay;
+			this.bodyDelay = bodyDelay;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			requestCount.incrementAndGet();
+			int active = activeCount.incrementAndGet();
+			while (true) {
+				int max = maxActiveCount.get();
+				if (active <= max || maxActiveCount.compareAndSet(max, active)) {
+					break;
+				}
+			}
+			try {
+				exchange.getRequestBody().close();
+				sleep(this.headersDelay);
+				byte[] body = "stub".getBytes("UTF-8");
+				exchange.sendResponseHeaders(this.status, (this.bodyDelay > 0 ? 0 : body.length));
+				OutputStream out = exchange.getResponseBody();
+				if (this.bodyDelay > 0) {
+					out.flush();
+					sleep(this.bodyDelay);
+				}
+				out.write(body);
+				out.close();
+			}
+			finally {
+				activeCount.decrementAndGet();
+			}
+		}
+
+		private void sleep(long millis) {
+			if (millis > 0) {
+				try {
+					Thread.sleep(millis);
+				}
+				catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+	}
+
+}
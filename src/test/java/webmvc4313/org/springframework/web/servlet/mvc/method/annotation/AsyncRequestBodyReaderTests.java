@@ -0,0 +1,245 @@
+/*
+ * Copyright 2002-2017 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.springframework.web.servlet.mvc.method.annotation;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import junit.framework.TestCase;
+
+import org.springframework.util.StreamUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+/**
+ * Tests for {@link AsyncRequestBodyReader}, including a load test with many
+ * throttled clients uploading concurrently through a small number of
+ * container threads.
+ *
+ * @author agent
+ */
+public class AsyncRequestBodyReaderTests extends TestCase {
+
+	private static final int CLIENT_COUNT = 200;
+
+	private static final int BODY_SIZE = 64 * 1024;
+
+	private static final int CHUNK_SIZE = 1024;
+
+	private static final long CHUNK_DELAY = 2;
+
+	private static final int CONTAINER_THREADS = 2;
+
+
+	private ScheduledExecutorService container;
+
+
+	@Override
+	protected void setUp() {
+		this.container = Executors.newScheduledThreadPool(CONTAINER_THREADS);
+	}
+
+	@Override
+	protected void tearDown() {
+		this.container.shutdownNow();
+	}
+
+
+	public void testThrottledClients() throws Exception {
+		List<DeferredResult<Object>> results = new ArrayList<DeferredResult<Object>>();
+		List<byte[]> bodies = new ArrayList<byte[]>();
+		CountDownLatch latch = new CountDownLatch(CLIENT_COUNT);
+		for (int i = 0; i < CLIENT_COUNT; i++) {
+			byte[] body = createBody(i);
+			DeferredResult<Object> deferredResult = createDeferredResult(latch);
+			ThrottledInputStream inputStream = new ThrottledInputStream(body);
+			// Clients above the threshold are spooled to disk
+			int threshold = (i % 2 == 0 ? BODY_SIZE * 2 : BODY_SIZE / 4);
+			new AsyncRequestBodyReader(createRequest(inputStream), deferredResult, threshold, null, -1).start();
+			inputStream.startDelivery();
+			results.add(deferredResult);
+			bodies.add(body);
+		}
+
+		assertTrue("Uploads did not complete", latch.await(60, TimeUnit.SECONDS));
+		for (int i = 0; i < CLIENT_COUNT; i++) {
+			Object result = results.get(i).getResult();
+			assertTrue("Unexpected result: " + result, result instanceof AsyncRequestBodyReader.BufferedRequestBody);
+			AsyncRequestBodyReader.BufferedRequestBody body = (AsyncRequestBodyReader.BufferedRequestBody) result;
+			InputStream in = body.getInputStream();
+			try {
+				assertTrue(Arrays.equals(bodies.get(i), StreamUtils.copyToByteArray(in)));
+			}
+			finally {
+				in.close();
+				body.release();
+			}
+		}
+	}
+
+	public void testMaxSizeExceeded() throws Exception {
+		CountDownLatch latch = new CountDownLatch(1);
+		DeferredResult<Object> deferredResult = createDeferredResult(latch);
+		ThrottledInputStream inputStream = new ThrottledInputStream(createBody(0));
+		new AsyncRequestBodyReader(createRequest(inputStream), deferredResult,
+				CHUNK_SIZE, null, BODY_SIZE / 2).start();
+		inputStream.startDelivery();
+
+		assertTrue(latch.await(10, TimeUnit.SECONDS));
+		assertTrue(deferredResult.getResult() instanceof MaxUploadSizeExceededException);
+	}
+
+	public void testNonBlockingSupported() throws Exception {
+		HttpServletRequest request = createRequest(new ThrottledInputStream(new byte[0]));
+		assertTrue(AsyncRequestBodyReader.isNonBlockingSupported(request));
+	}
+
+
+	private static byte[] createBody(int seed) {
+		byte[] body = new byte[BODY_SIZE];
+		for (int i = 0; i < body.length; i++) {
+			body[i] = (byte) (i * 31 + seed);
+		}
+		return body;
+	}
+
+	private static DeferredResult<Object> createDeferredResult(final CountDownLatch latch) {
+		DeferredResult<Object> deferredResult = new DeferredResult<Object>();
+		deferredResult.setResultHandler(new DeferredResult.DeferredResultHandler() {
+			@Override
+			public void handleResult(Object result) {
+				latch.countDown();
+			}
+		});
+		return deferredResult;
+	}
+
+	private static HttpServletRequest createRequest(final ServletInputStream inputStream) {
+		return (HttpServletRequest) Proxy.newProxyInstance(AsyncRequestBodyReaderTests.class.getClassLoader(),
+				new Class<?>[] {HttpServletRequest.class}, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						if (method.getName().equals("getInputStream")) {
+							return inputStream;
+						}
+						throw new UnsupportedOperationException(method.getName());
+					}
+				});
+	}
+
+
+	/**
+	 * ServletInputStream that receives the body in small chunks with a delay
+	 * in between, like a slow client, and notifies its ReadListener from the
+	 * container threads as a Servlet 3.1 container would.
+	 */
+	private class ThrottledInputStream extends ServletInputStream {
+
+		private final byte[] body;
+
+		private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+
+		private int delivered;
+
+		private int position;
+
+		private ReadListener listener;
+
+		public ThrottledInputStream(byte[] body) {
+			this.body = body;
+		}
+
+		public void startDelivery() {
+			scheduleNextChunk();
+		}
+
+		private void scheduleNextChunk() {
+			container.schedule(new Runnable() {
+				@Override
+				public void run() {
+					deliverChunk();
+				}
+			}, CHUNK_DELAY, TimeUnit.MILLISECONDS);
+		}
+
+		private synchronized void deliverChunk() {
+			int count = Math.min(CHUNK_SIZE, this.body.length - this.delivered);
+			this.received.write(this.body, this.delivered, count);
+			this.delivered += count;
+			try {
+				this.listener.onDataAvailable();
+				if (isFinished()) {
+					this.listener.onAllDataRead();
+					return;
+				}
+			}
+			catch (IOException ex) {
+				this.listener.onError(ex);
+				return;
+			}
+			scheduleNextChunk();
+		}
+
+		@Override
+		public synchronized int read() {
+			byte[] bytes = new byte[1];
+			return (read(bytes, 0, 1) == -1 ? -1 : bytes[0] & 0xFF);
+		}
+
+		@Override
+		public synchronized int read(byte[] bytes, int off, int len) {
+			int available = this.received.size() - this.position;
+			if (available == 0) {
+				return (isFinished() ? -1 : 0);
+			}
+			int count = Math.min(len, available);
+			System.arraycopy(this.received.toByteArray(), this.position, bytes, off, count);
+			this.position += count;
+			return count;
+		}
+
+		@Override
+		public synchronized boolean isFinished() {
+			return (this.delivered == this.body.length && this.position == this.received.size());
+		}
+
+		@Override
+		public synchronized boolean isReady() {
+			return (this.position < this.received.size());
+		}
+
+		@Override
+		public synchronized void setReadListener(ReadListener listener) {
+			this.listener = listener;
+		}
+	}
+
+}